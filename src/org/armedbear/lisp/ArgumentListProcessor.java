@@ -538,6 +538,12 @@ public class ArgumentListProcessor {
   public Symbol[] getVariables() {
       return variables;
   }
+
+  /** Returns true if the variable at 'index' in the array returned by
+   * 'getVariables' is bound as a special variable. */
+  boolean isSpecialVariable(int index) {
+      return specials[index] || variables[index].isSpecialVariable();
+  }
   
   private static void invalidParameter(LispObject obj) {
     program_error(obj.princToString()
@@ -523,6 +523,12 @@ public class Autoload extends Function
         autoload(PACKAGE_EXT, "gc", "gc", true);
         autoload(PACKAGE_EXT, "get-floating-point-modes", "FloatFunctions", true);
         autoload(PACKAGE_EXT, "make-slime-input-stream", "SlimeInputStream", true);
+        autoload(PACKAGE_EXT, "mapped-file-vector", "FileStream", true);
+        autoload(PACKAGE_EXT, "make-direct-vector", "BasicVector_ByteBuffer", true);
+        autoload(PACKAGE_EXT, "direct-vector-p", "BasicVector_ByteBuffer", true);
+        autoload(PACKAGE_EXT, "direct-vector-buffer", "BasicVector_ByteBuffer", true);
+        autoload(PACKAGE_EXT, "free-direct-vector", "BasicVector_ByteBuffer", true);
+        autoload(PACKAGE_SYS, "%replace-octets", "BasicVector_ByteBuffer");
         autoload(PACKAGE_EXT, "make-slime-output-stream", "SlimeOutputStream", true);
         autoload(PACKAGE_EXT, "probe-directory", "probe_file", true);
         autoload(PACKAGE_EXT, "set-floating-point-modes", "FloatFunctions", true);
@@ -535,6 +541,7 @@ public class Autoload extends Function
         autoload(PACKAGE_EXT, "weak-reference-value", "WeakReference", true);
         autoload(PACKAGE_EXT, "finalize", "Primitives", true);
         autoload(PACKAGE_EXT, "cancel-finalization", "Primitives", true);
+        autoload(PACKAGE_EXT, "save-load-bundle", "LoadBundle", true);
         autoload(PACKAGE_JAVA, "%jnew-proxy", "JProxy");
         autoload(PACKAGE_JAVA, "%find-java-class", "JavaObject");
         autoload(PACKAGE_JAVA, "%register-java-class", "JavaObject");
@@ -552,6 +559,8 @@ public class Autoload extends Function
         autoload(PACKAGE_MOP, "funcallable-instance-function", "FuncallableStandardObject", false);
         autoload(PACKAGE_MOP, "set-funcallable-instance-function", "FuncallableStandardObject", true);
         autoload(PACKAGE_PROF, "%start-profiler", "Profiler", true);
+        autoload(PACKAGE_PROF, "%profiler-samples", "Profiler");
+        autoload(PACKAGE_PROF, "%profiler-allocations", "Profiler");
         autoload(PACKAGE_PROF, "stop-profiler", "Profiler", true);
         autoload(PACKAGE_SYS, "%%string=", "StringFunctions");
         autoload(PACKAGE_SYS, "%adjust-array", "adjust_array");
@@ -561,6 +570,7 @@ public class Autoload extends Function
         autoload(PACKAGE_SYS, "%make-array", "make_array");
         autoload(PACKAGE_SYS, "%make-byte-array-input-stream", "ByteArrayInputStream"); //AS 20100317
         autoload(PACKAGE_SYS, "%make-byte-array-output-stream", "ByteArrayOutputStream"); //AS 20090325
+        autoload(PACKAGE_SYS, "%make-concurrent-hash-table", "HashTableFunctions");
         autoload(PACKAGE_SYS, "%make-condition", "make_condition", true);
         autoload(PACKAGE_SYS, "%make-emf-cache", "EMFCache", true);
         autoload(PACKAGE_SYS, "%make-hash-table", "HashTableFunctions");
@@ -568,12 +578,14 @@ public class Autoload extends Function
         autoload(PACKAGE_SYS, "%make-logical-pathname", "LogicalPathname", true);
         autoload(PACKAGE_SYS, "%make-server-socket", "make_server_socket");
         autoload(PACKAGE_SYS, "%make-socket", "make_socket");
+        autoload(PACKAGE_SYS, "%make-specialized-hash-table", "HashTableFunctions");
         autoload(PACKAGE_SYS, "%make-string", "StringFunctions");
         autoload(PACKAGE_SYS, "%make-string-output-stream", "StringOutputStream");
         autoload(PACKAGE_SYS, "%nstring-capitalize", "StringFunctions");
         autoload(PACKAGE_SYS, "%nstring-downcase", "StringFunctions");
         autoload(PACKAGE_SYS, "%nstring-upcase", "StringFunctions");
         autoload(PACKAGE_SYS, "%reinit-emf-cache", "EMFCache", true);
+        autoload(PACKAGE_SYS, "thread-allocated-bytes", "Profiler", true);
         autoload(PACKAGE_SYS, "%run-shell-command", "ShellCommand");
         autoload(PACKAGE_SYS, "%server-socket-close", "server_socket_close");
         autoload(PACKAGE_SYS, "%set-arglist", "arglist");
@@ -615,6 +627,7 @@ public class Autoload extends Function
         autoload(PACKAGE_SYS, "cache-emf", "EMFCache", true);
         autoload(PACKAGE_SYS, "canonicalize-logical-host", "LogicalPathname", true);
         autoload(PACKAGE_SYS, "%class-direct-slots", "SlotClass");
+        autoload(PACKAGE_SYS, "%closure-compiled-p", "ClosureCompiler");
         autoload(PACKAGE_SYS, "%float-bits", "FloatFunctions");
         autoload(PACKAGE_SYS, "coerce-to-double-float", "FloatFunctions");
         autoload(PACKAGE_SYS, "coerce-to-single-float", "FloatFunctions");
@@ -639,6 +652,7 @@ public class Autoload extends Function
         autoload(PACKAGE_SYS, "make-case-frob-stream", "CaseFrobStream");
         autoload(PACKAGE_SYS, "make-double-float", "FloatFunctions", true);
         autoload(PACKAGE_SYS, "make-file-stream", "FileStream");
+        autoload(PACKAGE_SYS, "make-mapped-file-stream", "FileStream");
         autoload(PACKAGE_SYS, "make-fill-pointer-output-stream", "FillPointerOutputStream");
         autoload(PACKAGE_SYS, "make-layout", "Layout", true);
         autoload(PACKAGE_SYS, "make-single-float", "FloatFunctions", true);
@@ -663,6 +677,19 @@ public class Autoload extends Function
         autoload(PACKAGE_SYS, "std-slot-value", "StandardObject", true);
         autoload(PACKAGE_SYS, "set-std-slot-value", "StandardObject", true);
         autoload(PACKAGE_SYS, "%allocate-funcallable-instance", "FuncallableStandardObject", true);
+        autoload(PACKAGE_SYS, "make-socket-channel", "SocketChannels", true);
+        autoload(PACKAGE_SYS, "make-server-socket-channel", "SocketChannels", true);
+        autoload(PACKAGE_SYS, "socket-channel-accept", "SocketChannels", true);
+        autoload(PACKAGE_SYS, "socket-channel-stream", "SocketChannels", true);
+        autoload(PACKAGE_SYS, "socket-channel-local-port", "SocketChannels", true);
+        autoload(PACKAGE_SYS, "socket-channel-close", "SocketChannels", true);
+        autoload(PACKAGE_SYS, "make-event-loop", "EventLoop", true);
+        autoload(PACKAGE_SYS, "event-loop-register", "EventLoop", true);
+        autoload(PACKAGE_SYS, "event-loop-unregister", "EventLoop", true);
+        autoload(PACKAGE_SYS, "event-loop-run-once", "EventLoop", true);
+        autoload(PACKAGE_SYS, "event-loop-run", "EventLoop", true);
+        autoload(PACKAGE_SYS, "event-loop-stop", "EventLoop", true);
+        autoload(PACKAGE_SYS, "event-loop-close", "EventLoop", true);
         autoload(PACKAGE_SYS, "unzip", "unzip", true);
         autoload(PACKAGE_SYS, "zip", "zip", true);
 
@@ -670,10 +697,41 @@ public class Autoload extends Function
 
 	autoload(PACKAGE_SYS, "make-fasl-class-loader", "FaslClassLoader", false);
 	autoload(PACKAGE_SYS, "get-fasl-function", "FaslClassLoader", false);
+	autoload(PACKAGE_SYS, "write-fasl-container", "FaslContainer", false);
 
 	autoload(PACKAGE_SYS, "make-memory-class-loader", "MemoryClassLoader", false);
 	autoload(PACKAGE_SYS, "put-memory-function", "MemoryClassLoader", false);
 	autoload(PACKAGE_SYS, "get-memory-function", "MemoryClassLoader", false);
+
+        autoload(PACKAGE_THREADS, "make-mailbox", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "mailbox-p", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "mailbox-send", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "mailbox-read", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "mailbox-peek", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "mailbox-empty-p", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "mailbox-count", "Mailbox", true);
+        autoload(PACKAGE_THREADS, "make-mutex", "Mutex", true);
+        autoload(PACKAGE_THREADS, "mutex-p", "Mutex", true);
+        autoload(PACKAGE_THREADS, "get-mutex", "Mutex", true);
+        autoload(PACKAGE_THREADS, "release-mutex", "Mutex", true);
+        autoload(PACKAGE_THREADS, "make-condition-variable", "ConditionVariable", true);
+        autoload(PACKAGE_THREADS, "condition-wait", "ConditionVariable", true);
+        autoload(PACKAGE_THREADS, "condition-notify", "ConditionVariable", true);
+        autoload(PACKAGE_THREADS, "condition-notify-all", "ConditionVariable", true);
+        autoload(PACKAGE_THREADS, "make-semaphore", "LispSemaphore", true);
+        autoload(PACKAGE_THREADS, "semaphore-wait", "LispSemaphore", true);
+        autoload(PACKAGE_THREADS, "semaphore-signal", "LispSemaphore", true);
+        autoload(PACKAGE_THREADS, "semaphore-count", "LispSemaphore", true);
+        autoload(PACKAGE_THREADS, "make-latch", "Latch", true);
+        autoload(PACKAGE_THREADS, "latch-count-down", "Latch", true);
+        autoload(PACKAGE_THREADS, "latch-wait", "Latch", true);
+        autoload(PACKAGE_THREADS, "latch-count", "Latch", true);
+        autoload(PACKAGE_THREADS, "make-thread-pool", "ThreadPool", true);
+        autoload(PACKAGE_THREADS, "submit", "ThreadPool", true);
+        autoload(PACKAGE_THREADS, "shutdown-thread-pool", "ThreadPool", true);
+        autoload(PACKAGE_THREADS, "future-value", "LispFuture", true);
+        autoload(PACKAGE_THREADS, "future-wait", "LispFuture", true);
+        autoload(PACKAGE_THREADS, "future-done-p", "LispFuture", true);
         
         autoload(Symbol.SET_CHAR, "StringFunctions");
         autoload(Symbol.SET_SCHAR, "StringFunctions");
@@ -0,0 +1,780 @@
+/*
+ * BasicVector_ByteBuffer.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.armedbear.lisp.util.Finalizer;
+
+// A basic (unsigned-byte 8) vector whose elements live in a
+// java.nio.ByteBuffer instead of a byte array, for example in a memory
+// mapped file or in memory outside the Java heap.  The vector shares the
+// buffer's storage; it covers the bytes between the buffer's position and
+// its limit when it is made.
+//
+// free() may release the memory of a direct vector while other threads
+// still use the vector, so each access to a direct vector's elements
+// goes between acquire() and release(): the memory only goes once the
+// last of those accesses is done, and later ones signal an error.
+public final class BasicVector_ByteBuffer extends AbstractVector
+{
+  private static final ByteBuffer FREED = ByteBuffer.allocate(0);
+
+  private volatile int capacity;
+  private volatile ByteBuffer elements;
+
+  // The direct buffer allocated by MAKE-DIRECT-VECTOR, or null when the
+  // storage belongs to someone else (a mapped file, or Java code).
+  private final Storage storage;
+
+  public BasicVector_ByteBuffer(ByteBuffer buffer)
+  {
+    this(buffer, null);
+  }
+
+  private BasicVector_ByteBuffer(ByteBuffer buffer, Storage storage)
+  {
+    elements = buffer.slice();
+    capacity = elements.capacity();
+    this.storage = storage;
+  }
+
+  // Returns a vector of SIZE zeroed bytes outside the Java heap.  The
+  // memory is released by free(), or when the vector is garbage collected.
+  public static BasicVector_ByteBuffer allocateDirect(int size)
+  {
+    Storage storage = new Storage(ByteBuffer.allocateDirect(size));
+    BasicVector_ByteBuffer v =
+      new BasicVector_ByteBuffer(storage.buffer, storage);
+    Finalizer.addFinalizer(v, storage);
+    return v;
+  }
+
+  // Returns the buffer holding the elements, for Java code to use without
+  // copying them.  Once the buffer has been handed out, garbage collecting
+  // the vector leaves the memory to the buffer, and so to the JVM.
+  public ByteBuffer getBuffer()
+  {
+    if (storage != null)
+      {
+        if (storage.isFreed())
+          freed();
+        storage.shared = true;
+      }
+    return elements;
+  }
+
+  public boolean isDirect()
+  {
+    return storage != null;
+  }
+
+  public boolean isFreed()
+  {
+    return storage != null && storage.isFreed();
+  }
+
+  // Releases the memory of a vector made by allocateDirect(), instead of
+  // leaving it until the vector is garbage collected: right away, or as
+  // soon as accesses in progress in other threads are done.  The vector
+  // is empty afterwards and accessing its elements signals an error.
+  // Java code holding the buffer from getBuffer() is not tracked, so it
+  // must not use the buffer any more.  Returns false if the vector was
+  // freed already.
+  public boolean free()
+  {
+    if (storage == null)
+      error(new LispError("The vector " + princToString()
+                          + " was not made by MAKE-DIRECT-VECTOR."));
+    if (!storage.free())
+      return false;
+    elements = FREED;
+    capacity = 0;
+    return true;
+  }
+
+  // Returns the buffer holding the elements, which stays valid until the
+  // calling thread calls release().
+  private ByteBuffer acquire()
+  {
+    if (storage == null)
+      return elements;
+    if (storage.acquire())
+      {
+        ByteBuffer buffer = elements;
+        if (buffer != FREED)
+          return buffer;
+        storage.release();
+      }
+    freed();
+    // Not reached.
+    return null;
+  }
+
+  private void release()
+  {
+    if (storage != null)
+      storage.release();
+  }
+
+  private static void freed()
+  {
+    error(new LispError("The direct vector has been freed."));
+  }
+
+  // The direct memory of a vector, shared with the vector's finalizer,
+  // which must not refer to the vector itself.  STATE counts the
+  // accesses in progress in steps of two, and its low bit is set once
+  // the vector is freed; whoever brings it down to just that bit frees
+  // the memory.
+  private static final class Storage implements Runnable
+  {
+    private static final int FREED_BIT = 1;
+
+    final ByteBuffer buffer;
+    private final AtomicInteger state = new AtomicInteger();
+    volatile boolean shared;
+
+    Storage(ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    boolean acquire()
+    {
+      while (true)
+        {
+          int n = state.get();
+          if ((n & FREED_BIT) != 0)
+            return false;
+          if (state.compareAndSet(n, n + 2))
+            return true;
+        }
+    }
+
+    void release()
+    {
+      if (state.addAndGet(-2) == FREED_BIT)
+        freeDirectBuffer(buffer);
+    }
+
+    boolean free()
+    {
+      while (true)
+        {
+          int n = state.get();
+          if ((n & FREED_BIT) != 0)
+            return false;
+          if (state.compareAndSet(n, n | FREED_BIT))
+            {
+              if (n == 0)
+                freeDirectBuffer(buffer);
+              return true;
+            }
+        }
+    }
+
+    boolean isFreed()
+    {
+      return (state.get() & FREED_BIT) != 0;
+    }
+
+    @Override
+    public void run()
+    {
+      if (!shared)
+        free();
+    }
+  }
+
+  private static Method invokeCleaner;
+  private static Object unsafe;
+  private static boolean cleanerUnavailable;
+
+  // Frees the memory of a direct buffer now, with the cleaner the JVM
+  // would otherwise run once the buffer is garbage collected.  There is no
+  // public API for this: Java 9 and later offer Unsafe.invokeCleaner(),
+  // while Java 8 buffers have a cleaner() method.  Without either the
+  // memory is simply left to the garbage collector.
+  static synchronized void freeDirectBuffer(ByteBuffer buffer)
+  {
+    if (cleanerUnavailable)
+      return;
+    try
+      {
+        if (invokeCleaner == null)
+          {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            try
+              {
+                invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+                Field f = c.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                unsafe = f.get(null);
+              }
+            catch (NoSuchMethodException e)
+              {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                invokeCleaner = cleaner;
+              }
+          }
+        if (unsafe != null)
+          invokeCleaner.invoke(unsafe, buffer);
+        else
+          {
+            Object cleaner = invokeCleaner.invoke(buffer);
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+          }
+      }
+    catch (Exception e)
+      {
+        cleanerUnavailable = true;
+      }
+  }
+
+  @Override
+  public LispObject typeOf()
+  {
+    return list(Symbol.SIMPLE_ARRAY, UNSIGNED_BYTE_8, new Cons(Fixnum.getInstance(capacity)));
+  }
+
+  @Override
+  public LispObject classOf()
+  {
+    return BuiltInClass.VECTOR;
+  }
+
+  @Override
+  public LispObject typep(LispObject type)
+  {
+    if (type == Symbol.SIMPLE_ARRAY)
+      return T;
+    if (type == BuiltInClass.SIMPLE_ARRAY)
+      return T;
+    return super.typep(type);
+  }
+
+  @Override
+  public LispObject getElementType()
+  {
+    return UNSIGNED_BYTE_8;
+  }
+
+  @Override
+  public boolean isSimpleVector()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean hasFillPointer()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean isAdjustable()
+  {
+    return false;
+  }
+
+  @Override
+  public int capacity()
+  {
+    return capacity;
+  }
+
+  @Override
+  public int length()
+  {
+    return capacity;
+  }
+
+  @Override
+  public LispObject elt(int index)
+  {
+    return AREF(index);
+  }
+
+  @Override
+  public int aref(int index)
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        return buffer.get(index) & 0xff;
+      }
+    catch (IndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+        // Not reached.
+        return 0;
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  @Override
+  public LispObject AREF(int index)
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        return coerceJavaByteToLispObject(buffer.get(index));
+      }
+    catch (IndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+        return NIL; // Not reached.
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  @Override
+  public void aset(int index, int n)
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        buffer.put(index, (byte) n);
+      }
+    catch (IndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+      }
+    catch (ReadOnlyBufferException e)
+      {
+        readOnly();
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  @Override
+  public void aset(int index, LispObject value)
+  {
+    aset(index, coerceLispObjectToJavaByte(value));
+  }
+
+  private void readOnly()
+  {
+    error(new LispError("The vector " + princToString() + " is read-only."));
+  }
+
+  // Returns a view of N elements of BUFFER from START, for bulk copies.
+  private ByteBuffer range(ByteBuffer buffer, int start, int n, boolean write)
+  {
+    if (write && buffer.isReadOnly())
+      readOnly();
+    ByteBuffer view = buffer.duplicate();
+    view.position(start);
+    view.limit(start + n);
+    return view;
+  }
+
+  private static final int CHUNK_SIZE = 65536;
+
+  // Reads elements from START below END from STREAM a chunk at a time,
+  // returning the index after the last element read (READ-SEQUENCE).
+  int readElements(Stream stream, int start, int end)
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        ByteBuffer target = range(buffer, start, end - start, true);
+        byte[] chunk = new byte[Math.min(end - start, CHUNK_SIZE)];
+        int pos = start;
+        while (pos < end)
+          {
+            int n = Math.min(end - pos, chunk.length);
+            int count = stream._readBytes(chunk, 0, n);
+            target.put(chunk, 0, count);
+            pos += count;
+            if (count < n)
+              break;
+          }
+        return pos;
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  // Writes elements from START below END to STREAM a chunk at a time
+  // (WRITE-SEQUENCE).
+  void writeElements(Stream stream, int start, int end)
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        ByteBuffer source = range(buffer, start, end - start, false);
+        byte[] chunk = new byte[Math.min(end - start, CHUNK_SIZE)];
+        while (source.hasRemaining())
+          {
+            int n = Math.min(source.remaining(), chunk.length);
+            source.get(chunk, 0, n);
+            stream._writeBytes(chunk, 0, n);
+          }
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  // Copies the elements of SOURCE from SOURCE-START into TARGET from
+  // TARGET-START in bulk (REPLACE), when both vectors keep their elements
+  // in a ByteBuffer or a byte array.  Returns false, leaving the copying
+  // to the caller, otherwise.
+  static boolean replace(AbstractVector target, int targetStart, int targetEnd,
+                         AbstractVector source, int sourceStart, int sourceEnd)
+  {
+    if (target == source)
+      return false;
+    if (!(target instanceof BasicVector_ByteBuffer
+          || target instanceof BasicVector_UnsignedByte8))
+      return false;
+    if (!(source instanceof BasicVector_ByteBuffer
+          || source instanceof BasicVector_UnsignedByte8))
+      return false;
+    int n = Math.min(targetEnd - targetStart, sourceEnd - sourceStart);
+    if (n <= 0 || targetStart < 0 || sourceStart < 0
+        || targetStart + n > target.capacity()
+        || sourceStart + n > source.capacity())
+      return false;
+    if (target instanceof BasicVector_UnsignedByte8
+        && source instanceof BasicVector_UnsignedByte8)
+      {
+        ((BasicVector_UnsignedByte8)target)
+          .readElements(((BasicVector_UnsignedByte8)source).range(sourceStart, n),
+                        targetStart, targetStart + n);
+        return true;
+      }
+    BasicVector_ByteBuffer to = (target instanceof BasicVector_ByteBuffer)
+      ? (BasicVector_ByteBuffer) target : null;
+    BasicVector_ByteBuffer from = (source instanceof BasicVector_ByteBuffer)
+      ? (BasicVector_ByteBuffer) source : null;
+    ByteBuffer toBuffer = (to != null) ? to.acquire() : null;
+    try
+      {
+        ByteBuffer fromBuffer = (from != null) ? from.acquire() : null;
+        try
+          {
+            if (to == null)
+              ((BasicVector_UnsignedByte8)target)
+                .readElements(from.range(fromBuffer, sourceStart, n, false),
+                              targetStart, targetStart + n);
+            else
+              {
+                ByteBuffer view = to.range(toBuffer, targetStart, n, true);
+                if (from == null)
+                  ((BasicVector_UnsignedByte8)source)
+                    .writeElements(view, sourceStart, sourceStart + n);
+                else
+                  view.put(from.range(fromBuffer, sourceStart, n, false));
+              }
+          }
+        finally
+          {
+            if (from != null)
+              from.release();
+          }
+      }
+    finally
+      {
+        if (to != null)
+          to.release();
+      }
+    return true;
+  }
+
+  @Override
+  public LispObject subseq(int start, int end)
+  {
+    BasicVector_UnsignedByte8 v = new BasicVector_UnsignedByte8(end - start);
+    ByteBuffer buffer = acquire();
+    try
+      {
+        ByteBuffer source = buffer.duplicate();
+        try
+          {
+            source.position(start).limit(end);
+          }
+        catch (IllegalArgumentException e)
+          {
+            return error(new TypeError("Array index out of bounds: " + end + "."));
+          }
+        v.readElements(source, 0, end - start);
+        return v;
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  @Override
+  public void fill(LispObject obj)
+  {
+    byte b = coerceLispObjectToJavaByte(obj);
+    ByteBuffer buffer = acquire();
+    try
+      {
+        for (int i = buffer.capacity(); i-- > 0;)
+          buffer.put(i, b);
+      }
+    catch (ReadOnlyBufferException e)
+      {
+        readOnly();
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  @Override
+  public void shrink(int n)
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        if (n < capacity)
+          {
+            buffer = buffer.duplicate();
+            buffer.limit(n);
+            elements = buffer.slice();
+            capacity = n;
+            return;
+          }
+      }
+    finally
+      {
+        release();
+      }
+    if (n == capacity)
+      return;
+    error(new LispError());
+  }
+
+  @Override
+  public LispObject reverse()
+  {
+    ByteBuffer buffer = acquire();
+    try
+      {
+        int length = buffer.capacity();
+        BasicVector_UnsignedByte8 result = new BasicVector_UnsignedByte8(length);
+        int i, j;
+        for (i = 0, j = length - 1; i < length; i++, j--)
+          result.aset(i, buffer.get(j));
+        return result;
+      }
+    finally
+      {
+        release();
+      }
+  }
+
+  @Override
+  public LispObject nreverse()
+  {
+    ByteBuffer buffer = acquire();
+    int i = 0;
+    int j = buffer.capacity() - 1;
+    try
+      {
+        while (i < j)
+          {
+            byte temp = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, temp);
+            ++i;
+            --j;
+          }
+      }
+    catch (ReadOnlyBufferException e)
+      {
+        readOnly();
+      }
+    finally
+      {
+        release();
+      }
+    return this;
+  }
+
+  @Override
+  public AbstractVector adjustArray(int newCapacity,
+                                     LispObject initialElement,
+                                     LispObject initialContents)
+
+  {
+    if (initialContents != null || capacity != newCapacity)
+      {
+        // The buffer can't grow, so the result is a new heap vector.
+        BasicVector_UnsignedByte8 v =
+          (BasicVector_UnsignedByte8) subseq(0, Math.min(capacity, newCapacity));
+        return v.adjustArray(newCapacity, initialElement, initialContents);
+      }
+    // No change.
+    return this;
+  }
+
+  @Override
+  public AbstractVector adjustArray(int newCapacity,
+                                     AbstractArray displacedTo,
+                                     int displacement)
+  {
+    return new ComplexVector(newCapacity, displacedTo, displacement);
+  }
+
+  private static final BasicVector_ByteBuffer checkByteBufferVector(LispObject obj)
+  {
+    if (obj instanceof BasicVector_ByteBuffer)
+      return (BasicVector_ByteBuffer) obj;
+    type_error(obj, list(Symbol.SIMPLE_ARRAY, UNSIGNED_BYTE_8,
+                         list(Symbol.STAR)));
+    // Not reached.
+    return null;
+  }
+
+  // ### make-direct-vector size => vector
+  private static final Primitive MAKE_DIRECT_VECTOR =
+    new Primitive("make-direct-vector", PACKAGE_EXT, true, "size",
+                  "Returns a simple (unsigned-byte 8) vector of SIZE zeroed bytes kept\n"
+                  + "in a direct java.nio.ByteBuffer outside the Java heap.  The memory\n"
+                  + "is released by FREE-DIRECT-VECTOR, or else when the vector is\n"
+                  + "garbage collected.")
+    {
+      @Override
+      public LispObject execute(LispObject arg)
+      {
+        if (!(arg instanceof Fixnum) || ((Fixnum)arg).value < 0)
+          return type_error(arg, list(Symbol.INTEGER, Fixnum.ZERO,
+                                      Fixnum.getInstance(Integer.MAX_VALUE)));
+        try
+          {
+            return allocateDirect(((Fixnum)arg).value);
+          }
+        catch (OutOfMemoryError e)
+          {
+            return error(new StorageCondition("Out of direct memory allocating "
+                                              + arg.princToString()
+                                              + " bytes."));
+          }
+      }
+    };
+
+  // ### direct-vector-p object => generalized-boolean
+  private static final Primitive DIRECT_VECTOR_P =
+    new Primitive("direct-vector-p", PACKAGE_EXT, true, "object",
+                  "Returns true if OBJECT is a vector made by MAKE-DIRECT-VECTOR.")
+    {
+      @Override
+      public LispObject execute(LispObject arg)
+      {
+        return (arg instanceof BasicVector_ByteBuffer
+                && ((BasicVector_ByteBuffer)arg).isDirect()) ? T : NIL;
+      }
+    };
+
+  // ### direct-vector-buffer vector => java-object
+  private static final Primitive DIRECT_VECTOR_BUFFER =
+    new Primitive("direct-vector-buffer", PACKAGE_EXT, true, "vector",
+                  "Returns the java.nio.ByteBuffer holding the elements of VECTOR, a\n"
+                  + "vector made by MAKE-DIRECT-VECTOR or MAPPED-FILE-VECTOR, so that\n"
+                  + "Java code shares them without copying.  The memory of a direct\n"
+                  + "vector whose buffer was handed out is no longer released when the\n"
+                  + "vector is garbage collected, but when the buffer is.")
+    {
+      @Override
+      public LispObject execute(LispObject arg)
+      {
+        return new JavaObject(checkByteBufferVector(arg).getBuffer(),
+                              ByteBuffer.class);
+      }
+    };
+
+  // ### free-direct-vector vector => boolean
+  private static final Primitive FREE_DIRECT_VECTOR =
+    new Primitive("free-direct-vector", PACKAGE_EXT, true, "vector",
+                  "Releases the memory of VECTOR, a vector made by MAKE-DIRECT-VECTOR,\n"
+                  + "right away.  Later accesses to VECTOR signal an error.  A buffer\n"
+                  + "obtained from DIRECT-VECTOR-BUFFER must not be used any more.\n"
+                  + "Returns NIL if VECTOR was freed already, T otherwise.")
+    {
+      @Override
+      public LispObject execute(LispObject arg)
+      {
+        return checkByteBufferVector(arg).free() ? T : NIL;
+      }
+    };
+
+  // ### %replace-octets target source target-start target-end source-start source-end => boolean
+  // Used by REPLACE.
+  private static final Primitive _REPLACE_OCTETS =
+    new Primitive("%replace-octets", PACKAGE_SYS, false,
+                  "target source target-start target-end source-start source-end")
+    {
+      @Override
+      public LispObject execute(LispObject[] args)
+      {
+        if (args.length != 6)
+          return error(new WrongNumberOfArgumentsException(this, 6));
+        if (!(args[0] instanceof AbstractVector
+              && args[1] instanceof AbstractVector))
+          return NIL;
+        return replace((AbstractVector) args[0],
+                       Fixnum.getValue(args[2]), Fixnum.getValue(args[3]),
+                       (AbstractVector) args[1],
+                       Fixnum.getValue(args[4]), Fixnum.getValue(args[5]))
+          ? T : NIL;
+      }
+    };
+}
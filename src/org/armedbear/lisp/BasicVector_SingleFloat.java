@@ -0,0 +1,285 @@
+/*
+ * BasicVector_SingleFloat.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+import java.util.Arrays;
+
+// A basic vector is a specialized vector that is not displaced to another
+// array, has no fill pointer, and is not expressly adjustable.
+public final class BasicVector_SingleFloat extends AbstractVector
+{
+  private int capacity;
+
+  float[] elements;
+
+  public BasicVector_SingleFloat(int capacity)
+  {
+    elements = new float[capacity];
+    this.capacity = capacity;
+  }
+
+  public BasicVector_SingleFloat(float[] elements)
+  {
+    this.elements = elements;
+    capacity = elements.length;
+  }
+
+  @Override
+  public LispObject typeOf()
+  {
+    return list(Symbol.SIMPLE_ARRAY, Symbol.SINGLE_FLOAT,
+                new Cons(Fixnum.getInstance(capacity)));
+  }
+
+  @Override
+  public LispObject classOf()
+  {
+    return BuiltInClass.VECTOR;
+  }
+
+  @Override
+  public LispObject typep(LispObject type)
+  {
+    if (type == Symbol.SIMPLE_ARRAY)
+      return T;
+    if (type == BuiltInClass.SIMPLE_ARRAY)
+      return T;
+    return super.typep(type);
+  }
+
+  @Override
+  public LispObject getElementType()
+  {
+    return Symbol.SINGLE_FLOAT;
+  }
+
+  @Override
+  public boolean isSimpleVector()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean hasFillPointer()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean isAdjustable()
+  {
+    return false;
+  }
+
+  @Override
+  public int capacity()
+  {
+    return capacity;
+  }
+
+  @Override
+  public int length()
+  {
+    return capacity;
+  }
+
+  @Override
+  public LispObject elt(int index)
+  {
+    try
+      {
+        return SingleFloat.getInstance(elements[index]);
+      }
+    catch (ArrayIndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+        return NIL; // Not reached.
+      }
+  }
+
+  @Override
+  public float aref_float(int index)
+  {
+    try
+      {
+        return elements[index];
+      }
+    catch (ArrayIndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+        return 0; // Not reached.
+      }
+  }
+
+  @Override
+  public LispObject AREF(int index)
+  {
+    try
+      {
+        return SingleFloat.getInstance(elements[index]);
+      }
+    catch (ArrayIndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+        return NIL; // Not reached.
+      }
+  }
+
+  @Override
+  public void aset(int index, LispObject newValue)
+  {
+    try
+      {
+        elements[index] = checkSingleFloat(newValue).value;
+      }
+    catch (ArrayIndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+      }
+  }
+
+  @Override
+  public void aset(int index, float newValue)
+  {
+    try
+      {
+        elements[index] = newValue;
+      }
+    catch (ArrayIndexOutOfBoundsException e)
+      {
+        badIndex(index, capacity);
+      }
+  }
+
+  @Override
+  public LispObject subseq(int start, int end)
+  {
+    if (start < 0 || end > capacity || start > end)
+      return error(new TypeError("Array index out of bounds: " + start + "."));
+    return new BasicVector_SingleFloat(Arrays.copyOfRange(elements, start, end));
+  }
+
+  @Override
+  public void fill(LispObject obj)
+  {
+    Arrays.fill(elements, checkSingleFloat(obj).value);
+  }
+
+  @Override
+  public void shrink(int n)
+  {
+    if (n < capacity)
+      {
+        elements = Arrays.copyOf(elements, n);
+        capacity = n;
+        return;
+      }
+    if (n == capacity)
+      return;
+    error(new LispError());
+  }
+
+  @Override
+  public LispObject reverse()
+  {
+    BasicVector_SingleFloat result = new BasicVector_SingleFloat(capacity);
+    int i, j;
+    for (i = 0, j = capacity - 1; i < capacity; i++, j--)
+      result.elements[i] = elements[j];
+    return result;
+  }
+
+  @Override
+  public LispObject nreverse()
+  {
+    int i = 0;
+    int j = capacity - 1;
+    while (i < j)
+      {
+        float temp = elements[i];
+        elements[i] = elements[j];
+        elements[j] = temp;
+        ++i;
+        --j;
+      }
+    return this;
+  }
+
+  @Override
+  public AbstractVector adjustArray(int newCapacity,
+                                     LispObject initialElement,
+                                     LispObject initialContents)
+  {
+    if (initialContents != null)
+      {
+        BasicVector_SingleFloat v = new BasicVector_SingleFloat(newCapacity);
+        if (initialContents.listp())
+          {
+            LispObject list = initialContents;
+            for (int i = 0; i < newCapacity; i++)
+              {
+                v.aset(i, list.car());
+                list = list.cdr();
+              }
+          }
+        else if (initialContents.vectorp())
+          {
+            for (int i = 0; i < newCapacity; i++)
+              v.aset(i, initialContents.elt(i));
+          }
+        else
+          type_error(initialContents, Symbol.SEQUENCE);
+        return v;
+      }
+    if (capacity != newCapacity)
+      {
+        float[] newElements = Arrays.copyOf(elements, newCapacity);
+        if (initialElement != null && capacity < newCapacity)
+          Arrays.fill(newElements, capacity, newCapacity,
+                      checkSingleFloat(initialElement).value);
+        return new BasicVector_SingleFloat(newElements);
+      }
+    // No change.
+    return this;
+  }
+
+  @Override
+  public AbstractVector adjustArray(int newCapacity,
+                                     AbstractArray displacedTo,
+                                     int displacement)
+  {
+    return new ComplexVector_SingleFloat(newCapacity, displacedTo, displacement);
+  }
+}
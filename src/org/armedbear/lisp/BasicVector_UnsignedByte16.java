@@ -35,6 +35,8 @@ package org.armedbear.lisp;
 
 import static org.armedbear.lisp.Lisp.*;
 
+import java.nio.ShortBuffer;
+
 // A basic vector is a specialized vector that is not displaced to another
 // array, has no fill pointer, and is not expressly adjustable.
 public final class BasicVector_UnsignedByte16 extends AbstractVector
@@ -182,6 +184,20 @@ public final class BasicVector_UnsignedByte16 extends AbstractVector
         }
     }
 
+    // Copies elements from START below END out of BUFFER (READ-SEQUENCE).
+    void readElements(ShortBuffer buffer, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+            elements[i] = buffer.get() & 0xffff;
+    }
+
+    // Copies elements from START below END into BUFFER (WRITE-SEQUENCE).
+    void writeElements(ShortBuffer buffer, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+            buffer.put((short) elements[i]);
+    }
+
     @Override
     public LispObject subseq(int start, int end)
     {
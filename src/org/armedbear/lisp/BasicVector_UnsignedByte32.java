@@ -34,6 +34,8 @@
 package org.armedbear.lisp;
 
 import static org.armedbear.lisp.Lisp.*;
+
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 // A basic vector is a specialized vector that is not displaced to another
@@ -187,6 +189,20 @@ public final class BasicVector_UnsignedByte32 extends AbstractVector
       }
   }
 
+  // Copies elements from START below END out of BUFFER (READ-SEQUENCE).
+  void readElements(IntBuffer buffer, int start, int end)
+  {
+    for (int i = start; i < end; i++)
+      elements[i] = buffer.get() & 0xffffffffL;
+  }
+
+  // Copies elements from START below END into BUFFER (WRITE-SEQUENCE).
+  void writeElements(IntBuffer buffer, int start, int end)
+  {
+    for (int i = start; i < end; i++)
+      buffer.put((int) elements[i]);
+  }
+
   @Override
   public LispObject subseq(int start, int end)
   {
@@ -35,6 +35,8 @@ package org.armedbear.lisp;
 
 import static org.armedbear.lisp.Lisp.*;
 
+import java.nio.ByteBuffer;
+
 // A basic vector is a specialized vector that is not displaced to another
 // array, has no fill pointer, and is not expressly adjustable.
 public final class BasicVector_UnsignedByte8 extends AbstractVector
@@ -191,6 +193,38 @@ public final class BasicVector_UnsignedByte8 extends AbstractVector
       }
   }
 
+  // Copies the elements from START below END out of BUFFER.
+  void readElements(ByteBuffer buffer, int start, int end)
+  {
+    buffer.get(elements, start, end - start);
+  }
+
+  // Copies the elements from START below END into BUFFER.
+  void writeElements(ByteBuffer buffer, int start, int end)
+  {
+    buffer.put(elements, start, end - start);
+  }
+
+  // Returns a view of N elements from START, for bulk copies.
+  ByteBuffer range(int start, int n)
+  {
+    return ByteBuffer.wrap(elements, start, n);
+  }
+
+  // Reads elements from START below END directly from STREAM, returning
+  // the index after the last element read (READ-SEQUENCE).
+  int readElements(Stream stream, int start, int end)
+  {
+    return stream._readBytes(elements, start, end);
+  }
+
+  // Writes elements from START below END directly to STREAM
+  // (WRITE-SEQUENCE).
+  void writeElements(Stream stream, int start, int end)
+  {
+    stream._writeBytes(elements, start, end);
+  }
+
   @Override
   public LispObject subseq(int start, int end)
   {
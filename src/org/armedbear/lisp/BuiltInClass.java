@@ -136,6 +136,12 @@ public class BuiltInClass extends LispClass
   public static final BuiltInClass STRING               = addClass(Symbol.STRING);
   public static final BuiltInClass SYMBOL               = addClass(Symbol.SYMBOL);
   public static final BuiltInClass THREAD               = addClass(Symbol.THREAD);
+  public static final BuiltInClass CONDITION_VARIABLE   = addClass(Symbol.CONDITION_VARIABLE);
+  public static final BuiltInClass SEMAPHORE            = addClass(Symbol.SEMAPHORE);
+  public static final BuiltInClass LATCH                = addClass(Symbol.LATCH);
+  public static final BuiltInClass THREAD_POOL          = addClass(Symbol.THREAD_POOL);
+  public static final BuiltInClass FUTURE               = addClass(Symbol.FUTURE);
+  public static final BuiltInClass EVENT_LOOP           = addClass(Symbol.EVENT_LOOP);
   public static final BuiltInClass VECTOR               = addClass(Symbol.VECTOR);
   public static final BuiltInClass STACK_FRAME          = addClass(Symbol.STACK_FRAME);
   public static final BuiltInClass LISP_STACK_FRAME     = addClass(Symbol.LISP_STACK_FRAME);
@@ -335,6 +341,18 @@ public class BuiltInClass extends LispClass
     SYSTEM_STREAM.setCPL(SYSTEM_STREAM, STREAM, STRUCTURE_OBJECT, CLASS_T);
     THREAD.setDirectSuperclass(CLASS_T);
     THREAD.setCPL(THREAD, CLASS_T);
+    CONDITION_VARIABLE.setDirectSuperclass(CLASS_T);
+    CONDITION_VARIABLE.setCPL(CONDITION_VARIABLE, CLASS_T);
+    SEMAPHORE.setDirectSuperclass(CLASS_T);
+    SEMAPHORE.setCPL(SEMAPHORE, CLASS_T);
+    LATCH.setDirectSuperclass(CLASS_T);
+    LATCH.setCPL(LATCH, CLASS_T);
+    THREAD_POOL.setDirectSuperclass(CLASS_T);
+    THREAD_POOL.setCPL(THREAD_POOL, CLASS_T);
+    FUTURE.setDirectSuperclass(CLASS_T);
+    FUTURE.setCPL(FUTURE, CLASS_T);
+    EVENT_LOOP.setDirectSuperclass(CLASS_T);
+    EVENT_LOOP.setCPL(EVENT_LOOP, CLASS_T);
     TWO_WAY_STREAM.setCPL(TWO_WAY_STREAM, SYSTEM_STREAM, STREAM,
                           STRUCTURE_OBJECT, CLASS_T);
     VECTOR.setDirectSuperclasses(list(ARRAY, SEQUENCE));
@@ -52,6 +52,12 @@ public class Closure extends Function
   private final Symbol[] freeSpecials;
   private final ArgumentListProcessor arglist;
 
+  /** Calls so far, until the body is converted by ClosureCompiler. */
+  private int callCount;
+  /** Volatile, as the thread converting the body publishes it to the
+   * other threads calling the closure. */
+  private volatile ClosureCompiler.CompiledBody compiledBody;
+
     /** Construct a closure object with a lambda-list described
      * by these parameters.
      *
@@ -209,6 +215,26 @@ public class Closure extends Function
   public LispObject execute(LispObject[] args)
   {
     final LispThread thread = LispThread.currentThread();
+    final ClosureCompiler.CompiledBody compiled = compiledBody;
+    if (compiled != null)
+      return compiled.execute(args, thread);
+    if (++callCount == ClosureCompiler.threshold && executionBody != null)
+      {
+        // Wait for the end of the boot, as macro expanders may need
+        // functions which aren't loaded before, and for any conversion
+        // in progress in this thread.
+        if (!ClosureCompiler.ready())
+          callCount = 0;
+        else
+          {
+            final ClosureCompiler.CompiledBody converted =
+              ClosureCompiler.compile(arglist, executionBody, freeSpecials,
+                                      environment);
+            compiledBody = converted;
+            if (converted != null)
+              return converted.execute(args, thread);
+          }
+      }
     final SpecialBindingsMark mark = thread.markSpecialBindings();
     Environment ext = new Environment(environment);
     args = arglist.match(args, environment, ext, thread);
@@ -230,6 +256,12 @@ public class Closure extends Function
     return arglist.match(args, environment, environment, thread);
   }
   
+  /** Returns true once the body has been converted by ClosureCompiler. */
+  final boolean isCompiledBody()
+  {
+    return compiledBody != null;
+  }
+
   public final boolean isClosure() {
 	  return true;
   }
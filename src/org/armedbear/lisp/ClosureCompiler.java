@@ -0,0 +1,1629 @@
+/*
+ * ClosureCompiler.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+import java.util.ArrayList;
+
+/** Converts the body of an interpreted closure into a tree of nodes in
+ * which lexical variables, blocks, tags and function names have been
+ * resolved ahead of time, so that hot interpreted functions stop walking
+ * their list structure on every call.
+ *
+ * Lexical variables live in a frame array which is allocated per call,
+ * at slots assigned during the conversion.  Macros are expanded once,
+ * when the closure is converted, as the compiler does.  Forms which need
+ * an Environment at run time (lambda forms, FLET, LABELS, MACROLET,
+ * SYMBOL-MACROLET, PROGV, ...) make the conversion fail, in which case
+ * the closure keeps being evaluated by Lisp.eval().
+ */
+final class ClosureCompiler
+{
+  /** Number of calls after which an interpreted closure is converted;
+   * zero disables the conversion. */
+  static final int threshold
+    = Integer.valueOf(System.getProperty("abcl.closures.compileThreshold", "100"));
+
+  /** Thrown when a form can't be converted. */
+  private static final class Unsupported extends RuntimeException
+  {
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+      return this;
+    }
+  }
+
+  private static final Unsupported UNSUPPORTED = new Unsupported();
+
+  /** True in threads which are converting a closure: macro expanders may
+   * call interpreted functions, which mustn't start conversions of their
+   * own. */
+  private static final ThreadLocal<Boolean> converting = new ThreadLocal<Boolean>();
+
+  /** Returns true if closures can be converted in the current thread. */
+  static boolean ready()
+  {
+    return Interpreter.initialized() && converting.get() == null;
+  }
+
+  /** Returns the converted body of a closure, or null if it contains
+   * forms which can't be converted. */
+  static CompiledBody compile(ArgumentListProcessor arglist,
+                              LispObject body, Symbol[] freeSpecials,
+                              Environment environment)
+  {
+    converting.set(Boolean.TRUE);
+    try
+      {
+        return convert(arglist, body, freeSpecials, environment);
+      }
+    finally
+      {
+        converting.remove();
+      }
+  }
+
+  private static CompiledBody convert(ArgumentListProcessor arglist,
+                                      LispObject body, Symbol[] freeSpecials,
+                                      Environment environment)
+  {
+    ClosureCompiler compiler = new ClosureCompiler(environment);
+    Symbol[] variables = arglist.getVariables();
+    Symbol[] specials = new Symbol[variables.length];
+    boolean special = false;
+    for (int i = 0; i < variables.length; i++)
+      {
+        if (arglist.isSpecialVariable(i))
+          {
+            specials[i] = variables[i];
+            special = true;
+            compiler.pushVariable(variables[i], -1);
+          }
+        else
+          compiler.pushVariable(variables[i], compiler.slots++);
+      }
+    for (Symbol symbol : freeSpecials)
+      compiler.pushVariable(symbol, -1);
+    try
+      {
+        Node node = compiler.progn(body);
+        return new CompiledBody(arglist, environment, special ? specials : null,
+                                compiler.slots, node);
+      }
+    catch (Unsupported e)
+      {
+        return null;
+      }
+  }
+
+  /** The converted body of a closure. */
+  static final class CompiledBody
+  {
+    private final ArgumentListProcessor arglist;
+    private final Environment environment;
+    /** Special parameters, indexed like the lambda list variables;
+     * null when all of them are lexical. */
+    private final Symbol[] specials;
+    private final int frameSize;
+    private final Node body;
+
+    CompiledBody(ArgumentListProcessor arglist, Environment environment,
+                 Symbol[] specials, int frameSize, Node body)
+    {
+      this.arglist = arglist;
+      this.environment = environment;
+      this.specials = specials;
+      this.frameSize = frameSize;
+      this.body = body;
+    }
+
+    LispObject execute(LispObject[] args, LispThread thread)
+    {
+      if (specials == null)
+        return body.eval(frame(args, thread), thread);
+      final SpecialBindingsMark mark = thread.markSpecialBindings();
+      try
+        {
+          LispObject[] values = arglist.match(args, environment, null, thread);
+          LispObject[] frame = new LispObject[frameSize];
+          for (int i = 0, slot = 0; i < values.length; i++)
+            {
+              if (specials[i] != null)
+                thread.bindSpecial(specials[i], values[i]);
+              else
+                frame[slot++] = values[i];
+            }
+          return body.eval(frame, thread);
+        }
+      finally
+        {
+          thread.resetSpecialBindings(mark);
+        }
+    }
+
+    private LispObject[] frame(LispObject[] args, LispThread thread)
+    {
+      LispObject[] values = arglist.match(args, environment, null, thread);
+      if (frameSize == 0)
+        return values;
+      // The values may be the caller's argument array: don't assign to it.
+      LispObject[] frame = new LispObject[frameSize];
+      System.arraycopy(values, 0, frame, 0, values.length);
+      return frame;
+    }
+  }
+
+  /** A converted form. */
+  abstract static class Node
+  {
+    /** Evaluates the form, leaving its values in the thread like
+     * Lisp.eval() does. */
+    abstract LispObject eval(LispObject[] frame, LispThread thread);
+  }
+
+  static final void poll(LispThread thread)
+  {
+    if (interrupted)
+      handleInterrupt();
+    if (thread.isDestroyed())
+      throw new ThreadDestroyed();
+  }
+
+  // Compile time scope.
+
+  private static final int VARIABLE = 0;
+  private static final int BLOCK = 1;
+  private static final int TAGBODY = 2;
+  private static final int TAG = 3;
+
+  private static final class Scope
+  {
+    final int kind;
+    final LispObject name;
+    /** Frame slot of a lexical variable, block or tagbody; -1 for a
+     * special variable. */
+    final int slot;
+    /** Index of the statement following a tag. */
+    final int index;
+    /** The tagbody of a tag. */
+    final Scope owner;
+    final Scope next;
+    /** Set when a block or tagbody is the target of a non-local exit. */
+    boolean used;
+
+    Scope(int kind, LispObject name, int slot, int index, Scope owner,
+          Scope next)
+    {
+      this.kind = kind;
+      this.name = name;
+      this.slot = slot;
+      this.index = index;
+      this.owner = owner;
+      this.next = next;
+    }
+  }
+
+  private final Environment environment;
+  private final LispThread thread = LispThread.currentThread();
+  private Scope scope;
+  private int slots;
+
+  private ClosureCompiler(Environment environment)
+  {
+    this.environment = environment != null ? environment : new Environment();
+  }
+
+  private void pushVariable(Symbol symbol, int slot)
+  {
+    scope = new Scope(VARIABLE, symbol, slot, 0, null, scope);
+  }
+
+  private Scope find(int kind, LispObject name)
+  {
+    for (Scope s = scope; s != null; s = s.next)
+      if (s.kind == kind && (s.name == name || (kind == TAG && s.name.eql(name))))
+        return s;
+    return null;
+  }
+
+  private static Unsupported unsupported()
+  {
+    return UNSUPPORTED;
+  }
+
+  // Conversion.
+
+  private Node convert(LispObject form)
+  {
+    if (form instanceof Symbol)
+      return variable((Symbol) form);
+    if (!(form instanceof Cons))
+      return new Constant(form);
+    return combination((Cons) form);
+  }
+
+  private Node[] convertList(LispObject forms)
+  {
+    ArrayList<Node> nodes = new ArrayList<Node>();
+    for (; forms instanceof Cons; forms = ((Cons) forms).cdr)
+      nodes.add(convert(((Cons) forms).car));
+    if (forms != NIL)
+      throw unsupported();
+    return nodes.toArray(new Node[nodes.size()]);
+  }
+
+  private Node progn(LispObject forms)
+  {
+    Node[] nodes = convertList(forms);
+    if (nodes.length == 1)
+      return nodes[0];
+    return new Progn(nodes);
+  }
+
+  private Node variable(Symbol symbol)
+  {
+    if (symbol.isSpecialVariable())
+      {
+        if (symbol.isConstant())
+          return new Constant(symbol.getSymbolValue());
+        return new SpecialVariable(symbol);
+      }
+    Scope s = find(VARIABLE, symbol);
+    if (s != null)
+      return s.slot < 0 ? new SpecialVariable(symbol) : new LocalVariable(s.slot);
+    Binding binding = environment.getBinding(symbol);
+    if (binding != null)
+      {
+        if (binding.specialp)
+          return new SpecialVariable(symbol);
+        if (binding.value instanceof SymbolMacro)
+          throw unsupported();
+        return new CapturedVariable(binding);
+      }
+    if (symbol.getSymbolMacro() != null)
+      throw unsupported();
+    return new SpecialVariable(symbol);
+  }
+
+  private LispObject localFunction(Symbol name)
+  {
+    for (FunctionBinding b = environment.lastFunctionBinding; b != null; b = b.next)
+      if (b.name == name)
+        return b.value;
+    return null;
+  }
+
+  /** Expands a macro form within IGNORE-ERRORS: the form may be in a
+   * branch which is never evaluated, so an error in its expansion is
+   * signalled by a node evaluating to it, when the form is reached just
+   * like the interpreter would. */
+  private Node macroexpand(LispObject form)
+  {
+    LispObject expansion =
+      eval(list(Symbol.MULTIPLE_VALUE_LIST,
+                list(Symbol.IGNORE_ERRORS,
+                     list(Symbol.MULTIPLE_VALUE_LIST,
+                          list(Symbol.MACROEXPAND_1,
+                               list(Symbol.QUOTE, form),
+                               list(Symbol.QUOTE, environment))))),
+           new Environment(), thread);
+    thread._values = null;
+    if (expansion.car() == NIL)
+      return new SignalCondition(expansion.cadr());
+    if (expansion.car().cadr() == NIL)
+      throw unsupported();
+    return convert(expansion.car().car());
+  }
+
+  private Node combination(Cons form)
+  {
+    if (!(form.car instanceof Symbol))
+      throw unsupported();
+    Symbol name = (Symbol) form.car;
+    LispObject args = form.cdr;
+    LispObject fun = localFunction(name);
+    if (fun != null)
+      {
+        if (fun instanceof MacroObject)
+          return macroexpand(form);
+        return new Call(null, fun, convertList(args));
+      }
+    fun = name.getSymbolFunction();
+    if (fun instanceof SpecialOperator)
+      return specialForm(name, form, args);
+    if (fun instanceof AutoloadMacro || (fun != null && fun.isMacroObject()))
+      return macroexpand(form);
+    return new Call(name, null, convertList(args));
+  }
+
+  private Node specialForm(Symbol name, Cons form, LispObject args)
+  {
+    final int length = args.length();
+    if (name == Symbol.QUOTE)
+      {
+        if (length != 1)
+          throw unsupported();
+        return new Constant(args.car());
+      }
+    if (name == Symbol.FUNCTION)
+      return function(args);
+    if (name == Symbol.PROGN)
+      return progn(args);
+    if (name == Symbol.IF)
+      {
+        if (length != 2 && length != 3)
+          throw unsupported();
+        return new If(convert(args.car()), convert(args.cadr()),
+                      length == 3 ? convert(args.cddr().car()) : null);
+      }
+    if (name == Symbol.WHEN || name == Symbol.UNLESS)
+      {
+        if (length < 1)
+          throw unsupported();
+        Node test = convert(args.car());
+        Node body = progn(args.cdr());
+        if (name == Symbol.WHEN)
+          return new If(test, body, null);
+        return new If(test, new Constant(NIL), body);
+      }
+    if (name == Symbol.AND || name == Symbol.OR)
+      return new AndOr(name == Symbol.AND, convertList(args));
+    if (name == Symbol.COND)
+      return cond(args);
+    if (name == Symbol.LET || name == Symbol.LET_STAR)
+      {
+        if (length < 1)
+          throw unsupported();
+        return let(args, name == Symbol.LET_STAR);
+      }
+    if (name == Symbol.SETQ)
+      return setq(args);
+    if (name == Symbol.LOCALLY)
+      return locally(args);
+    if (name == Symbol.THE)
+      {
+        if (length != 2)
+          throw unsupported();
+        return new The(args.car(), convert(args.cadr()));
+      }
+    if (name == Symbol.BLOCK)
+      return block(args);
+    if (name == Symbol.RETURN_FROM)
+      return returnFrom(args);
+    if (name == Symbol.TAGBODY)
+      return tagbody(args);
+    if (name == Symbol.GO)
+      {
+        if (length != 1)
+          throw unsupported();
+        return go(args.car());
+      }
+    if (name == Symbol.CATCH)
+      {
+        if (length < 1)
+          throw unsupported();
+        return new Catch(convert(args.car()), progn(args.cdr()));
+      }
+    if (name == Symbol.THROW)
+      {
+        if (length != 2)
+          throw unsupported();
+        return new ThrowTag(convert(args.car()), convert(args.cadr()));
+      }
+    if (name == Symbol.UNWIND_PROTECT)
+      {
+        if (length < 1)
+          throw unsupported();
+        return new UnwindProtect(convert(args.car()), convertList(args.cdr()));
+      }
+    if (name == Symbol.MULTIPLE_VALUE_BIND)
+      {
+        if (length < 2)
+          throw unsupported();
+        return multipleValueBind(args);
+      }
+    if (name == Symbol.MULTIPLE_VALUE_PROG1)
+      {
+        if (length < 1)
+          throw unsupported();
+        return new MultipleValueProg1(convert(args.car()), convertList(args.cdr()));
+      }
+    if (name == Symbol.MULTIPLE_VALUE_CALL)
+      {
+        if (length < 1)
+          throw unsupported();
+        return new MultipleValueCall(convert(args.car()), convertList(args.cdr()));
+      }
+    if (name == Symbol.EVAL_WHEN)
+      {
+        if (length < 1)
+          throw unsupported();
+        LispObject situations = args.car();
+        if (memq(Keyword.EXECUTE, situations) || memq(Symbol.EVAL, situations))
+          return progn(args.cdr());
+        return new Constant(NIL);
+      }
+    // Special operators of the evaluator which are macros in the
+    // standard, like CASE or DO; everything else stays interpreted.
+    return macroexpand(form);
+  }
+
+  private Node function(LispObject args)
+  {
+    if (args.length() != 1 || !(args.car() instanceof Symbol))
+      throw unsupported();
+    Symbol name = (Symbol) args.car();
+    LispObject fun = localFunction(name);
+    if (fun != null)
+      {
+        if (!(fun instanceof Function))
+          throw unsupported();
+        return new Constant(fun);
+      }
+    return new FunctionReference(name);
+  }
+
+  private Node cond(LispObject clauses)
+  {
+    ArrayList<Node> tests = new ArrayList<Node>();
+    ArrayList<Node> bodies = new ArrayList<Node>();
+    for (; clauses instanceof Cons; clauses = ((Cons) clauses).cdr)
+      {
+        LispObject clause = ((Cons) clauses).car;
+        if (!(clause instanceof Cons))
+          throw unsupported();
+        tests.add(convert(clause.car()));
+        bodies.add(clause.cdr() == NIL ? null : progn(clause.cdr()));
+      }
+    return new Cond(tests.toArray(new Node[tests.size()]),
+                    bodies.toArray(new Node[bodies.size()]));
+  }
+
+  private Node let(LispObject args, boolean sequential)
+  {
+    LispObject bodyAndDecls = parseBody(args.cdr(), false);
+    LispObject specials = parseSpecials(bodyAndDecls.NTH(1));
+    ArrayList<Symbol> symbols = new ArrayList<Symbol>();
+    ArrayList<Node> values = new ArrayList<Node>();
+    Scope saved = scope;
+    for (LispObject list = args.car(); list != NIL; list = list.cdr())
+      {
+        if (!(list instanceof Cons))
+          throw unsupported();
+        LispObject obj = list.car();
+        LispObject value = NIL;
+        if (obj instanceof Cons)
+          {
+            if (obj.length() > 2)
+              throw unsupported();
+            value = obj.cadr();
+            obj = obj.car();
+          }
+        if (!(obj instanceof Symbol) || ((Symbol) obj).isConstant())
+          throw unsupported();
+        values.add(convert(value));
+        symbols.add((Symbol) obj);
+        if (sequential)
+          pushVariable((Symbol) obj, slotFor((Symbol) obj, specials));
+      }
+    int[] slots = new int[symbols.size()];
+    if (sequential)
+      {
+        int i = slots.length;
+        for (Scope s = scope; s != saved; s = s.next)
+          slots[--i] = s.slot;
+      }
+    else
+      {
+        for (int i = 0; i < slots.length; i++)
+          {
+            slots[i] = slotFor(symbols.get(i), specials);
+            pushVariable(symbols.get(i), slots[i]);
+          }
+      }
+    try
+      {
+        declareSpecials(specials);
+        return new Let(slots, symbols.toArray(new Symbol[slots.length]),
+                       values.toArray(new Node[slots.length]), sequential,
+                       progn(bodyAndDecls.car()));
+      }
+    finally
+      {
+        scope = saved;
+      }
+  }
+
+  private int slotFor(Symbol symbol, LispObject specials)
+  {
+    return isSpecial(symbol, specials) ? -1 : slots++;
+  }
+
+  private void declareSpecials(LispObject specials)
+  {
+    for (; specials != NIL; specials = specials.cdr())
+      pushVariable((Symbol) specials.car(), -1);
+  }
+
+  private Node locally(LispObject args)
+  {
+    LispObject bodyAndDecls = parseBody(args, false);
+    Scope saved = scope;
+    try
+      {
+        declareSpecials(parseSpecials(bodyAndDecls.NTH(1)));
+        return progn(bodyAndDecls.car());
+      }
+    finally
+      {
+        scope = saved;
+      }
+  }
+
+  private Node multipleValueBind(LispObject args)
+  {
+    Node form = convert(args.cadr());
+    LispObject bodyAndDecls = parseBody(args.cddr(), false);
+    LispObject specials = parseSpecials(bodyAndDecls.NTH(1));
+    ArrayList<Symbol> symbols = new ArrayList<Symbol>();
+    for (LispObject vars = args.car(); vars != NIL; vars = vars.cdr())
+      {
+        if (!(vars instanceof Cons) || !(vars.car() instanceof Symbol))
+          throw unsupported();
+        symbols.add((Symbol) vars.car());
+      }
+    Scope saved = scope;
+    try
+      {
+        int[] slots = new int[symbols.size()];
+        for (int i = 0; i < slots.length; i++)
+          {
+            slots[i] = slotFor(symbols.get(i), specials);
+            pushVariable(symbols.get(i), slots[i]);
+          }
+        declareSpecials(specials);
+        return new MultipleValueBind(slots, symbols.toArray(new Symbol[slots.length]),
+                                     form, progn(bodyAndDecls.car()));
+      }
+    finally
+      {
+        scope = saved;
+      }
+  }
+
+  private Node setq(LispObject args)
+  {
+    ArrayList<Node> nodes = new ArrayList<Node>();
+    while (args != NIL)
+      {
+        if (!(args.car() instanceof Symbol) || args.cdr() == NIL)
+          throw unsupported();
+        Symbol symbol = (Symbol) args.car();
+        Node value = convert(args.cadr());
+        if (symbol.isConstant())
+          throw unsupported();
+        Node node = variable(symbol);
+        if (node instanceof LocalVariable)
+          nodes.add(new SetLocal(((LocalVariable) node).slot, value));
+        else if (node instanceof CapturedVariable)
+          nodes.add(new SetCaptured(((CapturedVariable) node).binding, value));
+        else
+          nodes.add(new SetSpecial(symbol, value));
+        args = args.cddr();
+      }
+    if (nodes.isEmpty())
+      return new Constant(NIL);
+    if (nodes.size() == 1)
+      return nodes.get(0);
+    return new Progn(nodes.toArray(new Node[nodes.size()]));
+  }
+
+  private Node block(LispObject args)
+  {
+    if (args == NIL || !(args.car() instanceof Symbol))
+      throw unsupported();
+    Scope saved = scope;
+    Scope block = scope = new Scope(BLOCK, args.car(), slots++, 0, null, scope);
+    try
+      {
+        Node body = progn(args.cdr());
+        if (!block.used)
+          return body;
+        return new Block(block.slot, body);
+      }
+    finally
+      {
+        scope = saved;
+      }
+  }
+
+  private Node returnFrom(LispObject args)
+  {
+    final int length = args.length();
+    if (length < 1 || length > 2 || !(args.car() instanceof Symbol))
+      throw unsupported();
+    Symbol name = (Symbol) args.car();
+    Node value = length == 2 ? convert(args.cadr()) : null;
+    Scope block = find(BLOCK, name);
+    if (block != null)
+      {
+        block.used = true;
+        return new ReturnFrom(name, block.slot, null, value);
+      }
+    Binding binding = environment.getBlockBinding(name);
+    if (binding == null)
+      throw unsupported();
+    return new ReturnFrom(name, -1, binding, value);
+  }
+
+  private Node tagbody(LispObject args)
+  {
+    Scope saved = scope;
+    Scope tagbody = scope = new Scope(TAGBODY, NIL, slots++, 0, null, scope);
+    int count = 0;
+    for (LispObject body = args; body != NIL; body = body.cdr())
+      {
+        if (!(body instanceof Cons))
+          throw unsupported();
+        if (body.car() instanceof Cons)
+          count++;
+        else
+          scope = new Scope(TAG, body.car(), tagbody.slot, count, tagbody, scope);
+      }
+    try
+      {
+        Node[] nodes = new Node[count];
+        int[] jumps = new int[count];
+        int i = 0;
+        for (LispObject body = args; body != NIL; body = body.cdr())
+          {
+            LispObject form = body.car();
+            if (!(form instanceof Cons))
+              continue;
+            jumps[i] = -1;
+            // Jump to the tags of this tagbody directly.
+            if (((Cons) form).car == Symbol.GO && form.length() == 2)
+              {
+                Scope tag = find(TAG, form.cadr());
+                if (tag != null && tag.owner == tagbody)
+                  {
+                    jumps[i++] = tag.index;
+                    continue;
+                  }
+              }
+            nodes[i++] = convert(form);
+          }
+        ArrayList<LispObject> tags = new ArrayList<LispObject>();
+        ArrayList<Integer> targets = new ArrayList<Integer>();
+        for (Scope s = scope; s != tagbody; s = s.next)
+          {
+            tags.add(s.name);
+            targets.add(s.index);
+          }
+        int[] indices = new int[targets.size()];
+        for (int j = 0; j < indices.length; j++)
+          indices[j] = targets.get(j);
+        return new Tagbody(tagbody.slot, tagbody.used, nodes, jumps,
+                           tags.toArray(new LispObject[indices.length]),
+                           indices);
+      }
+    finally
+      {
+        scope = saved;
+      }
+  }
+
+  private Node go(LispObject name)
+  {
+    Scope tag = find(TAG, name);
+    if (tag != null)
+      {
+        tag.owner.used = true;
+        return new GoTag(name, tag.slot, null);
+      }
+    Binding binding = environment.getTagBinding(name);
+    if (binding == null)
+      throw unsupported();
+    return new GoTag(name, -1, binding);
+  }
+
+  // Nodes.
+
+  /** Signals the error which expanding a macro form signalled. */
+  static final class SignalCondition extends Node
+  {
+    final LispObject condition;
+
+    SignalCondition(LispObject condition)
+    {
+      this.condition = condition;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      return error(condition);
+    }
+  }
+
+  static final class Constant extends Node
+  {
+    final LispObject value;
+
+    Constant(LispObject value)
+    {
+      this.value = value;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      thread._values = null;
+      return value;
+    }
+  }
+
+  static final class LocalVariable extends Node
+  {
+    final int slot;
+
+    LocalVariable(int slot)
+    {
+      this.slot = slot;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      thread._values = null;
+      return frame[slot];
+    }
+  }
+
+  static final class CapturedVariable extends Node
+  {
+    final Binding binding;
+
+    CapturedVariable(Binding binding)
+    {
+      this.binding = binding;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      thread._values = null;
+      return binding.value;
+    }
+  }
+
+  static final class SpecialVariable extends Node
+  {
+    final Symbol symbol;
+
+    SpecialVariable(Symbol symbol)
+    {
+      this.symbol = symbol;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      thread._values = null;
+      return symbol.symbolValue(thread);
+    }
+  }
+
+  static final class SetLocal extends Node
+  {
+    final int slot;
+    final Node value;
+
+    SetLocal(int slot, Node value)
+    {
+      this.slot = slot;
+      this.value = value;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = frame[slot] = value.eval(frame, thread);
+      thread._values = null;
+      return result;
+    }
+  }
+
+  static final class SetCaptured extends Node
+  {
+    final Binding binding;
+    final Node value;
+
+    SetCaptured(Binding binding, Node value)
+    {
+      this.binding = binding;
+      this.value = value;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = binding.value = value.eval(frame, thread);
+      thread._values = null;
+      return result;
+    }
+  }
+
+  static final class SetSpecial extends Node
+  {
+    final Symbol symbol;
+    final Node value;
+
+    SetSpecial(Symbol symbol, Node value)
+    {
+      this.symbol = symbol;
+      this.value = value;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = thread.setSpecialVariable(symbol, value.eval(frame, thread));
+      thread._values = null;
+      return result;
+    }
+  }
+
+  static final class FunctionReference extends Node
+  {
+    final Symbol name;
+
+    FunctionReference(Symbol name)
+    {
+      this.name = name;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject operator = name.getSymbolFunction();
+      if (operator instanceof Autoload)
+        {
+          ((Autoload) operator).load();
+          operator = name.getSymbolFunction();
+        }
+      thread._values = null;
+      if (operator instanceof Function
+          || operator instanceof FuncallableStandardObject)
+        return operator;
+      return error(new UndefinedFunction(name));
+    }
+  }
+
+  static final class Progn extends Node
+  {
+    final Node[] body;
+
+    Progn(Node[] body)
+    {
+      this.body = body;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = NIL;
+      thread._values = null;
+      for (Node node : body)
+        result = node.eval(frame, thread);
+      return result;
+    }
+  }
+
+  static final class If extends Node
+  {
+    final Node test;
+    final Node consequent;
+    /** Null for a missing alternative. */
+    final Node alternative;
+
+    If(Node test, Node consequent, Node alternative)
+    {
+      this.test = test;
+      this.consequent = consequent;
+      this.alternative = alternative;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      if (test.eval(frame, thread) != NIL)
+        return consequent.eval(frame, thread);
+      if (alternative != null)
+        return alternative.eval(frame, thread);
+      thread.clearValues();
+      return NIL;
+    }
+  }
+
+  static final class AndOr extends Node
+  {
+    final boolean and;
+    final Node[] forms;
+
+    AndOr(boolean and, Node[] forms)
+    {
+      this.and = and;
+      this.forms = forms;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = and ? T : NIL;
+      thread._values = null;
+      for (int i = 0; i < forms.length; i++)
+        {
+          result = forms[i].eval(frame, thread);
+          if ((result == NIL) == and)
+            {
+              if (i < forms.length - 1)
+                thread._values = null;
+              break;
+            }
+        }
+      return result;
+    }
+  }
+
+  static final class Cond extends Node
+  {
+    final Node[] tests;
+    /** Null for clauses without forms. */
+    final Node[] bodies;
+
+    Cond(Node[] tests, Node[] bodies)
+    {
+      this.tests = tests;
+      this.bodies = bodies;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = NIL;
+      for (int i = 0; i < tests.length; i++)
+        {
+          result = tests[i].eval(frame, thread);
+          thread._values = null;
+          if (result != NIL)
+            return bodies[i] == null ? result : bodies[i].eval(frame, thread);
+        }
+      thread._values = null;
+      return result;
+    }
+  }
+
+  static final class The extends Node
+  {
+    final LispObject type;
+    final Node form;
+
+    The(LispObject type, Node form)
+    {
+      this.type = type;
+      this.form = form;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject rv = form.eval(frame, thread);
+      // Same checks as the evaluator's THE.
+      if ((type instanceof Symbol
+           && get(type, Symbol.DEFTYPE_DEFINITION) == NIL)
+          || type instanceof BuiltInClass)
+        if (rv.typep(type) == NIL)
+          type_error(rv, type);
+      return rv;
+    }
+  }
+
+  static final class Let extends Node
+  {
+    /** -1 for special bindings. */
+    final int[] slots;
+    final Symbol[] symbols;
+    final Node[] values;
+    final boolean sequential;
+    final boolean special;
+    final Node body;
+
+    Let(int[] slots, Symbol[] symbols, Node[] values, boolean sequential,
+        Node body)
+    {
+      this.slots = slots;
+      this.symbols = symbols;
+      this.values = values;
+      this.sequential = sequential;
+      this.body = body;
+      boolean special = false;
+      for (int slot : slots)
+        if (slot < 0)
+          special = true;
+      this.special = special;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      if (!special)
+        {
+          // The init forms of a LET can't see the new slots.
+          for (int i = 0; i < slots.length; i++)
+            frame[slots[i]] = values[i].eval(frame, thread);
+          return body.eval(frame, thread);
+        }
+      final SpecialBindingsMark mark = thread.markSpecialBindings();
+      try
+        {
+          if (sequential)
+            for (int i = 0; i < slots.length; i++)
+              bind(i, values[i].eval(frame, thread), frame, thread);
+          else
+            {
+              LispObject[] vals = new LispObject[slots.length];
+              for (int i = 0; i < slots.length; i++)
+                vals[i] = values[i].eval(frame, thread);
+              for (int i = 0; i < slots.length; i++)
+                bind(i, vals[i], frame, thread);
+            }
+          return body.eval(frame, thread);
+        }
+      finally
+        {
+          thread.resetSpecialBindings(mark);
+        }
+    }
+
+    private void bind(int i, LispObject value, LispObject[] frame,
+                      LispThread thread)
+    {
+      if (slots[i] < 0)
+        thread.bindSpecial(symbols[i], value);
+      else
+        frame[slots[i]] = value;
+    }
+  }
+
+  static final class MultipleValueBind extends Node
+  {
+    /** -1 for special bindings. */
+    final int[] slots;
+    final Symbol[] symbols;
+    final Node form;
+    final boolean special;
+    final Node body;
+
+    MultipleValueBind(int[] slots, Symbol[] symbols, Node form, Node body)
+    {
+      this.slots = slots;
+      this.symbols = symbols;
+      this.form = form;
+      this.body = body;
+      boolean special = false;
+      for (int slot : slots)
+        if (slot < 0)
+          special = true;
+      this.special = special;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject value = form.eval(frame, thread);
+      LispObject[] values = thread._values;
+      if (values == null)
+        values = new LispObject[] { value };
+      if (!special)
+        {
+          for (int i = 0; i < slots.length; i++)
+            frame[slots[i]] = i < values.length ? values[i] : NIL;
+          thread._values = null;
+          return body.eval(frame, thread);
+        }
+      final SpecialBindingsMark mark = thread.markSpecialBindings();
+      try
+        {
+          for (int i = 0; i < slots.length; i++)
+            {
+              LispObject val = i < values.length ? values[i] : NIL;
+              if (slots[i] < 0)
+                thread.bindSpecial(symbols[i], val);
+              else
+                frame[slots[i]] = val;
+            }
+          thread._values = null;
+          return body.eval(frame, thread);
+        }
+      finally
+        {
+          thread.resetSpecialBindings(mark);
+        }
+    }
+  }
+
+  static final class Block extends Node
+  {
+    final int slot;
+    final Node body;
+
+    Block(int slot, Node body)
+    {
+      this.slot = slot;
+      this.body = body;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      final LispObject block = frame[slot] = new LispObject();
+      try
+        {
+          return body.eval(frame, thread);
+        }
+      catch (Return ret)
+        {
+          if (ret.getBlock() == block)
+            return ret.getResult();
+          throw ret;
+        }
+    }
+  }
+
+  static final class ReturnFrom extends Node
+  {
+    final Symbol name;
+    final int slot;
+    /** The block binding when returning from outside of the closure. */
+    final Binding binding;
+    /** Null when no value form was given. */
+    final Node value;
+
+    ReturnFrom(Symbol name, int slot, Binding binding, Node value)
+    {
+      this.name = name;
+      this.slot = slot;
+      this.binding = binding;
+      this.value = value;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = NIL;
+      thread._values = null;
+      if (value != null)
+        result = value.eval(frame, thread);
+      if (binding != null)
+        return nonLocalReturn(binding, name, result);
+      throw new Return(name, frame[slot], result);
+    }
+  }
+
+  static final class Tagbody extends Node
+  {
+    final int slot;
+    /** True if a GO from a nested form can reach the tags. */
+    final boolean caught;
+    /** The statements, null at GOs to the tags of this tagbody. */
+    final Node[] statements;
+    /** The statement to continue with after the GO at the same index, or
+     * -1 for other statements. */
+    final int[] jumps;
+    final LispObject[] tags;
+    final int[] targets;
+
+    Tagbody(int slot, boolean caught, Node[] statements, int[] jumps,
+            LispObject[] tags, int[] targets)
+    {
+      this.slot = slot;
+      this.caught = caught;
+      this.statements = statements;
+      this.jumps = jumps;
+      this.tags = tags;
+      this.targets = targets;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      final LispObject tagbody = caught ? (frame[slot] = new LispObject()) : null;
+      int i = 0;
+      while (i < statements.length)
+        {
+          if (jumps[i] >= 0)
+            {
+              if (interrupted)
+                handleInterrupt();
+              i = jumps[i];
+              continue;
+            }
+          if (!caught)
+            {
+              statements[i++].eval(frame, thread);
+              continue;
+            }
+          try
+            {
+              statements[i].eval(frame, thread);
+              i++;
+            }
+          catch (Go go)
+            {
+              if (go.getTagBody() != tagbody)
+                throw go;
+              i = target(go.getTag());
+            }
+        }
+      thread._values = null;
+      return NIL;
+    }
+
+    private int target(LispObject tag)
+    {
+      for (int i = 0; i < tags.length; i++)
+        if (tags[i].eql(tag))
+          return targets[i];
+      throw new IllegalStateException();
+    }
+  }
+
+  static final class GoTag extends Node
+  {
+    final LispObject tag;
+    final int slot;
+    /** The tag binding when going to a tag outside of the closure. */
+    final Binding binding;
+
+    GoTag(LispObject tag, int slot, Binding binding)
+    {
+      this.tag = tag;
+      this.slot = slot;
+      this.binding = binding;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      if (binding != null)
+        return nonLocalGo(binding, tag);
+      throw new Go(frame[slot], tag);
+    }
+  }
+
+  static final class Catch extends Node
+  {
+    final Node tag;
+    final Node body;
+
+    Catch(Node tag, Node body)
+    {
+      this.tag = tag;
+      this.body = body;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject tag = this.tag.eval(frame, thread);
+      thread.pushCatchTag(tag);
+      try
+        {
+          return body.eval(frame, thread);
+        }
+      catch (Throw t)
+        {
+          if (t.tag == tag)
+            return t.getResult(thread);
+          throw t;
+        }
+      finally
+        {
+          thread.popCatchTag();
+        }
+    }
+  }
+
+  static final class ThrowTag extends Node
+  {
+    final Node tag;
+    final Node result;
+
+    ThrowTag(Node tag, Node result)
+    {
+      this.tag = tag;
+      this.result = result;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject tag = this.tag.eval(frame, thread);
+      thread.throwToTag(tag, result.eval(frame, thread));
+      // Not reached.
+      return NIL;
+    }
+  }
+
+  static final class UnwindProtect extends Node
+  {
+    final Node form;
+    final Node[] cleanup;
+
+    UnwindProtect(Node form, Node[] cleanup)
+    {
+      this.form = form;
+      this.cleanup = cleanup;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result;
+      LispObject[] values;
+      try
+        {
+          result = form.eval(frame, thread);
+        }
+      finally
+        {
+          values = thread._values;
+          for (Node node : cleanup)
+            node.eval(frame, thread);
+          thread._values = values;
+        }
+      if (values != null)
+        thread.setValues(values);
+      else
+        thread._values = null;
+      return result;
+    }
+  }
+
+  static final class MultipleValueProg1 extends Node
+  {
+    final Node form;
+    final Node[] forms;
+
+    MultipleValueProg1(Node form, Node[] forms)
+    {
+      this.form = form;
+      this.forms = forms;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject result = form.eval(frame, thread);
+      LispObject[] values = thread._values;
+      for (Node node : forms)
+        node.eval(frame, thread);
+      if (values != null)
+        thread.setValues(values);
+      else
+        thread._values = null;
+      return result;
+    }
+  }
+
+  static final class MultipleValueCall extends Node
+  {
+    final Node function;
+    final Node[] args;
+
+    MultipleValueCall(Node function, Node[] args)
+    {
+      this.function = function;
+      this.args = args;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      LispObject fun = function.eval(frame, thread);
+      if (fun instanceof Symbol)
+        {
+          LispObject f = fun.getSymbolFunction();
+          if (f == null)
+            error(new UndefinedFunction(fun));
+          fun = f;
+        }
+      else if (!(fun instanceof Function))
+        return error(new LispError(fun.princToString() +
+                                   " is not a function name."));
+      ArrayList<LispObject> arrayList = new ArrayList<LispObject>();
+      for (Node node : args)
+        {
+          LispObject result = node.eval(frame, thread);
+          LispObject[] values = thread._values;
+          if (values != null)
+            for (LispObject value : values)
+              arrayList.add(value);
+          else
+            arrayList.add(result);
+        }
+      LispObject[] argv = new LispObject[arrayList.size()];
+      arrayList.toArray(argv);
+      return funcall(fun, argv, thread);
+    }
+  }
+
+  /** A call to a global function, looked up at each call, or to a local
+   * function of the closure's environment. */
+  static final class Call extends Node
+  {
+    final Symbol name;
+    final LispObject function;
+    final Node[] args;
+
+    Call(Symbol name, LispObject function, Node[] args)
+    {
+      this.name = name;
+      this.function = function;
+      this.args = args;
+    }
+
+    @Override
+    LispObject eval(LispObject[] frame, LispThread thread)
+    {
+      poll(thread);
+      LispObject fun = function;
+      if (name != null)
+        {
+          fun = name.getSymbolFunction();
+          if (fun == null)
+            fun = name;
+        }
+      final Node[] args = this.args;
+      switch (args.length)
+        {
+        case 0:
+          thread._values = null;
+          return thread.execute(fun);
+        case 1:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first);
+          }
+        case 2:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second);
+          }
+        case 3:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            LispObject third = args[2].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second, third);
+          }
+        case 4:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            LispObject third = args[2].eval(frame, thread);
+            LispObject fourth = args[3].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second, third, fourth);
+          }
+        case 5:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            LispObject third = args[2].eval(frame, thread);
+            LispObject fourth = args[3].eval(frame, thread);
+            LispObject fifth = args[4].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second, third, fourth, fifth);
+          }
+        case 6:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            LispObject third = args[2].eval(frame, thread);
+            LispObject fourth = args[3].eval(frame, thread);
+            LispObject fifth = args[4].eval(frame, thread);
+            LispObject sixth = args[5].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second, third, fourth, fifth,
+                                  sixth);
+          }
+        case 7:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            LispObject third = args[2].eval(frame, thread);
+            LispObject fourth = args[3].eval(frame, thread);
+            LispObject fifth = args[4].eval(frame, thread);
+            LispObject sixth = args[5].eval(frame, thread);
+            LispObject seventh = args[6].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second, third, fourth, fifth,
+                                  sixth, seventh);
+          }
+        case 8:
+          {
+            LispObject first = args[0].eval(frame, thread);
+            LispObject second = args[1].eval(frame, thread);
+            LispObject third = args[2].eval(frame, thread);
+            LispObject fourth = args[3].eval(frame, thread);
+            LispObject fifth = args[4].eval(frame, thread);
+            LispObject sixth = args[5].eval(frame, thread);
+            LispObject seventh = args[6].eval(frame, thread);
+            LispObject eighth = args[7].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, first, second, third, fourth, fifth,
+                                  sixth, seventh, eighth);
+          }
+        default:
+          {
+            LispObject[] array = new LispObject[args.length];
+            for (int i = 0; i < args.length; i++)
+              array[i] = args[i].eval(frame, thread);
+            thread._values = null;
+            return thread.execute(fun, array);
+          }
+        }
+    }
+  }
+
+  // ### %closure-compiled-p function => generalized-boolean
+  public static final Primitive CLOSURE_COMPILED_P =
+    new Primitive("%closure-compiled-p", PACKAGE_SYS, false, "function")
+  {
+    @Override
+    public LispObject execute(LispObject arg)
+    {
+      if (arg instanceof Closure)
+        return ((Closure) arg).isCompiledBody() ? T : NIL;
+      return NIL;
+    }
+  };
+}
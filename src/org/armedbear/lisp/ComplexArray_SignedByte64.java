@@ -0,0 +1,340 @@
+/*
+ * ComplexArray_SignedByte64.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+public final class ComplexArray_SignedByte64 extends AbstractArray
+{
+    private final int[] dimv;
+    private int totalSize;
+
+    // For non-displaced arrays.
+    private long[] data;
+
+    // For displaced arrays.
+    private AbstractArray array;
+    private int displacement;
+
+    public ComplexArray_SignedByte64(int[] dimv)
+    {
+        this.dimv = dimv;
+        totalSize = computeTotalSize(dimv);
+        data = new long[totalSize];
+    }
+
+    public ComplexArray_SignedByte64(int[] dimv, LispObject initialContents)
+
+    {
+        this.dimv = dimv;
+        final int rank = dimv.length;
+        LispObject rest = initialContents;
+        for (int i = 0; i < rank; i++) {
+            dimv[i] = rest.length();
+            rest = rest.elt(0);
+        }
+        totalSize = computeTotalSize(dimv);
+        data = new long[totalSize];
+        setInitialContents(0, dimv, initialContents, 0);
+    }
+
+    public ComplexArray_SignedByte64(int[] dimv, AbstractArray array,
+                                       int displacement)
+    {
+        this.dimv = dimv;
+        this.array = array;
+        this.displacement = displacement;
+        totalSize = computeTotalSize(dimv);
+    }
+
+    private int setInitialContents(int axis, int[] dims, LispObject contents,
+                                   int index)
+
+    {
+        if (dims.length == 0) {
+            try {
+                data[index] = coerceLispObjectToJavaLong(contents);
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                error(new LispError("Bad initial contents for array."));
+                return -1;
+            }
+            ++index;
+        } else {
+            int dim = dims[0];
+            if (dim != contents.length()) {
+                error(new LispError("Bad initial contents for array."));
+                return -1;
+            }
+            int[] newDims = new int[dims.length-1];
+            for (int i = 1; i < dims.length; i++)
+                newDims[i-1] = dims[i];
+            if (contents.listp()) {
+                for (int i = contents.length();i-- > 0;) {
+                    LispObject content = contents.car();
+                    index =
+                        setInitialContents(axis + 1, newDims, content, index);
+                    contents = contents.cdr();
+                }
+            } else {
+                AbstractVector v = checkVector(contents);
+                final int length = v.length();
+                for (int i = 0; i < length; i++) {
+                    LispObject content = v.AREF(i);
+                    index =
+                        setInitialContents(axis + 1, newDims, content, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public LispObject typeOf()
+    {
+        return list(Symbol.ARRAY, SIGNED_BYTE_64, getDimensions());
+    }
+
+    @Override
+    public LispObject classOf()
+    {
+        return BuiltInClass.ARRAY;
+    }
+
+    @Override
+    public int getRank()
+    {
+        return dimv.length;
+    }
+
+    @Override
+    public LispObject getDimensions()
+    {
+        LispObject result = NIL;
+        for (int i = dimv.length; i-- > 0;)
+            result = new Cons(Fixnum.getInstance(dimv[i]), result);
+        return result;
+    }
+
+    @Override
+    public int getDimension(int n)
+    {
+        try {
+            return dimv[n];
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            error(new ArrayIndexTypeError("Bad array dimension " + n + "."));
+            return -1;
+        }
+    }
+
+    @Override
+    public LispObject getElementType()
+    {
+        return SIGNED_BYTE_64;
+    }
+
+    @Override
+    public int getTotalSize()
+    {
+        return totalSize;
+    }
+
+    @Override
+    public LispObject arrayDisplacement()
+    {
+        LispObject value1, value2;
+        if (array != null) {
+            value1 = array;
+            value2 = Fixnum.getInstance(displacement);
+        } else {
+            value1 = NIL;
+            value2 = Fixnum.ZERO;
+        }
+        return LispThread.currentThread().setValues(value1, value2);
+    }
+
+    @Override
+    public LispObject AREF(int index)
+    {
+        if (data != null) {
+            try {
+                return LispInteger.getInstance(data[index]);
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                return error(new ArrayIndexTypeError("Bad row major index " + index + "."));
+            }
+        } else
+            return array.AREF(index + displacement);
+    }
+
+    @Override
+    public void aset(int index, LispObject newValue)
+    {
+        if (data != null) {
+            try {
+                data[index] = coerceLispObjectToJavaLong(newValue);
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                error(new ArrayIndexTypeError("Bad row major index " + index + "."));
+            }
+        } else
+            array.aset(index + displacement, newValue);
+    }
+
+    @Override
+    public long aref_long(int index)
+    {
+        if (data != null) {
+            try {
+                return data[index];
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                error(new ArrayIndexTypeError("Bad row major index " + index + "."));
+                // Not reached.
+                return 0;
+            }
+        } else
+            return array.aref_long(index + displacement);
+    }
+
+    @Override
+    public void aset(int index, int n)
+    {
+        if (data != null) {
+            try {
+                data[index] = n;
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                error(new ArrayIndexTypeError("Bad row major index " + index + "."));
+            }
+        } else
+            array.aset(index + displacement, n);
+    }
+
+    @Override
+    public void aset(int index, long n)
+    {
+        if (data != null) {
+            try {
+                data[index] = n;
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                error(new ArrayIndexTypeError("Bad row major index " + index + "."));
+            }
+        } else
+            array.aset(index + displacement, n);
+    }
+
+    @Override
+    public void fill(LispObject obj)
+    {
+        if (data != null) {
+            long n = coerceLispObjectToJavaLong(obj);
+            for (int i = data.length; i-- > 0;)
+                data[i] = n;
+        } else {
+            for (int i = totalSize; i-- > 0;)
+                aset(i, obj);
+        }
+    }
+
+    @Override
+    public LispObject printObject()
+    {
+        return new SimpleString(printObject(dimv));
+    }
+
+
+    @Override
+    public AbstractArray adjustArray(int[] dims,
+                                              LispObject initialElement,
+                                              LispObject initialContents)
+            {
+        if (isAdjustable()) {
+            if (initialContents != null) {
+                for (int i = 0; i < dims.length; i++)
+                    dimv[i] = dims[i];
+                totalSize = computeTotalSize(dimv);
+                data = new long[totalSize];
+                setInitialContents(0, dimv, initialContents, 0);
+            } else {
+                // Copy the elements into a simple array of the new
+                // dimensions and take over its storage.
+                SimpleArray_SignedByte64 tempArray = new SimpleArray_SignedByte64(dims);
+                if (initialElement != null)
+                    tempArray.fill(initialElement);
+                SimpleArray_SignedByte64.copyArray(this, tempArray);
+                this.data = tempArray.data;
+
+                for (int i = 0; i < dims.length; i++)
+                    dimv[i] = dims[i];
+                totalSize = tempArray.getTotalSize();
+            }
+            array = null;
+            displacement = 0;
+            return this;
+        } else {
+            if (initialContents != null)
+                return new ComplexArray_SignedByte64(dims, initialContents);
+            else {
+                ComplexArray_SignedByte64 newArray = new ComplexArray_SignedByte64(dims);
+                if (initialElement != null)
+                    newArray.fill(initialElement);
+                return newArray;
+            }
+        }
+    }
+
+    @Override
+    public AbstractArray adjustArray(int[] dims,
+                                              AbstractArray displacedTo,
+                                              int displacement)
+            {
+        if (isAdjustable()) {
+            for (int i = 0; i < dims.length; i++)
+                dimv[i] = dims[i];
+
+            this.data = null;
+            this.array = displacedTo;
+            this.displacement = displacement;
+            this.totalSize = computeTotalSize(dims);
+
+            return this;
+        } else {
+            ComplexArray_SignedByte64 a = new ComplexArray_SignedByte64(dims, displacedTo, displacement);
+
+            return a;
+        }
+    }
+}
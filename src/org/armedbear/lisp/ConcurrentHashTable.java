@@ -0,0 +1,382 @@
+/*
+ * ConcurrentHashTable.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A hash table for use by many threads at once, as created by
+ * <code>(make-hash-table :synchronized :lock-free)</code>.
+ *
+ * The table is split into independently locked segments, selected by
+ * the high bits of the key hash.  Writers only lock the segment they
+ * modify.  Readers never lock: bucket heads are read through an
+ * <code>AtomicReferenceArray</code> and the chains below them are
+ * immutable apart from the volatile value slot, so a reader always
+ * sees a consistent chain.  Growing the table rehashes a single
+ * segment at a time, which keeps the rest of the table available.
+ */
+public class ConcurrentHashTable extends HashTable
+{
+    private static final int MIN_SEGMENTS = 16;
+    private static final int MAX_SEGMENTS = 1 << 8;
+    private static final int MIN_SEGMENT_CAPACITY = 2;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    protected ConcurrentHashTable(Comparator c, int size,
+                                  LispObject rehashSize,
+                                  LispObject rehashThreshold) {
+        super(c, 0, rehashSize, rehashThreshold);
+        int nSegments = MIN_SEGMENTS;
+        while (nSegments < MAX_SEGMENTS && nSegments * 64 < size) {
+            nSegments <<= 1;
+        }
+        int shift = 0;
+        while ((1 << shift) < nSegments) {
+            ++shift;
+        }
+        segmentShift = 32 - shift;
+        segmentMask = nSegments - 1;
+        int perSegment = calculateInitialCapacity(size / nSegments);
+        if (perSegment < MIN_SEGMENT_CAPACITY) {
+            perSegment = MIN_SEGMENT_CAPACITY;
+        }
+        segments = new Segment[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    public static HashTable newEqHashTable(int size, LispObject rehashSize,
+            LispObject rehashThreshold) {
+        return new ConcurrentHashTable(new Comparator(), size,
+                                       rehashSize, rehashThreshold);
+    }
+
+    public static HashTable newEqlHashTable(int size, LispObject rehashSize,
+            LispObject rehashThreshold) {
+        return new ConcurrentHashTable(new EqlComparator(), size,
+                                       rehashSize, rehashThreshold);
+    }
+
+    public static HashTable newEqualHashTable(int size, LispObject rehashSize,
+            LispObject rehashThreshold) {
+        return new ConcurrentHashTable(new EqualComparator(), size,
+                                       rehashSize, rehashThreshold);
+    }
+
+    public static HashTable newEqualpHashTable(int size, LispObject rehashSize,
+            LispObject rehashThreshold) {
+        return new ConcurrentHashTable(new EqualpComparator(), size,
+                                       rehashSize, rehashThreshold);
+    }
+
+    // Spread the bits of the Lisp hash code, so that the high bits used
+    // to select a segment and the low bits used to select a bucket are
+    // both well distributed.
+    private static int spread(int h) {
+        h += (h << 15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h << 3);
+        h ^= (h >>> 6);
+        h += (h << 2) + (h << 14);
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment s : segments) {
+            size += s.table.length();
+        }
+        return size;
+    }
+
+    @Override
+    public int getCount() {
+        int n = 0;
+        for (Segment s : segments) {
+            n += s.count;
+        }
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    @Override
+    protected HashEntry getEntry(LispObject key) {
+        // HashEntry chains aren't used by this table; see get().
+        return null;
+    }
+
+    @Override
+    public LispObject get(LispObject key) {
+        final int hash = spread(comparator.hash(key));
+        final AtomicReferenceArray<Node> t = segmentFor(hash).table;
+        Node e = t.get(hash & (t.length() - 1));
+        while (e != null) {
+            if (hash == e.hash &&
+                    (key == e.key || comparator.keysEqual(key, e.key))) {
+                return e.value;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    @Override
+    public void put(LispObject key, LispObject value) {
+        final int hash = spread(comparator.hash(key));
+        segmentFor(hash).put(key, hash, value);
+    }
+
+    @Override
+    public LispObject remove(LispObject key) {
+        final int hash = spread(comparator.hash(key));
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    @Override
+    protected void rehash() {
+        for (Segment s : segments) {
+            s.lock();
+            try {
+                s.rehash();
+            } finally {
+                s.unlock();
+            }
+        }
+    }
+
+    // Returns a list of (key . value) pairs.
+    @Override
+    public LispObject getEntries() {
+        // Like MAPHASH, this walks a weakly consistent view of the table.
+        LispObject list = NIL;
+        for (int i = segments.length; i-- > 0;) {
+            AtomicReferenceArray<Node> t = segments[i].table;
+            for (int j = t.length(); j-- > 0;) {
+                Node e = t.get(j);
+                while (e != null) {
+                    list = new Cons(new Cons(e.key, e.value), list);
+                    e = e.next;
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public LispObject getParts() {
+        LispObject parts = NIL;
+        for (int i = 0; i < segments.length; i++) {
+            AtomicReferenceArray<Node> t = segments[i].table;
+            for (int j = 0; j < t.length(); j++) {
+                Node e = t.get(j);
+                while (e != null) {
+                    parts = parts.push(new Cons("KEY [segment " + i
+                                                + ", bucket " + j + "]",
+                                                e.key));
+                    parts = parts.push(new Cons("VALUE", e.value));
+                    e = e.next;
+                }
+            }
+        }
+        return parts.nreverse();
+    }
+
+    @Override
+    public LispObject MAPHASH(LispObject function) {
+        // No segment is locked, so FUNCTION may freely modify the table.
+        for (int i = segments.length; i-- > 0;) {
+            AtomicReferenceArray<Node> t = segments[i].table;
+            for (int j = t.length(); j-- > 0;) {
+                Node e = t.get(j);
+                while (e != null) {
+                    function.execute(e.key, e.value);
+                    e = e.next;
+                }
+            }
+        }
+        return NIL;
+    }
+
+    private final class Segment extends ReentrantLock
+    {
+        volatile AtomicReferenceArray<Node> table;
+        volatile int count;
+        int threshold;
+
+        Segment(int capacity) {
+            setTable(new AtomicReferenceArray<Node>(capacity));
+        }
+
+        private void setTable(AtomicReferenceArray<Node> newTable) {
+            threshold = thresholdFor(newTable.length());
+            table = newTable;
+        }
+
+        void put(LispObject key, int hash, LispObject value) {
+            lock();
+            try {
+                AtomicReferenceArray<Node> t = table;
+                int index = hash & (t.length() - 1);
+                Node first = t.get(index);
+                for (Node e = first; e != null; e = e.next) {
+                    if (hash == e.hash &&
+                            (key == e.key || comparator.keysEqual(key, e.key))) {
+                        e.value = value;
+                        return;
+                    }
+                }
+                if (count + 1 > threshold) {
+                    rehash();
+                    t = table;
+                    index = hash & (t.length() - 1);
+                    first = t.get(index);
+                }
+                t.set(index, new Node(key, hash, value, first));
+                ++count;
+            } finally {
+                unlock();
+            }
+        }
+
+        LispObject remove(LispObject key, int hash) {
+            lock();
+            try {
+                AtomicReferenceArray<Node> t = table;
+                int index = hash & (t.length() - 1);
+                Node first = t.get(index);
+                Node e = first;
+                while (e != null && (hash != e.hash ||
+                        !(key == e.key || comparator.keysEqual(key, e.key)))) {
+                    e = e.next;
+                }
+                if (e == null) {
+                    return null;
+                }
+                // Chains are immutable, so copy the nodes in front of
+                // the removed one; readers may still be walking them.
+                Node newFirst = e.next;
+                for (Node p = first; p != e; p = p.next) {
+                    newFirst = new Node(p.key, p.hash, p.value, newFirst);
+                }
+                t.set(index, newFirst);
+                --count;
+                return e.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            lock();
+            try {
+                setTable(new AtomicReferenceArray<Node>(table.length()));
+                count = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        // Called with the segment lock held.
+        void rehash() {
+            final AtomicReferenceArray<Node> oldTable = table;
+            final int oldCapacity = oldTable.length();
+            final int newCapacity = nextCapacity(oldCapacity);
+            if (newCapacity == oldCapacity) {
+                threshold = Integer.MAX_VALUE;
+                return;
+            }
+            final AtomicReferenceArray<Node> newTable
+                = new AtomicReferenceArray<Node>(newCapacity);
+            final int mask = newTable.length() - 1;
+            for (int i = 0; i < oldCapacity; i++) {
+                Node e = oldTable.get(i);
+                if (e == null) {
+                    continue;
+                }
+                // The trailing run of nodes which all land in the same
+                // new bucket can be reused as is; only the nodes in
+                // front of it need to be copied.
+                Node lastRun = e;
+                int lastIndex = e.hash & mask;
+                for (Node p = e.next; p != null; p = p.next) {
+                    int k = p.hash & mask;
+                    if (k != lastIndex) {
+                        lastIndex = k;
+                        lastRun = p;
+                    }
+                }
+                newTable.set(lastIndex, lastRun);
+                for (Node p = e; p != lastRun; p = p.next) {
+                    int k = p.hash & mask;
+                    newTable.set(k, new Node(p.key, p.hash, p.value,
+                                             newTable.get(k)));
+                }
+            }
+            setTable(newTable);
+        }
+    }
+
+    private static final class Node
+    {
+        final LispObject key;
+        final int hash;
+        volatile LispObject value;
+        final Node next;
+
+        Node(LispObject key, int hash, LispObject value, Node next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * ConditionVariable.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A condition of a mutex, that threads holding the mutex wait on until
+ * another thread notifies them.
+ */
+public final class ConditionVariable extends LispObject
+{
+    private final Mutex mutex;
+    private final Condition condition;
+
+    public ConditionVariable(Mutex mutex) {
+        this.mutex = mutex;
+        condition = mutex.lock.newCondition();
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.CONDITION_VARIABLE;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.CONDITION_VARIABLE;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.CONDITION_VARIABLE) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.CONDITION_VARIABLE) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        return new SimpleString(unreadableString("CONDITION-VARIABLE"));
+    }
+
+    private LispObject notHeld() {
+        return error(new IllegalMonitorState("The mutex "
+                                             + mutex.printObject().getStringValue()
+                                             + " isn't held by this thread."));
+    }
+
+    static ConditionVariable checkConditionVariable(LispObject obj) {
+        if (obj instanceof ConditionVariable) {
+            return (ConditionVariable) obj;
+        }
+        return (ConditionVariable) type_error(obj, Symbol.CONDITION_VARIABLE);
+    }
+
+    // ### make-condition-variable mutex => condition-variable
+    private static final Primitive MAKE_CONDITION_VARIABLE
+        = new pf_make_condition_variable();
+    @DocString(name="make-condition-variable", args="mutex",
+    doc="Returns a new condition variable of MUTEX.")
+    private static final class pf_make_condition_variable extends Primitive {
+        pf_make_condition_variable() {
+            super("make-condition-variable", PACKAGE_THREADS, true, "mutex");
+        }
+
+        @Override
+        public LispObject execute(LispObject mutex) {
+            return new ConditionVariable(Mutex.checkMutex(mutex));
+        }
+    };
+
+    // ### condition-wait condition-variable &optional timeout => boolean
+    private static final Primitive CONDITION_WAIT = new pf_condition_wait();
+    @DocString(name="condition-wait", args="condition-variable &optional timeout",
+    doc="Releases the mutex of CONDITION-VARIABLE, which the calling thread has\n"
+        + "to hold, and waits until another thread notifies CONDITION-VARIABLE,\n"
+        + "for at most TIMEOUT seconds if given; then takes the mutex again.\n"
+        + "Returns NIL if TIMEOUT expired, T otherwise.  The wait may also end\n"
+        + "without a notification, so callers should check what they wait for\n"
+        + "in a loop.")
+    private static final class pf_condition_wait extends Primitive {
+        pf_condition_wait() {
+            super("condition-wait", PACKAGE_THREADS, true,
+                  "condition-variable &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject cv) {
+            ConditionVariable c = checkConditionVariable(cv);
+            try {
+                c.condition.await();
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+            } catch (IllegalMonitorStateException e) {
+                return c.notHeld();
+            }
+            return T;
+        }
+
+        @Override
+        public LispObject execute(LispObject cv, LispObject timeout) {
+            if (timeout == NIL) {
+                return execute(cv);
+            }
+            ConditionVariable c = checkConditionVariable(cv);
+            try {
+                return c.condition.await(LispThread.timeoutNanos(timeout),
+                                         TimeUnit.NANOSECONDS) ? T : NIL;
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+            } catch (IllegalMonitorStateException e) {
+                return c.notHeld();
+            }
+            return T;
+        }
+    };
+
+    // ### condition-notify condition-variable => nil
+    private static final Primitive CONDITION_NOTIFY = new pf_condition_notify();
+    @DocString(name="condition-notify", args="condition-variable",
+    doc="Wakes up one thread waiting on CONDITION-VARIABLE, if any.  The calling\n"
+        + "thread has to hold its mutex.")
+    private static final class pf_condition_notify extends Primitive {
+        pf_condition_notify() {
+            super("condition-notify", PACKAGE_THREADS, true, "condition-variable");
+        }
+
+        @Override
+        public LispObject execute(LispObject cv) {
+            ConditionVariable c = checkConditionVariable(cv);
+            try {
+                c.condition.signal();
+            } catch (IllegalMonitorStateException e) {
+                return c.notHeld();
+            }
+            return NIL;
+        }
+    };
+
+    // ### condition-notify-all condition-variable => nil
+    private static final Primitive CONDITION_NOTIFY_ALL
+        = new pf_condition_notify_all();
+    @DocString(name="condition-notify-all", args="condition-variable",
+    doc="Wakes up all threads waiting on CONDITION-VARIABLE.  The calling thread\n"
+        + "has to hold its mutex.")
+    private static final class pf_condition_notify_all extends Primitive {
+        pf_condition_notify_all() {
+            super("condition-notify-all", PACKAGE_THREADS, true,
+                  "condition-variable");
+        }
+
+        @Override
+        public LispObject execute(LispObject cv) {
+            ConditionVariable c = checkConditionVariable(cv);
+            try {
+                c.condition.signalAll();
+            } catch (IllegalMonitorStateException e) {
+                return c.notHeld();
+            }
+            return NIL;
+        }
+    };
+}
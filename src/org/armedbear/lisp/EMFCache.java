@@ -42,11 +42,32 @@ public final class EMFCache extends LispObject
     = new ConcurrentHashMap<CacheEntry,LispObject>();;
   EqlSpecialization eqlSpecializations[] = new EqlSpecialization[0];
 
+  // Incremented whenever instances of some class are made obsolete,
+  // which may change the methods applicable to any generic function.
+  // Caches outside of the generic functions themselves (see
+  // GenericCallSite) compare it to the value they were filled under.
+  static volatile int classEpoch;
+
+  static synchronized void invalidateClassEpoch()
+  {
+    classEpoch++;
+  }
+
   void clearCache()
   {
     cache = new ConcurrentHashMap<CacheEntry,LispObject>();
   }
 
+  /**
+   * Returns the effective method cached in <tt>map</tt> for the
+   * required argument specializations <tt>array</tt>, or null.
+   */
+  static LispObject lookup(ConcurrentHashMap<CacheEntry,LispObject> map,
+                           LispObject[] array)
+  {
+    return map.get(new CacheEntry(array));
+  }
+
   @Override
   public LispObject printObject()
   {
@@ -71,7 +92,7 @@ public final class EMFCache extends LispObject
     }
   }
 
-  private static class CacheEntry
+  static class CacheEntry
   {
     final LispObject[] array;
 
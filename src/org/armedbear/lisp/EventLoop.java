@@ -0,0 +1,463 @@
+/*
+ * EventLoop.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A java.nio.channels.Selector watching non-blocking channels, which
+ * calls a Lisp function for each channel that is ready.
+ *
+ * The callbacks run in the thread running the loop, so one thread serves
+ * any number of idle connections.  Channels may be registered and
+ * unregistered from any thread; a registration from another thread
+ * takes effect when the loop next wakes up.
+ */
+public final class EventLoop extends LispObject
+{
+    private static final Symbol READ = internKeyword("READ");
+    private static final Symbol WRITE = internKeyword("WRITE");
+    private static final Symbol ACCEPT = internKeyword("ACCEPT");
+    private static final Symbol CONNECT = internKeyword("CONNECT");
+
+    private static final class Handler {
+        final SelectableChannel channel;
+        final LispObject object;
+        final int ops;
+        final LispObject function;
+
+        Handler(SelectableChannel channel, LispObject object, int ops,
+                LispObject function) {
+            this.channel = channel;
+            this.object = object;
+            this.ops = ops;
+            this.function = function;
+        }
+    }
+
+    private final Selector selector;
+    private final LispObject name;
+    // Registrations made by other threads than the one running the loop;
+    // a handler without a function unregisters its channel.
+    private final ConcurrentLinkedQueue<Handler> pending
+        = new ConcurrentLinkedQueue<Handler>();
+    private volatile Thread runner;
+    private volatile boolean stopped;
+
+    public EventLoop(LispObject name) throws IOException {
+        this.name = name;
+        selector = Selector.open();
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.EVENT_LOOP;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.EVENT_LOOP;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.EVENT_LOOP) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.EVENT_LOOP) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        StringBuilder sb = new StringBuilder("EVENT-LOOP");
+        if (name != NIL) {
+            sb.append(" \"").append(name.getStringValue()).append('"');
+        }
+        if (selector.isOpen()) {
+            sb.append(' ').append(selector.keys().size()).append(" channels");
+        } else {
+            sb.append(" closed");
+        }
+        return new SimpleString(unreadableString(sb.toString()));
+    }
+
+    static EventLoop checkEventLoop(LispObject obj) {
+        if (obj instanceof EventLoop) {
+            return (EventLoop) obj;
+        }
+        return (EventLoop) type_error(obj, Symbol.EVENT_LOOP);
+    }
+
+    private static SelectableChannel checkChannel(LispObject obj) {
+        if (obj instanceof JavaObject
+            && ((JavaObject) obj).getObject() instanceof SelectableChannel) {
+            return (SelectableChannel) ((JavaObject) obj).getObject();
+        }
+        return SocketChannels.checkSocketChannel(obj);
+    }
+
+    private static int checkEvents(LispObject events) {
+        if (events.atom()) {
+            events = list(events);
+        }
+        int ops = 0;
+        for (LispObject list = events; list != NIL; list = list.cdr()) {
+            LispObject event = list.car();
+            if (event == READ) {
+                ops |= SelectionKey.OP_READ;
+            } else if (event == WRITE) {
+                ops |= SelectionKey.OP_WRITE;
+            } else if (event == ACCEPT) {
+                ops |= SelectionKey.OP_ACCEPT;
+            } else if (event == CONNECT) {
+                ops |= SelectionKey.OP_CONNECT;
+            } else {
+                type_error(event, list(Symbol.MEMBER, READ, WRITE, ACCEPT, CONNECT));
+            }
+        }
+        return ops;
+    }
+
+    private static LispObject events(int ops) {
+        LispObject result = NIL;
+        if ((ops & SelectionKey.OP_CONNECT) != 0) {
+            result = new Cons(CONNECT, result);
+        }
+        if ((ops & SelectionKey.OP_ACCEPT) != 0) {
+            result = new Cons(ACCEPT, result);
+        }
+        if ((ops & SelectionKey.OP_WRITE) != 0) {
+            result = new Cons(WRITE, result);
+        }
+        if ((ops & SelectionKey.OP_READ) != 0) {
+            result = new Cons(READ, result);
+        }
+        return result;
+    }
+
+    private void checkOpen() {
+        if (!selector.isOpen()) {
+            error(new LispError("The event loop " + printObject().getStringValue()
+                                + " is closed."));
+        }
+    }
+
+    void register(LispObject object, LispObject events, LispObject function) {
+        checkOpen();
+        SelectableChannel channel = checkChannel(object);
+        int ops = checkEvents(events);
+        if ((channel.validOps() & ops) != ops) {
+            error(new LispError("The events " + events.princToString()
+                                + " are not supported by " + object.princToString()
+                                + "."));
+        }
+        Handler handler = new Handler(channel, object, ops,
+                                      coerceToFunction(function));
+        if (runner == Thread.currentThread()) {
+            apply(handler);
+        } else {
+            // Registering while another thread is in select() would block
+            // until it returns.
+            pending.add(handler);
+            selector.wakeup();
+        }
+    }
+
+    void unregister(LispObject object) {
+        SelectableChannel channel = checkChannel(object);
+        SelectionKey key = channel.keyFor(selector);
+        if (key != null) {
+            key.cancel();
+        }
+        if (runner != Thread.currentThread()) {
+            pending.add(new Handler(channel, object, 0, null));
+        }
+    }
+
+    private void apply(Handler handler) {
+        if (handler.function == null) {
+            SelectionKey key = handler.channel.keyFor(selector);
+            if (key != null) {
+                key.cancel();
+            }
+            return;
+        }
+        try {
+            handler.channel.register(selector, handler.ops, handler);
+        } catch (ClosedChannelException e) {
+            // The channel was closed before the loop got to it.
+        }
+    }
+
+    private void applyPending() {
+        Handler handler;
+        while ((handler = pending.poll()) != null) {
+            apply(handler);
+        }
+    }
+
+    /** Waits at most NANOS nanoseconds, or without limit if NANOS is
+     * negative, for channels to become ready and calls their functions.
+     *
+     * @return the number of functions called
+     */
+    int runOnce(long nanos) {
+        checkOpen();
+        final LispThread thread = LispThread.currentThread();
+        final Thread previous = runner;
+        runner = Thread.currentThread();
+        try {
+            applyPending();
+            // Also drops the keys cancelled since the last selection.
+            int n = selector.selectNow();
+            if (n == 0 && nanos != 0 && !selector.keys().isEmpty()) {
+                if (nanos < 0) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(1, nanos / 1000000));
+                }
+                applyPending();
+            }
+            if (Thread.interrupted()) {
+                thread.processThreadInterrupts();
+            }
+            int count = 0;
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                Handler handler = (Handler) key.attachment();
+                int ready = key.readyOps() & handler.ops;
+                if (ready != 0) {
+                    thread.execute(handler.function, handler.object,
+                                   events(ready));
+                    ++count;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            return ierror(new LispError(e.getMessage()));
+        } finally {
+            runner = previous;
+        }
+    }
+
+    void run() {
+        stopped = false;
+        while (!stopped) {
+            if (runOnce(-1) == 0 && selector.keys().isEmpty()
+                && pending.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    void close() {
+        stop();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            error(new LispError(e.getMessage()));
+        }
+    }
+
+    // ### make-event-loop &key name => event-loop
+    private static final Primitive MAKE_EVENT_LOOP = new pf_make_event_loop();
+    @DocString(name="make-event-loop", args="&key name",
+    doc="Returns a new event loop, which watches non-blocking channels\n"
+        + "registered with EVENT-LOOP-REGISTER when EVENT-LOOP-RUN or\n"
+        + "EVENT-LOOP-RUN-ONCE runs it.")
+    private static final class pf_make_event_loop extends Primitive {
+        pf_make_event_loop() {
+            super("make-event-loop", PACKAGE_SYS, true, "&key name");
+        }
+
+        @Override
+        public LispObject execute(LispObject[] args) {
+            if (args.length % 2 != 0) {
+                program_error("Odd number of keyword arguments.");
+            }
+            LispObject name = NIL;
+            for (int i = 0; i < args.length; i += 2) {
+                if (args[i] == Keyword.NAME) {
+                    name = args[i + 1].STRING();
+                } else {
+                    program_error("Unrecognized keyword argument "
+                                  + args[i].princToString() + ".");
+                }
+            }
+            try {
+                return new EventLoop(name);
+            } catch (IOException e) {
+                return error(new LispError(e.getMessage()));
+            }
+        }
+    };
+
+    // ### event-loop-register event-loop channel events function => channel
+    private static final Primitive EVENT_LOOP_REGISTER = new pf_event_loop_register();
+    @DocString(name="event-loop-register",
+               args="event-loop channel events function",
+    doc="Has EVENT-LOOP call FUNCTION with CHANNEL and the list of its ready\n"
+        + "events whenever CHANNEL is ready for one of EVENTS, a list of :READ,\n"
+        + ":WRITE, :ACCEPT and :CONNECT.  CHANNEL is a non-blocking channel or a\n"
+        + "stream made by SOCKET-CHANNEL-STREAM.  Registering a channel again\n"
+        + "replaces its events and function.")
+    private static final class pf_event_loop_register extends Primitive {
+        pf_event_loop_register() {
+            super("event-loop-register", PACKAGE_SYS, true,
+                  "event-loop channel events function");
+        }
+
+        @Override
+        public LispObject execute(LispObject loop, LispObject channel,
+                                  LispObject events, LispObject function) {
+            checkEventLoop(loop).register(channel, events, function);
+            return channel;
+        }
+    };
+
+    // ### event-loop-unregister event-loop channel => channel
+    private static final Primitive EVENT_LOOP_UNREGISTER
+        = new pf_event_loop_unregister();
+    @DocString(name="event-loop-unregister", args="event-loop channel",
+    doc="Stops EVENT-LOOP from watching CHANNEL.  Closing a channel also\n"
+        + "unregisters it.")
+    private static final class pf_event_loop_unregister extends Primitive {
+        pf_event_loop_unregister() {
+            super("event-loop-unregister", PACKAGE_SYS, true,
+                  "event-loop channel");
+        }
+
+        @Override
+        public LispObject execute(LispObject loop, LispObject channel) {
+            checkEventLoop(loop).unregister(channel);
+            return channel;
+        }
+    };
+
+    // ### event-loop-run-once event-loop &optional timeout => count
+    private static final Primitive EVENT_LOOP_RUN_ONCE
+        = new pf_event_loop_run_once();
+    @DocString(name="event-loop-run-once", args="event-loop &optional timeout",
+    doc="Waits for registered channels of EVENT-LOOP to become ready, at most\n"
+        + "TIMEOUT seconds if given, and calls their functions.  Returns the\n"
+        + "number of functions called.")
+    private static final class pf_event_loop_run_once extends Primitive {
+        pf_event_loop_run_once() {
+            super("event-loop-run-once", PACKAGE_SYS, true,
+                  "event-loop &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject loop) {
+            return execute(loop, NIL);
+        }
+
+        @Override
+        public LispObject execute(LispObject loop, LispObject timeout) {
+            long nanos = (timeout == NIL) ? -1 : LispThread.timeoutNanos(timeout);
+            return Fixnum.getInstance(checkEventLoop(loop).runOnce(nanos));
+        }
+    };
+
+    // ### event-loop-run event-loop => nil
+    private static final Primitive EVENT_LOOP_RUN = new pf_event_loop_run();
+    @DocString(name="event-loop-run", args="event-loop",
+    doc="Runs EVENT-LOOP in the calling thread until EVENT-LOOP-STOP is called\n"
+        + "or no channels are left to watch.")
+    private static final class pf_event_loop_run extends Primitive {
+        pf_event_loop_run() {
+            super("event-loop-run", PACKAGE_SYS, true, "event-loop");
+        }
+
+        @Override
+        public LispObject execute(LispObject loop) {
+            checkEventLoop(loop).run();
+            return NIL;
+        }
+    };
+
+    // ### event-loop-stop event-loop => nil
+    private static final Primitive EVENT_LOOP_STOP = new pf_event_loop_stop();
+    @DocString(name="event-loop-stop", args="event-loop",
+    doc="Makes EVENT-LOOP-RUN return once the callbacks it is running, if any,\n"
+        + "have returned.  May be called from any thread.")
+    private static final class pf_event_loop_stop extends Primitive {
+        pf_event_loop_stop() {
+            super("event-loop-stop", PACKAGE_SYS, true, "event-loop");
+        }
+
+        @Override
+        public LispObject execute(LispObject loop) {
+            checkEventLoop(loop).stop();
+            return NIL;
+        }
+    };
+
+    // ### event-loop-close event-loop => nil
+    private static final Primitive EVENT_LOOP_CLOSE = new pf_event_loop_close();
+    @DocString(name="event-loop-close", args="event-loop",
+    doc="Stops EVENT-LOOP and releases its selector.  The channels registered\n"
+        + "with it stay open.")
+    private static final class pf_event_loop_close extends Primitive {
+        pf_event_loop_close() {
+            super("event-loop-close", PACKAGE_SYS, true, "event-loop");
+        }
+
+        @Override
+        public LispObject execute(LispObject loop) {
+            checkEventLoop(loop).close();
+            return NIL;
+        }
+    };
+}
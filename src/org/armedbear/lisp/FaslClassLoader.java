@@ -34,6 +34,7 @@
 package org.armedbear.lisp;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import static org.armedbear.lisp.Lisp.*;
 
 
@@ -41,9 +42,16 @@ public class FaslClassLoader extends JavaClassLoader {
 
     private final String baseName;
     private final JavaObject boxedThis = new JavaObject(this);
+    /** The indexed fasl holding our classes, or null. */
+    private final FaslContainer container;
 
     public FaslClassLoader(String baseName) {
+        this(baseName, null);
+    }
+
+    public FaslClassLoader(String baseName, FaslContainer container) {
         this.baseName = baseName;
+        this.container = container;
     }
 
     @Override
@@ -92,6 +100,12 @@ public class FaslClassLoader extends JavaClassLoader {
             	if (c != null)
             		return c;                	
             }
+            if (container != null) {
+                ByteBuffer b = container.getEntry(classEntryName(name));
+                if (b != null) {
+                    return defineLispClass(name, b);
+                }
+            }
             byte[] b = getFunctionClassBytes(name);
             return defineLispClass(name, b, 0, b.length);
         } catch(Throwable e) { //TODO handle this better, readFunctionBytes uses Debug.assert() but should return null
@@ -101,8 +115,30 @@ public class FaslClassLoader extends JavaClassLoader {
         }
     }
 
+    private static String classEntryName(String className) {
+        return className.substring("org/armedbear/lisp/".length()) + "."
+            + Lisp._COMPILE_FILE_CLASS_EXTENSION_.symbolValue().getStringValue();
+    }
+
+    @Override
+    public byte[] getFunctionClassBytes(String name) {
+        if (container != null) {
+            byte[] b = container.getEntryBytes(classEntryName(name));
+            if (b != null) {
+                return b;
+            }
+        }
+        return super.getFunctionClassBytes(name);
+    }
+
     @Override
     public InputStream getResourceAsStream(String resourceName) {
+      if (container != null) {
+          InputStream in = container.getEntryAsStream(resourceName.substring("org/armedbear/lisp/".length()));
+          if (in != null) {
+              return in;
+          }
+      }
       final LispThread thread = LispThread.currentThread();
 
       Pathname name = new Pathname(resourceName.substring("org/armedbear/lisp/".length()));
@@ -122,7 +158,18 @@ public class FaslClassLoader extends JavaClassLoader {
       return null;
     }
 
+    /**
+     * Returns compiled function number FNNUMBER.  The functions of an
+     * indexed fasl are only defined when first called; see FaslFunction.
+     */
     public LispObject loadFunction(int fnNumber) {
+        if (container != null) {
+            return new FaslFunction(this, fnNumber);
+        }
+        return makeFunction(fnNumber);
+    }
+
+    LispObject makeFunction(int fnNumber) {
         //Function name is fnIndex + 1
         String name = baseName + "_" + (fnNumber + 1);
         try {
@@ -132,7 +179,9 @@ public class FaslClassLoader extends JavaClassLoader {
             }
             Function f = (Function) clz.newInstance();
             ClassLoader fcl = clz.getClassLoader();
-            if (fcl instanceof JavaClassLoader) {
+            // The class bytes of an indexed fasl are fetched from the
+            // container when asked for, instead of copied to the heap.
+            if (fcl instanceof JavaClassLoader && container == null) {
                 // Don't do this for system classes (though probably dont need this for other classes) 
                 f.setClassBytes(getFunctionClassBytes(name));
             }
@@ -152,7 +201,10 @@ public class FaslClassLoader extends JavaClassLoader {
 
         @Override
         public LispObject execute(LispObject baseName) {
-            return new FaslClassLoader(baseName.getStringValue()).boxedThis;
+            LispObject container = FaslContainer._FASL_CONTAINER_.symbolValue();
+            return new FaslClassLoader(baseName.getStringValue(),
+                                       container == NIL ? null
+                                       : (FaslContainer) container.javaInstance(FaslContainer.class)).boxedThis;
         }
 
     };
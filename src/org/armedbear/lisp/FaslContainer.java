@@ -0,0 +1,367 @@
+/*
+ * FaslContainer.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * An indexed fasl, as written by COMPILE-FILE when
+ * <code>*COMPILE-FILE-ZIP*</code> is <code>:INDEXED</code>.
+ *
+ * The file starts with the magic bytes "ABCLFASL", a version and the
+ * number of entries, followed by an index giving the name, offset and
+ * length of each entry, followed by the entries themselves: the init
+ * fasl as "__loader__._", the class files of the compiled functions
+ * and their external constant resources.  All numbers are big endian.
+ *
+ * Local files are memory mapped, so that looking up an entry costs a
+ * hash table probe and the class of a compiled function is defined
+ * straight from the mapped region.
+ */
+public final class FaslContainer
+{
+    static final byte[] MAGIC = { 'A', 'B', 'C', 'L', 'F', 'A', 'S', 'L' };
+    static final int VERSION = 1;
+    static final String LOADER = "__loader__._";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Pathname pathname;
+    private final ByteBuffer buffer;
+    private final HashMap<String,Entry> entries;
+    private final JavaObject boxedThis = new JavaObject(this);
+
+    private FaslContainer(Pathname pathname, ByteBuffer buffer) {
+        this.pathname = pathname;
+        this.buffer = buffer;
+        if (buffer.limit() < MAGIC.length + 8) {
+            throw new IllegalArgumentException("Not an indexed fasl.");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                throw new IllegalArgumentException("Not an indexed fasl.");
+            }
+        }
+        int version = buffer.getInt(MAGIC.length);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported indexed fasl version "
+                                               + version + ".");
+        }
+        int count = buffer.getInt(MAGIC.length + 4);
+        entries = new HashMap<String,Entry>(count * 2);
+        ByteBuffer index = buffer.duplicate();
+        index.position(MAGIC.length + 8);
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[index.getShort() & 0xffff];
+            index.get(name);
+            int offset = index.getInt();
+            int length = index.getInt();
+            if (offset < 0 || length < 0 || offset > buffer.limit() - length) {
+                throw new IllegalArgumentException("Corrupt indexed fasl entry.");
+            }
+            entries.put(new String(name, UTF8), new Entry(offset, length));
+        }
+    }
+
+    /**
+     * A view of the entries of PARENT whose names start with PREFIX,
+     * under their names without it.
+     */
+    FaslContainer(FaslContainer parent, String prefix) {
+        pathname = parent.pathname;
+        buffer = parent.buffer;
+        entries = new HashMap<String,Entry>();
+        for (Map.Entry<String,Entry> e : parent.entries.entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                entries.put(e.getKey().substring(prefix.length()), e.getValue());
+            }
+        }
+    }
+
+    public Pathname getPathname() {
+        return pathname;
+    }
+
+    public LispObject boxed() {
+        return boxedThis;
+    }
+
+    /** Returns true when the file at PATHNAME is an indexed fasl. */
+    public static boolean isContainer(Pathname pathname) {
+        InputStream input = pathname.getInputStream();
+        if (input == null) {
+            return false;
+        }
+        try {
+            byte[] bytes = new byte[MAGIC.length];
+            int n = 0;
+            while (n < bytes.length) {
+                int count = input.read(bytes, n, bytes.length - n);
+                if (count < 0) {
+                    return false;
+                }
+                n += count;
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (bytes[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                input.close();
+            } catch (IOException e) {} // ignore exceptions
+        }
+    }
+
+    /**
+     * Opens the indexed fasl at PATHNAME.  A local file is mapped into
+     * memory; a fasl inside a jar or behind a URL is read into the heap
+     * in one go.
+     */
+    public static FaslContainer open(Pathname pathname) {
+        try {
+            if (!(pathname.isJar() || pathname.isURL())) {
+                File file = pathname.getFile();
+                FileChannel channel = new java.io.RandomAccessFile(file, "r").getChannel();
+                try {
+                    // The mapping stays valid after the channel is closed.
+                    ByteBuffer buffer
+                        = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    return new FaslContainer(pathname, buffer);
+                } finally {
+                    channel.close();
+                }
+            }
+            InputStream input = pathname.getInputStream();
+            if (input == null) {
+                error(new FileError("Failed to open indexed fasl.", pathname));
+            }
+            return new FaslContainer(pathname, ByteBuffer.wrap(readAll(input)));
+        } catch (IOException e) {
+            error(new FileError("Failed to open indexed fasl: " + e.getMessage(),
+                                pathname));
+        } catch (IllegalArgumentException e) {
+            error(new FileError(e.getMessage(), pathname));
+        } catch (BufferUnderflowException e) {
+            error(new FileError("Truncated indexed fasl.", pathname));
+        }
+        // Not reached.
+        return null;
+    }
+
+    /**
+     * Returns a read-only view of the entry called NAME, or null if
+     * there is no such entry.
+     */
+    public ByteBuffer getEntry(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer b = buffer.duplicate();
+        b.limit(entry.offset + entry.length);
+        b.position(entry.offset);
+        return b.slice().asReadOnlyBuffer();
+    }
+
+    Set<String> getEntryNames() {
+        return entries.keySet();
+    }
+
+    public byte[] getEntryBytes(String name) {
+        ByteBuffer b = getEntry(name);
+        if (b == null) {
+            return null;
+        }
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        return bytes;
+    }
+
+    public InputStream getEntryAsStream(String name) {
+        ByteBuffer b = getEntry(name);
+        return b == null ? null : new ByteBufferInputStream(b);
+    }
+
+    private static final class Entry
+    {
+        final int offset;
+        final int length;
+
+        Entry(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + k);
+            return k;
+        }
+    }
+
+    static void write(File output, String[] names, byte[][] contents)
+        throws IOException
+    {
+        byte[][] encodedNames = new byte[names.length][];
+        long offset = MAGIC.length + 8;
+        for (int i = 0; i < names.length; i++) {
+            encodedNames[i] = names[i].getBytes(UTF8);
+            offset += 2 + encodedNames[i].length + 8;
+        }
+        DataOutputStream out
+            = new DataOutputStream(new java.io.BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                int length = contents[i].length;
+                if (offset + length > Integer.MAX_VALUE) {
+                    throw new IOException("Indexed fasl too large.");
+                }
+                out.writeShort(encodedNames[i].length);
+                out.write(encodedNames[i]);
+                out.writeInt((int) offset);
+                out.writeInt(length);
+                offset += length;
+            }
+            for (byte[] content : contents) {
+                out.write(content);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                bytes.write(chunk, 0, n);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    // ### write-fasl-container output pathnames => output
+    // Each entry is named by the FILE-NAMESTRING of its pathname.
+    private static final Primitive WRITE_FASL_CONTAINER = new pf_write_fasl_container();
+    private static final class pf_write_fasl_container extends Primitive {
+        pf_write_fasl_container() {
+            super("write-fasl-container", PACKAGE_SYS, false, "output pathnames");
+        }
+
+        @Override
+        public LispObject execute(LispObject output, LispObject pathnames) {
+            Pathname outputPathname = coerceToPathname(output);
+            int n = pathnames.length();
+            String[] names = new String[n];
+            byte[][] contents = new byte[n][];
+            try {
+                for (int i = 0; i < n; i++) {
+                    Pathname p = coerceToPathname(pathnames.car());
+                    names[i] = p.name.getStringValue()
+                        + "." + p.type.getStringValue();
+                    contents[i] = readAll(new java.io.FileInputStream(p.getFile()));
+                    pathnames = pathnames.cdr();
+                }
+                write(outputPathname.getFile(), names, contents);
+            } catch (IOException e) {
+                return error(new FileError("Failed to write indexed fasl: "
+                                           + e.getMessage(), outputPathname));
+            }
+            return output;
+        }
+    };
+
+    // ### *fasl-container*
+    // The container of the indexed fasl being loaded, or NIL.
+    static final Symbol _FASL_CONTAINER_ =
+        internSpecial("*FASL-CONTAINER*", PACKAGE_SYS, NIL);
+}
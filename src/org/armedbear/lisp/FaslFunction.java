@@ -0,0 +1,212 @@
+/*
+ * FaslFunction.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A compiled function of an indexed fasl whose class has not been
+ * defined yet.  The class is defined and instantiated by the
+ * FaslClassLoader on the first call.  That instance then replaces the
+ * stub in the function cell of its name, so that later calls through
+ * the name go to it directly.  References to the stub taken before,
+ * such as #'FOO stored by the fasl itself, keep passing their calls on
+ * to it.
+ */
+public final class FaslFunction extends Function
+{
+    /**
+     * The constructor of a compiled function reads its constants, so
+     * it runs with the values these had while the fasl was loading.
+     */
+    private static final Symbol[] loadSpecials = {
+        Load._FASL_UNINTERNED_SYMBOLS_, Symbol._PACKAGE_,
+        Symbol.LOAD_PATHNAME, Symbol.LOAD_TRUENAME, Symbol.LOAD_TRUENAME_FASL
+    };
+
+    private final FaslClassLoader loader;
+    private final int fnNumber;
+    private volatile Function function;
+    private LispObject[] loadValues;
+
+    FaslFunction(FaslClassLoader loader, int fnNumber) {
+        this.loader = loader;
+        this.fnNumber = fnNumber;
+        LispThread thread = LispThread.currentThread();
+        loadValues = new LispObject[loadSpecials.length];
+        for (int i = 0; i < loadSpecials.length; i++) {
+            loadValues[i] = loadSpecials[i].symbolValueNoThrow(thread);
+        }
+    }
+
+    public boolean isResolved() {
+        return function != null;
+    }
+
+    public Function resolve() {
+        Function f = function;
+        if (f == null) {
+            synchronized (this) {
+                f = function;
+                if (f == null) {
+                    final LispThread thread = LispThread.currentThread();
+                    final SpecialBindingsMark mark = thread.markSpecialBindings();
+                    try {
+                        for (int i = 0; i < loadSpecials.length; i++) {
+                            if (loadValues[i] != null) {
+                                thread.bindSpecial(loadSpecials[i], loadValues[i]);
+                            }
+                        }
+                        f = (Function) loader.makeFunction(fnNumber);
+                    } finally {
+                        thread.resetSpecialBindings(mark);
+                    }
+                    loadValues = null;
+                    // FSET and friends only ever saw the stub.
+                    if (getLambdaName() != null) {
+                        f.setLambdaName(getLambdaName());
+                    }
+                    LispObject lambdaList = getLambdaList();
+                    if (lambdaList != null && lambdaList != NIL) {
+                        f.setLambdaList(lambdaList);
+                    } else {
+                        setLambdaList(f.getLambdaList());
+                    }
+                    LispObject doc = getDocumentation(Symbol.FUNCTION);
+                    if (doc != NIL) {
+                        f.setDocumentation(Symbol.FUNCTION, doc);
+                    }
+                    function = f;
+                    install(f);
+                }
+            }
+        }
+        return f;
+    }
+
+    /** Puts F in place of the stub in the function cell of its name,
+     * unless something else, a TRACE wrapper say, took that place. */
+    private void install(Function f) {
+        LispObject name = getLambdaName();
+        if (name instanceof Symbol) {
+            Symbol symbol = (Symbol) name;
+            if (symbol.getSymbolFunction() == this) {
+                symbol.setSymbolFunction(f);
+            }
+        } else if (name != null && isValidSetfFunctionName(name)) {
+            Symbol symbol = (Symbol) name.cadr();
+            if (get(symbol, Symbol.SETF_FUNCTION, null) == this) {
+                put(symbol, Symbol.SETF_FUNCTION, f);
+            }
+        }
+    }
+
+    @Override
+    public LispObject getClassBytes() {
+        return resolve().getClassBytes();
+    }
+
+    @Override
+    public LispObject execute()
+    {
+        return resolve().execute();
+    }
+
+    @Override
+    public LispObject execute(LispObject arg)
+    {
+        return resolve().execute(arg);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second)
+    {
+        return resolve().execute(first, second);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second,
+                              LispObject third)
+    {
+        return resolve().execute(first, second, third);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second,
+                              LispObject third, LispObject fourth)
+    {
+        return resolve().execute(first, second, third, fourth);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second,
+                              LispObject third, LispObject fourth,
+                              LispObject fifth)
+    {
+        return resolve().execute(first, second, third, fourth, fifth);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second,
+                              LispObject third, LispObject fourth,
+                              LispObject fifth, LispObject sixth)
+    {
+        return resolve().execute(first, second, third, fourth, fifth, sixth);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second,
+                              LispObject third, LispObject fourth,
+                              LispObject fifth, LispObject sixth,
+                              LispObject seventh)
+    {
+        return resolve().execute(first, second, third, fourth, fifth, sixth,
+                                 seventh);
+    }
+
+    @Override
+    public LispObject execute(LispObject first, LispObject second,
+                              LispObject third, LispObject fourth,
+                              LispObject fifth, LispObject sixth,
+                              LispObject seventh, LispObject eighth)
+    {
+        return resolve().execute(first, second, third, fourth, fifth, sixth,
+                                 seventh, eighth);
+    }
+
+    @Override
+    public LispObject execute(LispObject[] args)
+    {
+        return resolve().execute(args);
+    }
+}
@@ -46,11 +46,13 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.UUID;
 
+import org.armedbear.lisp.util.MappedInputStream;
 import org.armedbear.lisp.util.RandomAccessCharacterFile;
 
 public final class FileStream extends Stream
 {
 	private final RandomAccessCharacterFile racf;
+	private final MappedInputStream mapped;
 	private final Pathname pathname;
 	private final int bytesPerUnit;
 
@@ -116,6 +118,7 @@ public final class FileStream extends Stream
 		// don't touch raf directly after passing it to racf.
 		// the state will become inconsistent if you do that.
 		racf = new RandomAccessCharacterFile(raf, encoding);
+		mapped = null;
 
 		this.pathname = pathname;
 		this.elementType = elementType;
@@ -141,6 +144,34 @@ public final class FileStream extends Stream
 		}
 	}
 
+	/** Opens a binary input stream which reads the file through
+	 * read-only memory mappings instead of a RandomAccessCharacterFile.
+	 */
+	public FileStream(Pathname pathname, String namestring,
+					  LispObject elementType)
+		throws IOException
+	{
+		super(Symbol.FILE_STREAM);
+
+		filename = namestring;
+		file = new File(namestring);
+		raf = new RandomAccessFile(file, "r");
+		try {
+			mapped = new MappedInputStream(raf.getChannel());
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		racf = null;
+
+		this.pathname = pathname;
+		this.elementType = elementType;
+		isInputStream = true;
+		isBinaryStream = true;
+		bytesPerUnit = Fixnum.getValue(elementType.cadr()) / 8;
+		initAsBinaryInputStream(mapped);
+	}
+
 	@Override
 	public LispObject typeOf()
 	{
@@ -183,7 +214,7 @@ public final class FileStream extends Stream
 		final long length;
 		if (isOpen()) {
 			try {
-				length = racf.length();
+				length = (mapped != null) ? mapped.length() : racf.length();
 			}
 			catch (IOException e) {
 				error(new StreamError(this, e));
@@ -215,7 +246,9 @@ public final class FileStream extends Stream
 	public void _clearInput()
 	{
 		try {
-		if (isInputStream) {
+		if (mapped != null) {
+		mapped.position(mapped.length());
+		} else if (isInputStream) {
 		racf.position(racf.length());
 		} else {
 		streamNotInputStream();
@@ -230,7 +263,7 @@ public final class FileStream extends Stream
 	protected long _getFilePosition()
 	{
 		try {
-			long pos = racf.position();
+			long pos = (mapped != null) ? mapped.position() : racf.position();
 			return pos / bytesPerUnit;
 		}
 		catch (IOException e) {
@@ -248,12 +281,17 @@ public final class FileStream extends Stream
 			if (arg == Keyword.START)
 				pos = 0;
 			else if (arg == Keyword.END)
-				pos = racf.length();
+				pos = (mapped != null) ? mapped.length() : racf.length();
 			else {
-				long n = Fixnum.getValue(arg); // FIXME arg might be a bignum
+				long n = arg.longValue();
 				pos = n * bytesPerUnit;
 			}
-			racf.position(pos);
+			if (mapped != null) {
+				if (pos > mapped.length())
+					return false;
+				mapped.position(pos);
+			} else
+				racf.position(pos);
 		}
 		catch (IOException e) {
 			error(new StreamError(this, e));
@@ -272,7 +310,10 @@ public final class FileStream extends Stream
 			} catch (Throwable t) {
 			}
 			*/
-			racf.close();
+			if (mapped != null)
+				mapped.close();
+			else
+				racf.close();
 			setOpen(false);
 			//System.out.println(String.format("FILESTREAM CLOSED %s#%s",String.valueOf(filename),uuid.toString()));
 			
@@ -303,7 +344,10 @@ public final class FileStream extends Stream
 		*/
 		
 		try {
-			racf.close();
+			if (mapped != null)
+				mapped.close();
+			else
+				racf.close();
 			setOpen(false);
 			raf.close();
 		} catch (Throwable t) {
@@ -382,4 +426,91 @@ public final class FileStream extends Stream
 			}
 		}
 	};
+
+	// ### make-mapped-file-stream pathname namestring element-type => stream
+	private static final Primitive MAKE_MAPPED_FILE_STREAM =
+		new Primitive("make-mapped-file-stream", PACKAGE_SYS, true,
+					  "pathname namestring element-type")
+	{
+		@Override
+		public LispObject execute(LispObject first, LispObject second,
+								  LispObject third)
+
+		{
+			final Pathname pathname;
+			if (first instanceof Pathname) {
+				pathname = (Pathname) first;
+			}
+			else {
+				return type_error(first, Symbol.PATHNAME);
+			}
+			final LispObject namestring = checkString(second);
+			if (third == Symbol.CHARACTER || third == Symbol.BASE_CHAR)
+				return error(new FileError("Only binary element types are supported for mapped files.", pathname));
+			if (pathname.isJar() || pathname.isURL())
+				return error(new FileError("Only local files can be mapped.", pathname));
+			try {
+				return new FileStream(pathname, namestring.getStringValue(),
+									  third);
+			}
+			catch (FileNotFoundException e) {
+				return NIL;
+			}
+			catch (IOException e) {
+				return error(new StreamError(null, e));
+			}
+		}
+	};
+
+	// ### mapped-file-vector stream &optional start end => vector
+	private static final Primitive MAPPED_FILE_VECTOR =
+		new Primitive("mapped-file-vector", PACKAGE_EXT, true,
+					  "stream &optional start end",
+					  "Returns an (unsigned-byte 8) vector sharing the bytes of the file\n"
+					  + "from START below END with STREAM, which must have been opened with\n"
+					  + ":MAPPED T.  The vector is read-only and stays valid after STREAM is\n"
+					  + "closed.")
+	{
+		@Override
+		public LispObject execute(LispObject arg)
+		{
+			return execute(arg, Fixnum.ZERO, NIL);
+		}
+
+		@Override
+		public LispObject execute(LispObject first, LispObject second)
+		{
+			return execute(first, second, NIL);
+		}
+
+		@Override
+		public LispObject execute(LispObject first, LispObject second,
+								  LispObject third)
+
+		{
+			if (!(first instanceof FileStream))
+				return type_error(first, Symbol.FILE_STREAM);
+			final FileStream stream = (FileStream) first;
+			if (stream.mapped == null)
+				return error(new StreamError(stream, stream.princToString()
+											 + " was not opened with :MAPPED T."));
+			final long length = stream.mapped.length();
+			final long start = second.longValue();
+			final long end = (third == NIL) ? length : third.longValue();
+			if (start < 0 || start > end || end > length)
+				return error(new LispError("Invalid range " + start + " below "
+										   + end + " for a file of "
+										   + length + " bytes."));
+			if (end - start > Integer.MAX_VALUE)
+				return error(new LispError("The range " + start + " below "
+										   + end + " is too large for a vector."));
+			try {
+				return new BasicVector_ByteBuffer(stream.mapped.map(start,
+																   (int) (end - start)));
+			}
+			catch (IOException e) {
+				return error(new StreamError(stream, e));
+			}
+		}
+	};
 }
@@ -190,7 +190,7 @@ public abstract class Function extends Operator
                             new JavaObject(bytes));
     }
 
-    public final LispObject getClassBytes() {
+    public LispObject getClassBytes() {
 	LispObject o = getf(propertyList, Symbol.CLASS_BYTES, NIL);
 	if(o != NIL) {
 	    return o;
@@ -0,0 +1,240 @@
+/*
+ * GenericCallSite.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inline cache for one call site of a generic function in compiled
+ * code.
+ *
+ * <p>The compiler emits one instance per call site of a function which
+ * is a standard generic function at compile time, and calls it instead
+ * of the symbol's function.  The cache remembers the effective method
+ * for the last few combinations of argument specializations (usually
+ * the classes of the arguments) seen at this site.  A hit calls the
+ * effective method directly, without going through the discriminating
+ * function and the <tt>EMFCache</tt> hash lookup it does.
+ *
+ * <p>An entry is only used while the symbol still names the generic
+ * function it was filled for, the generic function's
+ * <tt>EMFCache</tt> hasn't been cleared (which happens whenever its
+ * methods change) and no instances have been made obsolete since.
+ * Misses always go through the generic function itself, so they behave
+ * exactly like an ordinary call; the cache is filled afterwards from
+ * what the generic function put into its own <tt>EMFCache</tt>.
+ */
+public final class GenericCallSite
+{
+  // Beyond this many entries, the site is megamorphic and no longer grows.
+  private static final int MAX_ENTRIES = 4;
+  // Generic functions which don't use their EMFCache (accessors, or those
+  // with a single method) never fill the cache; give up on them after
+  // this many tries.
+  private static final int MAX_FAILED_FILLS = 16;
+
+  private static final Entry[] NO_ENTRIES = new Entry[0];
+
+  private static LispObject standardGenericFunctionClass;
+
+  final Symbol name;
+  private volatile Entry[] entries = NO_ENTRIES;
+  private volatile boolean disabled;
+  private int failedFills;
+
+  public GenericCallSite(Symbol name)
+  {
+    this.name = name;
+  }
+
+  public LispObject execute(LispObject arg)
+  {
+    final LispObject f = name.getSymbolFunction();
+    if (disabled || !(f instanceof FuncallableStandardObject))
+      return name.execute(arg);
+    final FuncallableStandardObject gf = (FuncallableStandardObject) f;
+    final EMFCache cache = gf.cache;
+    final LispObject k0 = cache.getArgSpecialization(arg);
+    final Entry e = find(gf, k0, null, null);
+    if (e != null)
+      return e.emf.execute(list(arg));
+    final LispObject result = gf.execute(arg);
+    fill(gf, 1, k0, null, null);
+    return result;
+  }
+
+  public LispObject execute(LispObject first, LispObject second)
+  {
+    final LispObject f = name.getSymbolFunction();
+    if (disabled || !(f instanceof FuncallableStandardObject))
+      return name.execute(first, second);
+    final FuncallableStandardObject gf = (FuncallableStandardObject) f;
+    final EMFCache cache = gf.cache;
+    final LispObject k0 = cache.getArgSpecialization(first);
+    final LispObject k1 = cache.getArgSpecialization(second);
+    final Entry e = find(gf, k0, k1, null);
+    if (e != null)
+      return e.emf.execute(list(first, second));
+    final LispObject result = gf.execute(first, second);
+    fill(gf, 2, k0, k1, null);
+    return result;
+  }
+
+  public LispObject execute(LispObject first, LispObject second,
+                            LispObject third)
+  {
+    final LispObject f = name.getSymbolFunction();
+    if (disabled || !(f instanceof FuncallableStandardObject))
+      return name.execute(first, second, third);
+    final FuncallableStandardObject gf = (FuncallableStandardObject) f;
+    final EMFCache cache = gf.cache;
+    final LispObject k0 = cache.getArgSpecialization(first);
+    final LispObject k1 = cache.getArgSpecialization(second);
+    final LispObject k2 = cache.getArgSpecialization(third);
+    final Entry e = find(gf, k0, k1, k2);
+    if (e != null)
+      return e.emf.execute(list(first, second, third));
+    final LispObject result = gf.execute(first, second, third);
+    fill(gf, 3, k0, k1, k2);
+    return result;
+  }
+
+  private Entry find(FuncallableStandardObject gf,
+                     LispObject k0, LispObject k1, LispObject k2)
+  {
+    final Entry[] es = entries;
+    if (es.length == 0)
+      return null;
+    // All entries are filled for the same generic function and
+    // generation, so checking the first one is enough.
+    if (!es[0].isValidFor(gf))
+      {
+        entries = NO_ENTRIES;
+        return null;
+      }
+    for (int i = 0; i < es.length; i++)
+      {
+        final Entry e = es[i];
+        if (e.k0 == k0 && e.k1 == k1 && e.k2 == k2)
+          return e;
+      }
+    return null;
+  }
+
+  // Called after a miss, once the generic function has been called and
+  // so has cached the effective method for these arguments if it can.
+  private void fill(FuncallableStandardObject gf, int numArgs,
+                    LispObject k0, LispObject k1, LispObject k2)
+  {
+    if (standardGenericFunctionClass == null)
+      standardGenericFunctionClass
+        = LispClass.findClass(Symbol.STANDARD_GENERIC_FUNCTION);
+    // Subclasses may compute their own discriminating function, which
+    // we mustn't bypass.
+    if (gf.classOf() != standardGenericFunctionClass)
+      {
+        disabled = true;
+        return;
+      }
+    final int epoch = EMFCache.classEpoch;
+    final ConcurrentHashMap<EMFCache.CacheEntry,LispObject> map
+      = gf.cache.cache;
+    final int numberOfRequiredArgs
+      = gf.getInstanceSlotValue(Symbol.REQUIRED_ARGS).length();
+    LispObject emf = null;
+    if (numberOfRequiredArgs <= numArgs)
+      {
+        // The same specializations the generic function computed for
+        // its own cache key, which holds them in reverse order.
+        final LispObject[] keys = { k0, k1, k2 };
+        final LispObject[] array = new LispObject[numberOfRequiredArgs];
+        for (int i = numberOfRequiredArgs; i-- > 0;)
+          array[i] = keys[numberOfRequiredArgs - 1 - i];
+        emf = EMFCache.lookup(map, array);
+      }
+    synchronized (this)
+      {
+        if (emf == null)
+          {
+            if (++failedFills > MAX_FAILED_FILLS)
+              disabled = true;
+            return;
+          }
+        Entry[] es = entries;
+        if (es.length > 0 && !es[0].isValidFor(gf))
+          es = NO_ENTRIES;
+        if (es.length >= MAX_ENTRIES)
+          return;
+        final Entry[] newEntries = new Entry[es.length + 1];
+        System.arraycopy(es, 0, newEntries, 0, es.length);
+        // The entry is keyed on all the arguments seen here, which may be
+        // more than the generic function dispatches on; that only costs
+        // some redundant entries.
+        newEntries[es.length] = new Entry(gf, map, epoch, k0, k1, k2, emf);
+        entries = newEntries;
+      }
+  }
+
+  private static final class Entry
+  {
+    final FuncallableStandardObject gf;
+    final ConcurrentHashMap<EMFCache.CacheEntry,LispObject> map;
+    final int epoch;
+    final LispObject k0;
+    final LispObject k1;
+    final LispObject k2;
+    final LispObject emf;
+
+    Entry(FuncallableStandardObject gf,
+          ConcurrentHashMap<EMFCache.CacheEntry,LispObject> map, int epoch,
+          LispObject k0, LispObject k1, LispObject k2, LispObject emf)
+    {
+      this.gf = gf;
+      this.map = map;
+      this.epoch = epoch;
+      this.k0 = k0;
+      this.k1 = k1;
+      this.k2 = k2;
+      this.emf = emf;
+    }
+
+    boolean isValidFor(FuncallableStandardObject gf)
+    {
+      return this.gf == gf
+        && map == gf.cache.cache
+        && epoch == EMFCache.classEpoch;
+    }
+  }
+}
@@ -43,14 +43,26 @@ public class HashTable
 {
 
     protected static final float loadFactor = 0.75f;
+    // Tables with at least this many buckets grow incrementally: the old
+    // bucket array stays live while later calls to put(), get() and
+    // remove() migrate INCREMENTAL_REHASH_STEP of its buckets at a time.
+    static final int INCREMENTAL_REHASH_MIN_SIZE = 1 << 14;
+    static final int INCREMENTAL_REHASH_STEP = 8;
     protected final LispObject rehashSize;
     protected final LispObject rehashThreshold;
-    // The rounded product of the capacity and the load factor. When the number
-    // of elements exceeds the threshold, the implementation calls rehash().
+    // The rounded product of the capacity and the rehash threshold. When the
+    // number of elements exceeds the threshold, the implementation calls
+    // rehash().
     protected int threshold;
     // Array containing the actual key-value mappings.
     @SuppressWarnings("VolatileArrayField")
     protected volatile HashEntry[] buckets;
+    // While an incremental rehash is in progress, the previous bucket array.
+    // Buckets below migrated have been copied into buckets; the others
+    // still hold the only copy of their entries.
+    @SuppressWarnings("VolatileArrayField")
+    private volatile HashEntry[] oldBuckets;
+    private int migrated;
     // The number of key-value pairs.
     protected volatile int count;
     final Comparator comparator;
@@ -60,8 +72,9 @@ public class HashTable
             LispObject rehashThreshold) {
         this.rehashSize = rehashSize;
         this.rehashThreshold = rehashThreshold;
-        buckets = new HashEntry[size];
-        threshold = (int) (size * loadFactor);
+        final int capacity = calculateInitialCapacity(size);
+        buckets = new HashEntry[capacity];
+        threshold = thresholdFor(capacity);
         comparator = c;
     }
 
@@ -73,6 +86,40 @@ public class HashTable
         return capacity;
     }
 
+    // The number of entries a table with CAPACITY buckets may hold before it
+    // needs to grow, according to the table's rehash threshold.
+    protected int thresholdFor(int capacity) {
+        float f = loadFactor;
+        if (rehashThreshold != null && rehashThreshold.realp()) {
+            final double d = rehashThreshold.doubleValue();
+            if (d > 0 && d <= 1) {
+                f = (float) d;
+            }
+        }
+        return Math.max(1, (int) (capacity * f));
+    }
+
+    // The capacity to grow a table with CAPACITY buckets to, according to
+    // the table's rehash size.  Bucket indices are computed by masking, so
+    // the result is rounded up to the next power of two.
+    protected int nextCapacity(int capacity) {
+        long requested = (long) capacity * 2;
+        if (rehashSize != null && rehashSize.realp()) {
+            if (rehashSize.integerp()) {
+                requested = capacity + (long) rehashSize.doubleValue();
+            } else {
+                requested = (long) (capacity * rehashSize.doubleValue());
+            }
+        }
+        if (requested <= capacity) {
+            requested = capacity + 1;
+        }
+        if (requested > (1 << 30)) {
+            return 1 << 30;
+        }
+        return calculateInitialCapacity((int) requested);
+    }
+
     public static HashTable newEqHashTable(int size, LispObject rehashSize,
             LispObject rehashThreshold) {
         return new HashTable(new Comparator(), size, rehashSize, rehashThreshold);
@@ -137,7 +184,7 @@ public class HashTable
         }
         if (obj instanceof HashTable) {
             HashTable ht = (HashTable) obj;
-            if (count != ht.count) {
+            if (getCount() != ht.getCount()) {
                 return false;
             }
             if (getTest() != ht.getTest()) {
@@ -161,6 +208,7 @@ public class HashTable
     @Override
     public LispObject getParts() {
         // No need to take out a read lock, for the same reason as MAPHASH
+        settle();
         HashEntry[] b = buckets;
         LispObject parts = NIL;
         for (int i = 0; i < b.length; i++) {
@@ -177,6 +225,7 @@ public class HashTable
     public void clear() {
         lock.lock();
         try {
+            oldBuckets = null;
             buckets = new HashEntry[buckets.length];
             count = 0;
         } finally {
@@ -235,14 +284,15 @@ public class HashTable
         sb.append(' ');
         sb.append(Symbol.HASH_TABLE.princToString());
         sb.append(' ');
-        sb.append(count);
-        if (count == 1) {
+        final int n = getCount();
+        sb.append(n);
+        if (n == 1) {
             sb.append(" entry");
         } else {
             sb.append(" entries");
         }
         sb.append(", ");
-        sb.append(buckets.length);
+        sb.append(getSize());
         sb.append(" buckets");
         return new SimpleString(unreadableString(sb.toString()));
     }
@@ -252,7 +302,10 @@ public class HashTable
     }
 
     protected HashEntry getEntry(LispObject key) {
-        HashEntry[] b = buckets;
+        return getEntry(buckets, key);
+    }
+
+    private HashEntry getEntry(HashEntry[] b, LispObject key) {
         int hash = comparator.hash(key);
         HashEntry e = b[hash & (b.length - 1)];
         while (e != null) {
@@ -266,7 +319,25 @@ public class HashTable
     }
 
     public LispObject get(LispObject key) {
-        HashEntry e = getEntry(key);
+        // Read buckets before oldBuckets: rehash() publishes them in the
+        // opposite order, so if this sees the new array it will also see
+        // that a migration is in progress.
+        final HashEntry[] b = buckets;
+        HashEntry e;
+        if (oldBuckets != null) {
+            // An incremental rehash is in progress: entries may live in
+            // either bucket array, so look them up under the lock, and
+            // help the migration along while we hold it.
+            lock.lock();
+            try {
+                stepRehash();
+                e = findEntry(key);
+                return (e == null) ? null : e.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+        e = getEntry(b, key);
         LispObject v = (e == null) ? null : e.value;
 
         if (e == null || v != null) {
@@ -281,10 +352,35 @@ public class HashTable
         }
     }
 
+    // Like getEntry(), but also looks in the part of oldBuckets which has
+    // not been migrated yet.  Called with the lock held.
+    private HashEntry findEntry(LispObject key) {
+        HashEntry e = getEntry(key);
+        final HashEntry[] old = oldBuckets;
+        if (e == null && old != null) {
+            int hash = comparator.hash(key);
+            int index = hash & (old.length - 1);
+            if (index >= migrated) {
+                e = old[index];
+                while (e != null) {
+                    if (hash == e.hash &&
+                            (key == e.key || comparator.keysEqual(key, e.key))) {
+                        return e;
+                    }
+                    e = e.next;
+                }
+            }
+        }
+        return e;
+    }
+
     public void put(LispObject key, LispObject value) {
         lock.lock();
         try {
-            HashEntry e = getEntry(key);
+            if (oldBuckets != null) {
+                stepRehash();
+            }
+            HashEntry e = findEntry(key);
             if (e != null) {
                 e.value = value;
             } else {
@@ -305,52 +401,120 @@ public class HashTable
     public LispObject remove(LispObject key) {
         lock.lock();
         try {
-            int index = comparator.hash(key) & (buckets.length - 1);
-
-            HashEntry e = buckets[index];
-            HashEntry last = null;
-            while (e != null) {
-                if (comparator.keysEqual(key, e.key)) {
-                    if (last == null) {
-                        buckets[index] = e.next;
-                    } else {
-                        last.next = e.next;
-                    }
-                    --count;
-                    return e.value;
+            final HashEntry[] old = oldBuckets;
+            if (old != null) {
+                stepRehash();
+            }
+            final int hash = comparator.hash(key);
+            LispObject value = removeFromChain(buckets, hash, key);
+            if (value == null && oldBuckets != null) {
+                int index = hash & (old.length - 1);
+                if (index >= migrated) {
+                    value = removeFromChain(old, hash, key);
                 }
-                last = e;
-                e = e.next;
             }
-            return null;
+            if (value != null) {
+                --count;
+            }
+            return value;
         } finally {
             lock.unlock();
         }
     }
 
+    private LispObject removeFromChain(HashEntry[] b, int hash,
+                                       LispObject key) {
+        int index = hash & (b.length - 1);
+
+        HashEntry e = b[index];
+        HashEntry last = null;
+        while (e != null) {
+            if (comparator.keysEqual(key, e.key)) {
+                if (last == null) {
+                    b[index] = e.next;
+                } else {
+                    last.next = e.next;
+                }
+                return e.value;
+            }
+            last = e;
+            e = e.next;
+        }
+        return null;
+    }
+
     protected void rehash() {
         lock.lock();
         try {
-            final int newCapacity = buckets.length * 2;
-            threshold = (int) (newCapacity * loadFactor);
-            int mask = newCapacity - 1;
-            HashEntry[] newBuckets = new HashEntry[newCapacity];
-
-            for (int i = buckets.length; i-- > 0;) {
-                HashEntry e = buckets[i];
-                while (e != null) {
-                    final int index = comparator.hash(e.key) & mask;
-                    newBuckets[index] = new HashEntry(e.key, e.hash, e.value,
-                            newBuckets[index]);
-                    e = e.next;
-                }
+            if (oldBuckets != null) {
+                finishRehash();
+            }
+            final HashEntry[] old = buckets;
+            final int newCapacity = nextCapacity(old.length);
+            if (newCapacity == old.length) {
+                // Can't grow any further.
+                threshold = Integer.MAX_VALUE;
+                return;
+            }
+            threshold = thresholdFor(newCapacity);
+            migrated = 0;
+            oldBuckets = old;
+            buckets = new HashEntry[newCapacity];
+            if (old.length < INCREMENTAL_REHASH_MIN_SIZE) {
+                finishRehash();
+            } else {
+                stepRehash();
             }
-            buckets = newBuckets;
         } finally {
             lock.unlock();
         }
     }
 
+    // Copy the entries of the next few not yet migrated buckets of
+    // oldBuckets into buckets.  Called with the lock held.
+    //
+    // Entries are copied rather than relinked, so that readers which
+    // fetched the old bucket array without the lock still see intact
+    // chains.  For the same reason the old array is left alone until the
+    // migration is complete.
+    private void stepRehash() {
+        final HashEntry[] old = oldBuckets;
+        final HashEntry[] b = buckets;
+        final int mask = b.length - 1;
+        final int end = Math.min(old.length, migrated + INCREMENTAL_REHASH_STEP);
+        for (int i = migrated; i < end; i++) {
+            HashEntry e = old[i];
+            while (e != null) {
+                final int index = e.hash & mask;
+                b[index] = new HashEntry(e.key, e.hash, e.value, b[index]);
+                e = e.next;
+            }
+        }
+        migrated = end;
+        if (end == old.length) {
+            oldBuckets = null;
+        }
+    }
+
+    private void finishRehash() {
+        while (oldBuckets != null) {
+            stepRehash();
+        }
+    }
+
+    // Complete an incremental rehash in progress, so that the bucket array
+    // alone holds every entry.
+    private void settle() {
+        if (oldBuckets != null) {
+            lock.lock();
+            try {
+                finishRehash();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
 
     public LispObject ENTRIES() {
         return getEntries();
@@ -359,6 +523,7 @@ public class HashTable
     // Returns a list of (key . value) pairs.        
     public LispObject getEntries() {
         // No need to take out a read lock, for the same reason as MAPHASH
+        settle();
         HashEntry[] b = buckets;
         LispObject list = NIL;
         for (int i = b.length; i-- > 0;) {
@@ -376,6 +541,7 @@ public class HashTable
         // lock, which would block the scenario where put() is called to
         // set the value of the current entry
 
+        settle();
         HashEntry[] b = buckets;
         for (int i = b.length; i-- > 0;) {
             HashEntry e = b[i];
@@ -465,7 +631,7 @@ public class HashTable
     @Override
     public int psxhash() {
         long result = 2062775257; // Chosen at random.
-        result = mix(result, count);
+        result = mix(result, getCount());
         result = mix(result, getTest().sxhash());
         return (int) (result & 0x7fffffff);
     }
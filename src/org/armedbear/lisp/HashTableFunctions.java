@@ -74,6 +74,73 @@ public final class HashTableFunctions
     };
 
 
+  private static final Primitive _MAKE_CONCURRENT_HASH_TABLE
+      = new pf__make_concurrent_hash_table();
+  @DocString(name="%make-concurrent-hash-table")
+  private static final class pf__make_concurrent_hash_table extends Primitive {
+      pf__make_concurrent_hash_table() {
+        super("%make-concurrent-hash-table", PACKAGE_SYS, false);
+      }
+
+      @Override
+      public LispObject execute(LispObject test, LispObject size,
+                                LispObject rehashSize,
+                                LispObject rehashThreshold)
+      {
+        final int n = Fixnum.getValue(size);
+        if (test == FUNCTION_EQL || test == NIL)
+          return ConcurrentHashTable.newEqlHashTable(n, rehashSize,
+                                                     rehashThreshold);
+        if (test == FUNCTION_EQ)
+          return ConcurrentHashTable.newEqHashTable(n, rehashSize,
+                                                    rehashThreshold);
+        if (test == FUNCTION_EQUAL)
+          return ConcurrentHashTable.newEqualHashTable(n, rehashSize,
+                                                       rehashThreshold);
+        if (test == FUNCTION_EQUALP)
+          return ConcurrentHashTable.newEqualpHashTable(n, rehashSize,
+                                                        rehashThreshold);
+        return error(new LispError("Unsupported test for MAKE-HASH-TABLE: " +
+                                    test.princToString()));
+      }
+    };
+
+  private static final Primitive _MAKE_SPECIALIZED_HASH_TABLE
+      = new pf__make_specialized_hash_table();
+  @DocString(name="%make-specialized-hash-table")
+  private static final class pf__make_specialized_hash_table extends Primitive {
+      pf__make_specialized_hash_table() {
+        super("%make-specialized-hash-table", PACKAGE_SYS, false);
+      }
+
+      @Override
+      public LispObject execute(LispObject test, LispObject keyType,
+                                LispObject size, LispObject rehashSize,
+                                LispObject rehashThreshold)
+      {
+        final int n = Fixnum.getValue(size);
+        final HashTable.Comparator c;
+        if (test == FUNCTION_EQL || test == NIL)
+          c = new HashTable.EqlComparator();
+        else if (test == FUNCTION_EQ)
+          c = new HashTable.Comparator();
+        else if (test == FUNCTION_EQUAL)
+          c = new HashTable.EqualComparator();
+        else
+          return error(new LispError("Unsupported test for a hash table with key type " +
+                                     keyType.princToString() + ": " +
+                                     test.princToString()));
+        if (keyType == Symbol.FIXNUM)
+          return IntKeyHashTable.newFixnumHashTable(c, n, rehashSize,
+                                                    rehashThreshold);
+        if (keyType == Symbol.CHARACTER)
+          return IntKeyHashTable.newCharacterHashTable(c, n, rehashSize,
+                                                       rehashThreshold);
+        return error(new LispError("Unsupported key type for MAKE-HASH-TABLE: " +
+                                    keyType.princToString()));
+      }
+    };
+
   private static final Primitive _MAKE_WEAK_HASH_TABLE 
     = new pf__make_weak_hash_table();
   @DocString(name="%make-weak-hash-table")
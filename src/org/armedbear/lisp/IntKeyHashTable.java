@@ -0,0 +1,352 @@
+/*
+ * IntKeyHashTable.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * An open addressing hash table whose keys are all fixnums or all
+ * characters, as created by <code>(make-hash-table :key-type
+ * 'fixnum)</code> or <code>(make-hash-table :key-type 'character)</code>.
+ *
+ * Keys are stored unboxed in an <code>int[]</code> next to an array of
+ * values, so an entry costs two array slots instead of a
+ * <code>HashEntry</code> plus a boxed key.  Collisions are resolved by
+ * linear probing.
+ *
+ * As for HashTable, writers take a lock and readers don't.  A slot's
+ * key is written before its value is published and never changes
+ * until the table is rebuilt; removed entries leave a tombstone behind
+ * which is only cleared by the next rehash.  A reader which sees a
+ * live value therefore always sees the key that goes with it.
+ */
+public abstract class IntKeyHashTable extends HashTable
+{
+    // Marks the value slot of a removed entry.
+    private static final LispObject TOMBSTONE = new LispObject();
+
+    private volatile Table table;
+    // The number of tombstones in the current table.
+    private int removed;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    protected IntKeyHashTable(Comparator c, int size, LispObject rehashSize,
+                              LispObject rehashThreshold) {
+        super(c, 0, rehashSize, rehashThreshold);
+        setTable(new Table(calculateInitialCapacity(size)));
+    }
+
+    public static HashTable newFixnumHashTable(Comparator c, int size,
+                                               LispObject rehashSize,
+                                               LispObject rehashThreshold) {
+        return new FixnumHashTable(c, size, rehashSize, rehashThreshold);
+    }
+
+    public static HashTable newCharacterHashTable(Comparator c, int size,
+                                                  LispObject rehashSize,
+                                                  LispObject rehashThreshold) {
+        return new CharacterHashTable(c, size, rehashSize, rehashThreshold);
+    }
+
+    /** Whether KEY can be stored in this table. */
+    protected abstract boolean isKey(LispObject key);
+
+    /** The unboxed representation of KEY, which satisfies isKey(). */
+    protected abstract int unbox(LispObject key);
+
+    protected abstract LispObject box(int key);
+
+    /** The type of the keys of this table, for error reporting. */
+    protected abstract Symbol getKeyType();
+
+    private static int indexFor(int key, int mask) {
+        int h = key * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void setTable(Table t) {
+        // Always leave at least one free slot, so probing terminates.
+        threshold = Math.min(thresholdFor(t.keys.length),
+                             t.keys.length - 1);
+        removed = 0;
+        table = t;
+    }
+
+    @Override
+    public int getSize() {
+        return table.keys.length;
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            setTable(new Table(table.keys.length));
+            count = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected HashEntry getEntry(LispObject key) {
+        // There are no HashEntry objects in this table; see get().
+        return null;
+    }
+
+    @Override
+    public LispObject get(LispObject key) {
+        if (!isKey(key)) {
+            return null;
+        }
+        final int k = unbox(key);
+        final Table t = table;
+        final int mask = t.keys.length - 1;
+        for (int i = indexFor(k, mask); ; i = (i + 1) & mask) {
+            final LispObject value = t.values.get(i);
+            if (value == null) {
+                return null;
+            }
+            if (value != TOMBSTONE && t.keys[i] == k) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void put(LispObject key, LispObject value) {
+        if (!isKey(key)) {
+            type_error(key, getKeyType());
+        }
+        final int k = unbox(key);
+        lock.lock();
+        try {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            int i = indexFor(k, mask);
+            for (LispObject v; (v = t.values.get(i)) != null;
+                 i = (i + 1) & mask) {
+                if (v != TOMBSTONE && t.keys[i] == k) {
+                    t.values.set(i, value);
+                    return;
+                }
+            }
+            // Not found.  Tombstones aren't reused, so the new entry
+            // always goes into a free slot.
+            if (count + removed + 1 > threshold) {
+                rehash();
+                t = table;
+                mask = t.keys.length - 1;
+                i = indexFor(k, mask);
+                while (t.values.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+            }
+            t.keys[i] = k;
+            t.values.set(i, value);
+            ++count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LispObject remove(LispObject key) {
+        if (!isKey(key)) {
+            return null;
+        }
+        final int k = unbox(key);
+        lock.lock();
+        try {
+            final Table t = table;
+            final int mask = t.keys.length - 1;
+            for (int i = indexFor(k, mask); ; i = (i + 1) & mask) {
+                final LispObject value = t.values.get(i);
+                if (value == null) {
+                    return null;
+                }
+                if (value != TOMBSTONE && t.keys[i] == k) {
+                    t.values.set(i, TOMBSTONE);
+                    --count;
+                    ++removed;
+                    return value;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected void rehash() {
+        lock.lock();
+        try {
+            final Table old = table;
+            int capacity = old.keys.length;
+            // If removals account for much of the load, rebuilding at the
+            // same size is enough to get rid of the tombstones.
+            if (count + 1 > threshold / 2 || removed == 0) {
+                capacity = nextCapacity(capacity);
+            }
+            final Table t = new Table(capacity);
+            final int mask = capacity - 1;
+            for (int j = 0; j < old.keys.length; j++) {
+                final LispObject value = old.values.get(j);
+                if (value != null && value != TOMBSTONE) {
+                    int i = indexFor(old.keys[j], mask);
+                    while (t.values.get(i) != null) {
+                        i = (i + 1) & mask;
+                    }
+                    t.keys[i] = old.keys[j];
+                    t.values.set(i, value);
+                }
+            }
+            setTable(t);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns a list of (key . value) pairs.
+    @Override
+    public LispObject getEntries() {
+        final Table t = table;
+        LispObject list = NIL;
+        for (int i = t.keys.length; i-- > 0;) {
+            final LispObject value = t.values.get(i);
+            if (value != null && value != TOMBSTONE) {
+                list = new Cons(new Cons(box(t.keys[i]), value), list);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public LispObject getParts() {
+        final Table t = table;
+        LispObject parts = NIL;
+        for (int i = 0; i < t.keys.length; i++) {
+            final LispObject value = t.values.get(i);
+            if (value != null && value != TOMBSTONE) {
+                parts = parts.push(new Cons("KEY [slot " + i + "]",
+                                            box(t.keys[i])));
+                parts = parts.push(new Cons("VALUE", value));
+            }
+        }
+        return parts.nreverse();
+    }
+
+    @Override
+    public LispObject MAPHASH(LispObject function) {
+        // As in HashTable, walk a snapshot of the table without the lock.
+        final Table t = table;
+        for (int i = t.keys.length; i-- > 0;) {
+            final LispObject value = t.values.get(i);
+            if (value != null && value != TOMBSTONE) {
+                function.execute(box(t.keys[i]), value);
+            }
+        }
+        return NIL;
+    }
+
+    private static final class Table
+    {
+        final int[] keys;
+        // A null value marks a free slot.
+        final AtomicReferenceArray<LispObject> values;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<LispObject>(capacity);
+        }
+    }
+
+    private static final class FixnumHashTable extends IntKeyHashTable
+    {
+        FixnumHashTable(Comparator c, int size, LispObject rehashSize,
+                        LispObject rehashThreshold) {
+            super(c, size, rehashSize, rehashThreshold);
+        }
+
+        @Override
+        protected boolean isKey(LispObject key) {
+            return key instanceof Fixnum;
+        }
+
+        @Override
+        protected int unbox(LispObject key) {
+            return ((Fixnum) key).value;
+        }
+
+        @Override
+        protected LispObject box(int key) {
+            return Fixnum.getInstance(key);
+        }
+
+        @Override
+        protected Symbol getKeyType() {
+            return Symbol.FIXNUM;
+        }
+    }
+
+    private static final class CharacterHashTable extends IntKeyHashTable
+    {
+        CharacterHashTable(Comparator c, int size, LispObject rehashSize,
+                           LispObject rehashThreshold) {
+            super(c, size, rehashSize, rehashThreshold);
+        }
+
+        @Override
+        protected boolean isKey(LispObject key) {
+            return key instanceof LispCharacter;
+        }
+
+        @Override
+        protected int unbox(LispObject key) {
+            return ((LispCharacter) key).value;
+        }
+
+        @Override
+        protected LispObject box(int key) {
+            return LispCharacter.getInstance((char) key);
+        }
+
+        @Override
+        protected Symbol getKeyType() {
+            return Symbol.CHARACTER;
+        }
+    }
+}
@@ -56,6 +56,7 @@ public final class Interpreter
     private static boolean nosystem = false;
     private static boolean noinform = false;
     private static boolean help = false;
+    private static String loadBundle = null;
     private static boolean doubledash = false;
 
     public static Interpreter getInstance() {
@@ -101,12 +102,19 @@ public final class Interpreter
             double uptime = (System.currentTimeMillis() - Main.startTimeMillis) / 1000.0;
 		getStandardOutput()._writeString("Low-level initialization completed in " + uptime + " seconds.\n");
         }
-        initializeLisp();
-        initializeTopLevel();
-        if (!nosystem) 
-            initializeSystem();
-        if (!noinit)
-            processInitializationFile();
+        if (loadBundle != null) {
+            // The bundle replays the system and init files loaded before
+            // it was saved.
+            replayLoadBundle(loadBundle);
+            initializeTopLevel();
+        } else {
+            initializeLisp();
+            initializeTopLevel();
+            if (!nosystem)
+                initializeSystem();
+            if (!noinit)
+                processInitializationFile();
+        }
         doubledash = false;
         if (args != null)
             postprocessCommandLineArguments(args);
@@ -163,7 +171,7 @@ public final class Interpreter
         this.inputStream = inputStream;
         this.outputStream = outputStream;
         resetIO(new Stream(Symbol.SYSTEM_STREAM, inputStream, Symbol.CHARACTER),
-                new Stream(Symbol.SYSTEM_STREAM, outputStream, Symbol.CHARACTER));
+                new Stream(Symbol.SYSTEM_STREAM, outputStream, Symbol.CHARACTER, true));
         if (!initialDirectory.endsWith(File.separator))
             initialDirectory = initialDirectory.concat(File.separator);
         Symbol.DEFAULT_PATHNAME_DEFAULTS.setSymbolValue(new Pathname(initialDirectory));
@@ -184,6 +192,15 @@ public final class Interpreter
     }
     }
 
+    private static void replayLoadBundle(String filename) {
+	synchronized (INIT_LOCK) {
+        if (!initialized) {
+            LoadBundle.replay(new Pathname(new java.io.File(filename).getAbsolutePath()));
+            initialized = true;
+        }
+    }
+    }
+
     public static void initializeJLisp() {
 	synchronized (INIT_LOCK) {
         if (!initialized) {
@@ -271,6 +288,13 @@ public final class Interpreter
                     help = true;
                 } else if (arg.equals("--batch")) {
                     _BATCH_MODE_.setSymbolValue(T);
+                } else if (arg.equals("--load-bundle")) {
+                    if (i + 1 < args.length) {
+                        loadBundle = args[++i];
+                    } else {
+                        System.err.println("No argument supplied to --load-bundle");
+                        exit(1); // FIXME
+                    }
                 } else if (arg.equals("--eval")) {
                     if (i + 1 < args.length) {
                         ++i;
@@ -307,6 +331,8 @@ public final class Interpreter
                     continue;
                 } else if (arg.equals("--")) {
                     doubledash = true;
+                } else if (arg.equals("--load-bundle")) {
+                    ++i;
                 } else if (arg.equals("--eval")) {
                     if (i + 1 < args.length) {
                         try {
@@ -694,6 +720,15 @@ public final class Interpreter
         sb.append("--load-system-file <FILE>").append(sep)
           .append("    Loads the system file <FILE> before initializing REPL.");
         sb.append(sep);
+        sb.append("--load-bundle <FILE>").append(sep)
+          .append("    Loads again, from the bundle <FILE> written by EXTENSIONS:SAVE-LOAD-BUNDLE,").append(sep)
+          .append("    the files loaded before it was saved, boot.lisp included, in place of").append(sep)
+          .append("    loading the system and the initialization file.");
+        sb.append(sep);
+        sb.append("--cds-archive <FILE>").append(sep)
+          .append("    Given first to the 'abcl' launcher script, starts the JVM with the class").append(sep)
+          .append("    data sharing archive <FILE>, which is written on exit if it doesn't exist.");
+        sb.append(sep);
         sb.append("--batch").append(sep)
           .append("    The process evaluates forms specified by arguments and possibly by those").append(sep)
           .append("    by those in the intialization file '~/.abcl', and then exits.");
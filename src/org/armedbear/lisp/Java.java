@@ -429,39 +429,41 @@ public final class Java
 
     static final LispObject jstatic(Primitive fun, LispObject[] args, boolean translate)
 
+    {
+        return jstatic(fun, args, translate, null);
+    }
+
+    static final LispObject jstatic(Primitive fun, LispObject[] args,
+                                    boolean translate, JavaCallSite site)
+
     {
         if (args.length < 2)
             error(new WrongNumberOfArgumentsException(fun, 2, -1));
         try {
             Method m = null;
+            ResolvedJavaMethod resolved = null;
             LispObject methodRef = args[0];
             if (methodRef instanceof JavaObject) {
                 Object obj = ((JavaObject)methodRef).getObject();
                 if (obj instanceof Method)
                     m = (Method) obj;
             } else if (methodRef instanceof AbstractString) {
-                Class c = javaClass(args[1]);
+                Class c = (site != null)
+                    ? site.javaClass(args[1]) : javaClass(args[1]);
                 if (c != null) {
                     String methodName = methodRef.getStringValue();
-                    Method[] methods = c.getMethods();
-                    List<Method> staticMethods = new ArrayList<Method>();
-                    int argCount = args.length - 2;
-                    for(Method m1 : methods) {
-                        if(Modifier.isStatic(m1.getModifiers())) {
-                            staticMethods.add(m1);
-                        }
-                    }
-                    if(staticMethods.size() > 0) {
-                        m = findMethod(staticMethods.toArray(new Method[staticMethods.size()]), methodName, args, 2);
-                    }
-                    if (m == null)
+                    resolved = resolveStaticMethod(site, c, methodName,
+                                                   translateMethodArguments(args, 2));
+                    if (resolved == null)
                         error(new LispError("no such method"));
+                    m = resolved.method;
                 }
             } else {
               type_error(methodRef, Symbol.STRING);
             }
             Object[] methodArgs = new Object[args.length-2];
-            Class[] argTypes = m.getParameterTypes();
+            Class[] argTypes = resolved != null
+                ? resolved.parameterTypes : m.getParameterTypes();
             for (int i = 2; i < args.length; i++) {
                 LispObject arg = args[i];
                 if (arg.equals(NIL)) {
@@ -472,8 +474,13 @@ public final class Java
                   methodArgs[i-2] = arg.javaInstance(argTypes[i-2]);
                 }
             }
-            m.setAccessible(true);
-            Object result = m.invoke(null, methodArgs);
+            Object result;
+            if (resolved != null && resolved.handle != null) {
+                result = resolved.invoke(null, methodArgs);
+            } else {
+                m.setAccessible(true);
+                result = m.invoke(null, methodArgs);
+            }
 	    return JavaObject.getInstance(result, translate, m.getReturnType());
         }
         catch (ControlTransfer c) {
@@ -838,6 +845,13 @@ public final class Java
 
     static LispObject jcall(Primitive fun, LispObject[] args, boolean translate)
 
+    {
+        return jcall(fun, args, translate, null);
+    }
+
+    static LispObject jcall(Primitive fun, LispObject[] args, boolean translate,
+                            JavaCallSite site)
+
     {
         if (args.length < 2)
             error(new WrongNumberOfArgumentsException(fun, 2, -1));
@@ -846,6 +860,7 @@ public final class Java
             final LispObject instanceArg = args[1];
             final Object instance;
             Method method;
+            ResolvedJavaMethod resolved = null;
             Object[] methodArgs;
             Class<?> intendedClass = null;
             if (instanceArg instanceof AbstractString) {
@@ -863,7 +878,9 @@ public final class Java
             if (methodArg instanceof AbstractString) {
                 String methodName = methodArg.getStringValue();
                 methodArgs = translateMethodArguments(args, 2);
-                method = findMethod(instance, intendedClass, methodName, methodArgs);
+                resolved = resolveMethod(site, instance, intendedClass,
+                                         methodName, methodArgs);
+                method = (resolved == null) ? null : resolved.method;
                 if (method == null) {
                     if (intendedClass == null) {
                         String msg = MessageFormat.format("No instance method named {0} found for type {1}", methodName, instance.getClass().getName());
@@ -878,7 +895,9 @@ public final class Java
                 }
             } else
                 method = (Method) JavaObject.getObject(methodArg);
-            Class<?>[] argTypes = (Class<?>[])method.getParameterTypes();
+            Class<?>[] argTypes = resolved != null
+                ? resolved.parameterTypes
+                : (Class<?>[])method.getParameterTypes();
 	    if(argTypes.length != args.length - 2) {
 		return error(new WrongNumberOfArgumentsException("Wrong number of arguments for " + method + ": expected " + argTypes.length + ", got " + (args.length - 2)));
 	    }
@@ -893,6 +912,11 @@ public final class Java
                 methodArgs[i-2] = arg.javaInstance(argTypes[i-2]);
               }
             }
+            if (resolved != null && resolved.handle != null) {
+                return JavaObject.getInstance(resolved.invoke(instance, methodArgs),
+                                              translate,
+                                              method.getReturnType());
+            }
             if (!method.isAccessible()) {
                  // Possible for static member classes: see #229
                  if (Modifier.isPublic(method.getModifiers())) { 
@@ -924,6 +948,65 @@ public final class Java
         return null;
     }
 
+    /**
+     * Resolves the instance method <tt>methodName</tt> for the arguments
+     * <tt>javaArgs</tt> like findMethod(), going through the call site's
+     * last resolution and the shared cache first.  Returns null if there
+     * is no applicable method.
+     */
+    private static ResolvedJavaMethod resolveMethod(JavaCallSite site,
+                                                    Object instance,
+                                                    Class<?> intendedClass,
+                                                    String methodName,
+                                                    Object[] javaArgs) {
+        Class<?> actualClass = instance.getClass();
+        ResolvedJavaMethod resolved = (site == null) ? null : site.last;
+        if (resolved != null
+            && resolved.matches(intendedClass, actualClass, methodName, javaArgs))
+            return resolved;
+        resolved = ResolvedJavaMethod.lookup(intendedClass, actualClass,
+                                             methodName, javaArgs);
+        if (resolved == null) {
+            Method method = findMethod(instance, intendedClass, methodName, javaArgs);
+            if (method == null)
+                return null;
+            resolved = ResolvedJavaMethod.add(intendedClass, actualClass,
+                                              methodName, javaArgs, method);
+        }
+        if (site != null)
+            site.last = resolved;
+        return resolved;
+    }
+
+    /** Like resolveMethod(), for the static methods of class <tt>c</tt>. */
+    private static ResolvedJavaMethod resolveStaticMethod(JavaCallSite site,
+                                                          Class<?> c,
+                                                          String methodName,
+                                                          Object[] javaArgs) {
+        ResolvedJavaMethod resolved = (site == null) ? null : site.last;
+        if (resolved != null
+            && resolved.matches(c, null, methodName, javaArgs))
+            return resolved;
+        resolved = ResolvedJavaMethod.lookup(c, null, methodName, javaArgs);
+        if (resolved == null) {
+            List<Method> staticMethods = new ArrayList<Method>();
+            for (Method m : c.getMethods()) {
+                if (Modifier.isStatic(m.getModifiers())) {
+                    staticMethods.add(m);
+                }
+            }
+            Method method = findMethod(staticMethods.toArray(new Method[staticMethods.size()]),
+                                       methodName, javaArgs);
+            if (method == null)
+                return null;
+            resolved = ResolvedJavaMethod.add(c, null, methodName, javaArgs,
+                                              method);
+        }
+        if (site != null)
+            site.last = resolved;
+        return resolved;
+    }
+
     private static Object[] translateMethodArguments(LispObject[] args) {
 	return translateMethodArguments(args, 0);
     }
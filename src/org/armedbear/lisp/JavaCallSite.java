@@ -0,0 +1,94 @@
+/*
+ * JavaCallSite.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * The function called by compiled code in place of JCALL, JCALL-RAW,
+ * JSTATIC or JSTATIC-RAW when the method name is a constant string.
+ *
+ * Its arguments are those of the replaced call without the method name.
+ * Each call site remembers the method it resolved last, so calls which
+ * keep passing arguments of the same classes neither resolve the method
+ * again nor look it up in the shared ResolvedJavaMethod cache.  Static
+ * call sites also remember the class they looked up last.
+ */
+public final class JavaCallSite extends Primitive
+{
+  private final SimpleString methodName;
+  private final boolean isStatic;
+  private final boolean translate;
+
+  volatile ResolvedJavaMethod last;
+
+  // The class designator of the last static call, the class loader it was
+  // looked up with and the resulting class.
+  private volatile Object[] lastClass;
+
+  public JavaCallSite(String methodName, boolean isStatic, boolean translate)
+  {
+    super(list(isStatic
+               ? (translate ? Symbol.JSTATIC : Symbol.JSTATIC_RAW)
+               : (translate ? Symbol.JCALL : Symbol.JCALL_RAW),
+               new SimpleString(methodName)));
+    this.methodName = new SimpleString(methodName);
+    this.isStatic = isStatic;
+    this.translate = translate;
+  }
+
+  /** Looks up the class of a static method like Java.javaClass(),
+   * remembering the result for the same designator and class loader.
+   */
+  Class<?> javaClass(LispObject designator)
+  {
+    ClassLoader loader = JavaClassLoader.getCurrentClassLoader();
+    Object[] c = lastClass;
+    if (c != null && c[0] == designator && c[1] == loader)
+      return (Class<?>) c[2];
+    Class<?> result = Java.javaClass(designator, loader);
+    lastClass = new Object[] { designator, loader, result };
+    return result;
+  }
+
+  @Override
+  public LispObject execute(LispObject[] args)
+  {
+    LispObject[] javaArgs = new LispObject[args.length + 1];
+    javaArgs[0] = methodName;
+    System.arraycopy(args, 0, javaArgs, 1, args.length);
+    if (isStatic)
+      return Java.jstatic(this, javaArgs, translate, this);
+    return Java.jcall(this, javaArgs, translate, this);
+  }
+}
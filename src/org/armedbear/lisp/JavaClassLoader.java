@@ -43,6 +43,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 
 public class JavaClassLoader extends URLClassLoader {
 
@@ -189,6 +190,11 @@ public class JavaClassLoader extends URLClassLoader {
         ///if (checkPreCompiledClassLoader) Debug.trace("DEFINE JAVA CLASS " + name + " " + len);
         return defineClass(name, b, off, len);
     }
+
+    protected final Class<?> defineLispClass(String name, ByteBuffer b)
+                throws ClassFormatError {
+        return defineClass(name, b, (java.security.ProtectionDomain) null);
+    }
     
     public Class<?> loadClassFromByteArray(String className, byte[] bytes,
                                                 int offset, int length)
@@ -42,12 +42,14 @@ public final class Keyword
         ABORT               = internKeyword("ABORT"),
         ABSOLUTE            = internKeyword("ABSOLUTE"),
         ADJUSTABLE          = internKeyword("ADJUSTABLE"),
+        ALLOCATION          = internKeyword("ALLOCATION"),
         ALLOW_OTHER_KEYS    = internKeyword("ALLOW-OTHER-KEYS"),
         ANSI_CL             = internKeyword("ANSI-CL"),
         APPEND              = internKeyword("APPEND"),
         ARMEDBEAR           = internKeyword("ARMEDBEAR"),
         BACK                = internKeyword("BACK"),
         BOOLEAN             = internKeyword("BOOLEAN"),
+        CAPACITY            = internKeyword("CAPACITY"),
         CAPITALIZE          = internKeyword("CAPITALIZE"),
         CAPITALIZE_FIRST    = internKeyword("CAPITALIZE-FIRST"),
         CASE                = internKeyword("CASE"),
@@ -149,6 +151,7 @@ public final class Keyword
         USE                 = internKeyword("USE"),
         VALUE               = internKeyword("VALUE"),
         VERSION             = internKeyword("VERSION"),
+        VIRTUAL             = internKeyword("VIRTUAL"),
         WILD                = internKeyword("WILD"),
         WILD_INFERIORS      = internKeyword("WILD-INFERIORS"),
         WINDOWS             = internKeyword("WINDOWS"),
@@ -0,0 +1,177 @@
+/*
+ * Latch.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A latch, backed by a CountDownLatch: threads wait on it until its
+ * count has been counted down to zero.
+ */
+public final class Latch extends LispObject
+{
+    private final CountDownLatch latch;
+
+    public Latch(int count) {
+        latch = new CountDownLatch(count);
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.LATCH;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.LATCH;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.LATCH) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.LATCH) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        return new SimpleString(unreadableString("LATCH " + latch.getCount()));
+    }
+
+    static Latch checkLatch(LispObject obj) {
+        if (obj instanceof Latch) {
+            return (Latch) obj;
+        }
+        return (Latch) type_error(obj, Symbol.LATCH);
+    }
+
+    // ### make-latch count => latch
+    private static final Primitive MAKE_LATCH = new pf_make_latch();
+    @DocString(name="make-latch", args="count",
+    doc="Returns a new latch that opens after COUNT calls to LATCH-COUNT-DOWN.")
+    private static final class pf_make_latch extends Primitive {
+        pf_make_latch() {
+            super("make-latch", PACKAGE_THREADS, true, "count");
+        }
+
+        @Override
+        public LispObject execute(LispObject count) {
+            if (count instanceof Fixnum && ((Fixnum) count).value >= 0) {
+                return new Latch(((Fixnum) count).value);
+            }
+            return type_error(count, list(Symbol.INTEGER, Fixnum.ZERO,
+                                          Fixnum.getInstance(Integer.MAX_VALUE)));
+        }
+    };
+
+    // ### latch-count-down latch => nil
+    private static final Primitive LATCH_COUNT_DOWN = new pf_latch_count_down();
+    @DocString(name="latch-count-down", args="latch",
+    doc="Decrements the count of LATCH, waking up the threads waiting on it\n"
+        + "when it reaches zero.")
+    private static final class pf_latch_count_down extends Primitive {
+        pf_latch_count_down() {
+            super("latch-count-down", PACKAGE_THREADS, true, "latch");
+        }
+
+        @Override
+        public LispObject execute(LispObject latch) {
+            checkLatch(latch).latch.countDown();
+            return NIL;
+        }
+    };
+
+    // ### latch-wait latch &optional timeout => boolean
+    private static final Primitive LATCH_WAIT = new pf_latch_wait();
+    @DocString(name="latch-wait", args="latch &optional timeout",
+    doc="Waits until the count of LATCH is zero, for at most TIMEOUT seconds if\n"
+        + "given.  Returns T, or NIL if TIMEOUT expired.")
+    private static final class pf_latch_wait extends Primitive {
+        pf_latch_wait() {
+            super("latch-wait", PACKAGE_THREADS, true, "latch &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject latch) {
+            CountDownLatch l = checkLatch(latch).latch;
+            while (true) {
+                try {
+                    l.await();
+                    return T;
+                } catch (InterruptedException e) {
+                    LispThread.currentThread().processThreadInterrupts();
+                }
+            }
+        }
+
+        @Override
+        public LispObject execute(LispObject latch, LispObject timeout) {
+            if (timeout == NIL) {
+                return execute(latch);
+            }
+            CountDownLatch l = checkLatch(latch).latch;
+            long nanos = LispThread.timeoutNanos(timeout);
+            final long deadline = System.nanoTime() + nanos;
+            while (true) {
+                try {
+                    return l.await(nanos, TimeUnit.NANOSECONDS) ? T : NIL;
+                } catch (InterruptedException e) {
+                    LispThread.currentThread().processThreadInterrupts();
+                    nanos = deadline - System.nanoTime();
+                }
+            }
+        }
+    };
+
+    // ### latch-count latch => count
+    private static final Primitive LATCH_COUNT = new pf_latch_count();
+    @DocString(name="latch-count", args="latch",
+    doc="Returns the count of LATCH.")
+    private static final class pf_latch_count extends Primitive {
+        pf_latch_count() {
+            super("latch-count", PACKAGE_THREADS, true, "latch");
+        }
+
+        @Override
+        public LispObject execute(LispObject latch) {
+            return Fixnum.getInstance((int) checkLatch(latch).latch.getCount());
+        }
+    };
+}
@@ -288,6 +288,7 @@ public class Layout extends LispObject
           Symbol.CLASS_LAYOUT.getSymbolSetfFunction()
               .execute(newLayout, lispClass);
         ((Layout)oldLayout).invalidate();
+        EMFCache.invalidateClassEpoch();
         return arg;
       }
     };
@@ -1499,6 +1499,12 @@ public class Lisp
   public static final LispObject UNSIGNED_BYTE_32 =
     list(Symbol.UNSIGNED_BYTE, Fixnum.constants[32]);
 
+  public static final LispObject SIGNED_BYTE_32 =
+    list(Symbol.SIGNED_BYTE, Fixnum.constants[32]);
+
+  public static final LispObject SIGNED_BYTE_64 =
+    list(Symbol.SIGNED_BYTE, Fixnum.constants[64]);
+
   public static final LispObject UNSIGNED_BYTE_32_MAX_VALUE =
     Bignum.getInstance(4294967296L);
 
@@ -1514,9 +1520,21 @@ public class Lisp
           return Symbol.BIT;
         if (type == NIL)
           return NIL;
+        if (type == Symbol.DOUBLE_FLOAT || type == Symbol.LONG_FLOAT)
+          return Symbol.DOUBLE_FLOAT;
+        if (type == Symbol.SINGLE_FLOAT || type == Symbol.SHORT_FLOAT)
+          return Symbol.SINGLE_FLOAT;
+        if (type == Symbol.FIXNUM)
+          return SIGNED_BYTE_32;
       }
     if (type == BuiltInClass.CHARACTER)
       return Symbol.CHARACTER;
+    if (type == BuiltInClass.DOUBLE_FLOAT)
+      return Symbol.DOUBLE_FLOAT;
+    if (type == BuiltInClass.SINGLE_FLOAT)
+      return Symbol.SINGLE_FLOAT;
+    if (type == BuiltInClass.FIXNUM)
+      return SIGNED_BYTE_32;
     if (type instanceof Cons)
       {
         if (type.equal(UNSIGNED_BYTE_8))
@@ -1526,6 +1544,23 @@ public class Lisp
         if (type.equal(UNSIGNED_BYTE_32))
           return type;
         LispObject car = type.car();
+        if (car == Symbol.DOUBLE_FLOAT || car == Symbol.LONG_FLOAT)
+          return Symbol.DOUBLE_FLOAT;
+        if (car == Symbol.SINGLE_FLOAT || car == Symbol.SHORT_FLOAT)
+          return Symbol.SINGLE_FLOAT;
+        if (car == Symbol.SIGNED_BYTE)
+          {
+            LispObject size = type.cadr();
+            if (size instanceof Fixnum)
+              {
+                int n = ((Fixnum)size).value;
+                if (n > 0 && n <= 32)
+                  return SIGNED_BYTE_32;
+                if (n > 0 && n <= 64)
+                  return SIGNED_BYTE_64;
+              }
+            return T;
+          }
         if (car == Symbol.INTEGER)
           {
             LispObject lower = type.cadr();
@@ -1551,6 +1586,7 @@ public class Lisp
                           return UNSIGNED_BYTE_16;
                         return UNSIGNED_BYTE_32;
                       }
+                    return SIGNED_BYTE_32;
                   }
                 if (lower.isGreaterThanOrEqualTo(Fixnum.ZERO))
                   {
@@ -1560,6 +1596,8 @@ public class Lisp
                           return UNSIGNED_BYTE_32;
                       }
                   }
+                if (isJavaLong(lower) && isJavaLong(upper))
+                  return SIGNED_BYTE_64;
               }
           }
         else if (car == Symbol.EQL)
@@ -1578,6 +1616,7 @@ public class Lisp
                       return UNSIGNED_BYTE_16;
                     return UNSIGNED_BYTE_32;
                   }
+                return SIGNED_BYTE_32;
               }
             else if (obj instanceof Bignum)
               {
@@ -1586,7 +1625,13 @@ public class Lisp
                     if (obj.isLessThan(UNSIGNED_BYTE_32_MAX_VALUE))
                       return UNSIGNED_BYTE_32;
                   }
+                if (isJavaLong(obj))
+                  return SIGNED_BYTE_64;
               }
+            else if (obj instanceof DoubleFloat)
+              return Symbol.DOUBLE_FLOAT;
+            else if (obj instanceof SingleFloat)
+              return Symbol.SINGLE_FLOAT;
           }
         else if (car == Symbol.MEMBER)
           {
@@ -1605,6 +1650,12 @@ public class Lisp
     return T;
   }
 
+  private static final boolean isJavaLong(LispObject obj)
+  {
+    return obj instanceof Fixnum
+      || (obj instanceof Bignum && ((Bignum)obj).value.bitLength() < 64);
+  }
+
   public static final byte coerceLispObjectToJavaByte(LispObject obj)
 
   {
@@ -1616,6 +1667,17 @@ public class Lisp
     return Fixnum.constants[((int)b) & 0xff];
   }
 
+  public static final long coerceLispObjectToJavaLong(LispObject obj)
+  {
+    if (obj instanceof Fixnum)
+      return ((Fixnum)obj).value;
+    if (isJavaLong(obj))
+      return ((Bignum)obj).value.longValue();
+    type_error(obj, SIGNED_BYTE_64);
+    // Not reached.
+    return 0;
+  }
+
   public static final LispCharacter checkCharacter(LispObject obj)
 
   {
@@ -2436,6 +2498,7 @@ public class Lisp
 	    PACKAGE_SYS, new SimpleString("class"));
 
   // ### *compile-file-zip*
+  // T for a zipped fasl, :INDEXED for an indexed one (see FaslContainer).
   public static final Symbol _COMPILE_FILE_ZIP_ =
     exportSpecial("*COMPILE-FILE-ZIP*", PACKAGE_SYS, T);
 
@@ -0,0 +1,238 @@
+/*
+ * LispFuture.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * The values of a function submitted to a thread pool, once a worker
+ * has called it.
+ */
+public final class LispFuture extends LispObject
+{
+    private static final Symbol wrapper =
+        PACKAGE_THREADS.intern("FUTURE-FUNCTION-WRAPPER");
+
+    /** Makes the list of the values of the function. */
+    final FutureTask<LispObject> task;
+    /** The error the function signaled, or NIL. */
+    private LispObject condition = NIL;
+
+    LispFuture(final LispObject function, final LispObject[] args) {
+        final LispObject fun = args.length == 0 ? function
+            : new AppliedFunction(function, args);
+        task = new FutureTask<LispObject>(new Callable<LispObject>() {
+            public LispObject call() {
+                LispThread thread = LispThread.currentThread();
+                SpecialBindingsMark mark = thread.markSpecialBindings();
+                try {
+                    LispObject values
+                        = funcall(wrapper, new LispObject[] { fun }, thread);
+                    LispObject[] result = thread._values;
+                    if (result != null && result.length > 1) {
+                        condition = result[1];
+                    }
+                    return values;
+                }
+                catch (ProcessingTerminated e) {
+                    System.exit(e.getStatus());
+                    return null;
+                }
+                finally {
+                    // Leave nothing of this task for the next one.
+                    thread.resetSpecialBindings(mark);
+                    thread._values = null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.FUTURE;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.FUTURE;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.FUTURE) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.FUTURE) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        return new SimpleString(unreadableString(task.isDone() ? "FUTURE done"
+                                                 : "FUTURE"));
+    }
+
+    /**
+     * Waits at most NANOS nanoseconds, or as long as it takes if NANOS is
+     * negative, for the task to finish.  Returns false if it hasn't.
+     */
+    boolean await(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        while (true) {
+            try {
+                if (nanos < 0) {
+                    task.get();
+                } else {
+                    task.get(nanos, TimeUnit.NANOSECONDS);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+                if (nanos >= 0) {
+                    nanos = Math.max(0, deadline - System.nanoTime());
+                }
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                return true;
+            }
+        }
+    }
+
+    static LispFuture checkFuture(LispObject obj) {
+        if (obj instanceof LispFuture) {
+            return (LispFuture) obj;
+        }
+        return (LispFuture) type_error(obj, Symbol.FUTURE);
+    }
+
+    /** A function applying FUNCTION to fixed arguments. */
+    private static final class AppliedFunction extends Function {
+        private final LispObject function;
+        private final LispObject[] args;
+
+        AppliedFunction(LispObject function, LispObject[] args) {
+            this.function = function;
+            this.args = args;
+        }
+
+        @Override
+        public LispObject execute() {
+            return function.execute(args);
+        }
+    }
+
+    // ### future-value future => values
+    private static final Primitive FUTURE_VALUE = new pf_future_value();
+    @DocString(name="future-value", args="future",
+    doc="Waits for the function of FUTURE to return, and returns its values.\n"
+        + "If the function signaled an error instead, signals it again.")
+    private static final class pf_future_value extends Primitive {
+        pf_future_value() {
+            super("future-value", PACKAGE_THREADS, true, "future");
+        }
+
+        @Override
+        public LispObject execute(LispObject arg) {
+            LispFuture future = checkFuture(arg);
+            LispObject values;
+            while (true) {
+                try {
+                    values = future.task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    LispThread.currentThread().processThreadInterrupts();
+                } catch (ExecutionException e) {
+                    return error(new LispError("The function of "
+                                               + future.printObject().getStringValue()
+                                               + " failed: " + e.getCause() + "."));
+                }
+            }
+            if (future.condition != NIL) {
+                return error(future.condition);
+            }
+            if (values.cdr() == NIL) {
+                return values.car();
+            }
+            return LispThread.currentThread().setValues(values.copyToArray());
+        }
+    };
+
+    // ### future-wait future &optional timeout => boolean
+    private static final Primitive FUTURE_WAIT = new pf_future_wait();
+    @DocString(name="future-wait", args="future &optional timeout",
+    doc="Waits for the function of FUTURE to return, for at most TIMEOUT seconds\n"
+        + "if given.  Returns T, or NIL if TIMEOUT expired.")
+    private static final class pf_future_wait extends Primitive {
+        pf_future_wait() {
+            super("future-wait", PACKAGE_THREADS, true, "future &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject future) {
+            return checkFuture(future).await(-1) ? T : NIL;
+        }
+
+        @Override
+        public LispObject execute(LispObject future, LispObject timeout) {
+            LispFuture f = checkFuture(future);
+            if (timeout == NIL) {
+                return f.await(-1) ? T : NIL;
+            }
+            return f.await(LispThread.timeoutNanos(timeout)) ? T : NIL;
+        }
+    };
+
+    // ### future-done-p future => boolean
+    private static final Primitive FUTURE_DONE_P = new pf_future_done_p();
+    @DocString(name="future-done-p", args="future",
+    doc="Returns T if the function of FUTURE has returned or failed.")
+    private static final class pf_future_done_p extends Primitive {
+        pf_future_done_p() {
+            super("future-done-p", PACKAGE_THREADS, true, "future");
+        }
+
+        @Override
+        public LispObject execute(LispObject future) {
+            return checkFuture(future).task.isDone() ? T : NIL;
+        }
+    };
+}
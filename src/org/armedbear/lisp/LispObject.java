@@ -524,6 +524,16 @@ public class LispObject //extends Lisp
     return AREF(index).intValue();
   }
 
+  public float aref_float(int index)
+  {
+    return AREF(index).floatValue();
+  }
+
+  public double aref_double(int index)
+  {
+    return AREF(index).doubleValue();
+  }
+
   public LispObject AREF(int index)
   {
     return type_error(this, Symbol.ARRAY);
@@ -540,6 +550,21 @@ public class LispObject //extends Lisp
           aset(index, Fixnum.getInstance(n));
   }
 
+  public void aset(int index, long n)
+  {
+    aset(index, LispInteger.getInstance(n));
+  }
+
+  public void aset(int index, float n)
+  {
+    aset(index, SingleFloat.getInstance(n));
+  }
+
+  public void aset(int index, double n)
+  {
+    aset(index, DoubleFloat.getInstance(n));
+  }
+
   public void aset(int index, LispObject newValue)
 
   {
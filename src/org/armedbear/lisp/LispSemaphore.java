@@ -0,0 +1,207 @@
+/*
+ * LispSemaphore.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/** A counting semaphore, backed by java.util.concurrent.Semaphore. */
+public final class LispSemaphore extends LispObject
+{
+    private final Semaphore semaphore;
+
+    public LispSemaphore(int count) {
+        semaphore = new Semaphore(count, true);
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.SEMAPHORE;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.SEMAPHORE;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.SEMAPHORE) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.SEMAPHORE) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        return new SimpleString(unreadableString("SEMAPHORE "
+                                                 + semaphore.availablePermits()));
+    }
+
+    public void acquire() {
+        while (true) {
+            try {
+                semaphore.acquire();
+                return;
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+            }
+        }
+    }
+
+    /**
+     * Decrements the count, waiting at most NANOS nanoseconds for it to
+     * be positive.  Returns false if the count wasn't decremented.
+     */
+    public boolean acquire(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        while (true) {
+            try {
+                return semaphore.tryAcquire(nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+                nanos = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    static LispSemaphore checkSemaphore(LispObject obj) {
+        if (obj instanceof LispSemaphore) {
+            return (LispSemaphore) obj;
+        }
+        return (LispSemaphore) type_error(obj, Symbol.SEMAPHORE);
+    }
+
+    private static int checkCount(LispObject obj) {
+        if (obj instanceof Fixnum && ((Fixnum) obj).value >= 0) {
+            return ((Fixnum) obj).value;
+        }
+        type_error(obj, list(Symbol.INTEGER, Fixnum.ZERO,
+                             Fixnum.getInstance(Integer.MAX_VALUE)));
+        return 0;
+    }
+
+    // ### make-semaphore &optional count => semaphore
+    private static final Primitive MAKE_SEMAPHORE = new pf_make_semaphore();
+    @DocString(name="make-semaphore", args="&optional (count 0)",
+    doc="Returns a new semaphore with COUNT as its count.")
+    private static final class pf_make_semaphore extends Primitive {
+        pf_make_semaphore() {
+            super("make-semaphore", PACKAGE_THREADS, true, "&optional (count 0)");
+        }
+
+        @Override
+        public LispObject execute() {
+            return new LispSemaphore(0);
+        }
+
+        @Override
+        public LispObject execute(LispObject count) {
+            return new LispSemaphore(checkCount(count));
+        }
+    };
+
+    // ### semaphore-wait semaphore &optional timeout => boolean
+    private static final Primitive SEMAPHORE_WAIT = new pf_semaphore_wait();
+    @DocString(name="semaphore-wait", args="semaphore &optional timeout",
+    doc="Decrements the count of SEMAPHORE, first waiting until it is positive,\n"
+        + "for at most TIMEOUT seconds if given.  Waiting threads are served in\n"
+        + "order.  Returns T, or NIL if TIMEOUT expired.")
+    private static final class pf_semaphore_wait extends Primitive {
+        pf_semaphore_wait() {
+            super("semaphore-wait", PACKAGE_THREADS, true,
+                  "semaphore &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject semaphore) {
+            checkSemaphore(semaphore).acquire();
+            return T;
+        }
+
+        @Override
+        public LispObject execute(LispObject semaphore, LispObject timeout) {
+            LispSemaphore s = checkSemaphore(semaphore);
+            if (timeout == NIL) {
+                s.acquire();
+                return T;
+            }
+            return s.acquire(LispThread.timeoutNanos(timeout)) ? T : NIL;
+        }
+    };
+
+    // ### semaphore-signal semaphore &optional n => nil
+    private static final Primitive SEMAPHORE_SIGNAL = new pf_semaphore_signal();
+    @DocString(name="semaphore-signal", args="semaphore &optional (n 1)",
+    doc="Increments the count of SEMAPHORE by N, waking up as many waiting\n"
+        + "threads.")
+    private static final class pf_semaphore_signal extends Primitive {
+        pf_semaphore_signal() {
+            super("semaphore-signal", PACKAGE_THREADS, true,
+                  "semaphore &optional (n 1)");
+        }
+
+        @Override
+        public LispObject execute(LispObject semaphore) {
+            checkSemaphore(semaphore).semaphore.release();
+            return NIL;
+        }
+
+        @Override
+        public LispObject execute(LispObject semaphore, LispObject n) {
+            checkSemaphore(semaphore).semaphore.release(checkCount(n));
+            return NIL;
+        }
+    };
+
+    // ### semaphore-count semaphore => count
+    private static final Primitive SEMAPHORE_COUNT = new pf_semaphore_count();
+    @DocString(name="semaphore-count", args="semaphore",
+    doc="Returns the count of SEMAPHORE.")
+    private static final class pf_semaphore_count extends Primitive {
+        pf_semaphore_count() {
+            super("semaphore-count", PACKAGE_THREADS, true, "semaphore");
+        }
+
+        @Override
+        public LispObject execute(LispObject semaphore) {
+            return Fixnum.getInstance(checkSemaphore(semaphore)
+                                      .semaphore.availablePermits());
+        }
+    };
+}
@@ -34,9 +34,11 @@
 package org.armedbear.lisp;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
 
 import static org.armedbear.lisp.Lisp.*;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -76,6 +78,10 @@ public final class LispThread extends LispObject
     public LispObject[] _values;
     private boolean threadInterrupted;
     private LispObject pending = NIL;
+    /** The token buffer of the reader, when it isn't in use.  Made by
+     * the first read in this thread.
+     */
+    ReadToken readToken;
     private Symbol wrapper =
         PACKAGE_THREADS.intern("THREAD-FUNCTION-WRAPPER");
 
@@ -83,9 +89,20 @@ public final class LispThread extends LispObject
     {
         this.javaThread = javaThread;
         name = new SimpleString(javaThread.getName());
+        initializeState(specialsInitialSize, INITIAL_SEGMENT_SIZE);
     }
 
     LispThread(final Function fun, LispObject name)
+    {
+        this(fun, name, false);
+    }
+
+    /** Starts a thread calling FUN.  If VIRTUAL is true, the thread is a
+     * virtual thread when the JVM has them, and either way starts out with
+     * small special bindings and stack tables, which grow as the thread
+     * needs them.
+     */
+    LispThread(final Function fun, LispObject name, boolean virtual)
     {
         Runnable r = new Runnable() {
             public void run()
@@ -116,15 +133,87 @@ public final class LispThread extends LispObject
                 }
             }
         };
-        javaThread = new Thread(r);
+        Thread t = virtual ? newVirtualThread(r) : null;
+        if (t == null) {
+            t = new Thread(r);
+            t.setDaemon(true);
+        }
+        if (virtual)
+            initializeState(virtualSpecialsInitialSize,
+                            VIRTUAL_INITIAL_SEGMENT_SIZE);
+        else
+            initializeState(specialsInitialSize, INITIAL_SEGMENT_SIZE);
+        javaThread = t;
         this.name = name;
         map.put(javaThread, this);
         if (name != NIL)
             javaThread.setName(name.getStringValue());
-        javaThread.setDaemon(true);
         javaThread.start();
     }
 
+    private void initializeState(int specialsSize, int segmentSize) {
+        specials = new SpecialBinding[specialsSize + 1];
+        topStackSegment = new StackSegment(segmentSize, null);
+        stack = topStackSegment.stack;
+    }
+
+    /** Thread.ofVirtual(), on JVMs which have virtual threads. */
+    private static final Method ofVirtual;
+    /** Thread.Builder.unstarted(Runnable). */
+    private static final Method unstarted;
+    static {
+        Method builder = null;
+        Method start = null;
+        try {
+            builder = Thread.class.getMethod("ofVirtual");
+            start = Class.forName("java.lang.Thread$Builder")
+                .getMethod("unstarted", Runnable.class);
+            // Virtual threads may be a preview feature which isn't enabled.
+            builder.invoke(null);
+        } catch (Exception e) {
+            builder = null;
+            start = null;
+        }
+        ofVirtual = builder;
+        unstarted = start;
+    }
+
+    /** Thread.isVirtual(), on JVMs which have virtual threads. */
+    private static final Method isVirtual;
+    static {
+        Method method = null;
+        if (ofVirtual != null) {
+            try {
+                method = Thread.class.getMethod("isVirtual");
+            } catch (NoSuchMethodException e) {
+            }
+        }
+        isVirtual = method;
+    }
+
+    boolean isVirtual() {
+        if (isVirtual == null)
+            return false;
+        try {
+            return (Boolean) isVirtual.invoke(javaThread);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /** Returns a new, unstarted virtual thread running R, or null if the
+     * JVM doesn't have virtual threads.
+     */
+    private static Thread newVirtualThread(Runnable r) {
+        if (ofVirtual == null)
+            return null;
+        try {
+            return (Thread) unstarted.invoke(ofVirtual.invoke(null), r);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public StackTraceElement[] getJavaStackTrace() {
         return javaThread.getStackTrace();
     }
@@ -347,16 +436,20 @@ public final class LispThread extends LispObject
     final static int specialsInitialSize
         = Integer.valueOf(System.getProperty("abcl.specials.initialSize","4096"));
 
+    final static int virtualSpecialsInitialSize
+        = Integer.valueOf(System.getProperty("abcl.specials.virtual.initialSize","64"));
+
     /** This array stores the current special binding for every symbol
      * which has been globally or locally declared special.
      *
      * If the array element has a null value, this means there currently
      * is no active binding. If the array element contains a valid
      * SpecialBinding object, but the value field of it is null, that
-     * indicates an "UNBOUND VARIABLE" situation.
+     * indicates an "UNBOUND VARIABLE" situation.  Symbols with an index
+     * beyond the end of the array have no binding in this thread; the
+     * array only grows when such a symbol gets bound.
      */
-    SpecialBinding[] specials
-        = new SpecialBinding[specialsInitialSize + 1];
+    SpecialBinding[] specials;
 
     final static ConcurrentHashMap<Integer, WeakReference<Symbol>> specialNames
         = new ConcurrentHashMap<Integer, WeakReference<Symbol>>();
@@ -367,29 +460,90 @@ public final class LispThread extends LispObject
     final static int specialsDelta
         = Integer.valueOf(System.getProperty("abcl.specials.grow.delta","1024"));
 
-    /** This variable points to the head of a linked list of saved
-     * special bindings. Its main purpose is to allow a mark/reset
-     * interface to special binding and unbinding.
+    final static int bindingStackInitialSize = 64;
+
+    /** The stack of active special bindings, kept in parallel arrays
+     * to allow a mark/reset interface to special binding and unbinding
+     * which doesn't allocate: for each binding, the specials array index
+     * of the bound symbol and the binding it shadows.
+     *
+     * The SpecialBinding objects themselves are allocated once per stack
+     * depth and reused by every binding made at that depth; the same goes
+     * for the marks returned by markSpecialBindings().
      */
-    SpecialBindingsMark savedSpecials = null;
+    int[] bindingIndices = new int[bindingStackInitialSize];
+    SpecialBinding[] shadowedBindings
+        = new SpecialBinding[bindingStackInitialSize];
+    private SpecialBinding[] bindingPool
+        = new SpecialBinding[bindingStackInitialSize];
+    private SpecialBindingsMark[] bindingMarks
+        = new SpecialBindingsMark[bindingStackInitialSize + 1];
+    int bindingsTop = 0;
 
     /** Marks the state of the special bindings,
      * for later rewinding by resetSpecialBindings().
      */
     public final SpecialBindingsMark markSpecialBindings() {
-        return savedSpecials;
+        SpecialBindingsMark mark = bindingMarks[bindingsTop];
+        if (mark == null)
+            mark = bindingMarks[bindingsTop]
+                = new SpecialBindingsMark(bindingsTop);
+        return mark;
     }
 
     /** Restores the state of the special bindings to what
      * was captured in the marker 'mark' by a call to markSpecialBindings().
      */
     public final void resetSpecialBindings(SpecialBindingsMark mark) {
-        SpecialBindingsMark c = savedSpecials;
-        while (mark != c) {
-            specials[c.idx] = c.binding;
-            c = c.next;
+        int depth = (mark == null) ? 0 : mark.depth;
+        int top = bindingsTop;
+        if (depth >= top)
+            return;
+        while (top > depth) {
+            top--;
+            specials[bindingIndices[top]] = shadowedBindings[top];
+            // Don't keep the value reachable through the pool; the
+            // shadowed binding is reachable through the pool anyway.
+            bindingPool[top].value = null;
+        }
+        bindingsTop = depth;
+    }
+
+    /** Pushes a new binding of the symbol with index 'idx' shadowing
+     * 'shadowed' on the binding stack and makes it current.
+     */
+    private SpecialBinding pushSpecialBinding(int idx, SpecialBinding shadowed,
+                                              LispObject value) {
+        int top = bindingsTop;
+        if (top == bindingIndices.length)
+            growBindingStack();
+        bindingIndices[top] = idx;
+        shadowedBindings[top] = shadowed;
+        SpecialBinding binding = bindingPool[top];
+        if (binding == null)
+            binding = bindingPool[top] = new SpecialBinding(idx, value);
+        else {
+            binding.idx = idx;
+            binding.value = value;
         }
-        savedSpecials = c;
+        bindingsTop = top + 1;
+        return specials[idx] = binding;
+    }
+
+    private void growBindingStack() {
+        int size = bindingIndices.length * 2;
+        int[] newIndices = new int[size];
+        System.arraycopy(bindingIndices, 0, newIndices, 0, bindingsTop);
+        SpecialBinding[] newShadowed = new SpecialBinding[size];
+        System.arraycopy(shadowedBindings, 0, newShadowed, 0, bindingsTop);
+        SpecialBinding[] newPool = new SpecialBinding[size];
+        System.arraycopy(bindingPool, 0, newPool, 0, bindingPool.length);
+        SpecialBindingsMark[] newMarks = new SpecialBindingsMark[size + 1];
+        System.arraycopy(bindingMarks, 0, newMarks, 0, bindingMarks.length);
+        bindingIndices = newIndices;
+        shadowedBindings = newShadowed;
+        bindingPool = newPool;
+        bindingMarks = newMarks;
     }
 
     /** Clears out all active special bindings including any marks
@@ -401,6 +555,11 @@ public final class LispThread extends LispObject
         resetSpecialBindings(null);
     }
 
+    /** The value of lastSpecial at which assignSpecialIndex() may next
+     * try to reclaim unused indices by collecting garbage.
+     */
+    private static volatile int reclaimSpecialsAt = 0;
+
     /** Assigns a specials array index number to the symbol,
      * if it doesn't already have one.
      */
@@ -415,8 +574,13 @@ public final class LispThread extends LispObject
                 Integer next = freeSpecialIndices.poll();
                 if (next == null
                         && specials.length < lastSpecial.get()
+                        && lastSpecial.get() >= reclaimSpecialsAt
                         && null == System.getProperty("abcl.specials.grow.slowly")) {
                     // free slots are exhausted; in the middle and at the end.
+                    // Collecting garbage may free the indices of symbols
+                    // which are gone, but don't try again before another
+                    // delta's worth of indices has been assigned.
+                    reclaimSpecialsAt = lastSpecial.get() + specialsDelta;
                     System.gc();
                     next = freeSpecialIndices.poll();
                 }
@@ -441,45 +605,50 @@ public final class LispThread extends LispObject
             while (it.hasNext()) {
                 LispThread thread = it.next();
 
-                // clear out the values in the saved specials list
-                SpecialBindingsMark savedSpecial = thread.savedSpecials;
-                while (savedSpecial != null) {
-                    if (savedSpecial.idx == index) {
-                        savedSpecial.idx = 0;
-                        savedSpecial.binding = null;
+                // clear out the values in the binding stack
+                int[] indices = thread.bindingIndices;
+                SpecialBinding[] shadowed = thread.shadowedBindings;
+                for (int i = Math.min(thread.bindingsTop, indices.length);
+                     i-- > 0;) {
+                    if (indices[i] == index) {
+                        indices[i] = 0;
+                        shadowed[i] = null;
                     }
-                    savedSpecial = savedSpecial.next;
                 }
 
-                thread.specials[index] = null;
+                SpecialBinding[] specials = thread.specials;
+                if (index < specials.length)
+                    specials[index] = null;
             }
 
             freeSpecialIndices.add(new Integer(index));
         }
     }
 
-    private void growSpecials() {
-        SpecialBinding[] newSpecials
-                = new SpecialBinding[specials.length + specialsDelta];
+    private void growSpecials(int idx) {
+        // Double small tables, grow large ones by the delta.
+        int length = Math.max(idx + 1, specials.length
+                              + Math.min(specials.length, specialsDelta));
+        SpecialBinding[] newSpecials = new SpecialBinding[length];
         System.arraycopy(specials, 0, newSpecials, 0, specials.length);
         specials = newSpecials;
     }
 
+    /** Returns the current binding of the symbol with index 'idx',
+     * growing the specials table to hold it, for binding the symbol.
+     */
     private SpecialBinding ensureSpecialBinding(int idx) {
-        SpecialBinding binding;
-        boolean assigned;
-        do {
-            try {
-                binding = specials[idx];
-                assigned = true;
-            }
-            catch (ArrayIndexOutOfBoundsException e) {
-                assigned = false;
-                binding = null;  // suppresses 'unassigned' error
-                growSpecials();
-            }
-        } while (! assigned);
-        return binding;
+        if (idx >= specials.length)
+            growSpecials(idx);
+        return specials[idx];
+    }
+
+    /** Returns the current binding of the symbol with index 'idx',
+     * or null if it isn't bound in this thread.
+     */
+    private SpecialBinding findSpecialBinding(int idx) {
+        SpecialBinding[] specials = this.specials;
+        return (idx < specials.length) ? specials[idx] : null;
     }
 
     public final SpecialBinding bindSpecial(Symbol name, LispObject value)
@@ -488,8 +657,7 @@ public final class LispThread extends LispObject
 
         assignSpecialIndex(name);
         SpecialBinding binding = ensureSpecialBinding(idx = name.specialIndex);
-        savedSpecials = new SpecialBindingsMark(idx, binding, savedSpecials);
-        return specials[idx] = new SpecialBinding(idx, value);
+        return pushSpecialBinding(idx, binding, value);
     }
 
     public final SpecialBinding bindSpecialToCurrentValue(Symbol name)
@@ -498,11 +666,9 @@ public final class LispThread extends LispObject
 
         assignSpecialIndex(name);
         SpecialBinding binding = ensureSpecialBinding(idx = name.specialIndex);
-        savedSpecials = new SpecialBindingsMark(idx, binding, savedSpecials);
-        return specials[idx]
-            = new SpecialBinding(idx,
-                                 (binding == null) ?
-                                 name.getSymbolValue() : binding.value);
+        return pushSpecialBinding(idx, binding,
+                                  (binding == null) ?
+                                  name.getSymbolValue() : binding.value);
     }
 
     /** Looks up the value of a special binding in the context of the
@@ -518,18 +684,18 @@ public final class LispThread extends LispObject
      */
     public final LispObject lookupSpecial(Symbol name)
     {
-        SpecialBinding binding = ensureSpecialBinding(name.specialIndex);
+        SpecialBinding binding = findSpecialBinding(name.specialIndex);
         return (binding == null) ? null : binding.value;
     }
 
     public final SpecialBinding getSpecialBinding(Symbol name)
     {
-        return ensureSpecialBinding(name.specialIndex);
+        return findSpecialBinding(name.specialIndex);
     }
 
     public final LispObject setSpecialVariable(Symbol name, LispObject value)
     {
-        SpecialBinding binding = ensureSpecialBinding(name.specialIndex);
+        SpecialBinding binding = findSpecialBinding(name.specialIndex);
         if (binding != null)
             return binding.value = value;
 
@@ -540,7 +706,7 @@ public final class LispThread extends LispObject
     public final LispObject pushSpecial(Symbol name, LispObject thing)
 
     {
-        SpecialBinding binding = ensureSpecialBinding(name.specialIndex);
+        SpecialBinding binding = findSpecialBinding(name.specialIndex);
         if (binding != null)
             return binding.value = new Cons(thing, binding.value);
 
@@ -556,7 +722,7 @@ public final class LispThread extends LispObject
     // Returns symbol value or NIL if unbound.
     public final LispObject safeSymbolValue(Symbol name)
     {
-        SpecialBinding binding = ensureSpecialBinding(name.specialIndex);
+        SpecialBinding binding = findSpecialBinding(name.specialIndex);
         if (binding != null)
             return binding.value;
 
@@ -637,8 +803,8 @@ public final class LispThread extends LispObject
     //
     // Stack consists of a list of StackSegments.
     // Top StackSegment is cached in variables stack and stackPtr.
-    private StackSegment topStackSegment = new StackSegment(INITIAL_SEGMENT_SIZE, null);
-    private Object[] stack = topStackSegment.stack;
+    private StackSegment topStackSegment;
+    private Object[] stack;
     private int stackPtr = 0;
     private StackSegment spareStackSegment;
 
@@ -669,6 +835,7 @@ public final class LispThread extends LispObject
     }
 
     private static final int INITIAL_SEGMENT_SIZE = 1 << 10;
+    private static final int VIRTUAL_INITIAL_SEGMENT_SIZE = 1 << 6;
     private static final int SEGMENT_SIZE = (1 << 19) - 4; // 4 MiB page on x86_64
 
     private void grow(int numEntries) {
@@ -855,6 +1022,58 @@ public final class LispThread extends LispObject
         }
     }
 
+    // Calls through an inline cache emitted by the compiler; the stack
+    // frame shows the name of the generic function being called.
+    public LispObject execute(GenericCallSite site, LispObject arg)
+    {
+        ensureStackCapacity(1 + STACK_FRAME_EXTRA);
+        stack[stackPtr] = site.name;
+        stack[stackPtr + 1] = arg;
+        stack[stackPtr + 2] = STACK_MARKER_1;
+        stackPtr += 1 + STACK_FRAME_EXTRA;
+        try {
+            return site.execute(arg);
+        }
+        finally {
+            popStackFrame(1);
+        }
+    }
+
+    public LispObject execute(GenericCallSite site, LispObject first,
+                              LispObject second)
+    {
+        ensureStackCapacity(2 + STACK_FRAME_EXTRA);
+        stack[stackPtr] = site.name;
+        stack[stackPtr + 1] = first;
+        stack[stackPtr + 2] = second;
+        stack[stackPtr + 3] = STACK_MARKER_2;
+        stackPtr += 2 + STACK_FRAME_EXTRA;
+        try {
+            return site.execute(first, second);
+        }
+        finally {
+            popStackFrame(2);
+        }
+    }
+
+    public LispObject execute(GenericCallSite site, LispObject first,
+                              LispObject second, LispObject third)
+    {
+        ensureStackCapacity(3 + STACK_FRAME_EXTRA);
+        stack[stackPtr] = site.name;
+        stack[stackPtr + 1] = first;
+        stack[stackPtr + 2] = second;
+        stack[stackPtr + 3] = third;
+        stack[stackPtr + 4] = STACK_MARKER_3;
+        stackPtr += 3 + STACK_FRAME_EXTRA;
+        try {
+            return site.execute(first, second, third);
+        }
+        finally {
+            popStackFrame(3);
+        }
+    }
+
     @Override
     public LispObject execute(LispObject function, LispObject first,
                               LispObject second, LispObject third,
@@ -1060,7 +1279,7 @@ public final class LispThread extends LispObject
                 }
                 // lisp stack frame
                 framePos -= numArgs + STACK_FRAME_EXTRA;
-                LispObject operator = (LispObject) stack[framePos];
+                LispObject operator = (LispObject) stk[framePos];
                 if (operator != null) {
                     if (depth <= 8) {
                         operator.incrementHotCount();
@@ -1071,6 +1290,57 @@ public final class LispThread extends LispObject
         }
     }
 
+    /**
+     * Returns the operators of the Lisp stack frames of this thread,
+     * innermost first, named as in a backtrace.
+     *
+     * This is meant to be called by a profiler running in another thread,
+     * so the stack is only read, without any synchronization: the result
+     * is a best effort snapshot which may miss frames pushed or popped
+     * while it is taken.
+     */
+    final LispObject[] sampleStack()
+    {
+        ArrayList<LispObject> operators = new ArrayList<LispObject>();
+        StackSegment segment = topStackSegment;
+        int framePos = stackPtr;
+        while (segment != null) {
+            Object[] stk = segment.stack;
+            if (framePos > stk.length)
+                framePos = stk.length;
+            while (framePos > 0) {
+                Object stackObj = stk[framePos - 1];
+                int numArgs;
+                if (stackObj instanceof StackMarker) {
+                    numArgs = ((StackMarker) stackObj).getNumArgs();
+                } else if (stackObj instanceof LispStackFrame) {
+                    numArgs = ((LispStackFrame) stackObj).getNumArgs();
+                } else if (stackObj instanceof JavaStackFrame) {
+                    framePos--;
+                    continue;
+                } else {
+                    // The frame was popped under our feet.
+                    break;
+                }
+                framePos -= numArgs + STACK_FRAME_EXTRA;
+                if (framePos < 0)
+                    break;
+                Object operator = stk[framePos];
+                if (operator instanceof Operator) {
+                    LispObject lambdaName = ((Operator)operator).getLambdaName();
+                    if (lambdaName != null && lambdaName != NIL)
+                        operator = lambdaName;
+                }
+                if (operator instanceof LispObject)
+                    operators.add((LispObject) operator);
+            }
+            segment = segment.next;
+            if (segment != null)
+                framePos = segment.stackPtr;
+        }
+        return operators.toArray(new LispObject[operators.size()]);
+    }
+
     private static void pprint(LispObject obj, int indentBy, Stream stream)
 
     {
@@ -1137,9 +1407,13 @@ public final class LispThread extends LispObject
         return new SimpleString(unreadableString(sb.toString()));
     }
 
-    @DocString(name="make-thread", args="function &key name")
+    @DocString(name="make-thread", args="function &key name virtual",
+    doc="Starts a thread calling FUNCTION and returns it.  With VIRTUAL true,\n"
+        + "the thread is a virtual thread when the JVM has virtual threads, and a\n"
+        + "platform thread otherwise.")
     private static final Primitive MAKE_THREAD =
-        new Primitive("make-thread", PACKAGE_THREADS, true, "function &key name")
+        new Primitive("make-thread", PACKAGE_THREADS, true,
+                      "function &key name virtual")
     {
         @Override
         public LispObject execute(LispObject[] args)
@@ -1148,18 +1422,33 @@ public final class LispThread extends LispObject
             if (length == 0)
                 error(new WrongNumberOfArgumentsException(this, 1, -1));
             LispObject name = NIL;
-            if (length > 1) {
-                if ((length - 1) % 2 != 0)
-                    program_error("Odd number of keyword arguments.");
-                if (length > 3)
-                    error(new WrongNumberOfArgumentsException(this, -1, 2)); // don't count the keyword itself as an argument
-                if (args[1] == Keyword.NAME)
-                    name = args[2].STRING();
+            boolean virtual = false;
+            if ((length - 1) % 2 != 0)
+                program_error("Odd number of keyword arguments.");
+            for (int i = 1; i < length; i += 2) {
+                if (args[i] == Keyword.NAME)
+                    name = args[i + 1].STRING();
+                else if (args[i] == Keyword.VIRTUAL)
+                    virtual = args[i + 1] != NIL;
                 else
                     program_error("Unrecognized keyword argument "
-                                  + args[1].princToString() + ".");
+                                  + args[i].princToString() + ".");
             }
-            return new LispThread(checkFunction(args[0]), name);
+            return new LispThread(checkFunction(args[0]), name, virtual);
+        }
+    };
+
+    @DocString(name="virtual-thread-p", args="thread",
+    doc="Returns T if THREAD is a virtual thread.")
+    private static final Primitive VIRTUAL_THREAD_P =
+        new Primitive("virtual-thread-p", PACKAGE_THREADS, true, "thread")
+    {
+        @Override
+        public LispObject execute(LispObject arg)
+        {
+            if (!(arg instanceof LispThread))
+                return type_error(arg, Symbol.THREAD);
+            return ((LispThread) arg).isVirtual() ? T : NIL;
         }
     };
 
@@ -1260,6 +1549,19 @@ public final class LispThread extends LispObject
     }
 
 
+    /**
+     * Returns the interval SECONDS in nanoseconds, for the timed waits
+     * of java.util.concurrent.  Capped at about 73 years, so that
+     * adding it to System.nanoTime() doesn't overflow.
+     */
+    static final long timeoutNanos(LispObject seconds) {
+      long millis = sleepMillisPart(seconds);
+      if (millis >= (Long.MAX_VALUE >> 2) / 1000000) {
+        return Long.MAX_VALUE >> 2;
+      }
+      return millis * 1000000 + sleepNanosPart(seconds);
+    }
+
     @DocString(name="sleep", args="seconds",
     doc="Causes the invoking thread to sleep for an interveral expressed in SECONDS.\n"
       + "SECONDS may be specified as a fraction of a second, with intervals\n"
@@ -157,6 +157,13 @@ public final class Load
                                         boolean returnLastResult,
                                         LispObject externalFormat)
     {
+        final String bundleKey = LoadBundle.fileKey(pathname);
+        final boolean topLevel = LoadBundle.isTopLevelLoad();
+        LoadBundle.Entry bundleEntry = LoadBundle.findEntry(bundleKey);
+        if (bundleEntry != null) {
+            return loadBundleEntry(bundleKey, bundleEntry, pathname, verbose,
+                                   print, false, returnLastResult, topLevel);
+        }
         Pathname mergedPathname = null;
         if (!pathname.isAbsolute() && !pathname.isJar()) {
             Pathname pathnameDefaults 
@@ -174,6 +181,14 @@ public final class Load
                 return NIL;
             }
         }
+        if (FaslContainer.isContainer(truename)) {
+            LispObject result = loadFaslContainer(pathname, truename, verbose, print,
+                                                  false, returnLastResult, externalFormat);
+            LoadBundle.recordLoad(bundleKey, truename, null, topLevel);
+            return result;
+        }
+        final Pathname fileTruename = truename;
+
         // This is where things get wierd!
         
         if (Utilities.checkZipFile(truename)) {
@@ -228,9 +243,11 @@ public final class Load
         
         try {
         	sin = new Stream(Symbol.SYSTEM_STREAM, truename.getInputStream(true), Symbol.CHARACTER, externalFormat);
-            return loadFileFromStream(pathname, truename,
-                                      sin,
-                                      verbose, print, false, returnLastResult);
+            LispObject result = loadFileFromStream(pathname, truename,
+                                                   sin,
+                                                   verbose, print, false, returnLastResult);
+            LoadBundle.recordLoad(bundleKey, fileTruename, null, topLevel);
+            return result;
         }
         finally {
             if (sin != null) {
@@ -307,6 +324,21 @@ public final class Load
         Pathname pathname = null;
         Pathname truename = null;
         pathname = new Pathname(filename);
+        final String bundleKey = LoadBundle.systemFileKey(filename);
+        final boolean topLevel = LoadBundle.isTopLevelLoad();
+        LoadBundle.Entry bundleEntry = LoadBundle.findEntry(bundleKey);
+        if (bundleEntry != null) {
+            final LispThread thread = LispThread.currentThread();
+            final SpecialBindingsMark mark = thread.markSpecialBindings();
+            thread.bindSpecial(_WARN_ON_REDEFINITION_, NIL);
+            thread.bindSpecial(FASL_LOADER, NIL);
+            try {
+                return loadBundleEntry(bundleKey, bundleEntry, pathname, verbose,
+                                       print, auto, false, topLevel);
+            } finally {
+                thread.resetSpecialBindings(mark);
+            }
+        }
         LispObject bootPath = Site.getLispHome();
         Pathname mergedPathname;
         if (bootPath instanceof Pathname) {
@@ -349,6 +381,25 @@ public final class Load
             }
         }
 
+        if (truename != null
+            && truename.type.princToString().equals(COMPILE_FILE_TYPE)
+            && FaslContainer.isContainer(truename)) {
+            final LispThread thread = LispThread.currentThread();
+            final SpecialBindingsMark mark = thread.markSpecialBindings();
+            thread.bindSpecial(_WARN_ON_REDEFINITION_, NIL);
+            thread.bindSpecial(FASL_LOADER, NIL);
+            try {
+                LispObject result = loadFaslContainer(pathname, truename, verbose, print,
+                                                      auto, false, Keyword.DEFAULT);
+                LoadBundle.recordLoad(bundleKey, truename, null, topLevel);
+                return result;
+            } finally {
+                thread.resetSpecialBindings(mark);
+            }
+        }
+
+        final Pathname fileTruename = truename;
+
         // Look for a init FASL inside a packed FASL
         if (truename != null
             && truename.type.princToString().equals(COMPILE_FILE_TYPE) && Utilities.checkZipFile(truename))  {
@@ -390,8 +441,10 @@ public final class Load
 	    thread.bindSpecial(FASL_LOADER, NIL);
             try {
                 Stream stream = new Stream(Symbol.SYSTEM_STREAM, in, Symbol.CHARACTER);
-                return loadFileFromStream(pathname, truename, stream,
-                                          verbose, print, auto);
+                LispObject result = loadFileFromStream(pathname, truename, stream,
+                                                       verbose, print, auto);
+                LoadBundle.recordLoad(bundleKey, fileTruename, url, topLevel);
+                return result;
             } finally {
                 thread.resetSpecialBindings(mark);
                 try {
@@ -505,6 +558,60 @@ public final class Load
                        // Compiler policy
                        _SPEED_, _SPACE_, _SAFETY_, _DEBUG_, _EXPLAIN_ };
 
+    // Loads the file KEY from the load bundle being replayed, binding
+    // *FASL-CONTAINER* so that its compiled functions are defined from
+    // the bundle when first called.
+    private static final LispObject loadBundleEntry(String key,
+                                                    LoadBundle.Entry entry,
+                                                    Pathname pathname,
+                                                    boolean verbose,
+                                                    boolean print,
+                                                    boolean auto,
+                                                    boolean returnLastResult,
+                                                    boolean topLevel)
+    {
+        InputStream in = entry.container.getEntryAsStream(FaslContainer.LOADER);
+        if (in == null) {
+            return error(new FileError("Load bundle has no contents for "
+                                       + pathname.princToString() + ".",
+                                       pathname));
+        }
+        Stream stream = new Stream(Symbol.SYSTEM_STREAM, in, Symbol.CHARACTER);
+        try {
+            LispObject result = loadFileFromStream(pathname, entry.truename, stream,
+                                                   verbose, print, auto,
+                                                   returnLastResult,
+                                                   entry.container.boxed());
+            LoadBundle.recordBundleLoad(key, entry, topLevel);
+            return result;
+        } finally {
+            stream.close(NIL);
+        }
+    }
+
+    // Loads the init fasl of the indexed fasl TRUENAME, whose compiled
+    // functions are then defined from the container as they are called.
+    private static final LispObject loadFaslContainer(Pathname pathname,
+                                                      Pathname truename,
+                                                      boolean verbose,
+                                                      boolean print,
+                                                      boolean auto,
+                                                      boolean returnLastResult,
+                                                      LispObject externalFormat)
+    {
+        FaslContainer container = FaslContainer.open(truename);
+        InputStream in = container.getEntryAsStream(FaslContainer.LOADER);
+        if (in == null) {
+            return error(new FileError("Failed to find loadable init FASL in "
+                                       + "'" + truename.getNamestring() + "'",
+                                       truename));
+        }
+        Stream stream = new Stream(Symbol.SYSTEM_STREAM, in, Symbol.CHARACTER,
+                                   externalFormat);
+        return loadFileFromStream(pathname, truename, stream, verbose, print,
+                                  auto, returnLastResult, container.boxed());
+    }
+
     // A nil TRUENAME signals a load from stream which has no possible path
     private static final LispObject loadFileFromStream(LispObject pathname,
                                                        LispObject truename,
@@ -513,11 +620,27 @@ public final class Load
                                                        boolean print,
                                                        boolean auto,
                                                        boolean returnLastResult)
+    {
+        return loadFileFromStream(pathname, truename, in, verbose, print,
+                                  auto, returnLastResult, NIL);
+    }
+
+    private static final LispObject loadFileFromStream(LispObject pathname,
+                                                       LispObject truename,
+                                                       Stream in,
+                                                       boolean verbose,
+                                                       boolean print,
+                                                       boolean auto,
+                                                       boolean returnLastResult,
+                                                       LispObject container)
 
     {
         long start = System.currentTimeMillis();
         final LispThread thread = LispThread.currentThread();
         final SpecialBindingsMark mark = thread.markSpecialBindings();
+        // Bound even when NIL, so that a nested LOAD doesn't see the
+        // container of the file loading it.
+        thread.bindSpecial(FaslContainer._FASL_CONTAINER_, container);
 
         for (Symbol special : savedSpecials)
             thread.bindSpecialToCurrentValue(special);
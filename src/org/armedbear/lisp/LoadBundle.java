@@ -0,0 +1,358 @@
+/*
+ * LoadBundle.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * Load bundles, as written by EXT:SAVE-LOAD-BUNDLE and replayed with
+ * the --load-bundle command line option.
+ *
+ * A load bundle is not a heap image.  The state of a running Lisp lives
+ * partly in Java objects, such as the primitives built by static
+ * initializers, compiled functions and their constants, and Java proxies,
+ * that can't be written out and read back in general.  A bundle
+ * records the files loaded since startup instead.  It is an indexed fasl
+ * (see FaslContainer) holding, for every file loaded, its init fasl or
+ * source text and the classes of its compiled functions.  A manifest
+ * lists the files and, in order, the loads that were made outside any
+ * other load, starting with boot.lisp.
+ *
+ * Replaying a bundle loads those files again, boot.lisp included, so it
+ * saves the cost of finding, opening and unpacking them and of defining
+ * functions that are never called, not that of running their top level
+ * forms.  While it does, a file that is in the bundle is read from the
+ * mapped file rather than looked up on the classpath or on disk, and its
+ * compiled functions are only defined when first called.  State made by
+ * evaluating forms other than by loading a file is not part of a
+ * bundle.
+ */
+public final class LoadBundle
+{
+    static final String MANIFEST = "__bundle__";
+    static final String VERSION = "ABCL load bundle 1";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** A file loaded in this session and where its contents are. */
+    private static final class Source
+    {
+        final LispObject truename;
+        final URL url;
+        final FaslContainer container;
+        /** When TRUENAME was last modified as it was loaded, or 0. */
+        final long lastModified;
+
+        Source(LispObject truename, URL url, FaslContainer container) {
+            this.truename = truename;
+            this.url = url;
+            this.container = container;
+            this.lastModified = container == null && truename instanceof Pathname
+                ? ((Pathname) truename).getLastModified() : 0;
+        }
+    }
+
+    /** A file in the bundle being replayed. */
+    static final class Entry
+    {
+        final FaslContainer container;
+        final LispObject truename;
+
+        Entry(FaslContainer container, LispObject truename) {
+            this.container = container;
+            this.truename = truename;
+        }
+    }
+
+    // Files are keyed on what was asked of the loader: the name of a
+    // system file, or the merged pathname of any other file.
+    private static final LinkedHashMap<String,Source> sources
+        = new LinkedHashMap<String,Source>();
+    private static final ArrayList<String> topLevelLoads = new ArrayList<String>();
+
+    /** The entries of the bundle being replayed, or null. */
+    private static volatile HashMap<String,Entry> replaying;
+
+    private LoadBundle() {}
+
+    static String systemFileKey(String filename) {
+        return "system:" + filename;
+    }
+
+    static String fileKey(Pathname pathname) {
+        if (!pathname.isAbsolute() && !pathname.isJar()) {
+            Pathname defaults
+                = coerceToPathname(Symbol.DEFAULT_PATHNAME_DEFAULTS.symbolValue());
+            pathname = Pathname.mergePathnames(pathname, defaults);
+        }
+        String namestring = pathname.getNamestring();
+        return namestring == null ? null : "file:" + namestring;
+    }
+
+    /**
+     * Notes that the file KEY is being loaded from TRUENAME or, for a
+     * system file that has no pathname, from URL.  Called when the load
+     * is done, so that the file is only recorded if it loaded.
+     */
+    static void recordLoad(String key, LispObject truename, URL url,
+                           boolean topLevel)
+    {
+        record(key, new Source(truename, url, null), topLevel);
+    }
+
+    private static void record(String key, Source source, boolean topLevel) {
+        if (key == null) {
+            return;
+        }
+        synchronized (sources) {
+            sources.remove(key);
+            sources.put(key, source);
+            if (topLevel) {
+                topLevelLoads.add(key);
+            }
+        }
+    }
+
+    /** Returns true unless called while a file is being loaded. */
+    static boolean isTopLevelLoad() {
+        return Fixnum.getValue(_LOAD_DEPTH_.symbolValue()) == 0;
+    }
+
+    /** Returns the file KEY of the bundle being replayed, or null. */
+    static Entry findEntry(String key) {
+        HashMap<String,Entry> entries = replaying;
+        return entries == null || key == null ? null : entries.get(key);
+    }
+
+    static void recordBundleLoad(String key, Entry entry, boolean topLevel) {
+        record(key, new Source(entry.truename, null, entry.container), topLevel);
+    }
+
+    /**
+     * Replays the loads recorded in the bundle at PATHNAME, in place of
+     * loading boot.lisp.
+     */
+    public static void replay(Pathname pathname) {
+        FaslContainer container = FaslContainer.open(pathname);
+        byte[] manifest = container.getEntryBytes(MANIFEST);
+        if (manifest == null) {
+            error(new FileError("Not a load bundle.", pathname));
+        }
+        String[] lines = new String(manifest, UTF8).split("\n");
+        if (!lines[0].equals(VERSION)) {
+            error(new FileError("Unsupported load bundle version: " + lines[0],
+                                pathname));
+        }
+        HashMap<String,Entry> entries = new HashMap<String,Entry>();
+        ArrayList<String> loads = new ArrayList<String>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split("\t", -1);
+            if (fields[0].equals("file") && fields.length == 4) {
+                LispObject truename = fields[3].length() == 0
+                    ? NIL : new Pathname(fields[3]);
+                entries.put(fields[2],
+                            new Entry(new FaslContainer(container, fields[1] + "/"),
+                                      truename));
+            } else if (fields[0].equals("load") && fields.length == 2) {
+                loads.add(fields[1]);
+            } else {
+                error(new FileError("Corrupt load bundle manifest.", pathname));
+            }
+        }
+        replaying = entries;
+        try {
+            for (String key : loads) {
+                if (key.startsWith("system:")) {
+                    Load.loadSystemFile(key.substring("system:".length()),
+                                        false, false, false);
+                } else {
+                    Load.load(key.substring("file:".length()));
+                }
+            }
+        } finally {
+            replaying = null;
+        }
+    }
+
+    /**
+     * Adds the contents of SOURCE to NAMES and CONTENTS under PREFIX.
+     * Returns false if the file is gone, having been deleted since it
+     * was loaded.  A file changed since it was loaded is an error, since
+     * the bundle would then hold what was never loaded.
+     */
+    private static boolean addContents(Source source, String prefix,
+                                       ArrayList<String> names,
+                                       ArrayList<byte[]> contents)
+        throws IOException
+    {
+        if (source.container != null) {
+            for (String name : source.container.getEntryNames()) {
+                names.add(prefix + name);
+                contents.add(source.container.getEntryBytes(name));
+            }
+        } else if (source.truename instanceof Pathname) {
+            Pathname truename = (Pathname) source.truename;
+            InputStream in = truename.getInputStream();
+            if (in == null) {
+                return false;
+            }
+            in.close();
+            if (truename.getLastModified() != source.lastModified) {
+                error(new FileError(truename.princToString()
+                                    + " has changed since it was loaded.",
+                                    truename));
+            }
+            if (FaslContainer.isContainer(truename)) {
+                FaslContainer fasl = FaslContainer.open(truename);
+                for (String name : fasl.getEntryNames()) {
+                    names.add(prefix + name);
+                    contents.add(fasl.getEntryBytes(name));
+                }
+            } else if (Utilities.checkZipFile(truename)) {
+                ZipInputStream zip = new ZipInputStream(truename.getInputStream());
+                try {
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        String name = entry.getName();
+                        if (name.endsWith("." + Load.COMPILE_FILE_INIT_FASL_TYPE)) {
+                            name = FaslContainer.LOADER;
+                        }
+                        names.add(prefix + name);
+                        contents.add(readEntry(zip));
+                    }
+                } finally {
+                    zip.close();
+                }
+            } else {
+                names.add(prefix + FaslContainer.LOADER);
+                contents.add(FaslContainer.readAll(truename.getInputStream()));
+            }
+        } else {
+            names.add(prefix + FaslContainer.LOADER);
+            contents.add(FaslContainer.readAll(source.url.openStream()));
+        }
+        return true;
+    }
+
+    private static byte[] readEntry(InputStream in) throws IOException {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            bytes.write(chunk, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void save(Pathname output) throws IOException {
+        ArrayList<Map.Entry<String,Source>> files;
+        ArrayList<String> loads;
+        synchronized (sources) {
+            files = new ArrayList<Map.Entry<String,Source>>(sources.entrySet());
+            loads = new ArrayList<String>(topLevelLoads);
+        }
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<byte[]> contents = new ArrayList<byte[]>();
+        StringBuilder manifest = new StringBuilder(VERSION).append('\n');
+        HashSet<String> missing = new HashSet<String>();
+        for (int i = 0; i < files.size(); i++) {
+            Map.Entry<String,Source> file = files.get(i);
+            Source source = file.getValue();
+            if (!addContents(source, i + "/", names, contents)) {
+                missing.add(file.getKey());
+                Symbol.WARN.getSymbolFunction()
+                    .execute(new SimpleString("~A no longer exists and is left out of the load bundle."),
+                             source.truename);
+                continue;
+            }
+            String truename = source.truename instanceof Pathname
+                ? ((Pathname) source.truename).getNamestring() : null;
+            manifest.append("file\t").append(i).append('\t')
+                .append(file.getKey()).append('\t')
+                .append(truename == null ? "" : truename).append('\n');
+        }
+        for (String key : loads) {
+            if (missing.contains(key)) {
+                continue;
+            }
+            manifest.append("load\t").append(key).append('\n');
+        }
+        names.add(MANIFEST);
+        contents.add(manifest.toString().getBytes(UTF8));
+        FaslContainer.write(output.getFile(),
+                            names.toArray(new String[names.size()]),
+                            contents.toArray(new byte[contents.size()][]));
+    }
+
+    // ### save-load-bundle pathname => pathname
+    private static final Primitive SAVE_LOAD_BUNDLE = new pf_save_load_bundle();
+    @DocString(name="save-load-bundle", args="pathname",
+    doc="Writes the files loaded so far, as they were loaded, to PATHNAME.\n"
+        + "Starting ABCL with --load-bundle PATHNAME loads them again from\n"
+        + "there, in place of the normal boot, without defining their\n"
+        + "compiled functions until they are called.  It is an error if one\n"
+        + "of the files changed since it was loaded.")
+    private static final class pf_save_load_bundle extends Primitive {
+        pf_save_load_bundle() {
+            super("save-load-bundle", PACKAGE_EXT, true, "pathname");
+        }
+
+        @Override
+        public LispObject execute(LispObject arg) {
+            Pathname pathname = coerceToPathname(arg);
+            if (!pathname.isAbsolute()) {
+                pathname = Pathname.mergePathnames(pathname,
+                    coerceToPathname(Symbol.DEFAULT_PATHNAME_DEFAULTS.symbolValue()));
+            }
+            try {
+                save(pathname);
+            } catch (IOException e) {
+                return error(new FileError("Failed to write load bundle: "
+                                           + e.getMessage(), pathname));
+            }
+            return pathname;
+        }
+    };
+}
@@ -0,0 +1,322 @@
+/*
+ * Mailbox.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A first in, first out queue of messages between threads.
+ *
+ * A mailbox made with a capacity is backed by an ArrayBlockingQueue, so
+ * that sending and reading allocate nothing; one without is unbounded
+ * and backed by a LinkedBlockingQueue.
+ */
+public final class Mailbox extends LispObject
+{
+    private final BlockingQueue<LispObject> queue;
+    private final int capacity;
+
+    public Mailbox(int capacity) {
+        this.capacity = capacity;
+        if (capacity > 0) {
+            queue = new ArrayBlockingQueue<LispObject>(capacity);
+        } else {
+            queue = new LinkedBlockingQueue<LispObject>();
+        }
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.MAILBOX;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.MAILBOX;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.MAILBOX) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.MAILBOX) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        StringBuilder sb = new StringBuilder("MAILBOX ");
+        sb.append(queue.size());
+        if (capacity > 0) {
+            sb.append('/').append(capacity);
+        }
+        return new SimpleString(unreadableString(sb.toString()));
+    }
+
+    /** Sends ITEM, waiting for room in the mailbox. */
+    public void send(LispObject item) {
+        while (true) {
+            try {
+                queue.put(item);
+                return;
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+            }
+        }
+    }
+
+    /**
+     * Sends ITEM, waiting at most NANOS nanoseconds for room in the
+     * mailbox.  Returns false if there was none.
+     */
+    public boolean send(LispObject item, long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        while (true) {
+            try {
+                return queue.offer(item, nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+                nanos = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    /** Returns the next item, waiting for one to be sent. */
+    public LispObject read() {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+            }
+        }
+    }
+
+    /**
+     * Returns the next item, waiting at most NANOS nanoseconds for one
+     * to be sent, or null if none was.
+     */
+    public LispObject read(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        while (true) {
+            try {
+                return queue.poll(nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+                nanos = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    static Mailbox checkMailbox(LispObject obj) {
+        if (obj instanceof Mailbox) {
+            return (Mailbox) obj;
+        }
+        return (Mailbox) type_error(obj, Symbol.MAILBOX);
+    }
+
+    // ### make-mailbox &key capacity => mailbox
+    private static final Primitive MAKE_MAILBOX = new pf_make_mailbox();
+    @DocString(name="make-mailbox", args="&key capacity",
+    doc="Returns a new mailbox.  Items are read from a mailbox in the order they\n"
+        + "were sent.  A mailbox with a CAPACITY holds at most that many items;\n"
+        + "sending to a full one waits until an item is read.")
+    private static final class pf_make_mailbox extends Primitive {
+        pf_make_mailbox() {
+            super("make-mailbox", PACKAGE_THREADS, true, "&key capacity");
+        }
+
+        @Override
+        public LispObject execute(LispObject[] args) {
+            if (args.length % 2 != 0) {
+                program_error("Odd number of keyword arguments.");
+            }
+            LispObject capacity = NIL;
+            for (int i = 0; i < args.length; i += 2) {
+                if (args[i] == Keyword.CAPACITY) {
+                    capacity = args[i + 1];
+                } else {
+                    program_error("Unrecognized keyword argument "
+                                  + args[i].princToString() + ".");
+                }
+            }
+            if (capacity == NIL) {
+                return new Mailbox(0);
+            }
+            if (!(capacity instanceof Fixnum) || ((Fixnum) capacity).value <= 0) {
+                return type_error(capacity, list(Symbol.INTEGER, Fixnum.ONE,
+                                                 Fixnum.getInstance(Integer.MAX_VALUE)));
+            }
+            return new Mailbox(((Fixnum) capacity).value);
+        }
+    };
+
+    // ### mailbox-p object => boolean
+    private static final Primitive MAILBOX_P = new pf_mailbox_p();
+    @DocString(name="mailbox-p", args="object",
+    doc="Returns T if OBJECT is a mailbox.")
+    private static final class pf_mailbox_p extends Primitive {
+        pf_mailbox_p() {
+            super("mailbox-p", PACKAGE_THREADS, true, "object");
+        }
+
+        @Override
+        public LispObject execute(LispObject arg) {
+            return arg instanceof Mailbox ? T : NIL;
+        }
+    };
+
+    // ### mailbox-send mailbox item &optional timeout => boolean
+    private static final Primitive MAILBOX_SEND = new pf_mailbox_send();
+    @DocString(name="mailbox-send", args="mailbox item &optional timeout",
+    doc="Sends ITEM to MAILBOX, waking up a thread waiting to read from it.\n"
+        + "If MAILBOX is full, waits for room, for at most TIMEOUT seconds if\n"
+        + "given.  Returns T, or NIL if the item wasn't sent within TIMEOUT.")
+    private static final class pf_mailbox_send extends Primitive {
+        pf_mailbox_send() {
+            super("mailbox-send", PACKAGE_THREADS, true,
+                  "mailbox item &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox, LispObject item) {
+            checkMailbox(mailbox).send(item);
+            return T;
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox, LispObject item,
+                                  LispObject timeout) {
+            Mailbox m = checkMailbox(mailbox);
+            if (timeout == NIL) {
+                m.send(item);
+                return T;
+            }
+            return m.send(item, LispThread.timeoutNanos(timeout)) ? T : NIL;
+        }
+    };
+
+    // ### mailbox-read mailbox &optional timeout => item, readp
+    private static final Primitive MAILBOX_READ = new pf_mailbox_read();
+    @DocString(name="mailbox-read", args="mailbox &optional timeout",
+    doc="Returns the oldest item in MAILBOX and T, removing it from the mailbox.\n"
+        + "Waits for an item if MAILBOX is empty, for at most TIMEOUT seconds if\n"
+        + "given, and returns NIL and NIL if none was sent within TIMEOUT.")
+    private static final class pf_mailbox_read extends Primitive {
+        pf_mailbox_read() {
+            super("mailbox-read", PACKAGE_THREADS, true,
+                  "mailbox &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox) {
+            return LispThread.currentThread()
+                .setValues(checkMailbox(mailbox).read(), T);
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox, LispObject timeout) {
+            Mailbox m = checkMailbox(mailbox);
+            LispObject item = timeout == NIL
+                ? m.read() : m.read(LispThread.timeoutNanos(timeout));
+            final LispThread thread = LispThread.currentThread();
+            if (item == null) {
+                return thread.setValues(NIL, NIL);
+            }
+            return thread.setValues(item, T);
+        }
+    };
+
+    // ### mailbox-peek mailbox => item, emptyp
+    private static final Primitive MAILBOX_PEEK = new pf_mailbox_peek();
+    @DocString(name="mailbox-peek", args="mailbox",
+    doc="Returns two values. The second returns non-NIL when the mailbox\n"
+        + "is empty. The first is the next item to be read from the mailbox.\n"
+        + "\n"
+        + "Note that due to multi-threading, the first value returned upon\n"
+        + "peek, may be different from the one returned upon next read in the\n"
+        + "calling thread.")
+    private static final class pf_mailbox_peek extends Primitive {
+        pf_mailbox_peek() {
+            super("mailbox-peek", PACKAGE_THREADS, true, "mailbox");
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox) {
+            LispObject item = checkMailbox(mailbox).queue.peek();
+            final LispThread thread = LispThread.currentThread();
+            if (item == null) {
+                return thread.setValues(NIL, T);
+            }
+            return thread.setValues(item, NIL);
+        }
+    };
+
+    // ### mailbox-empty-p mailbox => boolean
+    private static final Primitive MAILBOX_EMPTY_P = new pf_mailbox_empty_p();
+    @DocString(name="mailbox-empty-p", args="mailbox",
+    doc="Returns T if MAILBOX holds no items.")
+    private static final class pf_mailbox_empty_p extends Primitive {
+        pf_mailbox_empty_p() {
+            super("mailbox-empty-p", PACKAGE_THREADS, true, "mailbox");
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox) {
+            return checkMailbox(mailbox).queue.isEmpty() ? T : NIL;
+        }
+    };
+
+    // ### mailbox-count mailbox => count
+    private static final Primitive MAILBOX_COUNT = new pf_mailbox_count();
+    @DocString(name="mailbox-count", args="mailbox",
+    doc="Returns the number of items in MAILBOX.")
+    private static final class pf_mailbox_count extends Primitive {
+        pf_mailbox_count() {
+            super("mailbox-count", PACKAGE_THREADS, true, "mailbox");
+        }
+
+        @Override
+        public LispObject execute(LispObject mailbox) {
+            return Fixnum.getInstance(checkMailbox(mailbox).queue.size());
+        }
+    };
+}
@@ -0,0 +1,215 @@
+/*
+ * Mutex.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A lock held by one thread at a time, backed by a ReentrantLock: the
+ * thread holding a mutex may get it again, and has to release it as
+ * many times.
+ */
+public final class Mutex extends LispObject
+{
+    final ReentrantLock lock = new ReentrantLock();
+    private final LispObject name;
+
+    public Mutex(LispObject name) {
+        this.name = name;
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.MUTEX;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.MUTEX;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.MUTEX) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.MUTEX) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        StringBuilder sb = new StringBuilder("MUTEX");
+        if (name != NIL) {
+            sb.append(" \"").append(name.getStringValue()).append('"');
+        }
+        return new SimpleString(unreadableString(sb.toString()));
+    }
+
+    /** Waits for and takes the lock. */
+    public void get() {
+        while (true) {
+            try {
+                lock.lockInterruptibly();
+                return;
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+            }
+        }
+    }
+
+    /**
+     * Takes the lock, waiting at most NANOS nanoseconds for it.
+     * Returns false if it wasn't taken.
+     */
+    public boolean get(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        while (true) {
+            try {
+                return lock.tryLock(nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                LispThread.currentThread().processThreadInterrupts();
+                nanos = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    public void release() {
+        try {
+            lock.unlock();
+        } catch (IllegalMonitorStateException e) {
+            error(new IllegalMonitorState("The mutex "
+                                          + printObject().getStringValue()
+                                          + " isn't held by this thread."));
+        }
+    }
+
+    static Mutex checkMutex(LispObject obj) {
+        if (obj instanceof Mutex) {
+            return (Mutex) obj;
+        }
+        return (Mutex) type_error(obj, Symbol.MUTEX);
+    }
+
+    // ### make-mutex &key name => mutex
+    private static final Primitive MAKE_MUTEX = new pf_make_mutex();
+    @DocString(name="make-mutex", args="&key name",
+    doc="Returns a new mutex, to be taken with GET-MUTEX or WITH-MUTEX.")
+    private static final class pf_make_mutex extends Primitive {
+        pf_make_mutex() {
+            super("make-mutex", PACKAGE_THREADS, true, "&key name");
+        }
+
+        @Override
+        public LispObject execute(LispObject[] args) {
+            if (args.length % 2 != 0) {
+                program_error("Odd number of keyword arguments.");
+            }
+            LispObject name = NIL;
+            for (int i = 0; i < args.length; i += 2) {
+                if (args[i] == Keyword.NAME) {
+                    name = args[i + 1].STRING();
+                } else {
+                    program_error("Unrecognized keyword argument "
+                                  + args[i].princToString() + ".");
+                }
+            }
+            return new Mutex(name);
+        }
+    };
+
+    // ### mutex-p object => boolean
+    private static final Primitive MUTEX_P = new pf_mutex_p();
+    @DocString(name="mutex-p", args="object",
+    doc="Returns T if OBJECT is a mutex.")
+    private static final class pf_mutex_p extends Primitive {
+        pf_mutex_p() {
+            super("mutex-p", PACKAGE_THREADS, true, "object");
+        }
+
+        @Override
+        public LispObject execute(LispObject arg) {
+            return arg instanceof Mutex ? T : NIL;
+        }
+    };
+
+    // ### get-mutex mutex &optional timeout => boolean
+    private static final Primitive GET_MUTEX = new pf_get_mutex();
+    @DocString(name="get-mutex", args="mutex &optional timeout",
+    doc="Acquires a lock on the `mutex', waiting for another thread to release\n"
+        + "it, for at most TIMEOUT seconds if given.  Returns T, or NIL if the\n"
+        + "lock wasn't acquired within TIMEOUT.")
+    private static final class pf_get_mutex extends Primitive {
+        pf_get_mutex() {
+            super("get-mutex", PACKAGE_THREADS, true, "mutex &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject mutex) {
+            checkMutex(mutex).get();
+            return T;
+        }
+
+        @Override
+        public LispObject execute(LispObject mutex, LispObject timeout) {
+            Mutex m = checkMutex(mutex);
+            if (timeout == NIL) {
+                m.get();
+                return T;
+            }
+            return m.get(LispThread.timeoutNanos(timeout)) ? T : NIL;
+        }
+    };
+
+    // ### release-mutex mutex => nil
+    private static final Primitive RELEASE_MUTEX = new pf_release_mutex();
+    @DocString(name="release-mutex", args="mutex",
+    doc="Releases a lock on the `mutex'.  It is an error to release a mutex\n"
+        + "the calling thread doesn't hold.")
+    private static final class pf_release_mutex extends Primitive {
+        pf_release_mutex() {
+            super("release-mutex", PACKAGE_THREADS, true, "mutex");
+        }
+
+        @Override
+        public LispObject execute(LispObject mutex) {
+            checkMutex(mutex).release();
+            return NIL;
+        }
+    };
+}
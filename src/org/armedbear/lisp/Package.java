@@ -244,6 +244,41 @@ public final class Package extends LispObject implements java.io.Serializable
         return externalSymbols.get(name.toString());
     }
 
+    // Lookups of the name of a token being read; see ReadToken.
+
+    Symbol findInternalSymbol(ReadToken.Key name)
+    {
+        return internalSymbols.get(name);
+    }
+
+    Symbol findExternalSymbol(ReadToken.Key name)
+    {
+        return externalSymbols.get(name);
+    }
+
+    Symbol intern(ReadToken.Key name)
+    {
+        // Most symbols being read exist already, and finding them
+        // doesn't need the package lock.
+        Symbol symbol = externalSymbols.get(name);
+        if (symbol != null)
+            return symbol;
+        symbol = internalSymbols.get(name);
+        if (symbol != null)
+            return symbol;
+        if (useList instanceof Cons) {
+            LispObject usedPackages = useList;
+            while (usedPackages != NIL) {
+                Package pkg = (Package) usedPackages.car();
+                symbol = pkg.externalSymbols.get(name);
+                if (symbol != null)
+                    return symbol;
+                usedPackages = usedPackages.cdr();
+            }
+        }
+        return intern(name.toString());
+    }
+
     // Returns null if symbol is not accessible in this package.
     public Symbol findAccessibleSymbol(String name)
 
@@ -52,6 +52,7 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -59,6 +60,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.text.MessageFormat;
 import java.util.StringTokenizer;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -2613,57 +2615,22 @@ public class Pathname extends LispObject implements IPathname {
 					return ((Pathname)o).getLastModified();
 				} else {
 					// 3. Entry in JAR
-					
-					
-					InputStream jaris = ((Pathname)d.car()).getInputStream(true);
-					
-					if (jaris == null) {
-						return 0;
-					}
-					
-					ZipInputStream jar = new ZipInputStream(jaris);
-					
-					ZipEntry ientry = null;
-					ZipEntry entry = null;
-					
+					// The jar's central directory has the time of
+					// each entry: look it up through the (cached) jar
+					// file instead of reading the whole jar.
 					try {
-						ientry = jar.getNextEntry();
-					} catch (IOException e) {
-						ientry = null;
-					}
-					
-					while(ientry != null && entry == null) {
-						
-						if (ientry.getName().equals(entryPath)) {
-							entry = ientry;
-						}
-						
-						try {
-							ientry = jar.getNextEntry();
-						} catch (IOException e) {
-							ientry = null;
+						URLConnection connection = toURL().openConnection();
+						if (!(connection instanceof JarURLConnection)) {
+							return 0;
 						}
-					}
-					
-					if (entry == null) {
-						try {
-							jar.close();
-						} catch (IOException e) {
+						JarEntry entry = ((JarURLConnection)connection).getJarEntry();
+						if (entry == null || entry.getTime() == -1) {
+							return 0;
 						}
-						return 0;
-					}
-					
-					final long time = entry.getTime();
-					
-					try {
-						jar.close();
+						return entry.getTime();
 					} catch (IOException e) {
-					}
-					
-					if (time == -1) {
 						return 0;
 					}
-					return time;
 				}
 			} else {
 				
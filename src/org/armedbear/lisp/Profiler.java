@@ -35,18 +35,179 @@ package org.armedbear.lisp;
 
 import static org.armedbear.lisp.Lisp.*;
 
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
 public class Profiler
 {
     static int sleep = 1;
 
+    // The threads sampled by the :TIME profiler, or null for all of them.
+    static LispThread[] sampledThreads;
+
+    // Stack samples taken by the :TIME profiler since it was last started.
+    private static final HashMap<StackSample,StackSample> samples
+        = new HashMap<StackSample,StackSample>();
+
+    // Whether the :ALLOCATION profiler is running, which also samples
+    // the bytes threads allocate.
+    static boolean allocation;
+
+    // The JVM's per thread allocation counters, or null if it has none.
+    private static final com.sun.management.ThreadMXBean threadBean;
+    static {
+        com.sun.management.ThreadMXBean bean = null;
+        try {
+            java.lang.management.ThreadMXBean b
+                = ManagementFactory.getThreadMXBean();
+            if (b instanceof com.sun.management.ThreadMXBean) {
+                bean = (com.sun.management.ThreadMXBean) b;
+                if (bean.isThreadAllocatedMemorySupported())
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                else
+                    bean = null;
+            }
+        }
+        catch (Throwable t) {
+            bean = null;
+        }
+        threadBean = bean;
+    }
+
+    // The bytes allocated by THREAD so far, or -1 if unknown.
+    static long allocatedBytes(LispThread thread)
+    {
+        if (threadBean == null)
+            return -1;
+        return threadBean.getThreadAllocatedBytes(thread.javaThread.getId());
+    }
+
+    // For each thread sampled by the :ALLOCATION profiler, the bytes it
+    // had allocated when first sampled and when last sampled.
+    private static final HashMap<LispThread,long[]> allocations
+        = new HashMap<LispThread,long[]>();
+
+    private static final class StackSample
+    {
+        final LispThread thread;
+        final LispObject[] operators;
+        final int hash;
+        int count;
+        // Bytes allocated by the thread between the previous sample and
+        // this one, with the :ALLOCATION profiler.
+        long bytes;
+
+        StackSample(LispThread thread, LispObject[] operators)
+        {
+            this.thread = thread;
+            this.operators = operators;
+            int h = System.identityHashCode(thread);
+            for (LispObject operator : operators)
+                h = h * 31 + System.identityHashCode(operator);
+            hash = h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof StackSample))
+                return false;
+            StackSample other = (StackSample) o;
+            if (thread != other.thread
+                || operators.length != other.operators.length)
+                return false;
+            for (int i = 0; i < operators.length; i++)
+                if (operators[i] != other.operators[i])
+                    return false;
+            return true;
+        }
+    }
+
+    static void sample(LispThread thread)
+    {
+        long bytes = allocation ? allocatedDelta(thread) : 0;
+        LispObject[] operators = thread.sampleStack();
+        if (operators.length == 0)
+            return;
+        for (int i = 0; i < operators.length; i++) {
+            // Operators are usually named by symbols, whose call counts
+            // are those of their function definitions.
+            LispObject operator = operators[i];
+            if (operator instanceof Symbol) {
+                LispObject function = ((Symbol)operator).getSymbolFunction();
+                if (function != null)
+                    operator = function;
+            }
+            if (i < 8)
+                operator.incrementHotCount();
+            operator.incrementCallCount();
+        }
+        StackSample key = new StackSample(thread, operators);
+        synchronized (samples) {
+            StackSample sample = samples.get(key);
+            if (sample == null) {
+                samples.put(key, key);
+                sample = key;
+            }
+            sample.count++;
+            sample.bytes += bytes;
+        }
+    }
+
+    // Returns the bytes THREAD allocated since it was last sampled.
+    private static long allocatedDelta(LispThread thread)
+    {
+        long bytes = allocatedBytes(thread);
+        if (bytes < 0)
+            return 0;
+        synchronized (samples) {
+            long[] counts = allocations.get(thread);
+            if (counts == null) {
+                allocations.put(thread, new long[] { bytes, bytes });
+                return 0;
+            }
+            long delta = bytes - counts[1];
+            counts[1] = bytes;
+            return delta;
+        }
+    }
+
+    static void sampleThreads()
+    {
+        LispThread[] threads = sampledThreads;
+        Collection<LispThread> all = (threads == null)
+            ? LispThread.map.values()
+            : Arrays.asList(threads);
+        for (LispThread thread : all) {
+            if (thread.javaThread.isAlive())
+                sample(thread);
+        }
+    }
+
     // ### %start-profiler
-    // %start-profiler type granularity
+    // %start-profiler type granularity &optional threads
     public static final Primitive _START_PROFILER =
         new Primitive("%start-profiler", PACKAGE_PROF, false)
     {
         @Override
         public LispObject execute(LispObject first, LispObject second)
 
+        {
+            return execute(first, second, T);
+        }
+
+        @Override
+        public LispObject execute(LispObject first, LispObject second,
+                                  LispObject third)
+
         {
             final LispThread thread = LispThread.currentThread();
             Stream out = getStandardOutput();
@@ -54,13 +215,29 @@ public class Profiler
             if (profiling) {
                 out._writeLine("; Profiler already started.");
             } else {
+                allocation = false;
                 if (first == Keyword.TIME)
                     sampling = true;
+                else if (first == Keyword.ALLOCATION)
+                    sampling = allocation = true;
                 else if (first == Keyword.COUNT_ONLY)
                     sampling = false;
                 else
                     return error(new LispError(
-                        "%START-PROFILER: argument must be either :TIME or :COUNT-ONLY"));
+                        "%START-PROFILER: argument must be :TIME, :ALLOCATION or :COUNT-ONLY"));
+                if (third == T) {
+                    sampledThreads = null;
+                } else {
+                    LispObject list = third;
+                    LispThread[] threads = new LispThread[list.length()];
+                    for (int i = 0; i < threads.length; i++) {
+                        if (!(list.car() instanceof LispThread))
+                            return type_error(list.car(), Symbol.THREAD);
+                        threads[i] = (LispThread) list.car();
+                        list = list.cdr();
+                    }
+                    sampledThreads = threads;
+                }
                 Package[] packages = Packages.getAllPackages();
                 for (int i = 0; i < packages.length; i++) {
                     Package pkg = packages[i];
@@ -89,15 +266,29 @@ public class Profiler
                         }
                     }
                 }
+                synchronized (samples) {
+                    samples.clear();
+                    allocations.clear();
+                }
+                if (allocation) {
+                    // Start counting from now, not from the first sample.
+                    Collection<LispThread> all = (sampledThreads == null)
+                        ? LispThread.map.values()
+                        : Arrays.asList(sampledThreads);
+                    for (LispThread t : all)
+                        allocatedDelta(t);
+                }
+                // make sure the sampler doesn't fall through on the
+                // first iteration
+                profiling = true;
                 if (sampling) {
                     sleep = Fixnum.getValue(second);
                     Runnable profilerRunnable = new Runnable() {
                         public void run()
                         {
-                            profiling = true; // make sure we don't fall through on the first iteration
                             while (profiling) {
                                 try {
-                                    thread.incrementCallCounts();
+                                    sampleThreads();
                                     Thread.sleep(sleep);
                                 }
                                 //### FIXME exception
@@ -107,11 +298,12 @@ public class Profiler
                             }
                         }
                     };
-                    Thread t = new Thread(profilerRunnable);
+                    Thread t = new Thread(profilerRunnable, "ABCL profiler");
                     // Maximum priority doesn't hurt:
                     // we're sleeping all the time anyway
                     t.setPriority(Thread.MAX_PRIORITY);
-                    new Thread(profilerRunnable).start();
+                    t.setDaemon(true);
+                    t.start();
                 }
                 out._writeLine("; Profiler started.");
             }
@@ -119,6 +311,93 @@ public class Profiler
         }
     };
 
+    // ### %profiler-samples
+    // Returns the stack samples taken by the :TIME profiler as a list of
+    // (thread count . operators), the operators innermost first.
+    public static final Primitive _PROFILER_SAMPLES =
+        new Primitive("%profiler-samples", PACKAGE_PROF, false)
+    {
+        @Override
+        public LispObject execute()
+        {
+            LispObject result = NIL;
+            synchronized (samples) {
+                for (StackSample sample : samples.values()) {
+                    LispObject operators = NIL;
+                    for (int i = sample.operators.length; i-- > 0;)
+                        operators = new Cons(sample.operators[i], operators);
+                    result = new Cons(new Cons(sample.thread,
+                                               new Cons(Fixnum.getInstance(sample.count),
+                                                        operators)),
+                                      result);
+                }
+            }
+            return result;
+        }
+    };
+
+    // ### %profiler-allocations
+    // Returns the bytes allocated by the threads sampled by the :ALLOCATION
+    // profiler as two values: a list of (thread bytes . operators), the
+    // bytes allocated between samples attributed to the stack sampled at
+    // the end, the operators innermost first; and a list of
+    // (thread . bytes), all the bytes each thread allocated.
+    public static final Primitive _PROFILER_ALLOCATIONS =
+        new Primitive("%profiler-allocations", PACKAGE_PROF, false)
+    {
+        @Override
+        public LispObject execute()
+        {
+            LispObject stacks = NIL;
+            LispObject threads = NIL;
+            synchronized (samples) {
+                for (StackSample sample : samples.values()) {
+                    if (sample.bytes == 0)
+                        continue;
+                    LispObject operators = NIL;
+                    for (int i = sample.operators.length; i-- > 0;)
+                        operators = new Cons(sample.operators[i], operators);
+                    stacks = new Cons(new Cons(sample.thread,
+                                               new Cons(LispInteger.getInstance(sample.bytes),
+                                                        operators)),
+                                      stacks);
+                }
+                for (java.util.Map.Entry<LispThread,long[]> entry
+                         : allocations.entrySet()) {
+                    long[] counts = entry.getValue();
+                    threads = new Cons(new Cons(entry.getKey(),
+                                                LispInteger.getInstance(counts[1] - counts[0])),
+                                       threads);
+                }
+            }
+            return LispThread.currentThread().setValues(stacks, threads);
+        }
+    };
+
+    // ### thread-allocated-bytes &optional thread => bytes
+    @DocString(name="thread-allocated-bytes", args="&optional thread",
+    doc="Returns the number of bytes THREAD, by default the current thread,\n"
+        + "has allocated so far, or NIL if the JVM doesn't count them.")
+    public static final Primitive THREAD_ALLOCATED_BYTES =
+        new Primitive("thread-allocated-bytes", PACKAGE_SYS, true,
+                      "&optional thread")
+    {
+        @Override
+        public LispObject execute()
+        {
+            return execute(LispThread.currentThread());
+        }
+
+        @Override
+        public LispObject execute(LispObject arg)
+        {
+            if (!(arg instanceof LispThread))
+                return type_error(arg, Symbol.THREAD);
+            long bytes = allocatedBytes((LispThread) arg);
+            return bytes < 0 ? NIL : LispInteger.getInstance(bytes);
+        }
+    };
+
     // ### stop-profiler
     public static final Primitive STOP_PROFILER =
         new Primitive("stop-profiler", PACKAGE_PROF, true)
@@ -0,0 +1,191 @@
+/*
+ * ReadToken.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+/**
+ * The characters of a token being read by the Lisp reader.
+ *
+ * Each thread keeps one of these around, so that reading a token
+ * doesn't allocate anything but its result.  The symbol named by a
+ * token is looked up through a Key, which compares equal to the String
+ * with the same characters, so that no String has to be made unless
+ * the symbol is new.
+ */
+final class ReadToken
+{
+    // Buffers which grew beyond this are not kept by the thread.
+    private static final int MAX_RETAINED_LENGTH = 1 << 16;
+
+    char[] chars = new char[64];
+    int length;
+    private final Key key = new Key();
+
+    static ReadToken acquire(LispThread thread) {
+        ReadToken token = thread.readToken;
+        if (token == null) {
+            // The first read in this thread, or a nested read, from a
+            // reader macro or a Lisp stream.
+            return new ReadToken();
+        }
+        thread.readToken = null;
+        token.length = 0;
+        return token;
+    }
+
+    static void release(LispThread thread, ReadToken token) {
+        if (token.chars.length <= MAX_RETAINED_LENGTH) {
+            thread.readToken = token;
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    void setLength(int n) {
+        length = n;
+    }
+
+    char charAt(int i) {
+        return chars[i];
+    }
+
+    void setCharAt(int i, char c) {
+        chars[i] = c;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            grow(length + 1);
+        }
+        chars[length++] = c;
+    }
+
+    void append(String s) {
+        int n = s.length();
+        if (length + n > chars.length) {
+            grow(length + n);
+        }
+        s.getChars(0, n, chars, length);
+        length += n;
+    }
+
+    private void grow(int minimum) {
+        char[] newChars = new char[Math.max(minimum, chars.length * 2)];
+        System.arraycopy(chars, 0, newChars, 0, length);
+        chars = newChars;
+    }
+
+    int indexOf(char c) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    String substring(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    String substring(int start) {
+        return substring(start, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Returns the key for the characters from START to END.  The key
+     * is reused by the next call.
+     */
+    Key key(int start, int end) {
+        key.set(chars, start, end - start);
+        return key;
+    }
+
+    /**
+     * A view of part of a token, usable for looking up a String key in
+     * a map, since Map.get() compares the argument to the keys of the
+     * map with the equals() of the argument.
+     */
+    static final class Key
+    {
+        private char[] chars;
+        private int offset;
+        private int length;
+        private int hash;
+
+        void set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+            int h = 0;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                h = 31 * h + chars[i];
+            }
+            hash = h;
+        }
+
+        // Same as String.hashCode().
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            String s = (String) o;
+            if (s.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
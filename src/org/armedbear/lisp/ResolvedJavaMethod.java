@@ -0,0 +1,209 @@
+/*
+ * ResolvedJavaMethod.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The outcome of resolving a method name against a receiver class and the
+ * classes of the actual arguments, as done by JCALL and JSTATIC, together
+ * with a MethodHandle to call the method through.
+ *
+ * Resolution only depends on those classes, so its results are kept in a
+ * cache shared by all threads; JavaCallSite additionally remembers the
+ * last method it resolved.
+ */
+final class ResolvedJavaMethod
+{
+    private static final MethodType INSTANCE_CALL
+        = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType STATIC_CALL
+        = MethodType.methodType(Object.class, Object[].class);
+
+    // Bound the cache, as it keeps the classes it mentions reachable.
+    private static final int MAX_CACHED_METHODS = 8192;
+
+    private static final ConcurrentHashMap<Key,ResolvedJavaMethod> cache
+        = new ConcurrentHashMap<Key,ResolvedJavaMethod>();
+
+    final Key key;
+    final Method method;
+    final Class<?>[] parameterTypes;
+    /** Null if the method can only be called through reflection. */
+    final MethodHandle handle;
+
+    private ResolvedJavaMethod(Key key, Method method)
+    {
+        this.key = key;
+        this.method = method;
+        this.parameterTypes = method.getParameterTypes();
+        this.handle = makeHandle(method, key.actualClass != null);
+    }
+
+    /**
+     * Returns the cached resolution of <tt>methodName</tt> for a call on
+     * an instance of <tt>actualClass</tt> seen as <tt>intendedClass</tt>,
+     * or of a static method of <tt>intendedClass</tt> when
+     * <tt>actualClass</tt> is null, or null if there is none.
+     */
+    static ResolvedJavaMethod lookup(Class<?> intendedClass,
+                                     Class<?> actualClass,
+                                     String methodName, Object[] javaArgs)
+    {
+        return cache.get(new Key(intendedClass, actualClass, methodName,
+                                 javaArgs));
+    }
+
+    /** Records that the call described by the arguments resolves to
+     * <tt>method</tt>.
+     */
+    static ResolvedJavaMethod add(Class<?> intendedClass,
+                                  Class<?> actualClass,
+                                  String methodName, Object[] javaArgs,
+                                  Method method)
+    {
+        Key key = new Key(intendedClass, actualClass, methodName, javaArgs);
+        ResolvedJavaMethod resolved = new ResolvedJavaMethod(key, method);
+        if (cache.size() >= MAX_CACHED_METHODS)
+            cache.clear();
+        ResolvedJavaMethod previous = cache.putIfAbsent(key, resolved);
+        return previous != null ? previous : resolved;
+    }
+
+    /** Whether this is the resolution of the call described by the
+     * arguments; doesn't allocate.
+     */
+    boolean matches(Class<?> intendedClass, Class<?> actualClass,
+                    String methodName, Object[] javaArgs)
+    {
+        return key.matches(intendedClass, actualClass, methodName, javaArgs);
+    }
+
+    /** Calls the method, which must have a handle. */
+    Object invoke(Object instance, Object[] args) throws Throwable
+    {
+        if (key.actualClass == null)
+            return (Object) handle.invokeExact(args);
+        return (Object) handle.invokeExact(instance, args);
+    }
+
+    private static MethodHandle makeHandle(Method method, boolean withReceiver)
+    {
+        try {
+            if (!method.isAccessible()) {
+                // Possible for static member classes: see #229
+                if (Modifier.isPublic(method.getModifiers()))
+                    method.setAccessible(true);
+            }
+            MethodHandle h = MethodHandles.lookup().unreflect(method);
+            h = h.asFixedArity()
+                .asSpreader(Object[].class, method.getParameterTypes().length);
+            if (withReceiver && Modifier.isStatic(method.getModifiers()))
+                h = MethodHandles.dropArguments(h, 0, Object.class);
+            return h.asType(withReceiver ? INSTANCE_CALL : STATIC_CALL);
+        }
+        catch (IllegalAccessException e) {
+            return null;
+        }
+        catch (RuntimeException e) {
+            // Such as the InaccessibleObjectException of newer JVMs;
+            // calling through reflection reports the problem.
+            return null;
+        }
+    }
+
+    static final class Key
+    {
+        final Class<?> intendedClass;
+        final Class<?> actualClass;
+        final String methodName;
+        final Class<?>[] argClasses;
+        private final int hash;
+
+        Key(Class<?> intendedClass, Class<?> actualClass, String methodName,
+            Object[] javaArgs)
+        {
+            this.intendedClass = intendedClass;
+            this.actualClass = actualClass;
+            this.methodName = methodName;
+            argClasses = new Class<?>[javaArgs.length];
+            for (int i = 0; i < javaArgs.length; i++)
+                argClasses[i] = javaArgs[i] == null ? null : javaArgs[i].getClass();
+            int h = methodName.hashCode();
+            h = h * 31 + System.identityHashCode(intendedClass);
+            h = h * 31 + System.identityHashCode(actualClass);
+            hash = h * 31 + Arrays.hashCode(argClasses);
+        }
+
+        boolean matches(Class<?> intendedClass, Class<?> actualClass,
+                        String methodName, Object[] javaArgs)
+        {
+            if (intendedClass != this.intendedClass
+                || actualClass != this.actualClass
+                || javaArgs.length != argClasses.length
+                || !methodName.equals(this.methodName))
+                return false;
+            for (int i = 0; i < javaArgs.length; i++) {
+                Object arg = javaArgs[i];
+                if ((arg == null ? null : arg.getClass()) != argClasses[i])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return hash == k.hash
+                && intendedClass == k.intendedClass
+                && actualClass == k.actualClass
+                && methodName.equals(k.methodName)
+                && Arrays.equals(argClasses, k.argClasses);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * SocketChannels.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * Non-blocking socket channels, to be watched by an EventLoop, and the
+ * streams reading and writing them.
+ *
+ * The streams behave like those of blocking sockets: when a channel has
+ * no input, or can't take more output, the stream waits for it with a
+ * selector of the calling thread.  Code run by an event loop callback
+ * reads what has arrived without waiting by checking LISTEN first.
+ */
+public final class SocketChannels
+{
+    private SocketChannels() {}
+
+    private static final ThreadLocal<Selector> waitSelector
+        = new ThreadLocal<Selector>();
+
+    /** Waits until CHANNEL is ready for OPS, using a selector which
+     * belongs to the calling thread.
+     */
+    static void await(SelectableChannel channel, int ops) throws IOException {
+        Selector selector = waitSelector.get();
+        if (selector == null) {
+            selector = Selector.open();
+            waitSelector.set(selector);
+        }
+        SelectionKey key = channel.register(selector, ops);
+        try {
+            selector.select();
+        } finally {
+            key.cancel();
+            // Deregisters the cancelled key, so that the channel can be
+            // registered again by the next wait.
+            selector.selectNow();
+        }
+        if (Thread.interrupted()) {
+            LispThread.currentThread().processThreadInterrupts();
+        }
+    }
+
+    static final class ChannelInputStream extends InputStream {
+        private final SocketChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        ChannelInputStream(SocketChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        // Reads whatever the channel has without waiting. Returns the
+        // number of buffered bytes, or -1 at end of file.
+        private int fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return buffer.remaining();
+            }
+            buffer.clear();
+            int n;
+            try {
+                n = channel.read(buffer);
+            } finally {
+                buffer.flip();
+            }
+            return n;
+        }
+
+        private boolean ensureInput() throws IOException {
+            int n;
+            while ((n = fill()) == 0) {
+                await(channel, SelectionKey.OP_READ);
+            }
+            return n > 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureInput() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureInput()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            int n = fill();
+            // At end of file, report input, so that LISTEN and
+            // READ-CHAR-NO-HANG go on to find the end of file instead of
+            // treating it as no input yet.
+            return (n < 0) ? 1 : n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static final class ChannelOutputStream extends OutputStream {
+        private final SocketChannel channel;
+
+        ChannelOutputStream(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer source = ByteBuffer.wrap(b, off, len);
+            while (source.hasRemaining()) {
+                if (channel.write(source) == 0) {
+                    await(channel, SelectionKey.OP_WRITE);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static void configure(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        // The streams send their output in chunks at FINISH-OUTPUT, so
+        // holding back a partial chunk for the previous one to be
+        // acknowledged only adds latency.
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    static SocketChannel checkSocketChannel(LispObject obj) {
+        if (obj instanceof SocketStream
+            && ((SocketStream) obj).getSocket().getChannel() != null) {
+            return ((SocketStream) obj).getSocket().getChannel();
+        }
+        if (obj instanceof JavaObject
+            && ((JavaObject) obj).getObject() instanceof SocketChannel) {
+            return (SocketChannel) ((JavaObject) obj).getObject();
+        }
+        error(new TypeError(obj.princToString() + " is not a socket channel."));
+        // Not reached.
+        return null;
+    }
+
+    static ServerSocketChannel checkServerSocketChannel(LispObject obj) {
+        if (obj instanceof JavaObject
+            && ((JavaObject) obj).getObject() instanceof ServerSocketChannel) {
+            return (ServerSocketChannel) ((JavaObject) obj).getObject();
+        }
+        error(new TypeError(obj.princToString()
+                            + " is not a server socket channel."));
+        // Not reached.
+        return null;
+    }
+
+    // ### make-socket-channel host port => channel
+    private static final Primitive MAKE_SOCKET_CHANNEL = new pf_make_socket_channel();
+    @DocString(name="make-socket-channel", args="host port",
+    doc="Connects to PORT on HOST and returns the connection as a non-blocking\n"
+        + "java.nio.channels.SocketChannel.")
+    private static final class pf_make_socket_channel extends Primitive {
+        pf_make_socket_channel() {
+            super("make-socket-channel", PACKAGE_SYS, true, "host port");
+        }
+
+        @Override
+        public LispObject execute(LispObject host, LispObject port) {
+            try {
+                SocketChannel channel = SocketChannel.open(
+                    new InetSocketAddress(host.getStringValue(),
+                                          Fixnum.getValue(port)));
+                configure(channel);
+                return new JavaObject(channel);
+            } catch (IOException e) {
+                return error(new LispError(e.getMessage()));
+            }
+        }
+    };
+
+    // ### make-server-socket-channel port &optional host => channel
+    private static final Primitive MAKE_SERVER_SOCKET_CHANNEL
+        = new pf_make_server_socket_channel();
+    @DocString(name="make-server-socket-channel", args="port &optional host",
+    doc="Returns a non-blocking java.nio.channels.ServerSocketChannel listening\n"
+        + "on PORT, on all addresses or on the address of HOST.  With a PORT of 0\n"
+        + "the system chooses a free port.")
+    private static final class pf_make_server_socket_channel extends Primitive {
+        pf_make_server_socket_channel() {
+            super("make-server-socket-channel", PACKAGE_SYS, true,
+                  "port &optional host");
+        }
+
+        @Override
+        public LispObject execute(LispObject port) {
+            return execute(port, NIL);
+        }
+
+        @Override
+        public LispObject execute(LispObject port, LispObject host) {
+            int n = Fixnum.getValue(port);
+            try {
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                channel.socket().setReuseAddress(true);
+                channel.socket().bind(host == NIL
+                                      ? new InetSocketAddress(n)
+                                      : new InetSocketAddress(host.getStringValue(), n));
+                channel.configureBlocking(false);
+                return new JavaObject(channel);
+            } catch (IOException e) {
+                return error(new LispError(e.getMessage()));
+            }
+        }
+    };
+
+    // ### socket-channel-accept server-channel => channel or nil
+    private static final Primitive SOCKET_CHANNEL_ACCEPT
+        = new pf_socket_channel_accept();
+    @DocString(name="socket-channel-accept", args="server-channel",
+    doc="Returns the next pending connection of SERVER-CHANNEL as a non-blocking\n"
+        + "SocketChannel, or NIL if there is none.")
+    private static final class pf_socket_channel_accept extends Primitive {
+        pf_socket_channel_accept() {
+            super("socket-channel-accept", PACKAGE_SYS, true, "server-channel");
+        }
+
+        @Override
+        public LispObject execute(LispObject server) {
+            try {
+                SocketChannel channel = checkServerSocketChannel(server).accept();
+                if (channel == null) {
+                    return NIL;
+                }
+                configure(channel);
+                return new JavaObject(channel);
+            } catch (IOException e) {
+                return error(new LispError(e.getMessage()));
+            }
+        }
+    };
+
+    // ### socket-channel-stream channel &optional element-type external-format => stream
+    private static final Primitive SOCKET_CHANNEL_STREAM
+        = new pf_socket_channel_stream();
+    @DocString(name="socket-channel-stream",
+               args="channel &optional element-type external-format",
+    doc="Returns a SOCKET-STREAM reading and writing the non-blocking CHANNEL.\n"
+        + "ELEMENT-TYPE is CHARACTER (the default) or (UNSIGNED-BYTE 8).\n"
+        + "Output is sent by FINISH-OUTPUT or FORCE-OUTPUT.")
+    private static final class pf_socket_channel_stream extends Primitive {
+        pf_socket_channel_stream() {
+            super("socket-channel-stream", PACKAGE_SYS, true,
+                  "channel &optional element-type external-format");
+        }
+
+        @Override
+        public LispObject execute(LispObject channel) {
+            return execute(channel, Symbol.CHARACTER, Keyword.DEFAULT);
+        }
+
+        @Override
+        public LispObject execute(LispObject channel, LispObject elementType) {
+            return execute(channel, elementType, Keyword.DEFAULT);
+        }
+
+        @Override
+        public LispObject execute(LispObject first, LispObject elementType,
+                                  LispObject format) {
+            SocketChannel channel = checkSocketChannel(first);
+            if (elementType != Symbol.CHARACTER
+                && !elementType.equal(UNSIGNED_BYTE_8)) {
+                return type_error(elementType,
+                                  list(Symbol.MEMBER, Symbol.CHARACTER,
+                                       UNSIGNED_BYTE_8));
+            }
+            Stream in = new Stream(Symbol.SYSTEM_STREAM,
+                                   new ChannelInputStream(channel),
+                                   elementType, format);
+            Stream out = new Stream(Symbol.SYSTEM_STREAM,
+                                    new ChannelOutputStream(channel),
+                                    elementType, format);
+            return new SocketStream(channel.socket(), in, out);
+        }
+    };
+
+    private static NetworkChannel checkNetworkChannel(LispObject obj) {
+        if (obj instanceof JavaObject
+            && ((JavaObject) obj).getObject() instanceof ServerSocketChannel) {
+            return (ServerSocketChannel) ((JavaObject) obj).getObject();
+        }
+        return checkSocketChannel(obj);
+    }
+
+    // ### socket-channel-local-port channel => port
+    private static final Primitive SOCKET_CHANNEL_LOCAL_PORT
+        = new pf_socket_channel_local_port();
+    @DocString(name="socket-channel-local-port", args="channel",
+    doc="Returns the local port of the socket or server socket CHANNEL.")
+    private static final class pf_socket_channel_local_port extends Primitive {
+        pf_socket_channel_local_port() {
+            super("socket-channel-local-port", PACKAGE_SYS, true, "channel");
+        }
+
+        @Override
+        public LispObject execute(LispObject channel) {
+            try {
+                SocketAddress address = checkNetworkChannel(channel).getLocalAddress();
+                if (address instanceof InetSocketAddress) {
+                    return Fixnum.getInstance(((InetSocketAddress) address).getPort());
+                }
+                return NIL;
+            } catch (IOException e) {
+                return error(new LispError(e.getMessage()));
+            }
+        }
+    };
+
+    // ### socket-channel-close channel => t
+    private static final Primitive SOCKET_CHANNEL_CLOSE
+        = new pf_socket_channel_close();
+    @DocString(name="socket-channel-close", args="channel",
+    doc="Closes the socket or server socket CHANNEL, which also unregisters it\n"
+        + "from any event loop.")
+    private static final class pf_socket_channel_close extends Primitive {
+        pf_socket_channel_close() {
+            super("socket-channel-close", PACKAGE_SYS, true, "channel");
+        }
+
+        @Override
+        public LispObject execute(LispObject channel) {
+            try {
+                checkNetworkChannel(channel).close();
+                return T;
+            } catch (IOException e) {
+                return error(new LispError(e.getMessage()));
+            }
+        }
+    };
+}
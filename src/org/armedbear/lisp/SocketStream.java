@@ -47,6 +47,11 @@ public final class SocketStream extends TwoWayStream
         this.socket = socket;
     }
 
+    public Socket getSocket()
+    {
+        return socket;
+    }
+
     @Override
     public LispObject typeOf()
     {
@@ -39,20 +39,12 @@ package org.armedbear.lisp;
  */
 final public class SpecialBindingsMark {
 
-    /** The index in the specials array of the saved binding. */
-    int idx;
-
-    /** Special binding state to be restored */
-    // package level access
-    SpecialBinding binding;
-    SpecialBindingsMark next;
+    /** The depth of the thread's binding stack to rewind to. */
+    final int depth;
 
     /** Constructor to be called by LispThread.markSpecialBindings() only */
     // package level access
-    SpecialBindingsMark(int idx, SpecialBinding binding,
-                        SpecialBindingsMark next) {
-        this.idx = idx;
-        this.binding = binding;
-        this.next = next;
+    SpecialBindingsMark(int depth) {
+        this.depth = depth;
     }
-}
\ No newline at end of file
+}
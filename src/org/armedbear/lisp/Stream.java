@@ -47,6 +47,9 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.nio.charset.Charset;
 import java.util.BitSet;
 import java.util.List;
@@ -510,7 +513,7 @@ public class Stream extends StructureObject {
 					int n = _readChar();
 					if (n >= 0) {
 						char c = (char) n; // ### BUG: Codepoint conversion
-						Readtable rt = rta.rt(thread);
+						Readtable rt = rt(rta, thread);
 						if (!rt.isWhitespace(c))
 							_unreadChar(c);
 					}
@@ -525,6 +528,89 @@ public class Stream extends StructureObject {
 			return result;
 	}
 
+	/** The values of *READTABLE* and *READ-BASE* for a batch of forms. */
+	private static final class ReaderState {
+		final Readtable readtable;
+		final int readBase;
+
+		ReaderState(Readtable readtable, int readBase) {
+			this.readtable = readtable;
+			this.readBase = readBase;
+		}
+	}
+
+	/** The reader state looked up by readForms() for its batch, which
+	 * reads on this stream use instead of looking up *READTABLE* and
+	 * *READ-BASE* for every token, or null.  It is put aside while code
+	 * which may rebind them runs from within the reader.
+	 */
+	private ReaderState batch;
+
+	private final Readtable rt(ReadtableAccessor rta, LispThread thread) {
+		final ReaderState state = batch;
+		if (state != null && rta == currentReadtable)
+			return state.readtable;
+		return rta.rt(thread);
+	}
+
+	private final int readBase(LispThread thread) {
+		final ReaderState state = batch;
+		if (state != null)
+			return state.readBase;
+		return getReadBase(thread);
+	}
+
+	/** Calls FUN, which may run any Lisp code, with the batch reader
+	 * state put aside. */
+	private final LispObject executeOutsideBatch(LispObject fun,
+												 LispObject[] args,
+												 LispThread thread) {
+		final ReaderState state = batch;
+		batch = null;
+		try {
+			return funcall(fun, args, thread);
+		} finally {
+			batch = state;
+		}
+	}
+
+	/**
+	 * Reads up to COUNT top level forms, as by READ, and returns them in
+	 * a list, which is empty at end of file.  The current readtable and
+	 * read base are looked up once for the whole batch.
+	 */
+	public LispObject readForms(int count, LispThread thread) {
+		final ReaderState outer = batch;
+		batch = new ReaderState((Readtable) Symbol.CURRENT_READTABLE.symbolValue(thread),
+								getReadBase(thread));
+		try {
+			LispObject forms = NIL;
+			for (int i = 0; i < count; i++) {
+				LispObject form = read(false, EOF, false, thread,
+									   currentReadtable);
+				if (form == EOF)
+					break;
+				forms = new Cons(form, forms);
+			}
+			return forms.nreverse();
+		} finally {
+			batch = outer;
+		}
+	}
+
+	// ### %read-forms stream count => forms
+	private static final Primitive _READ_FORMS = new pf__read_forms();
+	private static final class pf__read_forms extends Primitive {
+		pf__read_forms() {
+			super("%read-forms", PACKAGE_SYS, false, "stream count");
+		}
+
+		public LispObject execute(LispObject stream, LispObject count) {
+			return inSynonymOf(stream).readForms(count.intValue(),
+												 LispThread.currentThread());
+		}
+	};
+
 	// ### *sharp-equal-alist*
 	// internal symbol
 	private static final Symbol _SHARP_EQUAL_ALIST_ =
@@ -540,7 +626,7 @@ public class Stream extends StructureObject {
 
 	{
 		if (recursive) {
-			final Readtable rt = rta.rt(thread);
+			final Readtable rt = rt(rta, thread);
 			while (true) {
 				int n = -1;
 				try {
@@ -593,7 +679,10 @@ public class Stream extends StructureObject {
 		}
 		else if (handler != null && handler != NIL) {
 			thread._values = null;
-			value = handler.execute(this, LispCharacter.getInstance(c));
+			value = executeOutsideBatch(handler,
+										new LispObject[] {
+											this, LispCharacter.getInstance(c)
+										}, thread);
 		}
 		else
 			return readToken(c, rt);
@@ -627,7 +716,7 @@ public class Stream extends StructureObject {
 	}
 
 	public LispObject readSymbol(Readtable rt) {
-		final StringBuilder sb = new StringBuilder();
+		final ReadToken sb = new ReadToken();
 		final BitSet flags = _readToken(sb, rt);
 		return new Symbol(rt.getReadtableCase() == Keyword.INVERT
 						  ? invert(sb.toString(), flags)
@@ -678,8 +767,8 @@ public class Stream extends StructureObject {
 				array[i + 1] = rest.cadr();
 				rest = rest.cddr();
 			}
-			return funcall(constructor.getSymbolFunctionOrDie(), array,
-						   thread);
+			return executeOutsideBatch(constructor.getSymbolFunctionOrDie(),
+									   array, thread);
 		}
 		return error(new ReaderError("Non-list following #S: " +
 									 obj.princToString(),
@@ -689,7 +778,7 @@ public class Stream extends StructureObject {
 	public LispObject readString(char terminator, ReadtableAccessor rta)
 	{
 	  final LispThread thread = LispThread.currentThread();
-	  final Readtable rt = rta.rt(thread);
+	  final Readtable rt = rt(rta, thread);
 	  StringBuilder sb = new StringBuilder();
 	  try
 	  {
@@ -731,7 +820,7 @@ public class Stream extends StructureObject {
 		Readtable rt;
 		try {
 			while (true) {
-				rt = rta.rt(thread);
+				rt = rt(rta, thread);
 				char c = flushWhitespace(rt);
 				if (c == ')') {
 					return first == null ? NIL : first;
@@ -817,7 +906,7 @@ public class Stream extends StructureObject {
 			error(new StreamError(this, e));
 		}
 		final LispThread thread = LispThread.currentThread();
-		final Readtable rt = rta.rt(thread);
+		final Readtable rt = rt(rta, thread);
 		LispObject fun = rt.getDispatchMacroCharacter(dispChar, c);
 		if (fun != NIL) {
 			thread._values = null;
@@ -825,8 +914,11 @@ public class Stream extends StructureObject {
 				return ((DispatchMacroFunction)fun).execute(this, c, numArg);
 			else
 				return
-					thread.execute(fun, this, LispCharacter.getInstance(c),
-					   (numArg < 0) ? NIL : Fixnum.getInstance(numArg));
+					executeOutsideBatch(fun,
+										new LispObject[] {
+											this, LispCharacter.getInstance(c),
+											(numArg < 0) ? NIL : Fixnum.getInstance(numArg)
+										}, thread);
 		}
 
 		if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
@@ -860,7 +952,7 @@ public class Stream extends StructureObject {
 									ReadtableAccessor rta) 
 	{
 		final LispThread thread = LispThread.currentThread();
-		final Readtable rt = rta.rt(thread);
+		final Readtable rt = rt(rta, thread);
 
 		final boolean suppress =
 			(Symbol.READ_SUPPRESS.symbolValue(thread) != NIL);
@@ -929,9 +1021,16 @@ public class Stream extends StructureObject {
 		if (Symbol.READ_EVAL.symbolValue(thread) == NIL)
 			return error(new ReaderError("Can't read #. when *READ-EVAL* is NIL.",
 										 this));
-		else
-			return eval(read(true, NIL, true, thread, rta),
-						new Environment(), thread);
+		else {
+			final LispObject form = read(true, NIL, true, thread, rta);
+			final ReaderState state = batch;
+			batch = null;
+			try {
+				return eval(form, new Environment(), thread);
+			} finally {
+				batch = state;
+			}
+		}
 	}
 
 	public LispObject readCharacterLiteral(Readtable rt, LispThread thread)
@@ -1072,7 +1171,7 @@ public class Stream extends StructureObject {
 		return sb.toString();
 	}
 
-	private static final int findUnescapedSingleColon(String s, BitSet flags) {
+	private static final int findUnescapedSingleColon(ReadToken s, BitSet flags) {
 		if (flags == null)
 			return s.indexOf(':');
 		final int limit = s.length();
@@ -1084,13 +1183,11 @@ public class Stream extends StructureObject {
 		return -1;
 	}
 
-	private static final int findUnescapedDoubleColon(String s, BitSet flags) {
-		if (flags == null)
-			return s.indexOf("::");
+	private static final int findUnescapedDoubleColon(ReadToken s, BitSet flags) {
 		final int limit = s.length() - 1;
 		for (int i = 0; i < limit; i++) {
-			if (s.charAt(i) == ':' && !flags.get(i)) {
-				if (s.charAt(i + 1) == ':' && !flags.get(i + 1)) {
+			if (s.charAt(i) == ':' && (flags == null || !flags.get(i))) {
+				if (s.charAt(i + 1) == ':' && (flags == null || !flags.get(i + 1))) {
 					return i;
 				}
 			}
@@ -1101,13 +1198,25 @@ public class Stream extends StructureObject {
 	private final LispObject readToken(char c, Readtable rt)
 
 	{
-		StringBuilder sb = new StringBuilder(String.valueOf(c));
 		final LispThread thread = LispThread.currentThread();
-		BitSet flags = _readToken(sb, rt);
+		final ReadToken token = ReadToken.acquire(thread);
+		try {
+			token.append(c);
+			return readToken(token, rt, thread);
+		} finally {
+			ReadToken.release(thread, token);
+		}
+	}
+
+	// The token is only turned into a String when it names a new symbol,
+	// a package, or when the readtable case is :INVERT.
+	private final LispObject readToken(ReadToken token, Readtable rt,
+									   LispThread thread)
+	{
+		BitSet flags = _readToken(token, rt);
 		if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
 			return NIL;
 		final LispObject readtableCase = rt.getReadtableCase();
-		final String token =  sb.toString();
 		final boolean invert = readtableCase == Keyword.INVERT;
 		final int length = token.length();
 		if (length > 0) {
@@ -1136,64 +1245,62 @@ public class Stream extends StructureObject {
 						return error(new ReaderError(message, this));
 					}
 				}
-				final int radix = getReadBase(thread);
-				if ("+-.0123456789".indexOf(firstChar) >= 0) {
-					LispObject number = makeNumber(token, length, radix);
-					if (number != null)
-						return number;
-				} else if (Character.digit(firstChar, radix) >= 0) {
-					LispObject number = makeNumber(token, length, radix);
+				final int radix = readBase(thread);
+				if ("+-.0123456789".indexOf(firstChar) >= 0
+					|| Character.digit(firstChar, radix) >= 0) {
+					LispObject number = makeInteger(token, radix);
+					if (number == null)
+						number = makeNumber(token.toString(), length, radix);
 					if (number != null)
 						return number;
 				}
 			}
-			
-			String symbolName;
+
+			int symbolStart;
 			String packageName = null;
-			BitSet symbolFlags;
-			BitSet packageFlags = null;
+			int packageEnd = 0;
 			Package pkg = null;
 			boolean internSymbol = true;
 			if (firstChar == ':' && (flags == null || !flags.get(0))) {
-					symbolName = token.substring(1);
-					pkg = PACKAGE_KEYWORD;
-					if (flags != null)
-						symbolFlags = flags.get(1, flags.size());
-					else
-						symbolFlags = null;
+				symbolStart = 1;
+				pkg = PACKAGE_KEYWORD;
 			} else {
 				int index = findUnescapedDoubleColon(token, flags);
 				if (index > 0) {
-					packageName = token.substring(0, index);
-					packageFlags = (flags != null) ? flags.get(0, index) :  null;
-					symbolName = token.substring(index + 2);
-					symbolFlags = (flags != null) ? flags.get(index+2, flags.size()) : null;
+					packageEnd = index;
+					symbolStart = index + 2;
 				} else {
 					index = findUnescapedSingleColon(token, flags);
 					if (index > 0) {
-						packageName = token.substring(0, index);
-						packageFlags = (flags != null) ? flags.get(0, index) : null;
-						symbolName = token.substring(index + 1);
-						symbolFlags = (flags != null) ? flags.get(index+2, flags.size()) : null;
+						packageEnd = index;
+						symbolStart = index + 1;
 						internSymbol = false;
 					} else {
 						pkg = (Package)Symbol._PACKAGE_.symbolValue(thread);
-						symbolName = token;
-						symbolFlags = flags;
+						symbolStart = 0;
 					}
 				}
 			}
 			if (pkg == null) {
+				packageName = token.substring(0, packageEnd);
 				if (invert)
-					packageName = invert(packageName, packageFlags);
+					packageName = invert(packageName,
+										 (flags != null) ? flags.get(0, packageEnd) : null);
 
 				pkg = getCurrentPackage().findPackage(packageName);
 				if (pkg == null)
 					return error(new ReaderError("The package \"" + packageName + "\" can't be found.", this));
 			}
-			if (invert)
-				symbolName = invert(symbolName, symbolFlags);
-			
+			if (invert) {
+				String symbolName
+					= invert(token.substring(symbolStart),
+							 (flags != null) ? flags.get(symbolStart, Math.max(symbolStart, flags.length())) : null);
+				token.setLength(0);
+				token.append(symbolName);
+				symbolStart = 0;
+			}
+			final ReadToken.Key symbolName = token.key(symbolStart, token.length());
+
 			if (internSymbol) {
 				return pkg.intern(symbolName);
 			} else {
@@ -1219,7 +1326,7 @@ public class Stream extends StructureObject {
 		}
 	}
 
-	private final BitSet _readToken(StringBuilder sb, Readtable rt)
+	private final BitSet _readToken(ReadToken sb, Readtable rt)
 
 	{
 		BitSet flags = null;
@@ -1364,6 +1471,36 @@ public class Stream extends StructureObject {
 		return readBase;
 	}
 
+	/** Returns the integer spelled by TOKEN, or null if TOKEN isn't a
+	 * short integer.  This handles the integers in typical data without
+	 * going through a String; anything else is left to makeNumber().
+	 */
+	private static final LispObject makeInteger(ReadToken token, int radix)
+	{
+		int end = token.length();
+		if (token.charAt(end - 1) == '.') {
+			radix = 10;
+			--end;
+		}
+		int i = 0;
+		final char first = token.charAt(0);
+		final boolean negative = first == '-';
+		if (negative || first == '+')
+			i = 1;
+		// Twelve digits in any radix up to 36 fit into a long.
+		if (i == end || end - i > 12)
+			return null;
+		long n = 0;
+		for (; i < end; i++) {
+			final char c = token.charAt(i);
+			final int digit = c < 128 ? Character.digit(c, radix) : -1;
+			if (digit < 0)
+				return null;
+			n = n * radix + digit;
+		}
+		return number(negative ? -n : n);
+	}
+
 	private final LispObject makeNumber(String token, int length, int radix)
 	{
 		if (length == 0)
@@ -1508,9 +1645,9 @@ public class Stream extends StructureObject {
 	}
 
 	public LispObject readRadix(int radix, ReadtableAccessor rta) {
-		StringBuilder sb = new StringBuilder();
+		ReadToken sb = new ReadToken();
 		final LispThread thread = LispThread.currentThread();
-		final Readtable rt = rta.rt(thread);
+		final Readtable rt = rt(rta, thread);
 		boolean escaped = (_readToken(sb, rt) != null);
 		if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
 			return NIL;
@@ -1837,6 +1974,49 @@ public class Stream extends StructureObject {
 	}
 
 
+	/** Reads characters into <code>chars</code> from <code>start</code>
+	 * below <code>end</code>, stopping early at end-of-file
+	 *
+	 * Unless the stream uses CRLF line endings, the characters are read
+	 * from the underlying reader in bulk and newlines are translated in
+	 * place.
+	 *
+	 * @return the index after the last character read
+	 */
+	public int _readChars(char[] chars, int start, int end) {
+		try {
+			if (reader == null || eolStyle == EolStyle.CRLF) {
+				for (int i = start; i < end; i++) {
+					int n = _readChar();
+					if (n < 0)
+						return i;
+					chars[i] = (char) n;
+				}
+				return end;
+			}
+
+			int pos = start;
+			while (pos < end) {
+				int n = reader.read(chars, pos, end - pos);
+				if (n < 0) {
+					pastEnd = true;
+					break;
+				}
+				for (int i = pos + n; i-- > pos;) {
+					if (chars[i] == eolChar) {
+						chars[i] = '\n';
+						++lineNumber;
+					}
+				}
+				offset += n;
+				pos += n;
+			}
+			return pos;
+		} catch (IOException e) {
+			return ierror(new StreamError(this, e));
+		}
+	}
+
 	/** Returns a boolean indicating input readily available
 	 *
 	 * @return true if a character is available
@@ -1856,17 +2036,19 @@ public class Stream extends StructureObject {
 	/** Writes a character into the underlying stream,
 	 * updating charPos while doing so
 	 *
+	 * The writer is only flushed at a newline when the stream is
+	 * interactive; other streams are flushed by FINISH-OUTPUT or when
+	 * their buffer fills up.
+	 *
 	 * @param c
 	 */
 	public void _writeChar(char c) {
 		try {
 			if (c == '\n') {
-				if (eolStyle == EolStyle.CRLF && lastChar != '\r')
-					writer.write('\r');
-
-				writer.write(eolChar);
+				writeEol(lastChar);
 				lastChar = eolChar;
-				writer.flush();
+				if (interactive)
+					writer.flush();
 				charPos = 0;
 			} else {
 				writer.write(c);
@@ -1884,6 +2066,9 @@ public class Stream extends StructureObject {
 	/** Writes a series of characters in the underlying stream,
 	 * updating charPos while doing so
 	 *
+	 * The characters between newlines are written as chunks; only the
+	 * newlines themselves are translated to the stream's eol style.
+	 *
 	 * @param chars
 	 * @param start
 	 * @param end
@@ -1892,17 +2077,8 @@ public class Stream extends StructureObject {
 
 	{
 		try {
-			if (eolStyle != EolStyle.RAW) {
-				for (int i = start; i < end; i++)
-					//###FIXME: the number of writes can be greatly reduced by
-					// writing the space between newlines as chunks.
-					_writeChar(chars[i]);
+			if (start >= end)
 				return;
-			}
-
-			writer.write(chars, start, end - start);
-			if (start < end)
-				lastChar = chars[end-1];
 
 			int index = -1;
 			for (int i = end; i-- > start;) {
@@ -1911,13 +2087,21 @@ public class Stream extends StructureObject {
 					break;
 				}
 			}
-			if (index < 0) {
-				// No newline.
-				charPos += (end - start);
-			} else {
-				charPos = end - (index + 1);
-				writer.flush();
+			if (index < 0 || !translatesEol())
+				writer.write(chars, start, end - start);
+			else {
+				int from = start;
+				for (int i = start; i <= index; i++) {
+					if (chars[i] == '\n') {
+						writer.write(chars, from, i - from);
+						writeEol(i > start ? chars[i - 1] : lastChar);
+						from = i + 1;
+					}
+				}
+				writer.write(chars, from, end - from);
 			}
+			charsWritten(chars[end - 1], index < 0 ? -1 : end - (index + 1),
+						 end - start);
 		} catch (NullPointerException e) {
 			if (writer == null)
 				streamNotCharacterOutputStream();
@@ -1931,16 +2115,76 @@ public class Stream extends StructureObject {
 	/** Writes a string to the underlying stream,
 	 * updating charPos while doing so
 	 *
+	 * Like _writeChars, but hands ranges of the string to the writer
+	 * instead of copying it into a character array first.
+	 *
 	 * @param s
 	 */
 	public void _writeString(String s) {
 		try {
-			_writeChars(s.toCharArray(), 0, s.length());
+			final int end = s.length();
+			if (end == 0)
+				return;
+
+			int index = s.lastIndexOf('\n');
+			if (index < 0 || !translatesEol())
+				writer.write(s, 0, end);
+			else {
+				int from = 0;
+				for (int i = s.indexOf('\n'); i >= 0; i = s.indexOf('\n', from)) {
+					writer.write(s, from, i - from);
+					writeEol(i > 0 ? s.charAt(i - 1) : lastChar);
+					from = i + 1;
+				}
+				writer.write(s, from, end - from);
+			}
+			charsWritten(s.charAt(end - 1), index < 0 ? -1 : end - (index + 1),
+						 end);
 		} catch (NullPointerException e) {
 			if (writer == null)
 				streamNotCharacterOutputStream();
 			else
 				throw e;
+		} catch (IOException e) {
+			error(new StreamError(this, e));
+		}
+	}
+
+	/** Returns true if newlines written to this stream are
+	 * not passed on to the writer unchanged
+	 */
+	private boolean translatesEol() {
+		return eolStyle == EolStyle.CRLF || eolChar != '\n';
+	}
+
+	/** Writes the end of line sequence for a newline which follows
+	 * the character <code>previous</code>
+	 */
+	private void writeEol(char previous) throws IOException {
+		if (eolStyle == EolStyle.CRLF && previous != '\r')
+			writer.write('\r');
+
+		writer.write(eolChar);
+	}
+
+	/** Updates lastChar and charPos after a chunk of characters
+	 * has been written
+	 *
+	 * @param last the last character of the chunk
+	 * @param column charPos after the last newline in the chunk,
+	 *   or -1 if the chunk contains no newline
+	 * @param count the number of characters in the chunk
+	 */
+	private void charsWritten(char last, int column, int count)
+		throws IOException
+	{
+		lastChar = (last == '\n') ? eolChar : last;
+		if (column < 0)
+			charPos += count;
+		else {
+			charPos = column;
+			if (interactive)
+				writer.flush();
 		}
 	}
 
@@ -1976,6 +2220,38 @@ public class Stream extends StructureObject {
 		}
 	}
 
+	/** Reads 8-bit bytes into <code>bytes</code> from <code>start</code>
+	 * below <code>end</code>, stopping early at end-of-file
+	 *
+	 * @return the index after the last byte read
+	 */
+	public int _readBytes(byte[] bytes, int start, int end) {
+		if (in == null) {
+			for (int i = start; i < end; i++) {
+				int n = _readByte();
+				if (n < 0)
+					return i;
+				bytes[i] = (byte) n;
+			}
+			return end;
+		}
+
+		try {
+			int pos = start;
+			while (pos < end) {
+				int n = in.read(bytes, pos, end - pos);
+				if (n < 0) {
+					pastEnd = true;
+					break;
+				}
+				pos += n;
+			}
+			return pos;
+		} catch (IOException e) {
+			return ierror(new StreamError(this, e));
+		}
+	}
+
 	// Writes an 8-bit byte.
 	/** Writes an 8-bit byte off the underlying stream
 	 *
@@ -1992,6 +2268,23 @@ public class Stream extends StructureObject {
 		}
 	}
 
+	/** Writes the 8-bit bytes in <code>bytes</code> from
+	 * <code>start</code> below <code>end</code> to the underlying stream
+	 */
+	public void _writeBytes(byte[] bytes, int start, int end) {
+		if (out == null) {
+			for (int i = start; i < end; i++)
+				_writeByte(bytes[i] & 0xff);
+			return;
+		}
+
+		try {
+			out.write(bytes, start, end - start);
+		} catch (IOException e) {
+			error(new StreamError(this, e));
+		}
+	}
+
 	/** Flushes any buffered output in the (underlying) stream
 	 *
 	 */
@@ -2586,8 +2879,8 @@ public class Stream extends StructureObject {
 			final Stream stream = checkStream(second);
 			int start = Fixnum.getValue(third);
 			int end = Fixnum.getValue(fourth);
-			for (int i = start; i < end; i++)
-				stream._writeByte(v.aref(i));
+			checkBounds(start, end, v.length());
+			writeVectorBytes(v, stream, start, end, 1);
 			return v;
 		}
 	};
@@ -2608,18 +2901,197 @@ public class Stream extends StructureObject {
 			if (!v.getElementType().equal(UNSIGNED_BYTE_8))
 				return type_error(first, list(Symbol.VECTOR,
 											  UNSIGNED_BYTE_8));
-			for (int i = start; i < end; i++) {
-				int n = stream._readByte();
-				if (n < 0) {
-					// End of file.
-					return Fixnum.getInstance(i);
-				}
-				v.aset(i, n);
-			}
-			return fourth;
+			checkBounds(start, end, v.length());
+			return Fixnum.getInstance(readVectorBytes(v, stream, start, end, 1));
+		}
+	};
+
+	// ### write-vector-unsigned-byte vector stream start end
+	// Writes the elements of an (unsigned-byte 8), (unsigned-byte 16) or
+	// (unsigned-byte 32) vector to a binary stream of the same element type.
+	private static final Primitive WRITE_VECTOR_UNSIGNED_BYTE =
+		new Primitive("write-vector-unsigned-byte", PACKAGE_SYS, true,
+	"vector stream start end") {
+		@Override
+		public LispObject execute(LispObject first, LispObject second,
+								  LispObject third, LispObject fourth)
+
+		{
+			final AbstractVector v = checkVector(first);
+			final Stream stream = checkStream(second);
+			int start = Fixnum.getValue(third);
+			int end = Fixnum.getValue(fourth);
+			checkBounds(start, end, v.length());
+			writeVectorBytes(v, stream, start, end, elementBytes(v));
+			return v;
 		}
 	};
 
+	// ### read-vector-unsigned-byte vector stream start end => position
+	// Reads the elements of an (unsigned-byte 8), (unsigned-byte 16) or
+	// (unsigned-byte 32) vector from a binary stream of the same element type.
+	private static final Primitive READ_VECTOR_UNSIGNED_BYTE =
+		new Primitive("read-vector-unsigned-byte", PACKAGE_SYS, true,
+	"vector stream start end") {
+		@Override
+		public LispObject execute(LispObject first, LispObject second,
+								  LispObject third, LispObject fourth)
+
+		{
+			AbstractVector v = checkVector(first);
+			Stream stream = checkBinaryInputStream(second);
+			int start = Fixnum.getValue(third);
+			int end = Fixnum.getValue(fourth);
+			checkBounds(start, end, v.length());
+			return Fixnum.getInstance(readVectorBytes(v, stream, start, end,
+													  elementBytes(v)));
+		}
+	};
+
+	// ### %read-string string stream start end => position
+	private static final Primitive _READ_STRING =
+		new Primitive("%read-string", PACKAGE_SYS, false,
+	"string input-stream start end") {
+		@Override
+		public LispObject execute(LispObject first, LispObject second,
+								  LispObject third, LispObject fourth)
+
+		{
+			final AbstractString s = checkString(first);
+			final Stream in = inSynonymOf(second);
+			final int start = Fixnum.getValue(third);
+			final int end = Fixnum.getValue(fourth);
+			checkBounds(start, end, s.length());
+			if (s instanceof SimpleString)
+				return Fixnum.getInstance(in._readChars(s.chars(), start, end));
+
+			char[] chars = new char[end - start];
+			int n = in._readChars(chars, 0, chars.length);
+			for (int i = 0; i < n; i++)
+				s.setCharAt(start + i, chars[i]);
+			return Fixnum.getInstance(start + n);
+		}
+	};
+
+	// Number of elements transferred per chunk by the vector primitives.
+	private static final int BULK_ELEMENTS = 4096;
+
+	private static int elementBytes(AbstractVector v) {
+		LispObject type = v.getElementType();
+		if (type.equal(UNSIGNED_BYTE_8))
+			return 1;
+		if (type.equal(UNSIGNED_BYTE_16))
+			return 2;
+		if (type.equal(UNSIGNED_BYTE_32))
+			return 4;
+		type_error(v, list(Symbol.OR,
+						   list(Symbol.VECTOR, UNSIGNED_BYTE_8),
+						   list(Symbol.VECTOR, UNSIGNED_BYTE_16),
+						   list(Symbol.VECTOR, UNSIGNED_BYTE_32)));
+		// Not reached.
+		return 0;
+	}
+
+	/** Reads big-endian elements of <code>width</code> bytes from
+	 * <code>stream</code> into <code>v</code>, going through a byte
+	 * buffer and the matching ByteBuffer view a chunk at a time
+	 *
+	 * @return the index after the last element read
+	 */
+	private static int readVectorBytes(AbstractVector v, Stream stream,
+									   int start, int end, int width) {
+		if (v instanceof BasicVector_UnsignedByte8)
+			return ((BasicVector_UnsignedByte8)v).readElements(stream, start, end);
+		if (v instanceof BasicVector_ByteBuffer)
+			return ((BasicVector_ByteBuffer)v).readElements(stream, start, end);
+
+		final byte[] bytes = new byte[Math.min(end - start, BULK_ELEMENTS) * width];
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int pos = start;
+		while (pos < end) {
+			final int n = Math.min(end - pos, BULK_ELEMENTS);
+			final int count = stream._readBytes(bytes, 0, n * width) / width;
+			buffer.clear();
+			switch (width) {
+			case 1:
+				for (int i = pos; i < pos + count; i++)
+					v.aset(i, buffer.get() & 0xff);
+				break;
+			case 2: {
+				final ShortBuffer view = buffer.asShortBuffer();
+				if (v instanceof BasicVector_UnsignedByte16)
+					((BasicVector_UnsignedByte16)v).readElements(view, pos, pos + count);
+				else
+					for (int i = pos; i < pos + count; i++)
+						v.aset(i, view.get() & 0xffff);
+				break;
+			}
+			default: {
+				final IntBuffer view = buffer.asIntBuffer();
+				if (v instanceof BasicVector_UnsignedByte32)
+					((BasicVector_UnsignedByte32)v).readElements(view, pos, pos + count);
+				else
+					for (int i = pos; i < pos + count; i++)
+						v.aset(i, number(view.get() & 0xffffffffL));
+			}
+			}
+			pos += count;
+			if (count < n)
+				break;
+		}
+		return pos;
+	}
+
+	/** Writes the elements of <code>v</code> from <code>start</code>
+	 * below <code>end</code> to <code>stream</code> as big-endian
+	 * values of <code>width</code> bytes
+	 */
+	private static void writeVectorBytes(AbstractVector v, Stream stream,
+										 int start, int end, int width) {
+		if (start >= end)
+			return;
+		if (v instanceof BasicVector_UnsignedByte8) {
+			((BasicVector_UnsignedByte8)v).writeElements(stream, start, end);
+			return;
+		}
+		if (v instanceof BasicVector_ByteBuffer) {
+			((BasicVector_ByteBuffer)v).writeElements(stream, start, end);
+			return;
+		}
+
+		final byte[] bytes = new byte[Math.min(end - start, BULK_ELEMENTS) * width];
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		for (int pos = start; pos < end;) {
+			final int n = Math.min(end - pos, BULK_ELEMENTS);
+			buffer.clear();
+			switch (width) {
+			case 1:
+				for (int i = pos; i < pos + n; i++)
+					buffer.put((byte) v.aref(i));
+				break;
+			case 2: {
+				final ShortBuffer view = buffer.asShortBuffer();
+				if (v instanceof BasicVector_UnsignedByte16)
+					((BasicVector_UnsignedByte16)v).writeElements(view, pos, pos + n);
+				else
+					for (int i = pos; i < pos + n; i++)
+						view.put((short) v.aref(i));
+				break;
+			}
+			default: {
+				final IntBuffer view = buffer.asIntBuffer();
+				if (v instanceof BasicVector_UnsignedByte32)
+					((BasicVector_UnsignedByte32)v).writeElements(view, pos, pos + n);
+				else
+					for (int i = pos; i < pos + n; i++)
+						view.put((int) v.AREF(i).longValue());
+			}
+			}
+			stream._writeBytes(bytes, 0, n * width);
+			pos += n;
+		}
+	}
+
 	// ### file-position
 	private static final Primitive FILE_POSITION =
 	new Primitive("file-position", "stream &optional position-spec") {
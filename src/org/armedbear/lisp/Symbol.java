@@ -3077,6 +3077,10 @@ public class Symbol extends LispObject implements java.io.Serializable
     PACKAGE_JAVA.addExternalSymbol("JMETHOD-RETURN-TYPE");
   public static final Symbol JRESOLVE_METHOD =
     PACKAGE_JAVA.addExternalSymbol("JRESOLVE-METHOD");
+  public static final Symbol JSTATIC =
+    PACKAGE_JAVA.addExternalSymbol("JSTATIC");
+  public static final Symbol JSTATIC_RAW =
+    PACKAGE_JAVA.addExternalSymbol("JSTATIC-RAW");
   public static final Symbol ADD_TO_CLASSPATH =
     PACKAGE_JAVA.addExternalSymbol("ADD-TO-CLASSPATH");
 
@@ -3109,6 +3113,8 @@ public class Symbol extends LispObject implements java.io.Serializable
     PACKAGE_SYS.addExternalSymbol("ENSURE-INPUT-STREAM");
   public static final Symbol ENVIRONMENT =
     PACKAGE_SYS.addExternalSymbol("ENVIRONMENT");
+  public static final Symbol EVENT_LOOP =
+    PACKAGE_SYS.addExternalSymbol("EVENT-LOOP");
   public static final Symbol FINALIZED_P =
     PACKAGE_SYS.addExternalSymbol("FINALIZED-P");
   public static final Symbol FLOAT_UNDERFLOW_MODE =
@@ -3273,6 +3279,16 @@ public class Symbol extends LispObject implements java.io.Serializable
   // THREADS
   public static final Symbol THREAD =
     PACKAGE_THREADS.addExternalSymbol("THREAD");
+  public static final Symbol CONDITION_VARIABLE =
+    PACKAGE_THREADS.addExternalSymbol("CONDITION-VARIABLE");
+  public static final Symbol SEMAPHORE =
+    PACKAGE_THREADS.addExternalSymbol("SEMAPHORE");
+  public static final Symbol LATCH =
+    PACKAGE_THREADS.addExternalSymbol("LATCH");
+  public static final Symbol THREAD_POOL =
+    PACKAGE_THREADS.addExternalSymbol("THREAD-POOL");
+  public static final Symbol FUTURE =
+    PACKAGE_THREADS.addExternalSymbol("FUTURE");
 
   @Override
   public final boolean isSymbol() {
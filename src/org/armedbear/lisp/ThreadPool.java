@@ -0,0 +1,238 @@
+/*
+ * ThreadPool.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.armedbear.lisp.Lisp.*;
+
+/**
+ * A fixed number of worker threads running the functions submitted to
+ * the pool.  A worker makes its Lisp thread state (special bindings,
+ * stack, reader buffer) once and keeps it for all the tasks it runs.
+ * Workers which stay idle for a minute exit.
+ */
+public final class ThreadPool extends LispObject
+{
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final LispObject name;
+    private final AtomicInteger workers = new AtomicInteger();
+
+    public ThreadPool(int size, LispObject name) {
+        this.name = name;
+        final String prefix
+            = (name == NIL ? "thread-pool" : name.getStringValue()) + "-worker-";
+        ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread(final Runnable worker) {
+                Runnable r = new Runnable() {
+                    public void run() {
+                        try {
+                            LispThread.currentThread();
+                            worker.run();
+                        }
+                        finally {
+                            LispThread.map.remove(Thread.currentThread());
+                        }
+                    }
+                };
+                Thread t = new Thread(r, prefix + workers.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        executor = new ThreadPoolExecutor(size, size,
+                                          KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<Runnable>(),
+                                          factory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public LispObject typeOf() {
+        return Symbol.THREAD_POOL;
+    }
+
+    @Override
+    public LispObject classOf() {
+        return BuiltInClass.THREAD_POOL;
+    }
+
+    @Override
+    public LispObject typep(LispObject typeSpecifier) {
+        if (typeSpecifier == Symbol.THREAD_POOL) {
+            return T;
+        }
+        if (typeSpecifier == BuiltInClass.THREAD_POOL) {
+            return T;
+        }
+        return super.typep(typeSpecifier);
+    }
+
+    @Override
+    public LispObject printObject() {
+        StringBuilder sb = new StringBuilder("THREAD-POOL");
+        if (name != NIL) {
+            sb.append(" \"").append(name.getStringValue()).append('"');
+        }
+        sb.append(' ').append(executor.getMaximumPoolSize());
+        if (executor.isShutdown()) {
+            sb.append(" shut down");
+        }
+        return new SimpleString(unreadableString(sb.toString()));
+    }
+
+    public LispFuture submit(LispObject function, LispObject[] args) {
+        LispFuture future = new LispFuture(function, args);
+        try {
+            executor.execute(future.task);
+        } catch (RejectedExecutionException e) {
+            error(new LispError("The thread pool "
+                                + printObject().getStringValue()
+                                + " is shut down."));
+        }
+        return future;
+    }
+
+    static ThreadPool checkThreadPool(LispObject obj) {
+        if (obj instanceof ThreadPool) {
+            return (ThreadPool) obj;
+        }
+        return (ThreadPool) type_error(obj, Symbol.THREAD_POOL);
+    }
+
+    // ### make-thread-pool &key size name => thread-pool
+    private static final Primitive MAKE_THREAD_POOL = new pf_make_thread_pool();
+    @DocString(name="make-thread-pool", args="&key size name",
+    doc="Returns a new pool of at most SIZE worker threads, by default as many\n"
+        + "as there are processors, to run the functions given to SUBMIT.")
+    private static final class pf_make_thread_pool extends Primitive {
+        pf_make_thread_pool() {
+            super("make-thread-pool", PACKAGE_THREADS, true, "&key size name");
+        }
+
+        @Override
+        public LispObject execute(LispObject[] args) {
+            if (args.length % 2 != 0) {
+                program_error("Odd number of keyword arguments.");
+            }
+            int size = Runtime.getRuntime().availableProcessors();
+            LispObject name = NIL;
+            for (int i = 0; i < args.length; i += 2) {
+                if (args[i] == Keyword.SIZE) {
+                    LispObject value = args[i + 1];
+                    if (value instanceof Fixnum && ((Fixnum) value).value > 0) {
+                        size = ((Fixnum) value).value;
+                    } else {
+                        type_error(value, list(Symbol.INTEGER, Fixnum.ONE,
+                                               Fixnum.getInstance(Integer.MAX_VALUE)));
+                    }
+                } else if (args[i] == Keyword.NAME) {
+                    name = args[i + 1].STRING();
+                } else {
+                    program_error("Unrecognized keyword argument "
+                                  + args[i].princToString() + ".");
+                }
+            }
+            return new ThreadPool(size, name);
+        }
+    };
+
+    // ### submit thread-pool function &rest args => future
+    private static final Primitive SUBMIT = new pf_submit();
+    @DocString(name="submit", args="thread-pool function &rest args",
+    doc="Has a worker of THREAD-POOL apply FUNCTION to ARGS, and returns a\n"
+        + "future for the values, to be read with FUTURE-VALUE.")
+    private static final class pf_submit extends Primitive {
+        pf_submit() {
+            super("submit", PACKAGE_THREADS, true,
+                  "thread-pool function &rest args");
+        }
+
+        @Override
+        public LispObject execute(LispObject[] args) {
+            if (args.length < 2) {
+                return error(new WrongNumberOfArgumentsException(this, 2, -1));
+            }
+            LispObject[] functionArgs = new LispObject[args.length - 2];
+            System.arraycopy(args, 2, functionArgs, 0, functionArgs.length);
+            return checkThreadPool(args[0])
+                .submit(coerceToFunction(args[1]), functionArgs);
+        }
+    };
+
+    // ### shutdown-thread-pool thread-pool &optional timeout => boolean
+    private static final Primitive SHUTDOWN_THREAD_POOL
+        = new pf_shutdown_thread_pool();
+    @DocString(name="shutdown-thread-pool", args="thread-pool &optional timeout",
+    doc="Stops THREAD-POOL from taking new tasks; the tasks already submitted\n"
+        + "still run.  With TIMEOUT, waits at most TIMEOUT seconds for them to\n"
+        + "finish.  Returns T if all tasks have finished, NIL otherwise.")
+    private static final class pf_shutdown_thread_pool extends Primitive {
+        pf_shutdown_thread_pool() {
+            super("shutdown-thread-pool", PACKAGE_THREADS, true,
+                  "thread-pool &optional timeout");
+        }
+
+        @Override
+        public LispObject execute(LispObject pool) {
+            return execute(pool, NIL);
+        }
+
+        @Override
+        public LispObject execute(LispObject pool, LispObject timeout) {
+            ThreadPoolExecutor executor = checkThreadPool(pool).executor;
+            executor.shutdown();
+            if (timeout == NIL) {
+                return executor.isTerminated() ? T : NIL;
+            }
+            long nanos = LispThread.timeoutNanos(timeout);
+            final long deadline = System.nanoTime() + nanos;
+            while (true) {
+                try {
+                    return executor.awaitTermination(nanos, TimeUnit.NANOSECONDS)
+                        ? T : NIL;
+                } catch (InterruptedException e) {
+                    LispThread.currentThread().processThreadInterrupts();
+                    nanos = deadline - System.nanoTime();
+                }
+            }
+        }
+    };
+}
@@ -140,14 +140,289 @@ zero-length jvm classfile corresponding to ~A." classfile)
       (prin1 form))
     (terpri)))
 
-(defun output-form (form)
+(defun write-output-form (form)
   (if *binary-fasls*
       (push form *forms-for-output*)
       (progn
         (dump-form form *fasl-stream*)
         (%stream-terpri *fasl-stream*))))
 
+
+;;; Parallel compilation
+;;;
+;;; When *COMPILE-FILE-PARALLELISM* is set, the bodies of top level
+;;; DEFUN and DEFMETHOD forms are compiled by a pool of worker threads
+;;; while the main thread goes on reading the file.  The main thread
+;;; still hands out the class numbers in the order the forms are read,
+;;; and the classes of local functions are named after the class of
+;;; their top level function instead of taking a number of their own,
+;;; so the result doesn't depend on the order in which the workers
+;;; finish.  Output stays in source order too: forms output after a
+;;; pending compilation wait in *DEFERRED-OUTPUT* until it is done.
+;;;
+;;; A job runs with the dynamic environment the main thread had when
+;;; it was queued.  The conditions it signals and the output it writes
+;;; are recorded, and replayed on the main thread when its form is
+;;; output, so that handlers around COMPILE-FILE see them in order.
+;;; Anything evaluated at compile time could change how the pending
+;;; jobs get compiled, so all of them are finished first.  A job which
+;;; runs into an unexpected error, or which needs to add an uninterned
+;;; symbol to the fasl, is simply compiled again on the main thread.
+
+(defvar *compile-file-parallelism* nil
+  "The number of worker threads COMPILE-FILE uses to compile the bodies
+of top level DEFUN and DEFMETHOD forms, or NIL to compile everything
+on the calling thread.")
+(export '*compile-file-parallelism*)
+
+(defvar *compile-pool* nil)
+(defvar *deferred-output* nil)
+
+(defvar *local-function-classfiles* nil
+  "The class files of the local functions compiled by worker threads.")
+
+(defparameter *compile-job-specials*
+  '(*package* *readtable* *read-base* *read-default-float-format*
+    *read-eval* *print-array* *print-base* *print-case* *print-circle*
+    *print-escape* *print-gensym* *print-length* *print-level*
+    *print-pretty* *print-radix* *print-readably*
+    *compile-file-pathname* *compile-file-truename* *source*
+    *source-position* *output-file-pathname* *compile-file-environment*
+    *compiler-error-context* *speed* *space* *safety* *debug* *explain*
+    *inline-declarations* jvm::*file-compilation*
+    jvm::*source-line-number* jvm::*visible-variables*
+    jvm::*functions-defined-in-current-file*
+    jvm::*generic-function-call-site-caches*
+    jvm::*java-call-site-caches*)
+  "The special variables compile jobs see with the values they had
+when the job was queued.")
+
+(defun capture-compile-environment ()
+  (let ((symbols ())
+        (values ()))
+    (dolist (symbol *compile-job-specials*)
+      (when (boundp symbol)
+        (push symbol symbols)
+        (push (symbol-value symbol) values)))
+    (cons symbols values)))
+
+(defmacro with-compile-environment ((environment) &body body)
+  (let ((env (gensym)))
+    `(let ((,env ,environment))
+       (progv (car ,env) (cdr ,env)
+         ,@body))))
+
+(defstruct (compile-pool (:constructor %make-compile-pool))
+  (queue ())
+  (threads ())
+  (closed-p nil))
+
+(defstruct compile-job
+  pool
+  function
+  classfile
+  environment
+  uninterned-symbols
+  defined-functions
+  (state :finished)                     ; :QUEUED, :RUNNING, :DONE or :FINISHED
+  values
+  conditions
+  output
+  undefined-functions
+  local-classfiles
+  serial-p)
+
+(defun start-compile-job (classfile function)
+  "Starts compiling a top level function into CLASSFILE by calling
+FUNCTION, returning the job.  Without a worker pool, FUNCTION is called
+right away."
+  (let ((pool *compile-pool*))
+    (if (null pool)
+        (make-compile-job :values (multiple-value-list (funcall function)))
+        (let ((job (make-compile-job
+                    :pool pool
+                    :function function
+                    :classfile classfile
+                    :environment (capture-compile-environment)
+                    :uninterned-symbols *fasl-uninterned-symbols*
+                    :defined-functions (when (and (boundp '*defined-functions*)
+                                                  (boundp '*undefined-functions*))
+                                         (list *defined-functions*))
+                    :state :queued)))
+          (threads:synchronized-on pool
+            (setf (compile-pool-queue pool)
+                  (nconc (compile-pool-queue pool) (list job)))
+            (threads:object-notify-all pool))
+          job))))
+
+(defun call-compile-job-function (job)
+  "Calls the function of JOB in the environment it was queued in,
+returning its values as a list."
+  (let ((classfile (compile-job-classfile job))
+        (n 0))
+    (setf (compile-job-local-classfiles job) nil)
+    (with-compile-environment ((compile-job-environment job))
+      (let ((jvm::*pathnames-generator*
+             #'(lambda ()
+                 (let ((pathname
+                        (make-pathname :name (%format nil "~A_~D"
+                                                      (pathname-name classfile)
+                                                      (incf n))
+                                       :defaults classfile)))
+                   (push pathname (compile-job-local-classfiles job))
+                   pathname))))
+        (multiple-value-list (funcall (compile-job-function job)))))))
+
+(defun run-compile-job (job)
+  "Runs JOB, recording what it signals and writes for FINISH-COMPILE-JOB."
+  (let ((conditions ())
+        (output (make-string-output-stream))
+        (defined-functions (compile-job-defined-functions job))
+        (undefined-functions nil)
+        (values nil))
+    (setf (compile-job-serial-p job) t)
+    (setf (compile-job-serial-p job)
+          (catch 'compile-job-serial
+            (let ((*standard-output* output)
+                  (*error-output* output)
+                  (*fasl-uninterned-symbols* (compile-job-uninterned-symbols job))
+                  (*new-uninterned-symbol-hook*
+                   #'(lambda (symbol)
+                       (declare (ignore symbol))
+                       (throw 'compile-job-serial t))))
+              (progv (when defined-functions
+                       '(*defined-functions* *undefined-functions*))
+                  (when defined-functions
+                    (list (car defined-functions) nil))
+                (handler-bind
+                    ((warning
+                      #'(lambda (c)
+                          (push (cons c *compiler-error-context*) conditions)
+                          (muffle-warning c)))
+                     (error
+                      #'(lambda (c)
+                          (unless (and (typep c 'compiler-error)
+                                       (boundp 'jvm::*compiler-error-bailout*))
+                            (throw 'compile-job-serial t))
+                          (push (cons c *compiler-error-context*) conditions)
+                          (throw 'jvm::compile-defun-abort
+                            (funcall jvm::*compiler-error-bailout*)))))
+                  (setf values (call-compile-job-function job))
+                  (when defined-functions
+                    (setf undefined-functions *undefined-functions*)))))
+            nil))
+    (setf (compile-job-values job) values
+          (compile-job-conditions job) (nreverse conditions)
+          (compile-job-output job) (get-output-stream-string output)
+          (compile-job-undefined-functions job) undefined-functions)))
+
+(defun compile-worker-loop (pool)
+  (loop
+     (let ((job (threads:synchronized-on pool
+                  (loop
+                     (let ((job (pop (compile-pool-queue pool))))
+                       (when job
+                         (setf (compile-job-state job) :running)
+                         (return job))
+                       (when (compile-pool-closed-p pool)
+                         (return nil))
+                       (threads:object-wait pool))))))
+       (unless job
+         (return))
+       (unwind-protect
+            (run-compile-job job)
+         (threads:synchronized-on pool
+           (setf (compile-job-state job) :done)
+           (threads:object-notify-all pool))))))
+
+(defun make-compile-pool (threads)
+  (let ((pool (%make-compile-pool)))
+    (dotimes (i threads)
+      (push (threads:make-thread #'(lambda () (compile-worker-loop pool))
+                                 :name (%format nil "compile-file worker ~D"
+                                                (1+ i)))
+            (compile-pool-threads pool)))
+    pool))
+
+(defun close-compile-pool (pool)
+  (threads:synchronized-on pool
+    (setf (compile-pool-closed-p pool) t
+          (compile-pool-queue pool) nil)
+    (threads:object-notify-all pool)))
+
+(defun finish-compile-job (job)
+  "Waits for JOB and reports what it signalled and wrote as if it had
+run on this thread, returning the values of its function as a list."
+  (let ((pool (compile-job-pool job)))
+    (unless (eq (compile-job-state job) :finished)
+      (when (threads:synchronized-on pool
+              (when (eq (compile-job-state job) :queued)
+                (setf (compile-pool-queue pool)
+                      (delete job (compile-pool-queue pool))
+                      (compile-job-state job) :running)))
+        ;; No worker got to it yet; don't wait for one.
+        (run-compile-job job)
+        (setf (compile-job-state job) :done))
+      (threads:synchronized-on pool
+        (loop until (eq (compile-job-state job) :done)
+           do (threads:object-wait pool)))
+      (cond
+        ((compile-job-serial-p job)
+         (setf (compile-job-values job) (call-compile-job-function job)))
+        (t
+         (write-string (compile-job-output job))
+         (dolist (entry (compile-job-conditions job))
+           (let ((condition (car entry))
+                 (*compiler-error-context* (cdr entry)))
+             (if (typep condition 'warning)
+                 (warn condition)
+                 (let ((jvm::*compiler-error-bailout* (constantly nil)))
+                   (catch 'jvm::compile-defun-abort
+                     (signal condition))))))
+         (when (boundp '*undefined-functions*)
+           (dolist (name (compile-job-undefined-functions job))
+             (unless (memq name *defined-functions*)
+               (pushnew name *undefined-functions*))))))
+      (setf *local-function-classfiles*
+            (revappend (compile-job-local-classfiles job)
+                       *local-function-classfiles*)
+            (compile-job-state job) :finished))
+    (compile-job-values job)))
+
+(defstruct (deferred-form (:constructor make-deferred-form
+                                        (jobs function environment)))
+  jobs function environment)
+
+(defun defer-form (jobs function)
+  "Returns the form FUNCTION computes from the values of JOBS, or a
+stand-in for it to be output while any of them is still pending."
+  (if (every #'(lambda (job) (eq (compile-job-state job) :finished)) jobs)
+      (apply function (mapcar #'compile-job-values jobs))
+      (make-deferred-form jobs function (capture-compile-environment))))
+
+(defun output-form (form)
+  (if (or *deferred-output* (deferred-form-p form))
+      (push (cons form *package*) *deferred-output*)
+      (write-output-form form)))
+
+(defun finish-deferred-output ()
+  "Finishes all pending compile jobs and outputs the forms waiting for them."
+  (let ((entries (nreverse *deferred-output*)))
+    (setf *deferred-output* nil)
+    (dolist (entry entries)
+      (let ((form (car entry))
+            (*package* (cdr entry)))
+        (if (deferred-form-p form)
+            (with-compile-environment ((deferred-form-environment form))
+              (let ((form (apply (deferred-form-function form)
+                                 (mapcar #'finish-compile-job
+                                         (deferred-form-jobs form)))))
+                (when form
+                  (write-output-form form))))
+            (write-output-form form))))))
+
 (defun finalize-fasl-output ()
+  (finish-deferred-output)
   (when *binary-fasls*
     (let ((*package* (find-package :keyword))
           (*double-colon-package-separators* T))
@@ -266,6 +541,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
   ;; whether or not references to name appear in the file) and that
   ;; it always evaluates to the same value."
   (note-toplevel-form form)
+  (finish-deferred-output)
   (eval form)
   form)
 
@@ -299,56 +575,69 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
                                             (list sym-or-syms))))))
   (precompile-toplevel-form form stream compile-time-too))
 
+;; Compiles the :FUNCTION and :FAST-FUNCTION lambdas of an ENSURE-METHOD
+;; form into class files of their own.
 (declaim (ftype (function (t t t) t) process-toplevel-mop.ensure-method))
 (defun process-toplevel-mop.ensure-method (form stream compile-time-too)
   (declare (ignore stream))
-  (flet ((convert-ensure-method (form key)
-           (let* ((tail (cddr form))
-                  (function-form (getf tail key)))
-             (when (and function-form (consp function-form)
-               (eq (%car function-form) 'FUNCTION))
-               (let ((lambda-expression (cadr function-form)))
-                 (jvm::with-saved-compiler-policy
-                     (let* ((saved-class-number *class-number*)
-                            (classfile (next-classfile))
-                            (result
-                             (with-open-file
-                                 (f classfile
-                                    :direction :output
-                                    :element-type '(unsigned-byte 8)
-                                    :if-exists :supersede)
-                               (report-error
-                                (jvm:compile-defun nil lambda-expression
-                                                   *compile-file-environment*
-                                                   classfile f nil))))
-                            (compiled-function (verify-load classfile)))
-                       (declare (ignore result))
-                       (cond
-                         (compiled-function
-                          (setf (getf tail key)
-                                `(sys::get-fasl-function *fasl-loader*
-                                                         ,saved-class-number)))
-                         (t
-                          ;; FIXME This should be a warning or error of some sort...
-                          (format *error-output* "; Unable to compile method~%"))))))))))
-
-
-    (when compile-time-too
-      (let* ((copy-form (copy-tree form))
-             ;; ### Ideally, the precompiler would leave the forms alone
-             ;;  and copy them where required, instead of forcing us to
-             ;;  do a deep copy in advance
-             (precompiled-form (precompiler:precompile-form copy-form nil
-                                                            *compile-file-environment*)))
-        (eval precompiled-form)))
-    (convert-ensure-method form :function)
-    (convert-ensure-method form :fast-function))
-  (precompiler:precompile-form form nil *compile-file-environment*))
+  (let ((*compile-pool* (unless compile-time-too *compile-pool*))
+        (methods ()))
+    (flet ((convert-ensure-method (form key)
+             (let* ((tail (cddr form))
+                    (function-form (getf tail key)))
+               (when (and function-form (consp function-form)
+                 (eq (%car function-form) 'FUNCTION))
+                 (let* ((lambda-expression (cadr function-form))
+                        (saved-class-number *class-number*)
+                        (classfile (next-classfile))
+                        (job
+                         (start-compile-job
+                          classfile
+                          #'(lambda ()
+                              (jvm::with-saved-compiler-policy
+                                  (let ((result
+                                         (with-open-file
+                                             (f classfile
+                                                :direction :output
+                                                :element-type '(unsigned-byte 8)
+                                                :if-exists :supersede)
+                                           (report-error
+                                            (jvm:compile-defun nil lambda-expression
+                                                               *compile-file-environment*
+                                                               classfile f nil)))))
+                                    (declare (ignore result))
+                                    (verify-load classfile)))))))
+                   (push (list key saved-class-number job) methods))))))
+
+
+      (when compile-time-too
+        (let* ((copy-form (copy-tree form))
+               ;; ### Ideally, the precompiler would leave the forms alone
+               ;;  and copy them where required, instead of forcing us to
+               ;;  do a deep copy in advance
+               (precompiled-form (precompiler:precompile-form copy-form nil
+                                                              *compile-file-environment*)))
+          (eval precompiled-form)))
+      (convert-ensure-method form :function)
+      (convert-ensure-method form :fast-function))
+    (setf methods (nreverse methods))
+    (defer-form (mapcar #'third methods)
+                #'(lambda (&rest results)
+                    (loop for (key saved-class-number nil) in methods
+                       for (compiled-function) in results
+                       do (if compiled-function
+                              (setf (getf (cddr form) key)
+                                    `(sys::get-fasl-function *fasl-loader*
+                                                             ,saved-class-number))
+                              ;; FIXME This should be a warning or error of some sort...
+                              (format *error-output* "; Unable to compile method~%")))
+                    (precompiler:precompile-form form nil *compile-file-environment*)))))
 
 (declaim (ftype (function (t t t) t) process-toplevel-defvar/defparameter))
 (defun process-toplevel-defvar/defparameter (form stream compile-time-too)
   (declare (ignore stream))
   (note-toplevel-form form)
+  (finish-deferred-output)
   (if compile-time-too
       (eval form)
       ;; "If a DEFVAR or DEFPARAMETER form appears as a top level form,
@@ -364,6 +653,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
 (defun process-toplevel-defpackage/in-package (form stream compile-time-too)
   (declare (ignore stream compile-time-too))
   (note-toplevel-form form)
+  (finish-deferred-output)
   (setf form
         (precompiler:precompile-form form nil *compile-file-environment*))
   (eval form)
@@ -387,6 +677,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
 (defun process-toplevel-deftype (form stream compile-time-too)
   (declare (ignore stream compile-time-too))
   (note-toplevel-form form)
+  (finish-deferred-output)
   (eval form)
   form)
 
@@ -416,6 +707,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
         (if lt
             (process-progn body stream new-compile-time-too)
             (when new-compile-time-too
+              (finish-deferred-output)
               (eval `(progn ,@body)))))))
   nil)
 
@@ -453,6 +745,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
   (declare (ignore stream compile-time-too))
   (note-toplevel-form form)
   (let ((name (second form)))
+    (finish-deferred-output)
     (eval form)
     (push name *toplevel-macros*)
     (let* ((expr (function-lambda-expression (macro-function name)))
@@ -490,7 +783,12 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
   (let* ((name (second form))
          (block-name (fdefinition-block-name name))
          (lambda-list (third form))
-         (body (nthcdr 3 form)))
+         (body (nthcdr 3 form))
+         (inline-p (and (symbolp name) (eq (get name '%inline) 'INLINE)))
+         ;; Functions needed at compile time can't wait for a worker,
+         ;; nor can those whose inline expansion is about to be set.
+         (*compile-pool* (unless (or compile-time-too inline-p)
+                           *compile-pool*)))
     (jvm::with-saved-compiler-policy
         (multiple-value-bind (body decls doc)
             (parse-body body)
@@ -498,55 +796,68 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
                           ,@decls (block ,block-name ,@body)))
                  (saved-class-number *class-number*)
                  (classfile (next-classfile))
-                 (internal-compiler-errors nil)
-                 (result (with-open-file
-                             (f classfile
-                                :direction :output
-                                :element-type '(unsigned-byte 8)
-                                :if-exists :supersede)
-                           (handler-bind
-                               ((internal-compiler-error
-                                 #'(lambda (e)
-                                     (push e internal-compiler-errors)
-                                     (continue))))
-                             (report-error
-                              (jvm:compile-defun name expr *compile-file-environment*
-                                                 classfile f nil)))))
-                 (compiled-function (if (not internal-compiler-errors)
-                                        (verify-load classfile)
-                                        nil)))
-            (declare (ignore result))
-            (cond
-              ((and (not internal-compiler-errors)
-                    compiled-function)
-               (when compile-time-too
-                 (eval form))
-               (setf form
-                     `(fset ',name
-                            (sys::get-fasl-function *fasl-loader*
-                                                    ,saved-class-number)
-                            ,*source-position*
-                            ',lambda-list
-                            ,doc)))
-              (t
-               (compiler-warn "Unable to compile function ~A.  Using interpreted form instead.~%" name)
-               (when internal-compiler-errors
-                 (dolist (e internal-compiler-errors)
-                   (format *error-output*
-                           "; ~A~%" e)))
-               (let ((precompiled-function
-                      (precompiler:precompile-form expr nil
-                                                   *compile-file-environment*)))
-                 (setf form
-                       `(fset ',name
-                              ,precompiled-function
-                              ,*source-position*
-                              ',lambda-list
-                              ,doc)))
-               (when compile-time-too
-                 (eval form)))))
-          (when (and (symbolp name) (eq (get name '%inline) 'INLINE))
+                 (job
+                  (start-compile-job
+                   classfile
+                   #'(lambda ()
+                       (let* ((internal-compiler-errors nil)
+                              (result (with-open-file
+                                          (f classfile
+                                             :direction :output
+                                             :element-type '(unsigned-byte 8)
+                                             :if-exists :supersede)
+                                        (handler-bind
+                                            ((internal-compiler-error
+                                              #'(lambda (e)
+                                                  (push e internal-compiler-errors)
+                                                  (continue))))
+                                          (report-error
+                                           (jvm:compile-defun name expr *compile-file-environment*
+                                                              classfile f nil)))))
+                              (compiled-function (if (not internal-compiler-errors)
+                                                     (verify-load classfile)
+                                                     nil)))
+                         (declare (ignore result))
+                         (values compiled-function internal-compiler-errors)))))
+                 (definition form))
+            (setf form
+                  (defer-form
+                   (list job)
+                   #'(lambda (results)
+                       (destructuring-bind (compiled-function internal-compiler-errors)
+                           results
+                         (cond
+                           ((and (not internal-compiler-errors)
+                                 compiled-function)
+                            (when compile-time-too
+                              (eval definition))
+                            `(fset ',name
+                                   (sys::get-fasl-function *fasl-loader*
+                                                           ,saved-class-number)
+                                   ,*source-position*
+                                   ',lambda-list
+                                   ,doc))
+                           (t
+                            (compiler-warn "Unable to compile function ~A.  Using interpreted form instead.~%" name)
+                            (when internal-compiler-errors
+                              (dolist (e internal-compiler-errors)
+                                (format *error-output*
+                                        "; ~A~%" e)))
+                            (let* ((precompiled-function
+                                    (precompiler:precompile-form expr nil
+                                                                 *compile-file-environment*))
+                                   (definition
+                                    `(fset ',name
+                                           ,precompiled-function
+                                           ,*source-position*
+                                           ',lambda-list
+                                           ,doc)))
+                              (when compile-time-too
+                                (eval definition))
+                              definition))))))))
+          (when inline-p
             ;; FIXME Need to support SETF functions too!
+            (finish-deferred-output)
             (setf (inline-expansion name)
                   (jvm::generate-inline-expansion block-name
                                                   lambda-list
@@ -604,6 +915,8 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
 
 (declaim (ftype (function (t stream t) t) process-toplevel-form))
 (defun process-toplevel-form (form stream compile-time-too)
+  (when compile-time-too
+    (finish-deferred-output))
   (unless (atom form)
     (let* ((operator (%car form))
            (handler (get operator 'toplevel-handler)))
@@ -649,6 +962,42 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
                                        "org.armedbear.lisp." (base-classname)))))
       (eval form))))
 
+;;; Returns the class files and class constant resources making up the
+;;; fasl OUTPUT-FILE.
+(defun fasl-component-pathnames (output-file)
+  (let ((pathnames nil)
+        (fasl-loader (make-pathname :defaults output-file
+                                    :name (fasl-loader-classname)
+                                    :type *compile-file-class-extension*)))
+    (when (probe-file fasl-loader)
+      (push fasl-loader pathnames))
+    (flet ((add-classfile (classfile)
+             (let ((truename (probe-file classfile)))
+               (when truename
+                 (push truename pathnames)
+          ;;; XXX it would be better to just use the recorded number
+          ;;; of class constants, but probing for the first at least
+          ;;; makes this subjectively bearable.
+                 (when (probe-file
+                        (make-pathname :name (format nil "~A_0"
+                                                     (pathname-name truename))
+                                       :type "clc"
+                                       :defaults truename))
+                   (dolist (resource (directory
+                                      (make-pathname :name (format nil "~A_*"
+                                                                   (pathname-name truename))
+                                                     :type "clc"
+                                                     :defaults truename)))
+                     (push resource pathnames)))))))
+      (dotimes (i *class-number*)
+        (add-classfile (compute-classfile (1+ i))))
+      (dolist (classfile (reverse *local-function-classfiles*))
+        (add-classfile classfile)))
+    ;; The resources of a local function compiled by a worker also
+    ;; match the pattern of those of its top level function.
+    (remove-duplicates (nreverse (remove nil pathnames))
+                       :test #'equal :from-end t)))
+
 (defun populate-zip-fasl (output-file)
   (let* ((type ;; Don't use ".zip", it'll result in an extension with
                ;; a dot, which is rejected by NAMESTRING
@@ -661,31 +1010,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
               (make-pathname :defaults output-file :type type)
               (make-pathname :defaults output-file :type type
                              :device :unspecific)))
-         (pathnames nil)
-         (fasl-loader (make-pathname :defaults output-file
-                                     :name (fasl-loader-classname)
-                                     :type *compile-file-class-extension*)))
-    (when (probe-file fasl-loader)
-      (push fasl-loader pathnames))
-    (dotimes (i *class-number*)
-      (let ((truename (probe-file (compute-classfile (1+ i)))))
-        (when truename
-          (push truename pathnames)
-          ;;; XXX it would be better to just use the recorded number
-          ;;; of class constants, but probing for the first at least
-          ;;; makes this subjectively bearable.
-          (when (probe-file
-                 (make-pathname :name (format nil "~A_0"
-                                              (pathname-name truename))
-                                :type "clc"
-                                :defaults truename))
-            (dolist (resource (directory
-                               (make-pathname :name (format nil "~A_*"
-                                                            (pathname-name truename))
-                                              :type "clc"
-                                              :defaults truename)))
-              (push resource pathnames))))))
-    (setf pathnames (nreverse (remove nil pathnames)))
+         (pathnames (fasl-component-pathnames output-file)))
     (let ((load-file (make-pathname :defaults output-file
                                     :name "__loader__"
                                     :type "_")))
@@ -696,6 +1021,28 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
       (ignore-errors (delete-file pathname)))
     (rename-file zipfile output-file)))
 
+;;; Like POPULATE-ZIP-FASL, but writes an indexed fasl, whose compiled
+;;; functions are loaded straight from a memory mapping of the file
+;;; when they are first called.  See FaslContainer.java.
+(defun populate-fasl-container (output-file)
+  (let* ((output-file (if (logical-pathname-p output-file)
+                          (translate-logical-pathname output-file)
+                          output-file))
+         (container (make-pathname :defaults output-file
+                                   :type (%format nil "~A~A"
+                                                  (pathname-type output-file)
+                                                  "-idx")))
+         (pathnames (fasl-component-pathnames output-file))
+         (load-file (make-pathname :defaults output-file
+                                   :name "__loader__"
+                                   :type "_")))
+    (rename-file output-file load-file)
+    (push load-file pathnames)
+    (write-fasl-container container pathnames)
+    (dolist (pathname pathnames)
+      (ignore-errors (delete-file pathname)))
+    (rename-file container output-file)))
+
 (defun write-fasl-prologue (stream)
   (let ((out stream))
     ;; write header
@@ -739,6 +1086,7 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
                                                  :version nil))
          (*source* *compile-file-truename*)
          (*class-number* 0)
+         (*local-function-classfiles* ())
          (namestring (namestring *compile-file-truename*))
          (start (get-internal-real-time))
          *fasl-uninterned-symbols*
@@ -757,35 +1105,43 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
               (jvm::*functions-defined-in-current-file* '())
               (*fbound-names* '())
               (*fasl-stream* out)
-              *forms-for-output*)
-          (jvm::with-saved-compiler-policy
-            (jvm::with-file-compilation
-              (handler-bind
-                  ((style-warning 
-                    #'(lambda (c)
-                        (setf warnings-p t)
-                        ;; let outer handlers do their thing
-                        (signal c)
-                        ;; prevent the next handler
-                        ;; from running: we're a
-                        ;; WARNING subclass
-                        (continue)))
-                   ((or warning compiler-error)
-                    #'(lambda (c)
-                        (declare (ignore c))
-                        (setf warnings-p t
-                              failure-p t))))
-                (loop
-                   (let* ((*source-position* (file-position in))
-                          (jvm::*source-line-number* (stream-line-number in))
-                          (form (read in nil in))
-                          (*compiler-error-context* form))
-                     (when (eq form in)
-                       (return))
-                     (process-toplevel-form form out nil))))
-                    (finalize-fasl-output)
-                    (dolist (name *fbound-names*)
-                      (fmakunbound name)))))))
+              *forms-for-output*
+              (*deferred-output* ())
+              (*compile-pool* (when *compile-file-parallelism*
+                                (make-compile-pool *compile-file-parallelism*))))
+          (unwind-protect
+              (jvm::with-saved-compiler-policy
+                (jvm::with-file-compilation
+                  (handler-bind
+                      ((style-warning 
+                        #'(lambda (c)
+                            (setf warnings-p t)
+                            ;; let outer handlers do their thing
+                            (signal c)
+                            ;; prevent the next handler
+                            ;; from running: we're a
+                            ;; WARNING subclass
+                            (continue)))
+                       ((or warning compiler-error)
+                        #'(lambda (c)
+                            (declare (ignore c))
+                            (setf warnings-p t
+                                  failure-p t))))
+                    (loop
+                       (let* ((*source-position* (file-position in))
+                              (jvm::*source-line-number* (stream-line-number in))
+                              (form (read in nil in))
+                              (*compiler-error-context* form))
+                         (when (eq form in)
+                           (return))
+                         (process-toplevel-form form out nil)))
+                    ;; Report what the last jobs signal to the handlers above.
+                    (finish-deferred-output))
+                        (finalize-fasl-output)
+                        (dolist (name *fbound-names*)
+                          (fmakunbound name))))
+            (when *compile-pool*
+              (close-compile-pool *compile-pool*))))))
         (when extract-toplevel-funcs-and-macros
           (setf *toplevel-functions*
                 (remove-if-not (lambda (func-name)
@@ -902,8 +1258,10 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
           (remove-zip-cache-entry output-file))
         (rename-file temp-file2 output-file)
 
-        (when *compile-file-zip*
-          (populate-zip-fasl output-file))
+        (case *compile-file-zip*
+          ((nil))
+          (:indexed (populate-fasl-container output-file))
+          (t (populate-zip-fasl output-file)))
 
         (when *compile-verbose*
           (format t "~&; Wrote ~A (~A seconds)~%"
@@ -916,6 +1274,8 @@ interpreted toplevel form, non-NIL if it is 'simple enough'."
                      output-file
                      ((:verbose *compile-verbose*) *compile-verbose*)
                      ((:print *compile-print*) *compile-print*)
+                     ((:parallelism *compile-file-parallelism*)
+                      *compile-file-parallelism*)
                      (extract-toplevel-funcs-and-macros nil)
                      (external-format :utf-8))
   (flet ((pathname-with-type (pathname type &optional suffix)
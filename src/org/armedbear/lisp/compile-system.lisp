@@ -34,6 +34,7 @@
 (require "LOOP")
 (require "COLLECT")
 (require "COMPILE-FILE")
+(require "THREADS")
 
 (export '(grovel-java-definitions-in-file compile-system))
 
@@ -267,7 +268,393 @@
 ;;
 
 
-(defun %compile-system (&key output-path)
+(defparameter *system-files*
+  '(("defstruct.lisp" :load t)
+    ("coerce.lisp" :load t)
+    ("open.lisp" :load t)
+    ("dump-form.lisp" :load t)
+    ("compiler-types.lisp" :load t)
+    ("compile-file.lisp" :load t)
+    ("precompiler.lisp" :load t)
+    ("compiler-pass1.lisp" :load t)
+    ("compiler-pass2.lisp" :load t)
+    ("jvm-class-file.lisp" :load t)
+    ("jvm.lisp" :load t)
+    ("source-transform.lisp" :load t)
+    ("compiler-macro.lisp" :load t)
+    ("jvm-instructions.lisp" :load t)
+    ("setf.lisp" :load t)
+    ("extensible-sequences-base.lisp" :load t)
+    ("require.lisp" :load t)
+    ("substitute.lisp" :load t)
+    ("clos.lisp" :load t)
+    ("mop.lisp" :load t)
+    ;; Order matters for these files.
+    "collect.lisp"
+    ("macros.lisp" :after ("collect.lisp"))
+    ("loop.lisp" :after ("macros.lisp"))
+    ("backquote.lisp" :load t)
+    ("early-defuns.lisp" :load t)
+    ("typep.lisp" :load t)
+    ("subtypep.lisp" :load t)
+    ("find.lisp" :load t)
+    ("print.lisp" :load t)
+    ("pprint-dispatch.lisp" :load t)
+    ("pprint.lisp" :load t)
+    ("format.lisp" :load t)
+    ("delete.lisp" :load t)
+    ("concatenate.lisp" :load t)
+    ("ldb.lisp" :load t)
+    ("destructuring-bind.lisp" :load t)
+    ("asdf.lisp" :load t)
+    ;; But not for these.
+    "abcl-contrib.lisp"
+    "adjoin.lisp"
+    "and.lisp"
+    "apropos.lisp"
+    "arrays.lisp"
+    "assert.lisp"
+    "assoc.lisp"
+    "aver.lisp"
+    "bit-array-ops.lisp"
+    "boole.lisp"
+    "butlast.lisp"
+    "byte-io.lisp"
+    "case.lisp"
+    "chars.lisp"
+    "check-type.lisp"
+    "compile-file-pathname.lisp"
+    "compile-system.lisp"
+    "compiler-error.lisp"
+    "cond.lisp"
+    "copy-seq.lisp"
+    "copy-symbol.lisp"
+    "count.lisp"
+    "digest.lisp"
+    "debug.lisp"
+    "define-modify-macro.lisp"
+    "define-symbol-macro.lisp"
+    "defmacro.lisp"
+    "defpackage.lisp"
+    "defsetf.lisp"
+    "deftype.lisp"
+    "delete-duplicates.lisp"
+    "deposit-field.lisp"
+    "describe.lisp"
+    "describe-compiler-policy.lisp"
+    "directory.lisp"
+    "disassemble.lisp"
+    "do-all-symbols.lisp"
+    "do-external-symbols.lisp"
+    "do-symbols.lisp"
+    "do.lisp"
+    "documentation.lisp"
+    "dolist.lisp"
+    "dotimes.lisp"
+    "dribble.lisp"
+    "dump-class.lisp"
+    "ed.lisp"
+    "enough-namestring.lisp"
+    "ensure-directories-exist.lisp"
+    "error.lisp"
+    "extensible-sequences.lisp"
+    "fasl-concat.lisp"
+    "featurep.lisp"
+    "fdefinition.lisp"
+    "fill.lisp"
+    "find-all-symbols.lisp"
+    "gentemp.lisp"
+    "gray-streams.lisp"
+    "gui.lisp"
+    "inline.lisp"
+    "inspect.lisp"
+    "java.lisp"
+    "java-collections.lisp"
+    "known-functions.lisp"
+    "known-symbols.lisp"
+    "late-setf.lisp"
+    "lcm.lisp"
+    "ldiff.lisp"
+    "list-length.lisp"
+    "list.lisp"
+    "load.lisp"
+    "make-hash-table.lisp"
+    "make-load-form-saving-slots.lisp"
+    "make-sequence.lisp"
+    "make-string-output-stream.lisp"
+    "make-string.lisp"
+    "map-into.lisp"
+    "map.lisp"
+    "map1.lisp"
+    "map-stream-forms.lisp"
+    "mask-field.lisp"
+    "member-if.lisp"
+    "mismatch.lisp"
+    "multiple-value-bind.lisp"
+    "multiple-value-list.lisp"
+    "multiple-value-setq.lisp"
+    "nsubstitute.lisp"
+    "nth-value.lisp"
+    "numbers.lisp"
+    "or.lisp"
+    "parse-integer.lisp"
+    "parse-lambda-list.lisp"
+    "package.lisp"
+    "pathnames.lisp"
+    "print-object.lisp"
+    "print-unreadable-object.lisp"
+    "proclaim.lisp"
+    "profiler.lisp"
+    "prog.lisp"
+    "psetf.lisp"
+    "query.lisp"
+    "read-circle.lisp"
+    "read-conditional.lisp"
+    "read-from-string.lisp"
+    "read-sequence.lisp"
+    "reduce.lisp"
+    "remf.lisp"
+    "remove-duplicates.lisp"
+    "remove.lisp"
+    "replace.lisp"
+    "restart.lisp"
+    "revappend.lisp"
+    "rotatef.lisp"
+    "run-program.lisp"
+    "run-shell-command.lisp"
+    "runtime-class.lisp"
+    "search.lisp"
+    "sequences.lisp"
+    "sets.lisp"
+    "shiftf.lisp"
+    "signal.lisp"
+    "socket.lisp"
+    "sort.lisp"
+    "step.lisp"
+    "strings.lisp"
+    "sublis.lisp"
+    "subst.lisp"
+    "tailp.lisp"
+    "threads.lisp"
+    "time.lisp"
+    "top-level.lisp"
+    "trace.lisp"
+    "tree-equal.lisp"
+    "upgraded-complex-part-type.lisp"
+    "with-accessors.lisp"
+    "with-hash-table-iterator.lisp"
+    "with-input-from-string.lisp"
+    "with-open-file.lisp"
+    "with-output-to-string.lisp"
+    "with-package-iterator.lisp"
+    "with-slots.lisp"
+    "with-standard-io-syntax.lisp"
+    "write-sequence.lisp")
+  "The Lisp files of the system, in the order a serial build compiles
+them.  An entry is a file name or a list (FILE &key LOAD AFTER).  A
+file with LOAD set is compiled once all files before it are, and is
+loaded before any file after it gets compiled.  Any other file only
+waits for that and for the files named in AFTER, so that it may be
+compiled at the same time as its neighbours.")
+
+(defstruct (system-file (:constructor make-system-file (name load after)))
+  name
+  load
+  after                                 ; the SYSTEM-FILEs to wait for
+  (state :pending)                      ; :RUNNING, :DONE or :FINISHED
+  (seconds 0)
+  output
+  conditions
+  defined-functions
+  undefined-functions
+  error)
+
+(defun system-build-plan ()
+  "Returns the files of *SYSTEM-FILES* as SYSTEM-FILE structures, each
+linked to the files it has to wait for."
+  (let ((files ())
+        (barrier nil))
+    (dolist (entry *system-files* (nreverse files))
+      (destructuring-bind (name &key load after)
+          (if (consp entry) entry (list entry))
+        (let ((file (make-system-file
+                     name load
+                     (if load
+                         (copy-list files)
+                         (append (when barrier
+                                   (list barrier))
+                                 (mapcar #'(lambda (after)
+                                             (or (find after files
+                                                       :key #'system-file-name
+                                                       :test #'string=)
+                                                 (error "~A has to be listed before ~A."
+                                                        after name)))
+                                         after))))))
+          (when load
+            (setf barrier file))
+          (push file files))))))
+
+(defun compile-system-file (file compile)
+  "Compiles FILE by calling COMPILE with its name, then loads it if
+FILE says so.  GENSYM starts over for every file, which keeps the
+output of a file the same whichever files were compiled before it."
+  (let* ((start (get-internal-real-time))
+         (output (let ((*gensym-counter* 0))
+                   (funcall compile (system-file-name file)))))
+    (setf (system-file-seconds file)
+          (/ (- (get-internal-real-time) start)
+             (float internal-time-units-per-second)))
+    (when (system-file-load file)
+      (load output))))
+
+;;; A parallel build compiles the files which don't need to be loaded
+;;; on worker threads, while the main thread compiles and loads the
+;;; others.  Like the jobs of a parallel COMPILE-FILE, a file compiled
+;;; on a worker has its output and conditions recorded, and replayed
+;;; on the main thread in the order of *SYSTEM-FILES*.
+
+(defparameter *system-build-specials*
+  '(*default-pathname-defaults* *warn-on-redefinition*
+    *prevent-fasl-circle-detection* *compile-file-zip*
+    *compile-file-class-extension* *compile-file-type* *package*
+    *readtable* *compile-verbose* *compile-print* *load-verbose*)
+  "The special variables the worker threads of a parallel build see
+with the values they have on the main thread.")
+
+(defstruct (system-build (:constructor make-system-build (files compile)))
+  files
+  compile
+  (environment (mapcar #'symbol-value *system-build-specials*))
+  (closed-p nil))
+
+(defun system-file-ready-p (file)
+  (and (eq (system-file-state file) :pending)
+       (not (system-file-load file))
+       (every #'(lambda (after)
+                  (memq (system-file-state after) '(:done :finished)))
+              (system-file-after file))))
+
+(defun run-system-file (build file)
+  "Compiles FILE, recording what it signals and writes for
+FINISH-SYSTEM-FILE."
+  (let ((output (make-string-output-stream))
+        (conditions ()))
+    (progv *system-build-specials* (system-build-environment build)
+      (let ((*standard-output* output)
+            (*error-output* output)
+            (jvm::*in-compilation-unit* t)
+            (*defined-functions* nil)
+            (*undefined-functions* nil))
+        (handler-case
+            (handler-bind
+                ((warning
+                  #'(lambda (c)
+                      (push (cons c *compiler-error-context*) conditions)
+                      (muffle-warning c)))
+                 (compiler-error
+                  #'(lambda (c)
+                      (when (boundp 'jvm::*compiler-error-bailout*)
+                        (push (cons c *compiler-error-context*) conditions)
+                        (throw 'jvm::compile-defun-abort
+                          (funcall jvm::*compiler-error-bailout*))))))
+              (compile-system-file file (system-build-compile build)))
+          (error (e)
+            (setf (system-file-error file) e)))
+        (setf (system-file-defined-functions file) *defined-functions*
+              (system-file-undefined-functions file) *undefined-functions*)))
+    (setf (system-file-conditions file) (nreverse conditions)
+          (system-file-output file) (get-output-stream-string output))))
+
+(defun system-build-worker-loop (build)
+  (loop
+     (let ((file (threads:synchronized-on build
+                   (loop
+                      (when (system-build-closed-p build)
+                        (return nil))
+                      (let ((file (find-if #'system-file-ready-p
+                                           (system-build-files build))))
+                        (when file
+                          (setf (system-file-state file) :running)
+                          (return file)))
+                      (threads:object-wait build)))))
+       (unless file
+         (return))
+       (unwind-protect
+            (run-system-file build file)
+         (threads:synchronized-on build
+           (setf (system-file-state file) :done)
+           (threads:object-notify-all build))))))
+
+(defun finish-system-file (build file)
+  "Waits for FILE to be compiled and reports what it signalled and
+wrote as if it had been compiled on this thread."
+  (when (threads:synchronized-on build
+          (when (system-file-ready-p file)
+            (setf (system-file-state file) :running)))
+    ;; No worker got to it yet; don't wait for one.
+    (run-system-file build file)
+    (setf (system-file-state file) :done))
+  (threads:synchronized-on build
+    (loop until (eq (system-file-state file) :done)
+       do (threads:object-wait build)))
+  (write-string (system-file-output file))
+  (dolist (entry (system-file-conditions file))
+    (let ((condition (car entry))
+          (*compiler-error-context* (cdr entry)))
+      (if (typep condition 'warning)
+          (warn condition)
+          (let ((jvm::*compiler-error-bailout* (constantly nil)))
+            (catch 'jvm::compile-defun-abort
+              (signal condition))))))
+  (when (boundp '*undefined-functions*)
+    (dolist (name (system-file-undefined-functions file))
+      (unless (memq name *defined-functions*)
+        (pushnew name *undefined-functions*)))
+    (dolist (name (reverse (system-file-defined-functions file)))
+      (note-name-defined name)))
+  (when (system-file-error file)
+    (error (system-file-error file))))
+
+(defun build-system-files (files compile parallelism)
+  "Compiles FILES by calling COMPILE with their names, on PARALLELISM
+worker threads besides this one."
+  (if (or (null parallelism) (< parallelism 2))
+      (dolist (file files)
+        (compile-system-file file compile)
+        (setf (system-file-state file) :finished))
+      (let ((build (make-system-build files compile)))
+        (unwind-protect
+             (progn
+               (dotimes (i parallelism)
+                 (threads:make-thread #'(lambda ()
+                                          (system-build-worker-loop build))
+                                      :name (%format nil "compile-system worker ~D"
+                                                     (1+ i))))
+               (dolist (file files)
+                 (if (system-file-load file)
+                     ;; The files before it are all finished, and the
+                     ;; ones after it wait for it: nothing else runs.
+                     (compile-system-file file compile)
+                     (finish-system-file build file))
+                 (threads:synchronized-on build
+                   (setf (system-file-state file) :finished)
+                   (threads:object-notify-all build))))
+          (threads:synchronized-on build
+            (setf (system-build-closed-p build) t)
+            (threads:object-notify-all build))))))
+
+(defun report-system-build-times (files seconds)
+  (let ((slowest (sort (copy-list files) #'> :key #'system-file-seconds)))
+    (format t "~&; Built ~D files in ~,2F seconds (~,2F seconds compiling)~%"
+            (length files) seconds
+            (reduce #'+ files :key #'system-file-seconds))
+    (format t "; Slowest files:~%")
+    (loop for file in slowest
+       repeat 10
+       do (format t ";   ~7,2F  ~A~%"
+                  (system-file-seconds file) (system-file-name file)))))
+
+(defun %compile-system (&key output-path parallelism)
   (let ((*default-pathname-defaults* (pathname *lisp-home*))
         (*warn-on-redefinition* nil)
         (*prevent-fasl-circle-detection* t))
@@ -280,186 +667,12 @@
                (compile-file-if-needed file
                                        :output-file out
                                        :extract-toplevel-funcs-and-macros extract))))
-      (load (do-compile "defstruct.lisp"))
-      (load (do-compile "coerce.lisp"))
-      (load (do-compile "open.lisp"))
-      (load (do-compile "dump-form.lisp"))
-      (load (do-compile "compiler-types.lisp"))
-      (load (do-compile "compile-file.lisp"))
-      (load (do-compile "precompiler.lisp"))
-      (load (do-compile "compiler-pass1.lisp"))
-      (load (do-compile "compiler-pass2.lisp"))
-      (load (do-compile "jvm-class-file.lisp"))
-      (load (do-compile "jvm.lisp"))
-      (load (do-compile "source-transform.lisp"))
-      (load (do-compile "compiler-macro.lisp"))
-      (load (do-compile "jvm-instructions.lisp"))
-      (load (do-compile "setf.lisp"))
-      (load (do-compile "extensible-sequences-base.lisp"))
-      (load (do-compile "require.lisp"))
-      (load (do-compile "substitute.lisp"))
-      (load (do-compile "clos.lisp"))
-      (load (do-compile "mop.lisp"))
-      ;; Order matters for these files.
-      (mapc #'do-compile '("collect.lisp"
-                           "macros.lisp"
-                           "loop.lisp"))
-      (load (do-compile "backquote.lisp"))
-      (load (do-compile "early-defuns.lisp"))
-      (load (do-compile "typep.lisp"))
-      (load (do-compile "subtypep.lisp"))
-      (load (do-compile "find.lisp"))
-      (load (do-compile "print.lisp"))
-      (load (do-compile "pprint-dispatch.lisp"))
-      (load (do-compile "pprint.lisp"))
-      (load (do-compile "format.lisp"))
-      (load (do-compile "delete.lisp"))
-      (load (do-compile "concatenate.lisp"))
-      (load (do-compile "ldb.lisp"))
-      (load (do-compile "destructuring-bind.lisp"))
-      (load (do-compile "asdf.lisp"))
-      ;; But not for these.
-      (mapc #'do-compile '("abcl-contrib.lisp"
-                           "adjoin.lisp"
-                           "and.lisp"
-                           "apropos.lisp"
-                           "arrays.lisp"
-                           "assert.lisp"
-                           "assoc.lisp"
-                           "aver.lisp"
-                           "bit-array-ops.lisp"
-                           "boole.lisp"
-                           "butlast.lisp"
-                           "byte-io.lisp"
-                           "case.lisp"
-                           "chars.lisp"
-                           "check-type.lisp"
-                           "compile-file-pathname.lisp"
-                           "compile-system.lisp"
-                           "compiler-error.lisp"
-                           "cond.lisp"
-                           "copy-seq.lisp"
-                           "copy-symbol.lisp"
-                           "count.lisp"
-                           "digest.lisp"
-                           "debug.lisp"
-                           "define-modify-macro.lisp"
-                           "define-symbol-macro.lisp"
-                           "defmacro.lisp"
-                           "defpackage.lisp"
-                           "defsetf.lisp"
-                           "deftype.lisp"
-                           "delete-duplicates.lisp"
-                           "deposit-field.lisp"
-                           "describe.lisp"
-                           "describe-compiler-policy.lisp"
-                           "directory.lisp"
-                           "disassemble.lisp"
-                           "do-all-symbols.lisp"
-                           "do-external-symbols.lisp"
-                           "do-symbols.lisp"
-                           "do.lisp"
-                           "documentation.lisp"
-                           "dolist.lisp"
-                           "dotimes.lisp"
-                           "dribble.lisp"
-                           "dump-class.lisp"
-                           "ed.lisp"
-                           "enough-namestring.lisp"
-                           "ensure-directories-exist.lisp"
-                           "error.lisp"
-                           "extensible-sequences.lisp"
-                           "fasl-concat.lisp"
-                           "featurep.lisp"
-                           "fdefinition.lisp"
-                           "fill.lisp"
-                           "find-all-symbols.lisp"
-                           "gentemp.lisp"
-                           "gray-streams.lisp"
-                           "gui.lisp"
-                           "inline.lisp"
-                           "inspect.lisp"
-                           "java.lisp"
-                           "java-collections.lisp"
-                           "known-functions.lisp"
-                           "known-symbols.lisp"
-                           "late-setf.lisp"
-                           "lcm.lisp"
-                           "ldiff.lisp"
-                           "list-length.lisp"
-                           "list.lisp"
-                           "load.lisp"
-                           "make-hash-table.lisp"
-                           "make-load-form-saving-slots.lisp"
-                           "make-sequence.lisp"
-                           "make-string-output-stream.lisp"
-                           "make-string.lisp"
-                           "map-into.lisp"
-                           "map.lisp"
-                           "map1.lisp"
-                           "mask-field.lisp"
-                           "member-if.lisp"
-                           "mismatch.lisp"
-                           "multiple-value-bind.lisp"
-                           "multiple-value-list.lisp"
-                           "multiple-value-setq.lisp"
-                           "nsubstitute.lisp"
-                           "nth-value.lisp"
-                           "numbers.lisp"
-                           "or.lisp"
-                           "parse-integer.lisp"
-                           "parse-lambda-list.lisp"
-                           "package.lisp"
-                           "pathnames.lisp"
-                           "print-object.lisp"
-                           "print-unreadable-object.lisp"
-                           "proclaim.lisp"
-                           "profiler.lisp"
-                           "prog.lisp"
-                           "psetf.lisp"
-                           "query.lisp"
-                           "read-circle.lisp"
-                           "read-conditional.lisp"
-                           "read-from-string.lisp"
-                           "read-sequence.lisp"
-                           "reduce.lisp"
-                           "remf.lisp"
-                           "remove-duplicates.lisp"
-                           "remove.lisp"
-                           "replace.lisp"
-                           "restart.lisp"
-                           "revappend.lisp"
-                           "rotatef.lisp"
-                           "run-program.lisp"
-                           "run-shell-command.lisp"
-                           "runtime-class.lisp"
-                           "search.lisp"
-                           "sequences.lisp"
-                           "sets.lisp"
-                           "shiftf.lisp"
-                           "signal.lisp"
-                           "socket.lisp"
-                           "sort.lisp"
-                           "step.lisp"
-                           "strings.lisp"
-                           "sublis.lisp"
-                           "subst.lisp"
-                           "tailp.lisp"
-                           "threads.lisp"
-                           "time.lisp"
-                           "top-level.lisp"
-                           "trace.lisp"
-                           "tree-equal.lisp"
-                           "upgraded-complex-part-type.lisp"
-                           "with-accessors.lisp"
-                           "with-hash-table-iterator.lisp"
-                           "with-input-from-string.lisp"
-                           "with-open-file.lisp"
-                           "with-output-to-string.lisp"
-                           "with-package-iterator.lisp"
-                           "with-slots.lisp"
-                           "with-standard-io-syntax.lisp"
-                           "write-sequence.lisp"))
+      (let ((files (system-build-plan))
+            (start (get-internal-real-time)))
+        (build-system-files files #'do-compile parallelism)
+        (report-system-build-times files
+                                   (/ (- (get-internal-real-time) start)
+                                      (float internal-time-units-per-second))))
       ;; With all files compiled, we need to use the symbols collected
       ;; to generate and compile autoloads.lisp
 
@@ -477,7 +690,7 @@
         :extract nil))
     t))
 
-(defun compile-system (&key quit (zip t) (cls-ext *compile-file-class-extension*) (abcl-ext *compile-file-type*) output-path)
+(defun compile-system (&key quit (zip t) (cls-ext *compile-file-class-extension*) (abcl-ext *compile-file-type*) output-path parallelism)
   (let ((status -1)
 	(*compile-file-class-extension* cls-ext)
 	(*compile-file-type* abcl-ext))
@@ -494,7 +707,8 @@
                              ;; only register that we had this type of signal
                              ;; defer the actual handling to another handler
                              nil)))
-           (%compile-system :output-path output-path))
+           (%compile-system :output-path output-path
+                            :parallelism parallelism))
          (unless failure-p
            (setf status 0)))))
     (create-system-logical-translations output-path)
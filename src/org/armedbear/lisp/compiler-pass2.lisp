@@ -2095,6 +2095,56 @@ itself is *not* compiled by this function."
         (return-type +lisp-object+))
     (emit-invokevirtual +lisp-thread+ "execute" arg-types return-type)))
 
+(defvar *generic-function-call-site-caches* t
+  "When true, calls to functions which are standard generic functions at
+compile time go through an inline cache of effective methods private to
+each call site.")
+
+(defun generic-function-call-site-p (op numargs)
+  "Whether a call to OP with NUMARGS arguments should get an inline cache."
+  (and *generic-function-call-site-caches*
+       (<= 1 numargs 3)
+       (fboundp op)
+       (not (special-operator-p op))
+       (not (macro-function op))
+       (typep (fdefinition op) 'standard-generic-function)))
+
+(defun declare-generic-call-site (symbol)
+  "Declares a field holding a new GenericCallSite for SYMBOL, returning
+the name of the field."
+  (let ((field-name (symbol-name (gensym "SITE"))))
+    (with-code-to-method
+        (*class-file* (abcl-class-file-static-initializer *class-file*))
+      (declare-field field-name +lisp-generic-call-site+)
+      (emit-load-externalized-object symbol +lisp-symbol+)
+      (emit-new +lisp-generic-call-site+)
+      (emit 'dup_x1)
+      (emit 'swap)
+      (emit-invokespecial-init +lisp-generic-call-site+ (list +lisp-symbol+))
+      (emit-putstatic *this-class* field-name +lisp-generic-call-site+))
+    field-name))
+
+(defun compile-generic-function-call (form target representation)
+  (let* ((op (car form))
+         (args (cdr form))
+         (field-name (declare-generic-call-site op)))
+    (cond ((or (<= *speed* *debug*) *require-stack-frame*)
+           (emit-push-current-thread)
+           (emit-getstatic *this-class* field-name +lisp-generic-call-site+)
+           (process-args args '(nil nil))
+           (emit-invokevirtual +lisp-thread+ "execute"
+                               (cons +lisp-generic-call-site+
+                                     (lisp-object-arg-types (length args)))
+                               +lisp-object+))
+          (t
+           (emit-getstatic *this-class* field-name +lisp-generic-call-site+)
+           (process-args args '(nil))
+           (emit-invokevirtual +lisp-generic-call-site+ "execute"
+                               (lisp-object-arg-types (length args))
+                               +lisp-object+)))
+    (fix-boxing representation (derive-compiler-type form))
+    (emit-move-from-stack target representation)))
+
 (defknown compile-function-call (t t t) t)
 (defun compile-function-call (form target representation)
   (let ((op (car form))
@@ -2117,6 +2167,10 @@ itself is *not* compiled by this function."
         (2
          (when (compile-function-call-2 op args target representation)
            (return-from compile-function-call))))
+      (when (and (not (eq op (compiland-name *current-compiland*)))
+                 (generic-function-call-site-p op numargs))
+        (return-from compile-function-call
+          (compile-generic-function-call form target representation)))
       (let ((explain *explain*))
         (when (and explain (memq :calls explain))
           (let ((package (symbol-package op)))
@@ -5981,9 +6035,11 @@ We need more thought here.
                     (emit-invokevirtual +lisp-object+
                                         "AREF" '(:int) +lisp-object+)
                     (emit-unbox-character))))
-            ((nil :float :double :boolean)
-             ;;###FIXME for float and double, we probably want
-             ;; separate java methods to retrieve the values.
+            (:float
+             (emit-invokevirtual +lisp-object+ "aref_float" '(:int) :float))
+            (:double
+             (emit-invokevirtual +lisp-object+ "aref_double" '(:int) :double))
+            ((nil :boolean)
              (emit-invokevirtual +lisp-object+ "AREF" '(:int) +lisp-object+)
              (convert-representation nil representation))))
        (emit-move-from-stack target representation)))
@@ -5998,8 +6054,13 @@ We need more thought here.
                 (arg2 (second args))
                 (arg3 (third args))
                 (type3 (derive-compiler-type arg3))
+                ;; Unboxed values are stored with the matching ASET
+                ;; method, which specialized arrays override.
+                (rep3 (let ((rep (type-representation type3)))
+                        (when (memq rep '(:int :long :float :double))
+                          rep)))
                 (*register* *register*)
-                (value-register (unless (null target) (allocate-register nil))))
+                (value-register (unless (null target) (allocate-register rep3))))
            (with-operand-accumulation
                (
            ;; array
@@ -6008,30 +6069,21 @@ We need more thought here.
                 (compile-operand arg2 :int)
            ;; value
                 (accumulate-operand
-                         ((when (fixnum-type-p type3) :int)
+                         (rep3
                           :unsafe-p (some-nested-block
                                      #'node-opstack-unsafe-p
                                      (find-enclosed-blocks arg3)))
-                   (cond ((fixnum-type-p type3)
-                          (compile-form arg3 'stack :int)
-                          (when value-register
-                            (emit 'dup)
-                            (emit-move-from-stack value-register :int)))
-                         (t
-                          (compile-form arg3 'stack nil)
-                          (when value-register
-                            (emit 'dup)
-                            (emit-move-from-stack value-register nil)))))))
+                   (compile-form arg3 'stack rep3)
+                   (when value-register
+                     (emit (if (memq rep3 '(:long :double)) 'dup2 'dup))
+                     (emit-move-from-stack value-register rep3)))))
            (maybe-emit-clear-values arg1 arg2 arg3)
-           (cond ((fixnum-type-p type3)
-                  (emit-invokevirtual +lisp-object+ "aset" '(:int :int) nil))
-                 (t
-                  (emit-invokevirtual +lisp-object+ "aset"
-                                      (list :int +lisp-object+) nil)))
+           (emit-invokevirtual +lisp-object+ "aset"
+                               (list :int (or rep3 +lisp-object+)) nil)
            (when value-register
-             (cond ((fixnum-type-p type3)
-                    (emit 'iload value-register)
-                    (convert-representation :int representation))
+             (cond (rep3
+                    (emit-push-register value-register rep3)
+                    (convert-representation rep3 representation))
                    (t
                     (aload value-register)
                     (fix-boxing representation type3)))
@@ -6648,6 +6700,50 @@ We need more thought here.
       ;; delay resolving the method to run-time; it's unavailable now
       (compile-function-call form target representation))))
 
+(defvar *java-call-site-caches* t
+  "When true, calls to JCALL, JCALL-RAW, JSTATIC and JSTATIC-RAW with a
+constant method name go through a call site which remembers the method
+it resolved last.")
+
+(defun declare-java-call-site (method-name staticp translatep)
+  "Declares a field holding a new JavaCallSite for METHOD-NAME, returning
+the name of the field."
+  (let ((field-name (symbol-name (gensym "JSITE"))))
+    (with-code-to-method
+        (*class-file* (abcl-class-file-static-initializer *class-file*))
+      (declare-field field-name +lisp-java-call-site+)
+      (emit-new +lisp-java-call-site+)
+      (emit 'dup)
+      (emit 'ldc (pool-string method-name))
+      (emit (if staticp 'iconst_1 'iconst_0))
+      (emit (if translatep 'iconst_1 'iconst_0))
+      (emit-invokespecial-init +lisp-java-call-site+
+                               (list +java-string+ :boolean :boolean))
+      (emit-putstatic *this-class* field-name +lisp-java-call-site+))
+    field-name))
+
+(defknown p2-java-call (t t t) t)
+(define-inlined-function p2-java-call (form target representation)
+  ((and *java-call-site-caches*
+        (< 2 (length form))
+        (stringp (second form))))
+  (let* ((op (car form))
+         (args (cddr form))
+         (field-name (declare-java-call-site
+                      (second form)
+                      (memq op '(java:jstatic java:jstatic-raw))
+                      (memq op '(java:jcall java:jstatic))))
+         (stack-frame-p (or (<= *speed* *debug*) *require-stack-frame*)))
+    (when stack-frame-p
+      (emit-push-current-thread))
+    (emit-getstatic *this-class* field-name +lisp-java-call-site+)
+    (process-args args (if stack-frame-p '(nil nil) '(nil)))
+    (if stack-frame-p
+        (emit-call-thread-execute (length args))
+        (emit-call-execute (length args)))
+    (fix-boxing representation nil)
+    (emit-move-from-stack target representation)))
+
 #|(defknown p2-java-jcall (t t t) t)
 (define-inlined-function p2-java-jcall (form target representation)
   ((and (> *speed* *safety*)
@@ -7626,6 +7722,10 @@ generated class."
   (install-p2-handler 'java:jclass         'p2-java-jclass)
   (install-p2-handler 'java:jconstructor   'p2-java-jconstructor)
   (install-p2-handler 'java:jmethod        'p2-java-jmethod)
+  (install-p2-handler 'java:jcall          'p2-java-call)
+  (install-p2-handler 'java:jcall-raw      'p2-java-call)
+  (install-p2-handler 'java:jstatic        'p2-java-call)
+  (install-p2-handler 'java:jstatic-raw    'p2-java-call)
 ;  (install-p2-handler 'java:jcall          'p2-java-jcall)
   (install-p2-handler 'char=               'p2-char=)
   (install-p2-handler 'characterp          'p2-characterp)
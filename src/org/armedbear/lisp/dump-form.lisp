@@ -167,10 +167,16 @@
   (write-string "#." stream)
   (dump-object (get-instance-form object) stream))
 
+(defvar *new-uninterned-symbol-hook* nil
+  "When non-NIL, a function called with an uninterned symbol before it is
+added to *FASL-UNINTERNED-SYMBOLS*.")
+
 (declaim (ftype (function (symbol) integer) dump-uninterned-symbol-index))
 (defun dump-uninterned-symbol-index (symbol)
   (let ((index (cdr (assoc symbol *fasl-uninterned-symbols*))))
     (unless index
+      (when *new-uninterned-symbol-hook*
+        (funcall *new-uninterned-symbol-hook* symbol))
       (setq index (1+ (or (cdar *fasl-uninterned-symbols*) -1)))
       (setq *fasl-uninterned-symbols*
             (acons symbol index *fasl-uninterned-symbols*)))
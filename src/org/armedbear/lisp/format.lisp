@@ -299,6 +299,82 @@
   (and (zerop (ldb double-float-exponent-byte (double-float-high-bits x)))
        (not (zerop x))))
 
+;;; Control strings that are not known at compile time are tokenized
+;;; again on every call of FORMAT, so the directive lists of recently
+;;; used ones are cached.  The cache has two generations: once the
+;;; current one holds *FORMAT-CACHE-SIZE* strings it replaces the
+;;; previous one, and strings found in the previous generation are moved
+;;; back into the current one.  Lookups don't take a lock; the counts
+;;; of hits may miss a few when several threads hit at the same time.
+
+(export '(*format-cache-size* format-cache-statistics clear-format-cache))
+
+(defvar *format-cache-size* 512
+  "The number of control strings in each of the two generations of the
+FORMAT control string cache.  Zero disables the cache.")
+
+(defstruct (format-cache (:constructor make-format-cache ()))
+  (current (make-hash-table :test 'equal :synchronized :lock-free))
+  (previous (make-hash-table :test 'equal :synchronized :lock-free))
+  (hits 0)
+  (misses 0)
+  (evictions 0))
+
+(defvar *format-cache* (make-format-cache))
+
+(defun format-cache-directives (string)
+  "Returns the tokenized directive list of the simple string STRING."
+  (let ((cache *format-cache*))
+    (multiple-value-bind (directives found)
+        (gethash string (format-cache-current cache))
+      (when found
+        (incf (format-cache-hits cache))
+        (return-from format-cache-directives directives)))
+    (when (zerop *format-cache-size*)
+      (return-from format-cache-directives
+        (format::tokenize-control-string string)))
+    ;; The cached directives point into the key, so they must not share
+    ;; the caller's string, which may be modified later.
+    (multiple-value-bind (directives found)
+        (gethash string (format-cache-previous cache))
+      (let* ((key (if found string (copy-seq string)))
+             (directives (if found
+                             directives
+                             (format::tokenize-control-string key))))
+        (threads:synchronized-on cache
+          (cond (found
+                 (incf (format-cache-hits cache))
+                 (remhash key (format-cache-previous cache)))
+                (t
+                 (incf (format-cache-misses cache))))
+          (let ((current (format-cache-current cache)))
+            (when (>= (hash-table-count current) *format-cache-size*)
+              (incf (format-cache-evictions cache)
+                    (hash-table-count (format-cache-previous cache)))
+              (setf (format-cache-previous cache) current
+                    current (make-hash-table :test 'equal
+                                             :synchronized :lock-free)
+                    (format-cache-current cache) current))
+            (setf (gethash key current) directives)))
+        directives))))
+
+(defun format-cache-statistics ()
+  "Returns a property list of the number of control strings in the FORMAT
+control string cache and the number of hits, misses and evictions
+since it was last cleared."
+  (let ((cache *format-cache*))
+    (threads:synchronized-on cache
+      (list :size (+ (hash-table-count (format-cache-current cache))
+                     (hash-table-count (format-cache-previous cache)))
+            :hits (format-cache-hits cache)
+            :misses (format-cache-misses cache)
+            :evictions (format-cache-evictions cache)))))
+
+(defun clear-format-cache ()
+  "Empties the FORMAT control string cache and resets its statistics."
+  (setf *format-cache* (make-format-cache))
+  t)
+
 ;;; From early-format.lisp.
 
 (in-package #:format)
@@ -1761,7 +1837,7 @@
 			  (coerce string-or-fun 'simple-string))))
 	       (*default-format-error-control-string* string)
 	       (*logical-block-popper* nil))
-	  (interpret-directive-list stream (tokenize-control-string string)
+	  (interpret-directive-list stream (sys::format-cache-directives string)
 				    orig-args args)))))
 
 (defun interpret-directive-list (stream directives orig-args args)
@@ -200,6 +200,9 @@ initialized from the `java-dotted-name'."
     "org.armedbear.lisp.CompiledPrimitive")
 (define-class-name +lisp-eql-hash-table+ "org.armedbear.lisp.EqlHashTable")
 (define-class-name +lisp-hash-table+ "org.armedbear.lisp.HashTable")
+(define-class-name +lisp-generic-call-site+
+    "org.armedbear.lisp.GenericCallSite")
+(define-class-name +lisp-java-call-site+ "org.armedbear.lisp.JavaCallSite")
 (define-class-name +lisp-package+ "org.armedbear.lisp.Package")
 (define-class-name +lisp-readtable+ "org.armedbear.lisp.Readtable")
 (define-class-name +lisp-stream+ "org.armedbear.lisp.Stream")
@@ -917,10 +920,12 @@ The class can't be modified after finalization."
   ;; header
   (write-u4 #xCAFEBABE stream)
   (write-u2 0 stream)
-  (write-u2 49 stream)  ;; our <clinit> methods use class literals
-  ;; which require a high enough class file format
-  ;; we used to have 45, but the LDC instruction doesn't support
-  ;; class literals in that version... (49 == Java 1.5)
+  (write-u2 50 stream)
+  ;; Version 50 (Java 6): our <clinit> methods load class literals
+  ;; with LDC, which needs at least 49, and class data sharing archives
+  ;; skip classes older than 50.  We write no StackMapTable attributes,
+  ;; which version 50 allows: the JVM then verifies the methods by type
+  ;; inference.
 
    ;; constants pool
   (write-constants (class-file-constants class) stream)
@@ -143,8 +143,8 @@
 (define-opcode ldc2_w 20 3 2 nil "P")
 (define-opcode iload 21 2 1 t)
 (define-opcode lload 22 2 2 t)
-(define-opcode fload 23 2 nil t)
-(define-opcode dload 24 2 nil t)
+(define-opcode fload 23 2 1 t)
+(define-opcode dload 24 2 2 t)
 (define-opcode aload 25 2 1 t)
 (define-opcode iload_0 26 1 1 0)
 (define-opcode iload_1 27 1 1 1)
@@ -154,14 +154,14 @@
 (define-opcode lload_1 31 1 2 1)
 (define-opcode lload_2 32 1 2 2)
 (define-opcode lload_3 33 1 2 3)
-(define-opcode fload_0 34 1 nil 0)
-(define-opcode fload_1 35 1 nil 1)
-(define-opcode fload_2 36 1 nil 2)
-(define-opcode fload_3 37 1 nil 3)
-(define-opcode dload_0 38 1 nil 0)
-(define-opcode dload_1 39 1 nil 1)
-(define-opcode dload_2 40 1 nil 2)
-(define-opcode dload_3 41 1 nil 3)
+(define-opcode fload_0 34 1 1 0)
+(define-opcode fload_1 35 1 1 1)
+(define-opcode fload_2 36 1 1 2)
+(define-opcode fload_3 37 1 1 3)
+(define-opcode dload_0 38 1 2 0)
+(define-opcode dload_1 39 1 2 1)
+(define-opcode dload_2 40 1 2 2)
+(define-opcode dload_3 41 1 2 3)
 (define-opcode aload_0 42 1 1 0)
 (define-opcode aload_1 43 1 1 1)
 (define-opcode aload_2 44 1 1 2)
@@ -176,8 +176,8 @@
 (define-opcode saload 53 1 nil nil)
 (define-opcode istore 54 2 -1 t)
 (define-opcode lstore 55 2 -2 t)
-(define-opcode fstore 56 2 nil t)
-(define-opcode dstore 57 2 nil t)
+(define-opcode fstore 56 2 -1 t)
+(define-opcode dstore 57 2 -2 t)
 (define-opcode astore 58 2 -1 t)
 (define-opcode istore_0 59 1 -1 0)
 (define-opcode istore_1 60 1 -1 1)
@@ -187,14 +187,14 @@
 (define-opcode lstore_1 64 1 -2 1)
 (define-opcode lstore_2 65 1 -2 2)
 (define-opcode lstore_3 66 1 -2 3)
-(define-opcode fstore_0 67 1 nil 0)
-(define-opcode fstore_1 68 1 nil 1)
-(define-opcode fstore_2 69 1 nil 2)
-(define-opcode fstore_3 70 1 nil 3)
-(define-opcode dstore_0 71 1 nil 0)
-(define-opcode dstore_1 72 1 nil 1)
-(define-opcode dstore_2 73 1 nil 2)
-(define-opcode dstore_3 74 1 nil 3)
+(define-opcode fstore_0 67 1 -1 0)
+(define-opcode fstore_1 68 1 -1 1)
+(define-opcode fstore_2 69 1 -1 2)
+(define-opcode fstore_3 70 1 -1 3)
+(define-opcode dstore_0 71 1 -2 0)
+(define-opcode dstore_1 72 1 -2 1)
+(define-opcode dstore_2 73 1 -2 2)
+(define-opcode dstore_3 74 1 -2 3)
 (define-opcode astore_0 75 1 -1 0)
 (define-opcode astore_1 76 1 -1 1)
 (define-opcode astore_2 77 1 -1 2)
@@ -714,6 +714,22 @@
 (define-resolver 55 (instruction)
   (load/store-resolver instruction 63 55 "LSTORE unsupported case"))
 
+;; fload
+(define-resolver 23 (instruction)
+  (load/store-resolver instruction 34 23 "FLOAD unsupported case"))
+
+;; fstore
+(define-resolver 56 (instruction)
+  (load/store-resolver instruction 67 56 "FSTORE unsupported case"))
+
+;; dload
+(define-resolver 24 (instruction)
+  (load/store-resolver instruction 38 24 "DLOAD unsupported case"))
+
+;; dstore
+(define-resolver 57 (instruction)
+  (load/store-resolver instruction 71 57 "DSTORE unsupported case"))
+
 ;; bipush, sipush
 (define-resolver (16 17) (instruction)
   (let* ((args (instruction-args instruction))
@@ -33,22 +33,55 @@
 
 (defun make-hash-table (&key (test 'eql) (size 11) (rehash-size 1.5)
                              (rehash-threshold 0.75)
-                             (weakness nil))
+                             (weakness nil)
+                             (synchronized t)
+                             (key-type t))
+  "Create and return a new hash table.
+
+WEAKNESS may be one of :KEY, :VALUE, :KEY-AND-VALUE or :KEY-OR-VALUE.
+
+SYNCHRONIZED controls how concurrent access is coordinated.  Hash
+tables are always safe to share between threads; the default T (or
+NIL) serializes updates behind a single lock.  :LOCK-FREE selects a
+table whose readers never block and whose writers only lock the
+segment of the table they modify, which scales better when many
+threads share one table.
+
+KEY-TYPE may be FIXNUM or CHARACTER to create a table which only
+accepts keys of that type, with test EQ, EQL or EQUAL.  Such tables
+store their keys unboxed, which makes them considerably smaller."
   (setf test (coerce-to-function test))
   (unless (and (integerp size) (>= size 0))
     (error 'type-error :datum size :expected-type '(integer 0)))
   (let ((size (max 11 (min size array-dimension-limit)))
         (weakness-types '(or (eql :key) (eql :value)
                              (eql :key-and-value)
-                             (eql :key-or-value))))
-    (if weakness
-        (if (not (typep weakness weakness-types))
-            (error 'type-error :datum weakness 
-                   :expected-type weakness-types)
-            (%make-weak-hash-table test size rehash-size 
-                                   rehash-threshold weakness))
-	(%make-hash-table test size 
-                          rehash-size rehash-threshold))))
-
-    
-  
+                             (eql :key-or-value)))
+        (synchronized-types '(member t nil :lock-free))
+        (key-types '(member t fixnum character)))
+    (unless (typep synchronized synchronized-types)
+      (error 'type-error :datum synchronized
+             :expected-type synchronized-types))
+    (unless (typep key-type key-types)
+      (error 'type-error :datum key-type :expected-type key-types))
+    (cond ((not (eq key-type t))
+           (when (or weakness (eq synchronized :lock-free))
+             (error "A hash table with key type ~S cannot be weak or :LOCK-FREE."
+                    key-type))
+           (%make-specialized-hash-table test key-type size
+                                         rehash-size rehash-threshold))
+          (weakness
+           (cond ((not (typep weakness weakness-types))
+                  (error 'type-error :datum weakness
+                         :expected-type weakness-types))
+                 ((eq synchronized :lock-free)
+                  (error "A weak hash table cannot be :LOCK-FREE."))
+                 (t
+                  (%make-weak-hash-table test size rehash-size
+                                         rehash-threshold weakness))))
+          ((eq synchronized :lock-free)
+           (%make-concurrent-hash-table test size
+                                        rehash-size rehash-threshold))
+          (t
+           (%make-hash-table test size
+                             rehash-size rehash-threshold)))))
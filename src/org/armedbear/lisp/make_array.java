@@ -103,6 +103,14 @@ public final class make_array extends Primitive
               v = new ComplexVector_UnsignedByte8(dimv[0], array, displacement);
             else if (arrayElementType.equal(UNSIGNED_BYTE_32))
               v = new ComplexVector_UnsignedByte32(dimv[0], array, displacement);
+            else if (arrayElementType == Symbol.DOUBLE_FLOAT)
+              v = new ComplexVector_DoubleFloat(dimv[0], array, displacement);
+            else if (arrayElementType == Symbol.SINGLE_FLOAT)
+              v = new ComplexVector_SingleFloat(dimv[0], array, displacement);
+            else if (arrayElementType == SIGNED_BYTE_32)
+              v = new ComplexVector_SignedByte32(dimv[0], array, displacement);
+            else if (arrayElementType == SIGNED_BYTE_64)
+              v = new ComplexVector_SignedByte64(dimv[0], array, displacement);
             else
               v = new ComplexVector(dimv[0], array, displacement);
             if (fillPointer != NIL)
@@ -181,6 +189,42 @@ public final class make_array extends Primitive
               v = new BasicVector_UnsignedByte32(size);
             defaultInitialElement = Fixnum.ZERO;
           }
+        else if (upgradedType == Symbol.DOUBLE_FLOAT)
+          {
+            if (fillPointer != NIL || adjustable != NIL)
+              v = new ComplexVector_DoubleFloat(size);
+            else
+              v = new BasicVector_DoubleFloat(size);
+            // Already zeroed.
+            defaultInitialElement = null;
+          }
+        else if (upgradedType == Symbol.SINGLE_FLOAT)
+          {
+            if (fillPointer != NIL || adjustable != NIL)
+              v = new ComplexVector_SingleFloat(size);
+            else
+              v = new BasicVector_SingleFloat(size);
+            // Already zeroed.
+            defaultInitialElement = null;
+          }
+        else if (upgradedType == SIGNED_BYTE_32)
+          {
+            if (fillPointer != NIL || adjustable != NIL)
+              v = new ComplexVector_SignedByte32(size);
+            else
+              v = new BasicVector_SignedByte32(size);
+            // Already zeroed.
+            defaultInitialElement = null;
+          }
+        else if (upgradedType == SIGNED_BYTE_64)
+          {
+            if (fillPointer != NIL || adjustable != NIL)
+              v = new ComplexVector_SignedByte64(size);
+            else
+              v = new BasicVector_SignedByte64(size);
+            // Already zeroed.
+            defaultInitialElement = null;
+          }
         else if (upgradedType == NIL)
           {
             v = new NilVector(size);
@@ -277,6 +321,50 @@ public final class make_array extends Primitive
                   array.fill(Fixnum.ZERO);
               }
           }
+        else if (upgradedType == Symbol.DOUBLE_FLOAT)
+          {
+            if (initialContents != NIL)
+              array = new SimpleArray_DoubleFloat(dimv, initialContents);
+            else
+              {
+                array = new SimpleArray_DoubleFloat(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
+        else if (upgradedType == Symbol.SINGLE_FLOAT)
+          {
+            if (initialContents != NIL)
+              array = new SimpleArray_SingleFloat(dimv, initialContents);
+            else
+              {
+                array = new SimpleArray_SingleFloat(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
+        else if (upgradedType == SIGNED_BYTE_32)
+          {
+            if (initialContents != NIL)
+              array = new SimpleArray_SignedByte32(dimv, initialContents);
+            else
+              {
+                array = new SimpleArray_SignedByte32(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
+        else if (upgradedType == SIGNED_BYTE_64)
+          {
+            if (initialContents != NIL)
+              array = new SimpleArray_SignedByte64(dimv, initialContents);
+            else
+              {
+                array = new SimpleArray_SignedByte64(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
         else
           {
             if (initialContents != NIL)
@@ -326,6 +414,50 @@ public final class make_array extends Primitive
                   array.fill(Fixnum.ZERO);
               }
           }
+        else if (upgradedType == Symbol.DOUBLE_FLOAT)
+          {
+            if (initialContents != NIL)
+              array = new ComplexArray_DoubleFloat(dimv, initialContents);
+            else
+              {
+                array = new ComplexArray_DoubleFloat(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
+        else if (upgradedType == Symbol.SINGLE_FLOAT)
+          {
+            if (initialContents != NIL)
+              array = new ComplexArray_SingleFloat(dimv, initialContents);
+            else
+              {
+                array = new ComplexArray_SingleFloat(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
+        else if (upgradedType == SIGNED_BYTE_32)
+          {
+            if (initialContents != NIL)
+              array = new ComplexArray_SignedByte32(dimv, initialContents);
+            else
+              {
+                array = new ComplexArray_SignedByte32(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
+        else if (upgradedType == SIGNED_BYTE_64)
+          {
+            if (initialContents != NIL)
+              array = new ComplexArray_SignedByte64(dimv, initialContents);
+            else
+              {
+                array = new ComplexArray_SignedByte64(dimv);
+                if (initialElementProvided != NIL)
+                  array.fill(initialElement);
+              }
+          }
         else
           {
             if (initialContents != NIL)
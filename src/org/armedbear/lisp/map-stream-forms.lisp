@@ -0,0 +1,174 @@
+;;; map-stream-forms.lisp
+;;;
+;;; Copyright (C) 2026 The ABCL Developers
+;;;
+;;; $Id$
+;;;
+;;; This program is free software; you can redistribute it and/or
+;;; modify it under the terms of the GNU General Public License
+;;; as published by the Free Software Foundation; either version 2
+;;; of the License, or (at your option) any later version.
+;;;
+;;; This program is distributed in the hope that it will be useful,
+;;; but WITHOUT ANY WARRANTY; without even the implied warranty of
+;;; MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+;;; GNU General Public License for more details.
+;;;
+;;; You should have received a copy of the GNU General Public License
+;;; along with this program; if not, write to the Free Software
+;;; Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+;;;
+;;; As a special exception, the copyright holders of this library give you
+;;; permission to link this library with independent modules to produce an
+;;; executable, regardless of the license terms of these independent
+;;; modules, and to copy and distribute the resulting executable under
+;;; terms of your choice, provided that you also meet, for each linked
+;;; independent module, the terms and conditions of the license of that
+;;; module.  An independent module is a module which is not derived from
+;;; or based on this library.  If you modify this library, you may extend
+;;; this exception to your version of the library, but you are not
+;;; obligated to do so.  If you do not wish to do so, delete this
+;;; exception statement from your version.
+
+(in-package #:system)
+
+(export '(map-stream-forms read-all))
+
+(defun read-all (stream &key (batch-size 256))
+  "Reads forms from STREAM, as by READ, up to end of file and returns
+them in a list."
+  (let ((forms '()))
+    (loop for batch = (%read-forms stream batch-size)
+       while batch
+       do (setf forms (revappend batch forms)))
+    (nreverse forms)))
+
+;;; A bounded queue of batches handed from the reading thread to the
+;;; caller of MAP-STREAM-FORMS.  An item is a list of forms, a condition
+;;; signalled while reading, or :EOF.
+
+(defstruct (form-queue (:constructor make-form-queue (limit)))
+  (items '())
+  (count 0)
+  limit
+  closed
+  finished)
+
+(defun form-queue-put (queue item)
+  "Appends ITEM to QUEUE, waiting for room.  Returns NIL if the queue
+was closed by its reader."
+  (threads:synchronized-on queue
+    (loop
+       until (or (form-queue-closed queue)
+                 (< (form-queue-count queue) (form-queue-limit queue)))
+       do (threads:object-wait queue))
+    (unless (form-queue-closed queue)
+      (setf (form-queue-items queue)
+            (nconc (form-queue-items queue) (list item)))
+      (incf (form-queue-count queue))
+      (threads:object-notify-all queue)
+      t)))
+
+(defun form-queue-take (queue)
+  (threads:synchronized-on queue
+    (loop
+       until (form-queue-items queue)
+       do (threads:object-wait queue))
+    (decf (form-queue-count queue))
+    (threads:object-notify-all queue)
+    (pop (form-queue-items queue))))
+
+(defun start-form-reader (stream batch-size queue)
+  (let ((package *package*)
+        (readtable *readtable*)
+        (read-base *read-base*)
+        (read-default-float-format *read-default-float-format*)
+        (read-eval *read-eval*)
+        (read-suppress *read-suppress*))
+    (threads:make-thread
+     (lambda ()
+       (let ((*package* package)
+             (*readtable* readtable)
+             (*read-base* read-base)
+             (*read-default-float-format* read-default-float-format)
+             (*read-eval* read-eval)
+             (*read-suppress* read-suppress))
+         (unwind-protect
+              (catch 'stop-form-reader
+                (handler-case
+                    (loop for batch = (%read-forms stream batch-size)
+                       while (form-queue-put queue (or batch :eof))
+                       while batch)
+                  (serious-condition (c)
+                    (form-queue-put queue c))))
+           (threads:synchronized-on queue
+             (setf (form-queue-finished queue) t)
+             (threads:object-notify-all queue)))))
+     :name "map-stream-forms reader")))
+
+(defconstant +form-reader-stop-timeout+ 1
+  "Seconds MAP-STREAM-FORMS waits for its reader thread to stop before
+interrupting it.")
+
+(defun stop-form-reader (reader queue)
+  "Closes QUEUE and waits for READER to finish.  A reader still blocked
+in a read after +FORM-READER-STOP-TIMEOUT+ seconds is interrupted and
+left to unwind on its own, so that a read that never returns doesn't
+hang the caller."
+  (threads:synchronized-on queue
+    (setf (form-queue-closed queue) t)
+    (threads:object-notify-all queue)
+    (loop
+       with deadline = (+ (get-internal-real-time)
+                          (* +form-reader-stop-timeout+
+                             internal-time-units-per-second))
+       for remaining = (- deadline (get-internal-real-time))
+       until (form-queue-finished queue)
+       do (if (plusp remaining)
+              (threads:object-wait queue
+                                   (/ remaining internal-time-units-per-second))
+              (progn
+                (threads:interrupt-thread reader
+                                          (lambda ()
+                                            (throw 'stop-form-reader nil)))
+                (return))))))
+
+(defun map-stream-forms (function stream &key (batch-size 256)
+                                              background (queue-size 4))
+  "Calls FUNCTION on each form read from STREAM, as by READ, up to end
+of file, and returns the number of forms read.
+
+Forms are read BATCH-SIZE at a time, each batch with the readtable in
+effect when it is started, so changes that FUNCTION makes to the
+reader settings don't apply to forms already read.
+
+If BACKGROUND is true, the forms are read on a separate thread, with the
+reader settings in effect on entry, which stays up to QUEUE-SIZE
+batches ahead of FUNCTION.  A condition signalled while reading is
+signalled again by MAP-STREAM-FORMS.  STREAM must not be used elsewhere
+until MAP-STREAM-FORMS returns.  On a non-local exit, a reader that is
+still blocked in a read a second later, say on an interactive or socket
+stream, is interrupted rather than waited for: it stops as soon as that
+read returns, and the form it read is lost."
+  (let ((count 0))
+    (if background
+        (let* ((queue (make-form-queue queue-size))
+               (reader (start-form-reader stream batch-size queue)))
+          (unwind-protect
+               (loop
+                  (let ((item (form-queue-take queue)))
+                    (cond ((eq item :eof)
+                           (return))
+                          ((typep item 'condition)
+                           (error item))
+                          (t
+                           (dolist (form item)
+                             (funcall function form)
+                             (incf count))))))
+            (stop-form-reader reader queue)))
+        (loop for batch = (%read-forms stream batch-size)
+           while batch
+           do (dolist (form batch)
+                (funcall function form)
+                (incf count))))
+    count))
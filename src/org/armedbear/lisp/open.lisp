@@ -105,8 +105,11 @@
 	     (element-type 'character)
 	     (if-exists nil if-exists-given)
 	     (if-does-not-exist nil if-does-not-exist-given)
-	     (external-format :default))
+	     (external-format :default)
+	     mapped)
 ;  (declare (ignore external-format)) ; FIXME
+  ;; MAPPED is an extension: binary input files are read through
+  ;; read-only memory mappings (see also EXT:MAPPED-FILE-VECTOR).
   (setf element-type (case element-type
                        ((character base-char)
                         'character)
@@ -138,6 +141,10 @@
                    nil)
                   (t
                    :create))))
+    (when (and mapped (not (eq direction :input)))
+      (error 'file-error
+             :pathname pathname
+             :format-control "Only :DIRECTION :INPUT is supported for mapped files."))
     (case direction
       (:input
        (case if-does-not-exist
@@ -147,7 +154,9 @@
                    :pathname pathname
                    :format-control "The file ~S does not exist."
                    :format-arguments (list namestring)))))
-       (make-file-stream pathname namestring element-type :input nil external-format))
+       (if mapped
+           (make-mapped-file-stream pathname namestring element-type)
+           (make-file-stream pathname namestring element-type :input nil external-format)))
       (:probe
        (case if-does-not-exist
          (:error
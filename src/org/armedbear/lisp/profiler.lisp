@@ -32,7 +32,9 @@
 (in-package #:profiler)
 
 (export '(*hidden-functions* *granularity*
-          show-call-counts show-hot-counts with-profiling))
+          show-call-counts show-hot-counts with-profiling
+          show-flat-profile show-call-graph write-collapsed-stacks
+          show-allocation-profile with-allocation-profile))
 
 (require '#:clos)
 (require '#:format)
@@ -137,7 +139,7 @@
   (let ((list (list-called-objects)))
     (setf list (sort list #'< :key 'profile-info-full-count))
     (let ((max-count nil))
-      (when (eq *type* :time)
+      (when (memq *type* '(:time :allocation))
         (let ((last-info (car (last list))))
           (setf max-count (if last-info
                               (profile-info-full-count last-info)
@@ -152,7 +154,7 @@
   (let ((list (list-called-objects)))
     (setf list (sort list #'< :key 'profile-info-hot-count))
     (let ((max-count nil))
-      (when (eq *type* :time)
+      (when (memq *type* '(:time :allocation))
         (let ((last-info (car (last list))))
           (setf max-count (if last-info
                               (profile-info-hot-count last-info)
@@ -163,17 +165,236 @@
         (show-hot-count info max-count))))
   (values))
 
-(defun start-profiler (&key type)
+(defun operator-name (operator)
+  (if (typep operator 'generic-function)
+      (mop:generic-function-name operator)
+      operator))
+
+(defun profile-samples (thread)
+  (let ((samples (%profiler-samples)))
+    (if thread
+        (remove thread samples :key #'car :test-not #'eq)
+        samples)))
+
+(defun call-with-report-stream (stream function)
+  (if (or (stringp stream) (pathnamep stream))
+      (with-open-file (out stream :direction :output :if-exists :supersede)
+        (funcall function out))
+      (funcall function (if (eq stream t) *standard-output* stream))))
+
+(defun sorted-counts (table)
+  (let ((result '()))
+    (maphash (lambda (name count) (push (cons name count) result)) table)
+    (sort result #'> :key #'cdr)))
+
+(defun percentage (count total)
+  (if (zerop total) 0.0 (/ (* count 100.0) total)))
+
+(defun show-flat-profile (&key thread (stream *standard-output*) (max 50))
+  "Shows the functions seen by the :TIME profiler, by the number of
+samples taken while they were running (self) or anywhere on the stack
+(total).  THREAD restricts the profile to the samples of one thread.
+STREAM may also be a pathname designator, to write the profile to a file."
+  (let ((self (make-hash-table :test 'equal))
+        (total (make-hash-table :test 'equal))
+        (count 0))
+    (dolist (sample (profile-samples thread))
+      (destructuring-bind (thread n &rest operators) sample
+        (declare (ignore thread))
+        (let ((names (mapcar #'operator-name operators)))
+          (incf count n)
+          (incf (gethash (first names) self 0) n)
+          (dolist (name (remove-duplicates names :test 'equal))
+            (incf (gethash name total 0) n)))))
+    (call-with-report-stream
+     stream
+     (lambda (out)
+       (format out "~&~D samples~%~6@A ~8@A ~6@A ~8@A  ~A~%"
+               count "self%" "self" "total%" "total" "function")
+       (loop for (name . total-count) in (sorted-counts total)
+          for i below (or max most-positive-fixnum)
+          for self-count = (gethash name self 0)
+          do (format out "~6,1F ~8D ~6,1F ~8D  ~S~%"
+                     (percentage self-count count) self-count
+                     (percentage total-count count) total-count
+                     name)))))
+  (values))
+
+(defun show-call-graph (&key thread (stream *standard-output*) (max 50))
+  "Shows the callers and callees of the functions seen by the :TIME
+profiler, with the number of samples taken through each of them.
+THREAD and STREAM are as for SHOW-FLAT-PROFILE."
+  (let ((total (make-hash-table :test 'equal))
+        (callers (make-hash-table :test 'equal))
+        (callees (make-hash-table :test 'equal))
+        (count 0))
+    (dolist (sample (profile-samples thread))
+      (destructuring-bind (thread n &rest operators) sample
+        (declare (ignore thread))
+        (let ((names (mapcar #'operator-name operators))
+              (edges '()))
+          (incf count n)
+          (dolist (name (remove-duplicates names :test 'equal))
+            (incf (gethash name total 0) n))
+          ;; NAMES is innermost first, so each name is called by the next.
+          (loop for (callee caller) on names
+             while caller
+             do (pushnew (cons caller callee) edges :test 'equal))
+          (dolist (edge edges)
+            (destructuring-bind (caller . callee) edge
+              (let ((table (or (gethash callee callers)
+                               (setf (gethash callee callers)
+                                     (make-hash-table :test 'equal)))))
+                (incf (gethash caller table 0) n))
+              (let ((table (or (gethash caller callees)
+                               (setf (gethash caller callees)
+                                     (make-hash-table :test 'equal)))))
+                (incf (gethash callee table 0) n)))))))
+    (call-with-report-stream
+     stream
+     (lambda (out)
+       (format out "~&~D samples~%" count)
+       (loop for (name . total-count) in (sorted-counts total)
+          for i below (or max most-positive-fixnum)
+          do (format out "~&~60,,,'-A~%" "")
+            (let ((table (gethash name callers)))
+              (when table
+                (loop for (caller . n) in (sorted-counts table)
+                   do (format out "~22@A  ~S~%" n caller))))
+            (format out "~6,1F ~8D ~6@A  ~S~%"
+                    (percentage total-count count) total-count "" name)
+            (let ((table (gethash name callees)))
+              (when table
+                (loop for (callee . n) in (sorted-counts table)
+                   do (format out "~22@A    ~S~%" n callee))))))))
+  (values))
+
+(defun collapsed-frame-name (name)
+  (substitute #\: #\; (let ((*print-pretty* nil))
+                        (prin1-to-string name))))
+
+(defun write-collapsed-stacks (&key thread (stream *standard-output*)
+                                 (thread-names (null thread)))
+  "Writes the stacks sampled by the :TIME profiler in the collapsed
+format read by flame graph tools: one line per distinct stack, its frames
+outermost first and separated by semicolons, followed by its sample
+count.  Unless THREAD-NAMES is NIL, each stack starts with the name of
+its thread.  THREAD and STREAM are as for SHOW-FLAT-PROFILE."
+  (let ((stacks (make-hash-table :test 'equal)))
+    (dolist (sample (profile-samples thread))
+      (destructuring-bind (thread n &rest operators) sample
+        (let ((frames (mapcar (lambda (operator)
+                                (collapsed-frame-name (operator-name operator)))
+                              (reverse operators))))
+          (when thread-names
+            (push (substitute #\: #\; (princ-to-string
+                                      (threads:thread-name thread)))
+                  frames))
+          (incf (gethash (format nil "~{~A~^;~}" frames) stacks 0) n))))
+    (call-with-report-stream
+     stream
+     (lambda (out)
+       (loop for (stack . n) in (sort (sorted-counts stacks) #'string<
+                                      :key #'car)
+          do (format out "~A ~D~%" stack n)))))
+  (values))
+
+(defun operator-call-count (operator)
+  (sys:call-count (if (and (symbolp operator) (fboundp operator))
+                      (fdefinition operator)
+                      operator)))
+
+(defun show-allocation-profile (&key thread (stream *standard-output*) (max 50))
+  "Shows the bytes allocated by the functions seen by the :ALLOCATION
+profiler while they were running (self) or anywhere on the stack (total),
+next to their sampled call counts, then the bytes allocated by each
+thread.  The bytes a thread allocates between two samples are attributed
+to the stack found by the second one.  THREAD and STREAM are as for
+SHOW-FLAT-PROFILE."
+  (multiple-value-bind (stacks threads) (%profiler-allocations)
+    (let ((self (make-hash-table :test 'equal))
+          (total (make-hash-table :test 'equal))
+          (operators (make-hash-table :test 'equal))
+          (bytes 0))
+      (dolist (sample stacks)
+        (destructuring-bind (sample-thread n &rest stack) sample
+          (when (or (null thread) (eq thread sample-thread))
+            (let ((names (mapcar #'operator-name stack)))
+              (incf bytes n)
+              (incf (gethash (first names) self 0) n)
+              (loop for name in names
+                 for operator in stack
+                 do (setf (gethash name operators) operator))
+              (dolist (name (remove-duplicates names :test 'equal))
+                (incf (gethash name total 0) n))))))
+      (call-with-report-stream
+       stream
+       (lambda (out)
+         (format out "~&~:D bytes sampled~%~6@A ~14@A ~6@A ~14@A ~8@A  ~A~%"
+                 bytes "self%" "self" "total%" "total" "calls" "function")
+         (loop for (name . total-bytes) in (sorted-counts total)
+            for i below (or max most-positive-fixnum)
+            for self-bytes = (gethash name self 0)
+            do (format out "~6,1F ~14:D ~6,1F ~14:D ~8D  ~S~%"
+                       (percentage self-bytes bytes) self-bytes
+                       (percentage total-bytes bytes) total-bytes
+                       (operator-call-count (gethash name operators))
+                       name))
+         (format out "~&~%~14@A  ~A~%" "bytes" "thread")
+         (loop for (sample-thread . n) in (sort (copy-list threads) #'> :key #'cdr)
+            when (or (null thread) (eq thread sample-thread))
+            do (format out "~14:D  ~A~%" n
+                       (threads:thread-name sample-thread)))))))
+  (values))
+
+(defun report-allocation-profile (start end stream max)
+  (call-with-report-stream
+   stream
+   (lambda (out)
+     (when (and start end)
+       (format out "~&~:D bytes allocated by the calling thread~%"
+               (- end start)))
+     (show-allocation-profile :stream out :max max))))
+
+(defmacro with-allocation-profile ((&key granularity threads
+                                         (stream '*standard-output*) (max 50))
+                                   &body body)
+  "Runs BODY with the :ALLOCATION profiler, then shows on STREAM the bytes
+BODY allocated in the calling thread, and the allocation profile as
+SHOW-ALLOCATION-PROFILE does.  Returns the values of BODY."
+  (let ((start (gensym "START"))
+        (end (gensym "END")))
+    `(let ((,start (sys:thread-allocated-bytes))
+           (,end nil))
+       (multiple-value-prog1
+           (unwind-protect
+                (progn
+                  (start-profiler :type :allocation
+                                  ,@(when granularity
+                                      `(:granularity ,granularity))
+                                  ,@(when threads
+                                      `(:threads ,threads)))
+                  (multiple-value-prog1 (progn ,@body)
+                    (setf ,end (sys:thread-allocated-bytes))))
+             (stop-profiler))
+         (report-allocation-profile ,start ,end ,stream ,max)))))
+
+(defun start-profiler (&key type (granularity *granularity*) (threads t))
   "Starts the profiler.
-  :TYPE may be either :TIME (statistical sampling) or :COUNT-ONLY (exact call
-  counts)."
+  :TYPE may be :TIME (statistical sampling), :ALLOCATION (statistical
+  sampling which also attributes the bytes threads allocate to the sampled
+  stacks) or :COUNT-ONLY (exact call counts).
+  With :TIME or :ALLOCATION, the stacks of THREADS, either T for all threads
+  or a list of threads, are sampled every GRANULARITY milliseconds."
   (unless type
     (setf type :time))
-  (unless (memq type '(:time :count-only))
-    (error ":TYPE must be :TIME or :COUNT-ONLY"))
+  (unless (memq type '(:time :allocation :count-only))
+    (error ":TYPE must be :TIME, :ALLOCATION or :COUNT-ONLY"))
   (setf *type* type)
-  (%start-profiler type *granularity*))
+  (%start-profiler type granularity threads))
 
-(defmacro with-profiling ((&key type) &body body)
-  `(unwind-protect (progn (start-profiler :type ,type) ,@body)
+(defmacro with-profiling ((&rest options &key type granularity threads)
+                          &body body)
+  (declare (ignore type granularity threads))
+  `(unwind-protect (progn (start-profiler ,@options) ,@body)
                    (stop-profiler)))
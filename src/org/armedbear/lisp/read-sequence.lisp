@@ -39,12 +39,14 @@
       (setf end (length sequence)))
   (let* ((element-type (expand-deftype (stream-element-type stream))))
     (cond ((eq element-type 'character)
-           (do ((pos start (1+ pos)))
-               ((>= pos end) pos)
-             (let ((element (read-char stream nil :eof)))
-               (when (eq element :eof)
-                 (return pos))
-               (setf (elt sequence pos) element))))
+           (if (stringp sequence)
+               (%read-string sequence stream start end)
+               (do ((pos start (1+ pos)))
+                   ((>= pos end) pos)
+                 (let ((element (read-char stream nil :eof)))
+                   (when (eq element :eof)
+                     (return pos))
+                   (setf (elt sequence pos) element)))))
           ((equal element-type '(unsigned-byte 8))
            (if (and (vectorp sequence)
                     (equal (array-element-type sequence) '(unsigned-byte 8)))
@@ -55,6 +57,11 @@
                    (when (eq element :eof)
                      (return pos))
                    (setf (elt sequence pos) element)))))
+          ((and (vectorp sequence)
+                (member element-type '((unsigned-byte 16) (unsigned-byte 32))
+                        :test #'equal)
+                (equal (array-element-type sequence) element-type))
+           (read-vector-unsigned-byte sequence stream start end))
           (t
            (do ((pos start (1+ pos)))
                ((>= pos end) pos)
@@ -32,11 +32,17 @@
 
 (in-package #:threads)
 
-(export '(make-mailbox mailbox-send mailbox-empty-p
-          mailbox-read mailbox-peek
+(export '(make-mailbox mailbox-p mailbox-send mailbox-empty-p
+          mailbox-read mailbox-peek mailbox-count
           make-thread-lock with-thread-lock
           current-thread yield
-          make-mutex get-mutex release-mutex with-mutex))
+          make-mutex mutex-p get-mutex release-mutex with-mutex
+          make-condition-variable condition-wait
+          condition-notify condition-notify-all
+          make-semaphore semaphore-wait semaphore-signal semaphore-count
+          make-latch latch-count-down latch-wait latch-count
+          make-thread-pool submit shutdown-thread-pool
+          future-value future-wait future-done-p))
 ;;
 ;; MAKE-THREAD helper to establish restarts
 ;;
@@ -46,78 +52,21 @@
       (funcall fun)
     (abort () :report "Abort thread.")))
 
-;;
-;; Mailbox implementation
-;;
-
-;; this export statement is also in autoloads.lisp
-(export '(make-mailbox mailbox-send mailbox-empty-p mailbox-read mailbox-peek))
-
-(defstruct mailbox
-  queue)
-
-(defun mailbox-send (mailbox item)
-  "Sends an item into the mailbox, notifying 1 waiter
-to wake up for retrieval of that object."
-  (threads:synchronized-on mailbox
-     (push item (mailbox-queue mailbox))
-     (threads:object-notify mailbox)))
-
-(defun mailbox-empty-p (mailbox)
-  "Returns non-NIL if the mailbox can be read from, NIL otherwise."
-  ;; Because we're just checking the value of an object reference,
-  ;; (which are atomically gotten and set) we don't need to lock
-  ;; the mailbox before operating on it.
-  (null (mailbox-queue mailbox)))
-
-(defun mailbox-read (mailbox)
-  "Blocks on the mailbox until an item is available for reading.
-When an item is available, it is returned."
-  (threads:synchronized-on mailbox
-     (loop
-        (unless (mailbox-empty-p mailbox)
-          (return))
-        (object-wait mailbox))
-     (pop (mailbox-queue mailbox))))
-
-(defun mailbox-peek (mailbox)
-  "Returns two values. The second returns non-NIL when the mailbox
-is empty. The first is the next item to be read from the mailbox.
-
-Note that due to multi-threading, the first value returned upon
-peek, may be different from the one returned upon next read in the
-calling thread."
-  (threads:synchronized-on mailbox
-     (values (car (mailbox-queue mailbox))
-             (null (mailbox-queue mailbox)))))
-
-
+(defun future-function-wrapper (fun)
+  "Calls FUN for a task of a thread pool.  Returns the list of its values,
+or NIL and the error it signaled."
+  (restart-case
+      (handler-case (values (multiple-value-list (funcall fun)) nil)
+        (error (condition)
+          (values nil condition)))
+    (abort () :report "Abort task." (values nil nil))))
 
 ;;
-;; Mutex implementation
+;; Mailboxes, mutexes, condition variables, semaphores and latches are
+;; implemented in Java (Mailbox.java, Mutex.java, ConditionVariable.java,
+;; LispSemaphore.java and Latch.java) on top of java.util.concurrent.
 ;;
 
-
-;; this export statement is also in autoloads.lisp
-(export '(make-mutex get-mutex release-mutex))
-
-(defstruct mutex
-  in-use)
-
-(defun get-mutex (mutex)
-  "Acquires a lock on the `mutex'."
-  (synchronized-on mutex
-    (loop
-       while (mutex-in-use mutex)
-       do (object-wait mutex))
-    (setf (mutex-in-use mutex) T)))
-
-(defun release-mutex (mutex)
-  "Releases a lock on the `mutex'."
-  (synchronized-on mutex
-    (setf (mutex-in-use mutex) NIL)
-    (object-notify mutex)))
-
 (defmacro with-mutex ((mutex) &body body)
   "Acquires a lock on `mutex', executes the body
 and releases the lock."
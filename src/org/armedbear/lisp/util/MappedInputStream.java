@@ -0,0 +1,155 @@
+/*
+ * MappedInputStream.java
+ *
+ * Copyright (C) 2026 The ABCL Developers
+ * $Id$
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce an
+ * executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under
+ * terms of your choice, provided that you also meet, for each linked
+ * independent module, the terms and conditions of the license of that
+ * module.  An independent module is a module which is not derived from
+ * or based on this library.  If you modify this library, you may extend
+ * this exception to your version of the library, but you are not
+ * obligated to do so.  If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+package org.armedbear.lisp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream reading a file through read-only memory mappings of
+ * its channel.
+ *
+ * A single mapping is limited to Integer.MAX_VALUE bytes, so larger files
+ * are mapped as a series of chunks.
+ */
+public class MappedInputStream extends InputStream {
+
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long length;
+    private MappedByteBuffer[] chunks;
+    private MappedByteBuffer current;
+    private int index;
+
+    public MappedInputStream(FileChannel channel) throws IOException {
+        this.channel = channel;
+        length = channel.size();
+        int count = (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        chunks = new MappedByteBuffer[Math.max(count, 1)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                    Math.min(CHUNK_SIZE, length - start));
+        }
+        current = chunks[0];
+    }
+
+    public final long length() {
+        return length;
+    }
+
+    public final long position() throws IOException {
+        ensureOpen();
+        return index * CHUNK_SIZE + current.position();
+    }
+
+    public final void position(long pos) throws IOException {
+        ensureOpen();
+        if (pos < 0 || pos > length)
+            throw new IOException("Position " + pos + " is outside the file.");
+        index = (int) Math.min(pos / CHUNK_SIZE, chunks.length - 1);
+        current = chunks[index];
+        current.position((int) (pos - index * CHUNK_SIZE));
+    }
+
+    /** Returns a read-only buffer sharing the file's contents from
+     * <code>start</code> for <code>size</code> bytes.
+     */
+    public final ByteBuffer map(long start, int size) throws IOException {
+        ensureOpen();
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+
+    @Override
+    public final int read() throws IOException {
+        ensureOpen();
+        if (!current.hasRemaining() && !nextChunk())
+            return -1;
+        return current.get() & 0xff;
+    }
+
+    @Override
+    public final int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len == 0)
+            return 0;
+        int n = 0;
+        while (n < len) {
+            if (!current.hasRemaining() && !nextChunk())
+                break;
+            int count = Math.min(len - n, current.remaining());
+            current.get(b, off + n, count);
+            n += count;
+        }
+        return (n == 0) ? -1 : n;
+    }
+
+    @Override
+    public final long skip(long n) throws IOException {
+        long pos = position();
+        long skipped = Math.max(0, Math.min(n, length - pos));
+        position(pos + skipped);
+        return skipped;
+    }
+
+    @Override
+    public final int available() throws IOException {
+        return (int) Math.min(length - position(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mappings stay valid until they are garbage collected;
+        // dropping them here is all Java allows.
+        chunks = null;
+        current = null;
+        channel.close();
+    }
+
+    private boolean nextChunk() {
+        if (index + 1 >= chunks.length)
+            return false;
+        current = chunks[++index];
+        current.position(0);
+        return current.hasRemaining();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (chunks == null)
+            throw new IOException("File closed");
+    }
+}
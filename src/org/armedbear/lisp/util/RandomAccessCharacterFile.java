@@ -525,14 +525,14 @@ public class RandomAccessCharacterFile {
         while (pos - off < len && ! atEof) {
 
             atEof = ! ensureReadBbuf(false);
-            int want = len - pos;
+            int want = len - (pos - off);
             if (want > bbuf.remaining()) {
                 want = bbuf.remaining();
             }
             bbuf.get(b, pos, want);
             pos += want;
         }
-        return pos - off;
+        return (pos == off && len > 0) ? -1 : pos - off;
     }
 
     // a method corresponding to the good ol' ungetc in C.
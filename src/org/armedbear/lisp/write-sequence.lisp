@@ -61,6 +61,12 @@
                     ((>= i end) sequence)
                  (declare (type index i))
                  (write-8-bits (elt sequence i) stream))))
+          ((and (vectorp sequence)
+                (member stream-element-type
+                        '((unsigned-byte 16) (unsigned-byte 32))
+                        :test #'equal)
+                (equal (array-element-type sequence) stream-element-type))
+           (write-vector-unsigned-byte sequence stream start end))
           (t
            (do* ((i start (1+ i)))
                 ((>= i end) sequence)
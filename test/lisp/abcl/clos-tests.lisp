@@ -521,3 +521,50 @@
     (dmc-test-args-with-optional.4c T)
   nil
   nil)
+
+;; Compiled calls to a known generic function go through an inline
+;; cache at the call site, which must notice new methods and
+;; redefined classes.
+(defgeneric call-site-cache-gf (x))
+(defmethod call-site-cache-gf ((x integer)) :integer)
+(defmethod call-site-cache-gf ((x string)) :string)
+(defclass call-site-cache-class () ())
+(defmethod call-site-cache-gf ((x call-site-cache-class)) :class)
+
+(deftest call-site-cache.1
+    (let ((f (compile nil '(lambda (x) (call-site-cache-gf x)))))
+      (list (funcall f 1) (funcall f "a")
+            (funcall f (make-instance 'call-site-cache-class))
+            (progn
+              (defmethod call-site-cache-gf ((x fixnum)) :fixnum)
+              (funcall f 1))
+            (funcall f (1+ most-positive-fixnum))))
+  (:integer :string :class :fixnum :integer))
+
+(deftest call-site-cache.2
+    (let ((f (compile nil '(lambda (x)
+                            (declare (optimize speed (debug 0)))
+                            (call-site-cache-gf x))))
+          (instance (make-instance 'call-site-cache-class)))
+      (list (funcall f instance)
+            (progn
+              (defclass call-site-cache-class ()
+                ((slot :initform 1)))
+              (defclass call-site-cache-subclass (call-site-cache-class) ())
+              (defmethod call-site-cache-gf ((x call-site-cache-subclass))
+                :subclass)
+              (funcall f (make-instance 'call-site-cache-subclass)))
+            (funcall f instance)))
+  (:class :subclass :class))
+
+(defgeneric call-site-cache-gf-2 (x y))
+(defmethod call-site-cache-gf-2 ((x string) (y symbol)) :string-symbol)
+(defmethod call-site-cache-gf-2 ((x symbol) (y string)) :symbol-string)
+
+(deftest call-site-cache.3
+    (let ((f (compile nil '(lambda (x y) (call-site-cache-gf-2 x y)))))
+      (list (funcall f "a" 'b) (funcall f "a" 'b)
+            (funcall f 'a "b") (funcall f 'a "b")
+            (funcall f "a" 'b)))
+  (:string-symbol :string-symbol :symbol-string :symbol-string
+   :string-symbol))
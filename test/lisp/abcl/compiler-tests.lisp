@@ -501,3 +501,359 @@
           (compile nil '(lambda (&key args &optional x))))
       (typep error 'program-error))
   t)
+
+#+abcl
+(deftest compiler.parallel.1
+    (let ((tmpfile (ext::make-temp-file))
+          (forms '((defun parallel-compile-1 (x)
+                     (flet ((twice (y) (* 2 y)))
+                       (twice x)))
+                   (defvar *parallel-compile-2* 3)
+                   (defun parallel-compile-2 (x)
+                     (labels ((down (n) (if (zerop n) x (down (1- n)))))
+                       (+ (down 3) *parallel-compile-2*)))
+                   (defgeneric parallel-compile-3 (x))
+                   (defmethod parallel-compile-3 ((x integer))
+                     (mapcar (lambda (y) (+ x y)) '(1 2)))
+                   (defun parallel-compile-4 ()
+                     (symbol-name '#:uninterned))
+                   (defun parallel-compile-5 (unused)
+                     nil))))
+      (with-open-file (s tmpfile :direction :output)
+        (dolist (form forms)
+          (write form :stream s)))
+      (multiple-value-bind (fasl warnings-p)
+          (compile-file tmpfile :parallelism 2)
+        (delete-file tmpfile)
+        (load fasl)
+        (delete-file fasl)
+        (list warnings-p
+              (parallel-compile-1 2)
+              (parallel-compile-2 1)
+              (parallel-compile-3 1)
+              (parallel-compile-4))))
+  (t 4 4 (2 3) "UNINTERNED"))
+
+#+abcl
+(defun file-octets (pathname)
+  (with-open-file (s pathname :element-type '(unsigned-byte 8))
+    (let ((octets (make-array (file-length s) :element-type '(unsigned-byte 8))))
+      (read-sequence octets s)
+      octets)))
+
+#+abcl
+(ext:resolve 'sys::build-system-files)
+
+#+abcl
+(defun build-test-system (files source-directory parallelism)
+  "Builds FILES, a list as in SYS::*SYSTEM-FILES*, from SOURCE-DIRECTORY
+as COMPILE-SYSTEM would, and returns the directory of the output."
+  (let ((output-directory (ext:make-temp-directory))
+        (sys::*system-files* files)
+        (sys:*compile-file-zip* nil)
+        (*package* (find-package '#:abcl.test.lisp)))
+    (flet ((compile-one (name)
+             (compile-file (merge-pathnames name source-directory)
+                           :output-file (merge-pathnames
+                                         (make-pathname :name (pathname-name name)
+                                                        :type "abcl")
+                                         output-directory))))
+      (sys::build-system-files (sys::system-build-plan) #'compile-one
+                               parallelism))
+    output-directory))
+
+#+abcl
+(deftest compiler.system-build.1
+    (let ((source-directory (ext:make-temp-directory))
+          (files '(("system-build-a.lisp" :load t)
+                   "system-build-b.lisp"
+                   "system-build-c.lisp"))
+          (sources
+           '(((defmacro system-build-name ()
+                `(symbol-name ',(gensym "SYSTEM-BUILD-"))))
+             ((defun system-build-b ()
+                (list (system-build-name) (system-build-name))))
+             ((defun system-build-c ()
+                (list (system-build-name) (system-build-b))))))
+          (outputs '()))
+      (loop for file in files
+         for name = (if (consp file) (first file) file)
+         for forms in sources
+         do (with-open-file (s (merge-pathnames name source-directory)
+                               :direction :output)
+              (let ((*package* (find-package '#:abcl.test.lisp)))
+                (write '(in-package #:abcl.test.lisp) :stream s)
+                (dolist (form forms)
+                  (write form :stream s)))))
+      (unwind-protect
+           (progn
+             (push (build-test-system files source-directory nil) outputs)
+             (push (build-test-system files source-directory 2) outputs)
+             (destructuring-bind (parallel serial) outputs
+               (flet ((output-files (directory)
+                        (sort (mapcar #'file-namestring
+                                      (directory (merge-pathnames "*.*" directory)))
+                              #'string<)))
+                 (list (equal (output-files serial) (output-files parallel))
+                       (every (lambda (name)
+                                (equalp (file-octets (merge-pathnames name serial))
+                                        (file-octets (merge-pathnames name parallel))))
+                              (output-files serial))
+                       (progn
+                         (dolist (name '("system-build-a" "system-build-b"
+                                         "system-build-c"))
+                           (load (make-pathname :name name :type "abcl"
+                                                :defaults parallel)))
+                         (list (system-build-b)
+                               (system-build-c)))))))
+        (dolist (directory (cons source-directory outputs))
+          (dolist (file (directory (merge-pathnames "*.*" directory)))
+            (delete-file file))
+          (delete-file directory))))
+  (t t (("SYSTEM-BUILD-0" "SYSTEM-BUILD-1")
+        ("SYSTEM-BUILD-0" ("SYSTEM-BUILD-0" "SYSTEM-BUILD-1")))))
+
+#+abcl
+(deftest compiler.indexed-fasl.1
+    (let ((tmpfile (ext::make-temp-file))
+          (forms `((defmacro indexed-fasl-1 (x) `(list ,x ,x))
+                   (defun indexed-fasl-2 (x)
+                     (indexed-fasl-1 (flet ((twice (y) (* 2 y)))
+                                       (twice x))))
+                   (defgeneric indexed-fasl-3 (x))
+                   (defmethod indexed-fasl-3 ((x integer))
+                     (1+ x))
+                   ;; Large enough to be stored in a .clc resource.
+                   (defun indexed-fasl-4 ()
+                     (length ',(make-list 20000 :initial-element :abc))))))
+      (with-open-file (s tmpfile :direction :output)
+        (dolist (form forms)
+          (write form :stream s)))
+      (let ((fasl (let ((sys:*compile-file-zip* :indexed))
+                    (compile-file tmpfile))))
+        (delete-file tmpfile)
+        (unwind-protect
+             (let ((magic (with-open-file (s fasl :element-type '(unsigned-byte 8))
+                            (let ((bytes (make-array 8)))
+                              (read-sequence bytes s)
+                              (map 'string #'code-char bytes)))))
+               (load fasl)
+               (let ((stub (fdefinition 'indexed-fasl-2)))
+                 (list magic
+                       (java:jcall "isResolved" stub)
+                       (indexed-fasl-2 3)
+                       (java:jcall "isResolved" stub)
+                       (eq stub (fdefinition 'indexed-fasl-2))
+                       (funcall stub 4)
+                       (indexed-fasl-3 1)
+                       (indexed-fasl-4)
+                       (not (null (sys::function-class-bytes
+                                   (fdefinition 'indexed-fasl-4)))))))
+          (delete-file fasl))))
+  ("ABCLFASL" nil (6 6) t nil (8 8) 2 20000 t))
+
+#+abcl
+(deftest compiler.load-bundle.1
+    (let ((tmpfile (ext::make-temp-file))
+          (bundle (ext::make-temp-file)))
+      (with-open-file (s tmpfile :direction :output)
+        (write-string "(defpackage #:load-bundle-test (:use #:cl))
+(in-package #:load-bundle-test)
+(defmacro load-bundle-1 (x)
+  (let ((g (gensym)))
+    `(let ((,g ,x)) (list ',g ,g))))
+(defun load-bundle-2 (x)
+  (symbol-package (first (load-bundle-1 x))))
+(defun load-bundle-3 (x)
+  (second (load-bundle-1 x)))
+" s))
+      (let ((fasl (compile-file tmpfile)))
+        (delete-file tmpfile)
+        ;; Everything loaded into this Lisp would be in the bundle, so
+        ;; both saving and replaying are done by fresh ones.
+        (flet ((run-lisp (&rest args)
+                 (let* ((bean (java:jstatic "getRuntimeMXBean"
+                                            "java.lang.management.ManagementFactory"))
+                        (java (merge-pathnames
+                               "bin/java"
+                               (concatenate 'string
+                                            (java:jstatic "getProperty" "java.lang.System"
+                                                          "java.home")
+                                            "/")))
+                        (process
+                         (sys:run-program
+                          (namestring java)
+                          (append
+                           (coerce (java:jcall "toArray"
+                                               (java:jcall "getInputArguments" bean))
+                                   'list)
+                           (list "-cp" (java:jstatic "getProperty" "java.lang.System"
+                                                     "java.class.path")
+                                 "org.armedbear.lisp.Main" "--noinit" "--noinform")
+                           args)
+                          :wait nil)))
+                   (close (sys:process-input process))
+                   (sys:process-wait process)
+                   (list (sys:process-exit-code process)
+                         (read (sys:process-output process) nil)))))
+          (unwind-protect
+               (list (run-lisp "--load" (namestring fasl) "--batch" "--eval"
+                               (format nil "(prin1 (pathnamep (ext:save-load-bundle ~S)))"
+                                       (namestring bundle)))
+                     (run-lisp "--load-bundle" (namestring bundle) "--batch" "--eval"
+                               "(prin1 (list (load-bundle-test::load-bundle-2 1)
+                                             (load-bundle-test::load-bundle-3 2)))")
+                     ;; A file changed after it was loaded can't be saved.
+                     (run-lisp "--load" (namestring fasl) "--batch" "--eval"
+                               (format nil "(progn
+                                              (java:jcall \"setLastModified\"
+                                                          (java:jnew \"java.io.File\" ~S)
+                                                          0)
+                                              (prin1 (handler-case (ext:save-load-bundle ~S)
+                                                       (file-error () :changed))))"
+                                       (namestring fasl) (namestring bundle))))
+            (delete-file fasl)
+            (delete-file bundle)))))
+  ((0 t) (0 (nil 2)) (0 :changed)))
+
+;; Compiled classes are written as class file version 50 without stack
+;; map frames, which the JVM verifies by type inference when COMPILE
+;; loads them.
+#+abcl
+(deftest compiler.class-file-version.1
+    (let* ((f (compile nil '(lambda (n)
+                             (let ((sum 0))
+                               (dotimes (i n)
+                                 (if (evenp i)
+                                     (incf sum i)
+                                     (decf sum)))
+                               sum))))
+           (bytes (sys::function-class-bytes f)))
+      (list (java:jarray-ref bytes 6) (java:jarray-ref bytes 7)
+            (funcall f 10)))
+  (0 50 15))
+
+;; Interpreted functions are converted to closure nodes once they have
+;; been called often enough.
+#+abcl
+(deftest closure-compiler.1
+    (let ((f (eval '(lambda (n &optional (k 2))
+                     (let ((sum 0))
+                       (dotimes (i n)
+                         (incf sum (* i k)))
+                       (block b
+                         (when (> sum 100)
+                           (return-from b (values sum :big)))
+                         (values sum :small))))))
+          (results '()))
+      (dotimes (i 200)
+        (push (multiple-value-list (funcall f 10)) results))
+      (list (remove-duplicates results :test #'equal)
+            (sys::%closure-compiled-p f)
+            (multiple-value-list (funcall f 20 1))))
+  (((90 :small)) t (190 :big)))
+
+(defvar *closure-special* :global)
+
+(defun closure-special-value ()
+  *closure-special*)
+
+#+abcl
+(deftest closure-compiler.2
+    (let ((f (eval '(lambda (x)
+                     (let ((*closure-special* x))
+                       (list (closure-special-value)
+                             (catch 'done
+                               (tagbody
+                                top
+                                  (when (> x 3)
+                                    (throw 'done x))
+                                  (setq x (1+ x))
+                                  (go top)))
+                             (multiple-value-bind (q r) (floor x 2)
+                               (+ q r)))))))
+          (g (eval '(lambda (list) (mapcar (lambda (x) (1+ x)) list)))))
+      (list (remove-duplicates (loop repeat 200 collect (funcall f 1))
+                               :test #'equal)
+            (sys::%closure-compiled-p f)
+            *closure-special*
+            (loop repeat 200 do (funcall g '(1 2)) finally (return (funcall g '(1 2))))
+            (sys::%closure-compiled-p g)))
+  (((1 4 2)) t :global (2 3) nil))
+
+(defmacro closure-bad-macro ()
+  (error 'program-error))
+
+;; A macro form whose expansion fails signals that error when it is
+;; reached, also in a converted closure.
+#+abcl
+(deftest closure-compiler.3
+    (let ((f (eval '(lambda (x)
+                     (if (numberp x)
+                         (1+ x)
+                         (closure-bad-macro))))))
+      (list (loop repeat 200 sum (funcall f 1))
+            (sys::%closure-compiled-p f)
+            (handler-case (funcall f nil)
+              (program-error () :program-error))))
+  (400 t :program-error))
+
+;; Float and signed integer arrays store their elements unboxed.
+#+abcl
+(deftest specialized-arrays.1
+    (list (mapcar #'upgraded-array-element-type
+                  '(double-float long-float (single-float 0f0) fixnum
+                    (signed-byte 8) (integer -5 5) (signed-byte 64)))
+          (loop for (type element) in '((double-float 1.5d0)
+                                        (single-float 1.5f0)
+                                        (fixnum -7)
+                                        ((signed-byte 64) -4294967296))
+             collect (let ((v (make-array 3 :element-type type))
+                           (a2d (make-array '(2 2) :element-type type
+                                                   :initial-element element))
+                           (f (make-array 1 :element-type type
+                                            :adjustable t :fill-pointer 0)))
+                       (setf (aref v 1) element)
+                       (dotimes (i 3)
+                         (vector-push-extend element f))
+                       (list (typep v `(simple-array ,type (3)))
+                             (equal (array-element-type f) (array-element-type v))
+                             (equal (array-element-type a2d) (array-element-type v))
+                             (eql (aref v 0) (coerce 0 type))
+                             (eql (aref v 1) element)
+                             (eql (aref a2d 1 1) element)
+                             (every (lambda (x) (eql x element)) f)
+                             (length f)
+                             (handler-case (setf (aref v 0) nil)
+                               (type-error () :type-error))))))
+  ((double-float double-float single-float (signed-byte 32)
+    (signed-byte 32) (signed-byte 32) (signed-byte 64))
+   ((t t t t t t t 3 :type-error)
+    (t t t t t t t 3 :type-error)
+    (t t t t t t t 3 :type-error)
+    (t t t t t t t 3 :type-error))))
+
+#+abcl
+(deftest specialized-arrays.2
+    (let ((scale (compile nil '(lambda (v n)
+                                (declare (type (simple-array double-float (*)) v)
+                                         (fixnum n))
+                                (let ((sum 0d0))
+                                  (declare (double-float sum))
+                                  (dotimes (i n sum)
+                                    (setf (aref v i) (* 2d0 (aref v i)))
+                                    (incf sum (aref v i)))))))
+          (store (compile nil '(lambda (v x)
+                                (declare (single-float x))
+                                (setf (aref v 0) (* x 2f0)))))
+          (v (make-array 4 :element-type 'double-float
+                           :initial-contents '(1d0 2d0 3d0 4d0)))
+          (s (make-array 1 :element-type 'single-float))
+          (g (make-array 1)))
+      (list (funcall scale v 4)
+            (coerce v 'list)
+            (funcall store s 1.5f0)
+            (funcall store g 1.5f0)
+            (aref s 0)
+            (aref g 0)))
+  (20d0 (2d0 4d0 6d0 8d0) 3f0 3f0 3f0 3f0))
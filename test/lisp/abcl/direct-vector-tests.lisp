@@ -0,0 +1,53 @@
+(in-package #:abcl.test.lisp)
+
+;; Direct vectors keep their bytes outside the Java heap.
+(deftest direct-vector.1
+    (let ((file (ext::make-temp-file))
+          (v (ext:make-direct-vector 6))
+          (w (ext:make-direct-vector 6))
+          (heap (make-array 4 :element-type '(unsigned-byte 8)
+                              :initial-contents '(1 2 3 4))))
+      (unwind-protect
+           (progn
+             (setf (aref v 5) 255)
+             (replace v heap :start1 1)
+             (with-open-file (out file :direction :output
+                                       :if-exists :supersede
+                                       :element-type '(unsigned-byte 8))
+               (write-sequence v out))
+             (with-open-file (in file :element-type '(unsigned-byte 8))
+               (read-sequence w in :start 2))
+             (replace heap w :start2 2)
+             (list (typep v '(simple-array (unsigned-byte 8) (6)))
+                   (ext:direct-vector-p v)
+                   (ext:direct-vector-p heap)
+                   (coerce v 'list)
+                   (coerce w 'list)
+                   (coerce heap 'list)
+                   (java:jcall "get" (ext:direct-vector-buffer v) 2)
+                   (ext:free-direct-vector w)
+                   (ext:free-direct-vector w)
+                   (handler-case (aref w 0)
+                     (error () :freed))))
+        (delete-file file)))
+  (t t nil (0 1 2 3 4 255) (0 0 0 1 2 3) (0 1 2 3) 2 t nil :freed))
+
+;; Freeing a direct vector while another thread reads it makes that
+;; thread signal an error instead of touching released memory.
+(deftest direct-vector.2
+    (let* ((v (ext:make-direct-vector 4096))
+           (started (threads:make-mailbox))
+           (reader (threads:make-thread
+                    (lambda ()
+                      (threads:mailbox-send started t)
+                      (handler-case
+                          (loop (dotimes (i 4096) (aref v i))
+                                (replace (make-array 4096 :element-type '(unsigned-byte 8))
+                                         v))
+                        (error () :freed))))))
+      (threads:mailbox-read started)
+      (sleep 0.1)
+      (list (ext:free-direct-vector v)
+            (values (threads:thread-join reader))
+            (length v)))
+  (t :freed 0))
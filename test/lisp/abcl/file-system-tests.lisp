@@ -513,3 +513,204 @@
          (delete-directory directory-namestring))
        )))
   t t t t)
+
+#+abcl
+(deftest map-stream-forms.1
+  (flet ((collect (&rest args)
+           (with-input-from-string (in "(a 1) b #+abcl c #-abcl d \"e\" 2.5 f")
+             (let ((forms '()))
+               (list (apply #'sys:map-stream-forms
+                            (lambda (form) (push form forms)) in args)
+                     (nreverse forms))))))
+    (let ((*package* (find-package '#:abcl.test.lisp)))
+      (list (collect :batch-size 2)
+            (collect :batch-size 2 :background t :queue-size 1)
+            (with-input-from-string (in "x #.(+ 1 2) (y)")
+              (sys:read-all in :batch-size 1)))))
+  ((6 ((a 1) b c "e" 2.5 f))
+   (6 ((a 1) b c "e" 2.5 f))
+   (x 3 (y))))
+
+#+abcl
+(deftest map-stream-forms.2
+  (with-input-from-string (in "a b (c")
+    (handler-case
+        (sys:map-stream-forms #'identity in :batch-size 1 :background t)
+      (end-of-file () :eof)))
+  :eof)
+
+#+abcl
+(deftest map-stream-forms.3
+  (let* ((out (java:jnew "java.io.PipedOutputStream"))
+         (stream (java:jnew "org.armedbear.lisp.Stream" 'system::system-stream
+                            (java:jnew "java.io.PipedInputStream" out)
+                            'character))
+         (start (get-internal-real-time)))
+    (java:jcall "write" out (java:jcall "getBytes" "a b "))
+    (java:jcall "flush" out)
+    (unwind-protect
+         (let ((*package* (find-package '#:abcl.test.lisp)))
+           (list (block nil
+                   (sys:map-stream-forms (lambda (form) (return form)) stream
+                                         :batch-size 1 :background t))
+                 (< (- (get-internal-real-time) start)
+                    (* 10 internal-time-units-per-second))))
+      (java:jcall "close" out)))
+  (a t))
+
+#+abcl
+(deftest read-all.1
+  (let ((*read-base* 16))
+    (with-input-from-string (in "(ff (10 #x10) #.*read-base*) 1f")
+      (sys:read-all in)))
+  ((255 (16 16) 16) 31))
+
+;; Character output translates newlines in chunks and keeps track of
+;; the column without flushing at every newline.
+#+abcl
+(deftest stream-output-eol.1
+  (let ((file (ext::make-temp-file)))
+    (unwind-protect
+         (flet ((bytes (eol-style)
+                  (with-open-file (out file :direction :output
+                                            :if-exists :supersede
+                                            :external-format
+                                            (list :iso-8859-1 :eol-style eol-style))
+                    (write-string (format nil "ab~%c~C~%" #\Return) out)
+                    (write-char #\Newline out)
+                    (write-sequence (coerce (format nil "~%de") 'simple-vector)
+                                    out)
+                    (write-string "fg" out)
+                    (format out "~&h"))
+                  (with-open-file (in file :element-type '(unsigned-byte 8))
+                    (let ((v (make-array (file-length in))))
+                      (read-sequence v in)
+                      (map 'string #'code-char v)))))
+           (list (bytes :lf) (bytes :crlf) (bytes :cr)))
+      (delete-file file)))
+  (#.(format nil "ab~%c~C~%~%~%defg~%h" #\Return)
+   #.(format nil "ab~C~%c~C~%~C~%~C~%defg~C~%h"
+             #\Return #\Return #\Return #\Return #\Return)
+   #.(format nil "ab~Cc~C~C~C~Cdefg~Ch"
+             #\Return #\Return #\Return #\Return #\Return #\Return)))
+
+#+abcl
+(deftest stream-output-eol.2
+  (let ((out (make-string-output-stream)))
+    (write-string (format nil "abc~%de") out)
+    (let ((column (sys::charpos out)))
+      (write-line "xyz" out)
+      (fresh-line out)
+      (write-string "q" out)
+      (list column (sys::charpos out) (get-output-stream-string out))))
+  (2 1 #.(format nil "abc~%dexyz~%q")))
+
+;; READ-SEQUENCE and WRITE-SEQUENCE transfer strings and specialized
+;; vectors in bulk.
+#+abcl
+(deftest read-sequence-bulk.1
+  (let ((file (ext::make-temp-file)))
+    (unwind-protect
+         (flet ((round-trip (width)
+                  (let ((type `(unsigned-byte ,width))
+                        (values (list 0 1 255 (1- (expt 2 width))
+                                      (ldb (byte width 0) 4660))))
+                    (with-open-file (out file :direction :output
+                                              :if-exists :supersede
+                                              :element-type type)
+                      (write-sequence (make-array 5 :element-type type
+                                                    :initial-contents values)
+                                      out)
+                      (write-byte 7 out))
+                    (with-open-file (in file :element-type type)
+                      (let ((v (make-array 8 :element-type type
+                                             :initial-element 9)))
+                        (list (read-sequence v in :start 1)
+                              (coerce v 'list)))))))
+           (list (round-trip 8) (round-trip 16) (round-trip 32)))
+      (delete-file file)))
+  ((7 (9 0 1 255 255 52 7 9))
+   (7 (9 0 1 255 65535 4660 7 9))
+   (7 (9 0 1 255 4294967295 4660 7 9))))
+
+#+abcl
+(deftest read-sequence-bulk.2
+  (let ((file (ext::make-temp-file)))
+    (unwind-protect
+         (flet ((read-back (eol-style)
+                  (let ((external-format (list :utf-8 :eol-style eol-style)))
+                    (with-open-file (out file :direction :output
+                                              :if-exists :supersede
+                                              :external-format external-format)
+                      (write-string (format nil "ab~%cd~%ef") out))
+                    (with-open-file (in file :external-format external-format)
+                      (let ((simple (make-string 4 :initial-element #\.))
+                            (adjustable (make-array 10 :element-type 'character
+                                                       :adjustable t
+                                                       :fill-pointer 6)))
+                        (list (read-sequence simple in :start 1)
+                              simple
+                              (read-sequence adjustable in)
+                              (subseq adjustable 0 4)
+                              (read-line in nil :eof)))))))
+           (list (read-back :lf) (read-back :cr) (read-back :crlf)))
+      (delete-file file)))
+  #.(make-list 3 :initial-element
+               (list 4 (format nil ".ab~%") 5 (format nil "cd~%e") :eof)))
+
+;; OPEN :MAPPED T reads binary files through memory mappings.
+#+abcl
+(deftest open-mapped.1
+  (let ((file (ext::make-temp-file)))
+    (unwind-protect
+         (progn
+           (with-open-file (out file :direction :output
+                                     :if-exists :supersede
+                                     :element-type '(unsigned-byte 8))
+             (dotimes (i 300)
+               (write-byte (mod i 256) out)))
+           (with-open-file (in file :element-type '(unsigned-byte 8)
+                                    :mapped t)
+             (let ((v (make-array 4 :element-type '(unsigned-byte 8)))
+                   (bytes (ext:mapped-file-vector in 254 258)))
+               (list (typep in 'file-stream)
+                     (file-length in)
+                     (read-byte in)
+                     (read-byte in)
+                     (read-sequence v in)
+                     (coerce v 'list)
+                     (file-position in)
+                     (file-position in 298)
+                     (read-sequence v in)
+                     (coerce v 'list)
+                     (read-byte in nil :eof)
+                     (file-position in 301)
+                     (coerce bytes 'list)
+                     (handler-case (setf (aref bytes 0) 1)
+                       (error () :read-only))))))
+      (delete-file file)))
+  (t 300 0 1 4 (2 3 4 5) 6 t 2 (42 43 4 5) :eof nil (254 255 0 1) :read-only))
+
+#+abcl
+(deftest open-mapped.2
+  (let ((file (ext::make-temp-file)))
+    (unwind-protect
+         (progn
+           (with-open-file (out file :direction :output
+                                     :if-exists :supersede
+                                     :element-type '(unsigned-byte 16))
+             (write-sequence (make-array 3 :element-type '(unsigned-byte 16)
+                                           :initial-contents '(1 515 65535))
+                             out))
+           (with-open-file (in file :element-type '(unsigned-byte 16)
+                                    :mapped t)
+             (let ((v (make-array 3 :element-type '(unsigned-byte 16))))
+               (list (file-length in)
+                     (read-sequence v in)
+                     (coerce v 'list)
+                     (progn (file-position in 1) (read-byte in))
+                     (handler-case (open file :direction :output :mapped t
+                                              :if-exists :append)
+                       (file-error () :error))))))
+      (delete-file file)))
+  (3 3 (1 515 65535) 515 :error))
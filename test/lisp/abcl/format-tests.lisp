@@ -0,0 +1,24 @@
+(in-package #:abcl.test.lisp)
+
+;; The directives of control strings known only at run time are cached
+;; by the contents of the string, in two generations.
+(deftest format-cache.1
+  (let ((sys:*format-cache-size* 2)
+        (control (copy-seq "~A-~D")))
+    (sys:clear-format-cache)
+    (list (format nil control :a 1)
+          (format nil control :b 2)
+          (progn
+            (setf (char control 1) #\S)
+            (format nil control "c" 3))
+          (format nil (copy-seq "x~%"))
+          (format nil (copy-seq "y"))
+          (format nil (copy-seq "z"))
+          (getf (sys:format-cache-statistics) :hits)
+          (getf (sys:format-cache-statistics) :misses)
+          (getf (sys:format-cache-statistics) :evictions)
+          (progn
+            (sys:clear-format-cache)
+            (sys:format-cache-statistics))))
+  ("A-1" "B-2" "\"c\"-3" "x
+" "y" "z" 1 5 2 (:size 0 :hits 0 :misses 0 :evictions 0)))
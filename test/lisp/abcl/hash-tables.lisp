@@ -0,0 +1,140 @@
+;;; hash-tables.lisp
+;;;
+;;; Copyright (C) 2026 The ABCL Developers
+;;; $Id$
+;;;
+;;; This program is free software; you can redistribute it and/or
+;;; modify it under the terms of the GNU General Public License
+;;; as published by the Free Software Foundation; either version 2
+;;; of the License, or (at your option) any later version.
+;;;
+;;; This program is distributed in the hope that it will be useful,
+;;; but WITHOUT ANY WARRANTY; without even the implied warranty of
+;;; MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+;;; GNU General Public License for more details.
+;;;
+;;; You should have received a copy of the GNU General Public License
+;;; along with this program; if not, write to the Free Software
+;;; Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+(in-package #:abcl.test.lisp)
+
+(deftest hash-table.lock-free.1
+    (let ((ht (make-hash-table :test 'eq :synchronized :lock-free)))
+      (dotimes (i 1000)
+        (setf (gethash i ht) (* i i)))
+      (values (hash-table-count ht)
+              (gethash 30 ht)
+              (remhash 30 ht)
+              (gethash 30 ht)
+              (hash-table-count ht)))
+  1000 900 t nil 999)
+
+(deftest hash-table.lock-free.2
+    (let ((ht (make-hash-table :test 'eql :synchronized :lock-free))
+          (sum 0))
+      (dotimes (i 100)
+        (setf (gethash (* i 1d0) ht) i))
+      (maphash (lambda (k v) (declare (ignore k)) (incf sum v)) ht)
+      (clrhash ht)
+      (values sum (hash-table-count ht) (gethash 1d0 ht)))
+  4950 0 nil)
+
+(deftest hash-table.lock-free.3
+    (let* ((ht (make-hash-table :synchronized :lock-free))
+           (threads
+            (loop for n below 8
+               collect (let ((base (* n 1000)))
+                         (threads:make-thread
+                          (lambda ()
+                            (dotimes (i 1000)
+                              (setf (gethash (+ base i) ht) i))))))))
+      (mapc #'threads:thread-join threads)
+      (values (hash-table-count ht)
+              (gethash 7999 ht)))
+  8000 999)
+
+(deftest hash-table.lock-free.4
+    (signals-error (make-hash-table :weakness :key :synchronized :lock-free)
+                   'error)
+  t)
+
+(deftest hash-table.incremental-rehash.1
+    (let ((ht (make-hash-table :test 'equal)))
+      (dotimes (i 100000)
+        (setf (gethash (list i) ht) i))
+      (values (hash-table-count ht)
+              (loop for i below 100000
+                 always (eql (gethash (list i) ht) i))
+              (remhash (list 4242) ht)
+              (gethash (list 4242) ht)
+              (length (sys::hash-table-entries ht))))
+  100000 t t nil 99999)
+
+(deftest hash-table.incremental-rehash.2
+    ;; Interleave lookups, updates and removals with a migration.
+    (let ((ht (make-hash-table :test 'eql)))
+      (dotimes (i 20000)
+        (setf (gethash i ht) i))
+      (dotimes (i 20000)
+        (setf (gethash (+ i 20000) ht) i)
+        (when (evenp i)
+          (remhash i ht))
+        (incf (gethash (1+ (* 2 (floor i 2))) ht)))
+      (values (hash-table-count ht)
+              (gethash 1 ht)
+              (gethash 2 ht)
+              (gethash 39999 ht)))
+  30000 3 nil 19999)
+
+(deftest hash-table.rehash-threshold.1
+    (let ((ht (make-hash-table :size 64 :rehash-threshold 0.5)))
+      (dotimes (i 33)
+        (setf (gethash i ht) i))
+      (hash-table-size ht))
+  128)
+
+(deftest hash-table.key-type.1
+    (let ((ht (make-hash-table :key-type 'fixnum)))
+      (dotimes (i 10000)
+        (setf (gethash (- (* i 1000) 5000000) ht) i))
+      (values (hash-table-p ht)
+              (hash-table-count ht)
+              (gethash -5000000 ht)
+              (gethash 4999000 ht)
+              (gethash 17 ht)
+              (gethash 'foo ht)
+              (remhash -4999000 ht)
+              (gethash -4999000 ht)
+              (hash-table-count ht)))
+  t 10000 0 9999 nil nil t nil 9999)
+
+(deftest hash-table.key-type.2
+    (let ((ht (make-hash-table :test 'equal :key-type 'character))
+          (keys nil))
+      (loop for c across "hello, world"
+         do (incf (gethash c ht 0)))
+      (maphash (lambda (k v) (push (cons k v) keys)) ht)
+      (values (hash-table-test ht)
+              (gethash #\l ht)
+              (gethash #\L ht)
+              (length keys)
+              (cdr (assoc #\o keys))))
+  equal 3 nil 9 2)
+
+(deftest hash-table.key-type.3
+    ;; Removals leave tombstones behind, which a rehash clears away.
+    (let ((ht (make-hash-table :key-type 'fixnum :size 16)))
+      (dotimes (i 10000)
+        (setf (gethash i ht) i)
+        (remhash i ht))
+      (setf (gethash 42 ht) 'answer)
+      (values (hash-table-count ht)
+              (gethash 42 ht)
+              (<= (hash-table-size ht) 64)))
+  1 answer t)
+
+(deftest hash-table.key-type.4
+    (let ((ht (make-hash-table :key-type 'fixnum)))
+      (signals-error (setf (gethash "one" ht) 1) 'type-error))
+  t)
@@ -16,3 +16,16 @@
      (java:jcall java.lang.Boolean.equals java:+false+ t)))
   0 0 t t -1 -1 nil nil)
 
+(deftest java.jcall.call-site.1
+  (let ((f (compile nil '(lambda (x) (java:jcall "toString" x)))))
+    (list (funcall f "string")
+          (funcall f (java:jnew "java.lang.StringBuilder" "builder"))
+          (funcall f (java:jnew "java.lang.Integer" 42))
+          (funcall f "string")))
+  ("string" "builder" "42" "string"))
+
+(deftest java.jstatic.call-site.1
+  (let ((f (compile nil '(lambda (x)
+                          (java:jstatic "valueOf" "java.lang.String" x)))))
+    (list (funcall f 42) (funcall f #\x) (funcall f t) (funcall f 42)))
+  ("42" "x" "true" "42"))
@@ -0,0 +1,116 @@
+(in-package #:abcl.test.lisp)
+
+(require '#:profiler)
+
+(defun profiler-test-leaf (n)
+  (let ((x 0))
+    (dotimes (i n x)
+      (setf x (logxor x (* i 3))))))
+
+(defun profiler-test-work (ms)
+  (let ((end (+ (get-internal-real-time)
+                (* ms (/ internal-time-units-per-second 1000)))))
+    (loop while (< (get-internal-real-time) end)
+       do (profiler-test-leaf 1000))))
+
+(compile 'profiler-test-leaf)
+(compile 'profiler-test-work)
+
+(defun profile-test-workload ()
+  "Profiles PROFILER-TEST-WORK running on this thread and on another one,
+and returns the other thread."
+  (let ((thread nil))
+    (profiler:with-profiling (:type :time)
+      (setf thread (threads:make-thread (lambda () (profiler-test-work 300))
+                                        :name "profiler test"))
+      (profiler-test-work 300)
+      (threads:thread-join thread))
+    thread))
+
+(defun parse-collapsed-stack (line)
+  "Splits LINE, in the collapsed stack format, into its list of frames
+and its sample count."
+  (let ((space (position #\Space line :from-end t)))
+    (values (loop for start = 0 then (1+ end)
+               for end = (position #\; line :start start :end space)
+               collect (subseq line start (or end space))
+               while end)
+            (parse-integer line :start (1+ space)))))
+
+(defun collapsed-stacks (&rest args)
+  (with-input-from-string (in (with-output-to-string (out)
+                                (apply #'profiler:write-collapsed-stacks
+                                       :stream out args)))
+    (loop for line = (read-line in nil)
+       while line
+       collect (multiple-value-list (parse-collapsed-stack line)))))
+
+(defun sampled-in-p (frames name)
+  (some (lambda (frame) (not (null (search name frame)))) frames))
+
+(deftest profiler.threads.1
+  (let ((thread (profile-test-workload)))
+    (flet ((sampled-p (thread-name)
+             (some (lambda (stack)
+                     (let ((frames (first stack)))
+                       (and (string= (first frames) thread-name)
+                            (sampled-in-p frames "PROFILER-TEST-LEAF"))))
+                   (collapsed-stacks))))
+      (list (sampled-p (threads:thread-name (threads:current-thread)))
+            (sampled-p "profiler test")
+            (every (lambda (stack)
+                     (sampled-in-p (first stack) "THREAD-FUNCTION-WRAPPER"))
+                   (collapsed-stacks :thread thread)))))
+  (t t t))
+
+(deftest profiler.flat-profile.1
+  (progn
+    (profile-test-workload)
+    (let ((report (with-output-to-string (out)
+                    (profiler:show-flat-profile :stream out))))
+      (list (plusp (parse-integer report :junk-allowed t))
+            (not (null (search "PROFILER-TEST-WORK" report)))
+            (not (null (search "PROFILER-TEST-LEAF" report))))))
+  (t t t))
+
+(deftest profiler.call-graph.1
+  (progn
+    (profile-test-workload)
+    (let* ((report (with-output-to-string (out)
+                     (profiler:show-call-graph :stream out)))
+           (work (search "PROFILER-TEST-WORK" report))
+           (leaf (and work (search "PROFILER-TEST-LEAF" report :start2 work))))
+      (list (plusp (parse-integer report :junk-allowed t))
+            (not (null work))
+            (not (null leaf)))))
+  (t t t))
+
+(deftest profiler.collapsed-stacks.1
+  (progn
+    (profile-test-workload)
+    (let ((stacks (collapsed-stacks :thread-names nil)))
+      (list (not (null stacks))
+            (every (lambda (stack)
+                     (destructuring-bind (frames count) stack
+                       (and (plusp count)
+                            (notany (lambda (frame) (string= frame "")) frames))))
+                   stacks)
+            (not (null (some (lambda (stack)
+                               (sampled-in-p (first stack) "PROFILER-TEST-LEAF"))
+                             stacks))))))
+  (t t t))
+
+(deftest allocation-profile.1
+  (let* ((start (sys:thread-allocated-bytes))
+         (vectors (loop repeat 1000 collect (make-array 1000)))
+         (output (with-output-to-string (out)
+                   (prof:with-allocation-profile (:stream out)
+                     (dotimes (i 20)
+                       (setf vectors
+                             (loop repeat 1000 collect (make-array 1000)))
+                       (sleep 0.01))))))
+    (list (< (* 1000 1000) (- (sys:thread-allocated-bytes) start))
+          (length vectors)
+          (not (null (search "bytes allocated by the calling thread" output)))
+          (not (null (search "bytes sampled" output)))))
+  (t 1000 t t))
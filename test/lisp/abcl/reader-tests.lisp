@@ -0,0 +1,14 @@
+(in-package #:abcl.test.lisp)
+
+;; Tokens are read into a per-thread buffer, and their symbols are
+;; looked up without making a string.
+(deftest reader.token.1
+  (list (read-from-string "(123456789012 -1234567890123 +7 10. cl:car :key :|a:b|)")
+        (let ((*read-base* 16))
+          (mapcar #'princ-to-string (read-from-string "(ff -ff 10. 1g)")))
+        (let ((*readtable* (copy-readtable nil)))
+          (setf (readtable-case *readtable*) :invert)
+          (mapcar #'symbol-name (read-from-string "(foo Foo :kw cl:car)"))))
+  ((123456789012 -1234567890123 7 10 car :key :|a:b|)
+   ("255" "-255" "10" "1G")
+   ("FOO" "Foo" "KW" "CAR")))
@@ -0,0 +1,51 @@
+(in-package #:abcl.test.lisp)
+
+;; An event loop serving an echo server on non-blocking socket channels.
+(deftest event-loop.1
+    (let* ((loop (sys:make-event-loop :name "echo"))
+           (server (sys:make-server-socket-channel 0 "127.0.0.1"))
+           (port (sys:socket-channel-local-port server)))
+      (labels ((echo (stream events)
+                 (declare (ignore events))
+                 (loop
+                    (let ((line (read-line stream nil)))
+                      (unless line
+                        (sys:event-loop-unregister loop stream)
+                        (close stream)
+                        (sys:event-loop-unregister loop server)
+                        (return))
+                      (write-line (string-upcase line) stream)
+                      (finish-output stream)
+                      (unless (listen stream)
+                        (return)))))
+               (accept (server events)
+                 (declare (ignore events))
+                 (let ((channel (sys:socket-channel-accept server)))
+                   (when channel
+                     (sys:event-loop-register loop
+                                              (sys:socket-channel-stream channel)
+                                              '(:read) #'echo)))))
+        (sys:event-loop-register loop server :accept #'accept)
+        (let ((thread (threads:make-thread
+                       (lambda () (sys:event-loop-run loop))
+                       :name "event loop")))
+          (unwind-protect
+               (let ((client (sys:socket-channel-stream
+                              (sys:make-socket-channel "127.0.0.1" port))))
+                 (list (typep loop 'sys:event-loop)
+                       (progn
+                         (write-line "one" client)
+                         (write-line "two" client)
+                         (finish-output client)
+                         (list (read-line client) (read-line client)))
+                       (progn
+                         (write-line "three" client)
+                         (finish-output client)
+                         (read-line client))
+                       (progn
+                         (close client)
+                         (threads:thread-join thread)
+                         (sys:event-loop-run-once loop 0))))
+            (sys:event-loop-close loop)
+            (sys:socket-channel-close server)))))
+  (t ("ONE" "TWO") "THREE" 0))
@@ -0,0 +1,131 @@
+(in-package #:abcl.test.lisp)
+
+;; Special bindings live on a per-thread binding stack which grows on
+;; demand and reuses its binding objects once they are unbound.
+(defvar *test-special* :global)
+
+(defun test-special-depth (n)
+  (if (zerop n)
+      *test-special*
+      (let ((*test-special* n))
+        (test-special-depth (1- n)))))
+
+(deftest special-binding.1
+    (list (test-special-depth 500) *test-special*)
+  (1 :global))
+
+(deftest special-binding.2
+    (let ((*test-special* 1))
+      (list (catch 'out
+              (let ((*test-special* 2))
+                (progv '(*test-special*) '(3)
+                  (throw 'out *test-special*))))
+            *test-special*
+            (let ((*test-special* 4))
+              *test-special*)
+            *test-special*))
+  (3 1 4 1))
+
+(deftest mailbox.1
+    (let ((mailbox (threads:make-mailbox)))
+      (dotimes (i 3)
+        (threads:mailbox-send mailbox i))
+      (list (threads:mailbox-count mailbox)
+            (multiple-value-list (threads:mailbox-peek mailbox))
+            (loop repeat 3 collect (threads:mailbox-read mailbox))
+            (threads:mailbox-empty-p mailbox)
+            (multiple-value-list (threads:mailbox-read mailbox 0.01))))
+  (3 (0 nil) (0 1 2) t (nil nil)))
+
+(deftest mailbox.2
+    (let ((mailbox (threads:make-mailbox :capacity 2)))
+      (list (threads:mailbox-send mailbox :a 0.01)
+            (threads:mailbox-send mailbox :b 0.01)
+            (threads:mailbox-send mailbox :c 0.01)
+            (let ((thread (threads:make-thread
+                           (lambda ()
+                             (loop repeat 100
+                                for i from 0
+                                do (threads:mailbox-send mailbox i))))))
+              (prog1 (loop repeat 102 collect (threads:mailbox-read mailbox))
+                (threads:thread-join thread)))))
+  (t t nil (:a :b . #.(loop for i below 100 collect i))))
+
+(deftest mutex.1
+    (let* ((mutex (threads:make-mutex :name "mutex.1"))
+           (condition (threads:make-condition-variable mutex))
+           (ready nil))
+      (threads:with-mutex (mutex)
+        (threads:make-thread (lambda ()
+                               (threads:with-mutex (mutex)
+                                 (setf ready t)
+                                 (threads:condition-notify-all condition))))
+        (loop until ready
+           do (threads:condition-wait condition 1)))
+      (list ready
+            (threads:get-mutex mutex)
+            (threads:get-mutex mutex 0.01)
+            (progn
+              (threads:release-mutex mutex)
+              (threads:release-mutex mutex))
+            (threads:thread-join
+             (threads:make-thread (lambda ()
+                                    (prog1 (threads:get-mutex mutex 1)
+                                      (threads:release-mutex mutex)))))
+            (handler-case (threads:release-mutex mutex)
+              (program-error () :not-held))))
+  (t t t nil t :not-held))
+
+(deftest semaphore.1
+    (let ((semaphore (threads:make-semaphore 1))
+          (latch (threads:make-latch 4))
+          (count 0))
+      (dotimes (i 4)
+        (threads:make-thread (lambda ()
+                               (threads:semaphore-wait semaphore)
+                               (incf count)
+                               (threads:semaphore-signal semaphore)
+                               (threads:latch-count-down latch))))
+      (list (threads:latch-wait latch 10)
+            (threads:latch-count latch)
+            count
+            (threads:semaphore-wait semaphore 0.01)
+            (threads:semaphore-wait semaphore 0.01)
+            (progn
+              (threads:semaphore-signal semaphore 3)
+              (threads:semaphore-count semaphore))))
+  (t 0 4 t nil 3))
+
+(deftest make-thread.virtual.1
+    (let ((thread (threads:make-thread
+                   (lambda ()
+                     (list (test-special-depth 100)
+                           (let ((*test-special* :virtual))
+                             (read-from-string "(1 2.5)"))
+                           *test-special*))
+                   :name "virtual" :virtual t)))
+      (list (threads:thread-join thread)
+            (threads:thread-name thread)))
+  ((1 (1 2.5) :global) "virtual"))
+
+(deftest thread-pool.1
+    (let* ((pool (threads:make-thread-pool :size 2 :name "thread-pool.1"))
+           (futures (loop for i below 20
+                       collect (threads:submit pool
+                                               (lambda (n)
+                                                 (let ((*test-special* n))
+                                                   (values n (* n n))))
+                                               i)))
+           (failed (threads:submit pool (lambda () (error "thread-pool.1")))))
+      (list (loop for future in futures
+               collect (multiple-value-list (threads:future-value future)))
+            (threads:future-wait failed 10)
+            (handler-case (threads:future-value failed)
+              (simple-error () :failed))
+            (threads:future-value
+             (threads:submit pool (lambda () *test-special*)))
+            (threads:shutdown-thread-pool pool 10)
+            (handler-case (threads:submit pool #'list)
+              (error () :shut-down))))
+  (#.(loop for i below 20 collect (list i (* i i)))
+   t :failed :global t :shut-down))
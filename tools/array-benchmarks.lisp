@@ -0,0 +1,60 @@
+;;; Benchmark for specialized numeric arrays.
+;;;
+;;; Times a compiled AXPY and dot product kernel over vectors of boxed
+;;; elements (element type T) and of unboxed DOUBLE-FLOAT elements, and
+;;; reports the heap each vector takes:
+;;;
+;;;   (load "tools/array-benchmarks.lisp")
+;;;   (run-array-benchmarks)
+
+(defmacro define-array-kernel (name type)
+  `(defun ,name (a x y n)
+     (declare (type ,type x y)
+              (double-float a)
+              (fixnum n)
+              (optimize speed))
+     (let ((sum 0d0))
+       (declare (double-float sum))
+       (dotimes (i n sum)
+         (setf (aref y i) (+ (* a (the double-float (aref x i)))
+                             (the double-float (aref y i))))
+         (incf sum (* (the double-float (aref x i))
+                      (the double-float (aref y i))))))))
+
+(define-array-kernel boxed-kernel simple-vector)
+(define-array-kernel unboxed-kernel (simple-array double-float (*)))
+(compile 'boxed-kernel)
+(compile 'unboxed-kernel)
+
+(defun used-heap ()
+  (let ((runtime (java:jstatic "getRuntime" "java.lang.Runtime")))
+    (dotimes (i 3)
+      (java:jcall "gc" runtime))
+    (- (java:jcall "totalMemory" runtime) (java:jcall "freeMemory" runtime))))
+
+(defun make-benchmark-vector (element-type n)
+  (let ((v (make-array n :element-type element-type)))
+    (dotimes (i n v)
+      (setf (aref v i) (float i 1d0)))))
+
+(defun time-array-kernel (kernel x y n repeat)
+  (let ((best nil))
+    (dotimes (i repeat)
+      (let ((start (get-internal-real-time)))
+        (funcall kernel 1.0001d0 x y n)
+        (let ((seconds (/ (- (get-internal-real-time) start)
+                          internal-time-units-per-second)))
+          (when (or (null best) (< seconds best))
+            (setf best seconds)))))
+    (float best)))
+
+(defun run-array-benchmarks (&key (n 1000000) (repeat 5))
+  (loop for (label element-type kernel) in '((:boxed t boxed-kernel)
+                                             (:unboxed double-float unboxed-kernel))
+     do (let* ((before (used-heap))
+               (x (make-benchmark-vector element-type n))
+               (bytes (- (used-heap) before))
+               (y (make-benchmark-vector element-type n)))
+          (format t "~&~(~8A~) ~,1F bytes per element, ~,3F seconds~%"
+                  label (/ bytes n)
+                  (time-array-kernel kernel x y n repeat)))))
@@ -0,0 +1,48 @@
+;;; Compare generic function calls with and without the inline caches
+;;; the compiler emits at call sites of known generic functions.
+;;;
+;;; The call sites are compiled twice, once with
+;;; JVM::*GENERIC-FUNCTION-CALL-SITE-CACHES* bound to NIL and once with
+;;; it bound to T, and the best time out of REPEAT runs is reported:
+;;;
+;;;   (load "tools/clos-call-site-benchmarks.lisp")
+;;;   (run-clos-call-site-benchmarks)
+
+(load (merge-pathnames "clos-benchmarks.lisp" *load-truename*))
+
+(defvar *call-site-iterations* 1000000)
+
+(defparameter *call-site-forms*
+  '((g1 (g1 i1))
+    (g2 (g2 i2) (g2 i2))
+    (g2-mixed (g2 i1) (g2 i2) (g2 i3))
+    (accessor3 (accessor3 i1) (accessor3 i2) (accessor3 i3))))
+
+(defun compile-call-site-test (body caches)
+  (let ((jvm::*generic-function-call-site-caches* caches))
+    (compile nil `(lambda (n)
+                    (let ((i1 (make-instance 'c1))
+                          (i2 (make-instance 'c2))
+                          (i3 (make-instance 'c3)))
+                      (dotimes (j n)
+                        ,@body))))))
+
+(defun time-call-site-test (function repeat)
+  (funcall function 1000)
+  (let ((best nil))
+    (dotimes (i repeat)
+      (let ((start (get-internal-real-time)))
+        (funcall function *call-site-iterations*)
+        (let ((seconds (/ (- (get-internal-real-time) start)
+                          internal-time-units-per-second)))
+          (when (or (null best) (< seconds best))
+            (setf best seconds)))))
+    (float best)))
+
+(defun run-clos-call-site-benchmarks (&key (repeat 3))
+  (format t "~&~12A ~12@A ~12@A~%" "test" "uncached s" "cached s")
+  (dolist (entry *call-site-forms*)
+    (destructuring-bind (name &rest body) entry
+      (format t "~12A ~12,3F ~12,3F~%" name
+              (time-call-site-test (compile-call-site-test body nil) repeat)
+              (time-call-site-test (compile-call-site-test body t) repeat)))))
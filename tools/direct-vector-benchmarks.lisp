@@ -0,0 +1,50 @@
+;;; Benchmark for direct (off-heap) octet vectors.
+;;;
+;;; Keeps MEGABYTES of (unsigned-byte 8) vectors alive, on the Java heap
+;;; and then outside it with EXT:MAKE-DIRECT-VECTOR, and reports the heap
+;;; they take, the time of a full garbage collection and the time to copy
+;;; them with REPLACE:
+;;;
+;;;   (load "tools/direct-vector-benchmarks.lisp")
+;;;   (run-direct-vector-benchmarks)
+
+(defun used-heap ()
+  (let ((runtime (java:jstatic "getRuntime" "java.lang.Runtime")))
+    (dotimes (i 3)
+      (java:jcall "gc" runtime))
+    (- (java:jcall "totalMemory" runtime) (java:jcall "freeMemory" runtime))))
+
+(defun best-time (function repeat)
+  (let ((best nil))
+    (dotimes (i repeat)
+      (let ((start (get-internal-real-time)))
+        (funcall function)
+        (let ((seconds (/ (- (get-internal-real-time) start)
+                          internal-time-units-per-second)))
+          (when (or (null best) (< seconds best))
+            (setf best seconds)))))
+    (float best)))
+
+(defun make-octet-vectors (kind count size)
+  (loop repeat count
+     collect (ecase kind
+               (:heap (make-array size :element-type '(unsigned-byte 8)))
+               (:direct (ext:make-direct-vector size)))))
+
+(defun run-direct-vector-benchmarks (&key (megabytes 512) (chunk 16) (repeat 5))
+  (let ((count (floor megabytes chunk))
+        (size (* chunk 1024 1024)))
+    (dolist (kind '(:heap :direct))
+      (let* ((before (used-heap))
+             (vectors (make-octet-vectors kind count size))
+             (bytes (- (used-heap) before))
+             (target (make-array size :element-type '(unsigned-byte 8))))
+        (format t "~&~(~8A~) ~,1F MB of heap, gc ~,3F seconds, replace ~,3F seconds~%"
+                kind (/ bytes 1024 1024)
+                (best-time #'ext:gc repeat)
+                (best-time (lambda ()
+                             (dolist (v vectors)
+                               (replace target v)))
+                           repeat))
+        (when (eq kind :direct)
+          (mapc #'ext:free-direct-vector vectors))))))
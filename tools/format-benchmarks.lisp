@@ -0,0 +1,44 @@
+;;; Benchmark for FORMAT with control strings built at run time.
+;;;
+;;; Formats records with a few hundred distinct control strings, with
+;;; the control string cache disabled and enabled, and reports the time
+;;; per call:
+;;;
+;;;   (load "tools/format-benchmarks.lisp")
+;;;   (run-format-benchmarks)
+
+(defvar *format-calls* 200000)
+
+(defun make-control-strings (n)
+  (let ((strings (make-array n)))
+    (dotimes (i n strings)
+      (setf (aref strings i)
+            (format nil "~~&[~D] ~~A: ~~D item~~:P at ~~,2F~~@[ (~~A)~~]~~%" i)))))
+
+(defun format-records (strings n)
+  (let ((count (length strings)))
+    (with-output-to-string (out)
+      (dotimes (i n)
+        (format out (svref strings (mod i count))
+                "record" i (/ i 7.0) (and (evenp i) "even"))))))
+
+(defun time-format (strings cache-size)
+  (let ((sys:*format-cache-size* cache-size))
+    (sys:clear-format-cache)
+    (format-records strings 10000)
+    (let ((start (get-internal-real-time)))
+      (format-records strings *format-calls*)
+      (values (/ (- (get-internal-real-time) start)
+                 internal-time-units-per-second)
+              (sys:format-cache-statistics)))))
+
+(dolist (name '(make-control-strings format-records time-format))
+  (compile name))
+
+(defun run-format-benchmarks (&key (strings 300))
+  (let ((strings (make-control-strings strings)))
+    (dolist (cache-size (list 0 sys:*format-cache-size*))
+      (multiple-value-bind (seconds statistics) (time-format strings cache-size)
+        (format t "~&cache size ~4D: ~,2F seconds, ~,2F us/call ~S~%"
+                cache-size seconds (/ (* seconds 1000000) *format-calls*)
+                statistics)))))
@@ -0,0 +1,58 @@
+;;; Micro-benchmarks for hash tables shared between threads.
+;;;
+;;; Each run starts N threads which hammer one shared table with a mix
+;;; of GETHASH and (SETF GETHASH) on fixnum keys, and reports the total
+;;; throughput.  Compare the default table with the :LOCK-FREE one:
+;;;
+;;;   (load "tools/hash-table-benchmarks.lisp")
+;;;   (run-hash-table-benchmarks)
+
+(defvar *thread-counts* '(1 2 4 8 16 32))
+(defvar *operations-per-thread* 1000000)
+(defvar *key-range* 10000)
+;;; One in this many operations is a write.
+(defvar *write-ratio* 10)
+
+(defun initial-seed (n)
+  (logand (* (1+ n) 2654435761) #x3fffffff))
+
+(defun hammer-hash-table (table operations seed)
+  (let ((state (initial-seed seed)))
+    (dotimes (i operations)
+      (let ((key (mod (setf state (logand (+ (* state 1103515245) 12345)
+                                          #x3fffffff))
+                      *key-range*)))
+        (if (zerop (mod i *write-ratio*))
+            (setf (gethash key table) i)
+            (gethash key table))))))
+
+(defun time-hash-table (table threads)
+  (dotimes (key *key-range*)
+    (setf (gethash key table) key))
+  (let* ((start (get-internal-real-time))
+         (workers (loop for n below threads
+                     collect (let ((seed n))
+                               (threads:make-thread
+                                (lambda ()
+                                  (hammer-hash-table
+                                   table *operations-per-thread* seed)))))))
+    (mapc #'threads:thread-join workers)
+    (/ (- (get-internal-real-time) start)
+       internal-time-units-per-second)))
+
+(defun run-hash-table-benchmarks (&key (test 'eql) (repeat 3))
+  (format t "~&~8@A ~20@A ~20@A~%" "threads" "locked ops/s" "lock-free ops/s")
+  (dolist (threads *thread-counts*)
+    (flet ((best-rate (synchronized)
+             (let ((best nil))
+               (dotimes (i repeat)
+                 (let ((seconds (time-hash-table
+                                 (make-hash-table :test test
+                                                  :synchronized synchronized)
+                                 threads)))
+                   (when (or (null best) (< seconds best))
+                     (setf best seconds))))
+               (round (* threads *operations-per-thread*)
+                      (max best 1/1000)))))
+      (format t "~8@A ~20:D ~20:D~%"
+              threads (best-rate t) (best-rate :lock-free)))))
@@ -0,0 +1,96 @@
+;;; Benchmark for interpreted functions.
+;;;
+;;; Times functions defined from source, as LOAD or EVAL define them, in
+;;; child processes that keep evaluating them with the tree walker
+;;; (-Dabcl.closures.compileThreshold=0) or that convert them to closure
+;;; nodes once they are hot (the default), and in the running Lisp after
+;;; COMPILE:
+;;;
+;;;   (load "tools/interpreter-benchmarks.lisp")
+;;;   (run-interpreter-benchmarks)
+
+(defparameter *interpreter-benchmark-definitions*
+  '((defun bench-fib (n)
+      (if (< n 2)
+          n
+          (+ (bench-fib (- n 1)) (bench-fib (- n 2)))))
+    (defun bench-sum-squares (n)
+      (let ((sum 0))
+        (dotimes (i n sum)
+          (incf sum (* i i)))))
+    (defun bench-rule (record)
+      (cond ((and (> (getf record :size) 100)
+                  (member :urgent (getf record :tags)))
+             :escalate)
+            ((getf record :owner) :assign)
+            (t :ignore)))))
+
+(defparameter *interpreter-benchmark-workload*
+  '(let ((record (list :size 150 :tags '(:new :urgent) :owner nil)))
+     (bench-fib 24)
+     (dotimes (i 2000)
+       (bench-sum-squares 200))
+     (dotimes (i 200000)
+       (bench-rule record))))
+
+(defun interpreter-benchmark-form (repeat)
+  "Returns a form which defines the benchmark functions, runs the workload
+REPEAT times and prints the best time in seconds."
+  `(progn
+     ,@*interpreter-benchmark-definitions*
+     (let ((best nil))
+       (dotimes (i ,repeat)
+         (let ((start (get-internal-real-time)))
+           ,*interpreter-benchmark-workload*
+           (let ((seconds (/ (- (get-internal-real-time) start)
+                             internal-time-units-per-second)))
+             (when (or (null best) (< seconds best))
+               (setf best seconds)))))
+       (print (float best)))))
+
+(defun interpreter-benchmark-child (threshold repeat)
+  (let* ((java (namestring
+                (merge-pathnames "bin/java"
+                                 (concatenate 'string
+                                              (java:jstatic "getProperty" "java.lang.System"
+                                                            "java.home")
+                                              "/"))))
+         (bean (java:jstatic "getRuntimeMXBean"
+                             "java.lang.management.ManagementFactory"))
+         (process (sys:run-program
+                   java
+                   (append (coerce (java:jcall "toArray"
+                                               (java:jcall "getInputArguments" bean))
+                                   'list)
+                           (when threshold
+                             (list (format nil "-Dabcl.closures.compileThreshold=~D"
+                                           threshold)))
+                           (list "-cp" (java:jstatic "getProperty" "java.lang.System"
+                                                     "java.class.path")
+                                 "org.armedbear.lisp.Main" "--noinit" "--noinform"
+                                 "--batch" "--eval"
+                                 (prin1-to-string (interpreter-benchmark-form repeat)))))))
+    (let ((output (with-output-to-string (out)
+                    (loop for line = (read-line (sys:process-output process) nil)
+                       while line
+                       do (write-line line out)))))
+      (unless (zerop (sys:process-exit-code process))
+        (error "Child Lisp exited with code ~D." (sys:process-exit-code process)))
+      (read-from-string output))))
+
+(defun run-interpreter-benchmarks (&key (repeat 3))
+  (format t "~&~(~12A~) ~,3F seconds~%"
+          :tree-walker (interpreter-benchmark-child 0 repeat))
+  (format t "~&~(~12A~) ~,3F seconds~%"
+          :closures (interpreter-benchmark-child nil repeat))
+  (dolist (definition *interpreter-benchmark-definitions*)
+    (compile (eval definition)))
+  (let ((best nil))
+    (dotimes (i repeat)
+      (let ((start (get-internal-real-time)))
+        (eval *interpreter-benchmark-workload*)
+        (let ((seconds (/ (- (get-internal-real-time) start)
+                          internal-time-units-per-second)))
+          (when (or (null best) (< seconds best))
+            (setf best seconds)))))
+    (format t "~&~(~12A~) ~,3F seconds~%" :compiled (float best))))
@@ -0,0 +1,49 @@
+;;; Micro-benchmarks for calling Java methods by name with JCALL and
+;;; JSTATIC.
+;;;
+;;; Each test is compiled twice, with and without the call sites the
+;;; compiler emits for constant method names
+;;; (JVM::*JAVA-CALL-SITE-CACHES*), and the best time per call out of
+;;; REPEAT runs is reported:
+;;;
+;;;   (load "tools/java-call-benchmarks.lisp")
+;;;   (run-java-call-benchmarks)
+
+(defvar *java-call-iterations* 1000000)
+
+(defparameter *java-call-forms*
+  '((string-length (java:jcall "length" string))
+    (list-get (java:jcall "get" list 0))
+    (map-put (java:jcall "put" map "key" string))
+    (math-max (java:jstatic "max" "java.lang.Math" 1 2))
+    (string-value-of (java:jstatic "valueOf" "java.lang.String" 42))))
+
+(defun compile-java-call-test (body caches)
+  (let ((jvm::*java-call-site-caches* caches))
+    (compile nil `(lambda (n)
+                    (let ((string "string")
+                          (list (java:jnew "java.util.ArrayList"))
+                          (map (java:jnew "java.util.HashMap")))
+                      (java:jcall "add" list "element")
+                      (dotimes (i n)
+                        ,body))))))
+
+(defun time-java-call-test (function repeat)
+  (funcall function 10000)
+  (let ((best nil))
+    (dotimes (i repeat)
+      (let ((start (get-internal-real-time)))
+        (funcall function *java-call-iterations*)
+        (let ((time (- (get-internal-real-time) start)))
+          (when (or (null best) (< time best))
+            (setf best time)))))
+    (/ (* best (/ 1000000000 internal-time-units-per-second))
+       *java-call-iterations* 1.0)))
+
+(defun run-java-call-benchmarks (&key (repeat 3))
+  (format t "~&~18A ~14@A ~14@A~%" "test" "by name ns" "call site ns")
+  (dolist (entry *java-call-forms*)
+    (destructuring-bind (name body) entry
+      (format t "~18A ~14,1F ~14,1F~%" name
+              (time-java-call-test (compile-java-call-test body nil) repeat)
+              (time-java-call-test (compile-java-call-test body t) repeat)))))
@@ -0,0 +1,65 @@
+;;; Benchmark for passing messages between threads through a mailbox.
+;;;
+;;; Times producer threads sending messages to a consumer through
+;;; THREADS:MAKE-MAILBOX, unbounded and bounded, and through a copy of
+;;; the mailbox ABCL used to implement with a structure, a list and
+;;; THREADS:OBJECT-WAIT:
+;;;
+;;;   (load "tools/mailbox-benchmarks.lisp")
+;;;   (run-mailbox-benchmarks)
+
+(defstruct monitor-mailbox
+  queue)
+
+(defun monitor-mailbox-send (mailbox item)
+  (threads:synchronized-on mailbox
+    (push item (monitor-mailbox-queue mailbox))
+    (threads:object-notify mailbox)))
+
+(defun monitor-mailbox-read (mailbox)
+  (threads:synchronized-on mailbox
+    (loop
+       (when (monitor-mailbox-queue mailbox)
+         (return))
+       (threads:object-wait mailbox))
+    (pop (monitor-mailbox-queue mailbox))))
+
+(defun time-mailbox (mode messages producers)
+  "Returns the wall clock time in seconds for PRODUCERS threads to send
+MESSAGES messages in all to the calling thread, using a mailbox of
+MODE: :MONITOR, :UNBOUNDED or :BOUNDED."
+  (let* ((mailbox (ecase mode
+                    (:monitor (make-monitor-mailbox))
+                    (:unbounded (threads:make-mailbox))
+                    (:bounded (threads:make-mailbox :capacity 1024))))
+         (send (if (eq mode :monitor)
+                   #'monitor-mailbox-send
+                   #'threads:mailbox-send))
+         (read (if (eq mode :monitor)
+                   #'monitor-mailbox-read
+                   #'threads:mailbox-read))
+         (each (floor messages producers))
+         (start (get-internal-real-time))
+         (threads (loop repeat producers
+                     collect (threads:make-thread
+                              (lambda ()
+                                (dotimes (i each)
+                                  (funcall send mailbox i)))))))
+    (dotimes (i (* each producers))
+      (funcall read mailbox))
+    (mapc #'threads:thread-join threads)
+    (/ (- (get-internal-real-time) start)
+       internal-time-units-per-second)))
+
+(defun run-mailbox-benchmarks (&key (messages 1000000) (producers '(1 4))
+                                    (repeat 3))
+  (dolist (n producers)
+    (dolist (mode '(:monitor :unbounded :bounded))
+      (let ((best nil))
+        (dotimes (i repeat)
+          (let ((seconds (time-mailbox mode messages n)))
+            (when (or (null best) (< seconds best))
+              (setf best seconds))))
+        (setf best (max best 1/1000))
+        (format t "~&~D producer~:P ~(~9A~) ~,2F seconds: ~:D messages/s~%"
+                n mode best (round messages best))))))
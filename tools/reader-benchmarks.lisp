@@ -0,0 +1,82 @@
+;;; Benchmark for the Lisp reader on s-expression data.
+;;;
+;;; Writes a corpus of records made of symbols, keywords, package
+;;; qualified symbols, integers, floats and strings to a temporary file,
+;;; then times reading the whole file with READ and with
+;;; SYS:MAP-STREAM-FORMS, in the calling thread and in the background:
+;;;
+;;;   (load "tools/reader-benchmarks.lisp")
+;;;   (run-reader-benchmarks)
+;;;
+;;; Pass :CORPUS to time an existing file instead.
+
+(defpackage #:reader-benchmark-data
+  (:use)
+  (:export #:record #:name #:size #:tags))
+
+(defvar *corpus-megabytes* 64)
+
+(defun write-reader-corpus (pathname megabytes)
+  (let ((state 12345)
+        (limit (* megabytes 1024 1024)))
+    (flet ((next (n)
+             (setf state (logand (+ (* state 1103515245) 12345) #x3fffffff))
+             (mod state n)))
+      (with-open-file (out pathname :direction :output :if-exists :supersede)
+        (with-standard-io-syntax
+          (let ((*package* (find-package '#:reader-benchmark-data)))
+            (loop for i from 0
+               while (< (file-position out) limit)
+               do (write `(reader-benchmark-data:record
+                           ,i
+                           (reader-benchmark-data:name
+                            ,(format nil "item-~D" (next 100000)))
+                           (reader-benchmark-data:size ,(next 1000000000)
+                                                       ,(- (next 100000))
+                                                       ,(/ (next 100000) 100.0d0))
+                           (reader-benchmark-data:tags
+                            ,@(loop repeat (1+ (next 6))
+                                 collect (intern (format nil "TAG-~D" (next 50))
+                                                 :keyword)))
+                           (cl:list cl-user::field-a cl-user::field-b
+                                    ,(next 256) nil t))
+                         :stream out)
+                  (terpri out))))))
+    pathname))
+
+(defun time-reader (pathname &optional (mode :read))
+  "Times reading all forms in PATHNAME with READ or, when MODE is :BATCH
+or :BACKGROUND, with SYS:MAP-STREAM-FORMS."
+  (let ((start (get-internal-real-time))
+        (forms 0))
+    (with-open-file (in pathname)
+      (let ((*package* (find-package '#:reader-benchmark-data)))
+        (if (eq mode :read)
+            (loop with eof = '#:eof
+               until (eq (read in nil eof) eof)
+               do (incf forms))
+            (setf forms (sys:map-stream-forms #'identity in
+                                              :background (eq mode :background))))))
+    (values (/ (- (get-internal-real-time) start)
+               internal-time-units-per-second)
+            forms)))
+
+(defun run-reader-benchmarks (&key corpus (repeat 3))
+  (let* ((pathname (or corpus
+                       (write-reader-corpus (ext:make-temp-file)
+                                            *corpus-megabytes*)))
+         (megabytes (/ (with-open-file (in pathname) (file-length in))
+                       (* 1024 1024.0))))
+    (unwind-protect
+         (dolist (mode '(:read :batch :background))
+           (let ((best nil) (forms 0))
+             (dotimes (i repeat)
+               (multiple-value-bind (seconds n) (time-reader pathname mode)
+                 (setf forms n)
+                 (when (or (null best) (< seconds best))
+                   (setf best seconds))))
+             (setf best (max best 1/1000))
+             (format t "~&~(~10A~) ~:D forms (~,1F MB) in ~,2F seconds: ~,1F MB/s, ~:D forms/s~%"
+                     mode forms megabytes best (/ megabytes best) (round forms best))))
+      (unless corpus
+        (delete-file pathname)))))
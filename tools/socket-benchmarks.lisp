@@ -0,0 +1,76 @@
+;;; Benchmark for non-blocking sockets served by an event loop.
+;;;
+;;; Runs an echo server on one event loop thread and times clients in
+;;; their own threads sending lines to it over the loopback interface:
+;;;
+;;;   (load "tools/socket-benchmarks.lisp")
+;;;   (run-socket-benchmarks)
+
+(defun start-echo-server ()
+  "Starts an echo server on an event loop thread and returns the loop,
+the server channel and the port."
+  (let* ((loop (sys:make-event-loop :name "echo"))
+         (server (sys:make-server-socket-channel 0 "127.0.0.1")))
+    (labels ((echo (stream events)
+               (declare (ignore events))
+               (loop
+                  (let ((line (read-line stream nil)))
+                    (unless line
+                      (sys:event-loop-unregister loop stream)
+                      (close stream)
+                      (return))
+                    (write-line line stream)
+                    (unless (listen stream)
+                      (finish-output stream)
+                      (return)))))
+             (accept (server events)
+               (declare (ignore events))
+               (loop for channel = (sys:socket-channel-accept server)
+                  while channel
+                  do (sys:event-loop-register loop
+                                              (sys:socket-channel-stream channel)
+                                              :read #'echo))))
+      (sys:event-loop-register loop server :accept #'accept)
+      (threads:make-thread (lambda () (sys:event-loop-run loop))
+                           :name "echo event loop")
+      (values loop server (sys:socket-channel-local-port server)))))
+
+(defun echo-client (port round-trips batch line)
+  "Sends ROUND-TRIPS batches of BATCH copies of LINE and reads the echoes."
+  (let ((stream (sys:socket-channel-stream
+                 (sys:make-socket-channel "127.0.0.1" port))))
+    (unwind-protect
+         (dotimes (i round-trips)
+           (dotimes (j batch)
+             (write-line line stream))
+           (finish-output stream)
+           (dotimes (j batch)
+             (read-line stream)))
+      (close stream))))
+
+(defun time-echo-clients (port clients round-trips batch line)
+  (let ((start (get-internal-real-time))
+        (threads (loop repeat clients
+                    collect (threads:make-thread
+                             (lambda ()
+                               (echo-client port round-trips batch line))))))
+    (mapc #'threads:thread-join threads)
+    (float (/ (- (get-internal-real-time) start)
+              internal-time-units-per-second))))
+
+(defun run-socket-benchmarks (&key (round-trips 2000) (clients '(1 16 64)))
+  (multiple-value-bind (loop server port) (start-echo-server)
+    (unwind-protect
+         (dolist (n clients)
+           (let ((seconds (time-echo-clients port n round-trips 1 "ping")))
+             (format t "~&~3D clients ~6D round trips ~,3F seconds, ~,1F us each~%"
+                     n (* n round-trips) seconds
+                     (/ (* seconds 1000000) (* n round-trips))))
+           (let* ((line (make-string 1023 :initial-element #\x))
+                  (seconds (time-echo-clients port n 100 64 line)))
+             (format t "~&~3D clients ~6D KB echoed ~,3F seconds, ~,1F MB/s~%"
+                     n (* n 100 64) seconds
+                     (/ (* n 100 64) 1024 seconds))))
+      (sys:event-loop-stop loop)
+      (sys:event-loop-close loop)
+      (sys:socket-channel-close server))))
@@ -0,0 +1,63 @@
+;;; Allocation and time benchmarks for dynamic binding of special variables.
+;;;
+;;; Each test rebinds specials in a tight compiled loop and reports the
+;;; time per iteration and the bytes the current thread allocated per
+;;; iteration, as counted by the JVM:
+;;;
+;;;   (load "tools/special-binding-benchmarks.lisp")
+;;;   (run-special-binding-benchmarks)
+
+(defvar *binding-iterations* 10000000)
+
+(defvar *special-1* nil)
+(defvar *special-2* nil)
+
+(defun bind-one (n)
+  (dotimes (i n)
+    (let ((*special-1* i))
+      *special-1*)))
+
+(defun bind-two (n)
+  (dotimes (i n)
+    (let ((*special-1* i)
+          (*special-2* i))
+      *special-2*)))
+
+(defun bind-printer-variables (n)
+  (dotimes (i n)
+    (let ((*print-base* 16)
+          (*print-radix* t)
+          (*print-pretty* nil)
+          (*print-escape* nil))
+      *print-base*)))
+
+(defun bind-nested (n)
+  (dotimes (i n)
+    (let ((*special-1* i))
+      (let ((*special-2* *special-1*))
+        (let ((*special-1* *special-2*))
+          *special-1*)))))
+
+(dolist (name '(bind-one bind-two bind-printer-variables bind-nested))
+  (compile name))
+
+(defun run-special-binding-benchmarks (&key (repeat 3))
+  (format t "~&~24A ~12@A ~12@A~%" "test" "ns/iter" "bytes/iter")
+  (dolist (name '(bind-one bind-two bind-printer-variables bind-nested))
+    (funcall name 100000)
+    (let ((best-time nil)
+          (best-bytes nil))
+      (dotimes (i repeat)
+        (let ((bytes (sys:thread-allocated-bytes))
+              (start (get-internal-real-time)))
+          (funcall name *binding-iterations*)
+          (let ((time (- (get-internal-real-time) start))
+                (bytes (- (sys:thread-allocated-bytes) bytes)))
+            (when (or (null best-time) (< time best-time))
+              (setf best-time time))
+            (when (or (null best-bytes) (< bytes best-bytes))
+              (setf best-bytes bytes)))))
+      (format t "~24A ~12,1F ~12,1F~%" name
+              (/ (* best-time (/ 1000000000 internal-time-units-per-second))
+                 *binding-iterations* 1.0)
+              (/ best-bytes *binding-iterations* 1.0)))))
@@ -0,0 +1,63 @@
+;;; Benchmark for starting ABCL with and without a load bundle.
+;;;
+;;; Saves the running Lisp's loaded files with EXT:SAVE-LOAD-BUNDLE,
+;;; then times child processes that start, evaluate a form and exit,
+;;; once booting normally and once with --load-bundle:
+;;;
+;;;   (load "tools/startup-benchmarks.lisp")
+;;;   (run-startup-benchmarks)
+;;;
+;;; Pass :LOAD to load files (for example compiled fasls of an
+;;; application) into both the bundle and the normal startup.
+
+(defun java-command ()
+  (let ((home (java:jstatic "getProperty" "java.lang.System" "java.home")))
+    (namestring (merge-pathnames "bin/java" (concatenate 'string home "/")))))
+
+(defun jvm-arguments ()
+  "Returns the arguments this JVM was started with, so that the child
+processes run with the same options."
+  (let ((bean (java:jstatic "getRuntimeMXBean"
+                            "java.lang.management.ManagementFactory")))
+    (coerce (java:jcall "toArray" (java:jcall "getInputArguments" bean))
+            'list)))
+
+(defun startup-arguments (bundle load form)
+  (append (jvm-arguments)
+          (list "-cp" (java:jstatic "getProperty" "java.lang.System"
+                                    "java.class.path")
+                "org.armedbear.lisp.Main" "--noinit" "--noinform")
+          (if bundle
+              (list "--load-bundle" (namestring bundle))
+              (loop for file in load
+                 append (list "--load" (namestring file))))
+          (list "--batch" "--eval" (prin1-to-string form))))
+
+(defun time-startup (bundle load form)
+  "Returns the wall clock time in seconds to start a child Lisp, evaluate
+FORM and exit."
+  (let* ((start (get-internal-real-time))
+         (process (sys:run-program (java-command)
+                                   (startup-arguments bundle load form))))
+    (unless (zerop (sys:process-exit-code process))
+      (error "Child Lisp exited with code ~D."
+             (sys:process-exit-code process)))
+    (/ (- (get-internal-real-time) start)
+       internal-time-units-per-second)))
+
+(defun run-startup-benchmarks (&key load (form '(quit)) (repeat 5))
+  (let ((bundle (ext:make-temp-file)))
+    (unwind-protect
+         (progn
+           (dolist (file load)
+             (load file))
+           (ext:save-load-bundle bundle)
+           (dolist (mode '(:boot :bundle))
+             (let ((best nil))
+               (dotimes (i repeat)
+                 (let ((seconds (time-startup (and (eq mode :bundle) bundle)
+                                               load form)))
+                   (when (or (null best) (< seconds best))
+                     (setf best seconds))))
+               (format t "~&~(~6A~) ~,2F seconds~%" mode best))))
+      (delete-file bundle))))
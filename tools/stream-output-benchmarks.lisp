@@ -0,0 +1,41 @@
+;;; Benchmark for character output.
+;;;
+;;; Writes lines to a file with WRITE-CHAR, WRITE-STRING, WRITE-LINE and
+;;; FORMAT, once for each end of line style:
+;;;
+;;;   (load "tools/stream-output-benchmarks.lisp")
+;;;   (run-stream-output-benchmarks)
+
+(defparameter *stream-output-benchmark-line*
+  "The quick brown fox jumps over the lazy dog, 0123456789.")
+
+(defun stream-output-benchmark-write (out lines)
+  (let ((line *stream-output-benchmark-line*)
+        (text (format nil "~A~%~A~%" *stream-output-benchmark-line*
+                      *stream-output-benchmark-line*)))
+    (dotimes (i lines)
+      (case (mod i 4)
+        (0 (loop for c across line do (write-char c out))
+           (terpri out))
+        (1 (write-line line out))
+        (2 (write-string text out))
+        (3 (format out "~A ~D~%" line i))))))
+
+(defun run-stream-output-benchmarks (&key (lines 200000) (repeat 3))
+  (let ((file (ext::make-temp-file)))
+    (unwind-protect
+         (dolist (eol-style '(:lf :crlf :cr))
+           (let ((best nil))
+             (dotimes (i repeat)
+               (let ((start (get-internal-real-time)))
+                 (with-open-file (out file :direction :output
+                                           :if-exists :supersede
+                                           :external-format
+                                           (list :utf-8 :eol-style eol-style))
+                   (stream-output-benchmark-write out lines))
+                 (let ((seconds (/ (- (get-internal-real-time) start)
+                                   internal-time-units-per-second)))
+                   (when (or (null best) (< seconds best))
+                     (setf best seconds)))))
+             (format t "~&~(~5A~) ~,3F seconds~%" eol-style (float best))))
+      (delete-file file))))
@@ -0,0 +1,67 @@
+;;; Benchmark for starting many Lisp threads and tasks.
+;;;
+;;; Times running short tasks one per thread made with MAKE-THREAD, as
+;;; platform and as virtual threads, and as tasks of a thread pool; then
+;;; measures the heap used per thread while many of them are blocked:
+;;;
+;;;   (load "tools/thread-benchmarks.lisp")
+;;;   (run-thread-benchmarks)
+;;;
+;;; On JVMs without virtual threads, :VIRTUAL T makes platform threads.
+
+(defun run-tasks (mode tasks)
+  "Runs TASKS short tasks binding a special variable and returns the
+wall clock time in seconds."
+  (let ((start (get-internal-real-time))
+        (task (lambda (i)
+                (let ((*print-base* 10))
+                  (princ-to-string i)))))
+    (if (eq mode :pool)
+        (let ((pool (threads:make-thread-pool)))
+          (mapc #'threads:future-value
+                (loop for i below tasks
+                   collect (threads:submit pool task i)))
+          (threads:shutdown-thread-pool pool))
+        (mapc #'threads:thread-join
+              (loop for i below tasks
+                 collect (let ((i i))
+                           (threads:make-thread (lambda () (funcall task i))
+                                                :virtual (eq mode :virtual))))))
+    (/ (- (get-internal-real-time) start)
+       internal-time-units-per-second)))
+
+(defun used-heap ()
+  (let ((runtime (java:jstatic "getRuntime" "java.lang.Runtime")))
+    (dotimes (i 3)
+      (java:jcall "gc" runtime))
+    (- (java:jcall "totalMemory" runtime)
+       (java:jcall "freeMemory" runtime))))
+
+(defun heap-per-thread (virtual threads)
+  "Returns the bytes of heap each of THREADS blocked threads uses."
+  (let* ((latch (threads:make-latch 1))
+         (before (used-heap))
+         (running (loop repeat threads
+                     collect (threads:make-thread
+                              (lambda ()
+                                (let ((*print-base* 10))
+                                  (threads:latch-wait latch)))
+                              :virtual virtual)))
+         (after (used-heap)))
+    (threads:latch-count-down latch)
+    (mapc #'threads:thread-join running)
+    (round (- after before) threads)))
+
+(defun run-thread-benchmarks (&key (tasks 10000) (threads 2000) (repeat 3))
+  (dolist (mode '(:platform :virtual :pool))
+    (let ((best nil))
+      (dotimes (i repeat)
+        (let ((seconds (run-tasks mode tasks)))
+          (when (or (null best) (< seconds best))
+            (setf best seconds))))
+      (setf best (max best 1/1000))
+      (format t "~&~(~8A~) ~:D tasks in ~,2F seconds: ~:D tasks/s~%"
+              mode tasks best (round tasks best))))
+  (dolist (virtual '(nil t))
+    (format t "~&~:[platform~;virtual~] ~:D bytes of heap per blocked thread~%"
+            virtual (heap-per-thread virtual threads))))